@@ -0,0 +1,51 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.maven.artifact.Artifact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link NativeHelper#extractArchitectureFromArtifact(Artifact, String)} over artifacts classified with each
+ * NDK architecture, with suffixed classifiers and without an architecture.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class ArchitectureExtractionBenchmark
+{
+    @Param( { "1000" } )
+    public int artifacts;
+
+    private List<Artifact> classifiedArtifacts;
+
+    @Setup
+    public void setUp()
+    {
+        classifiedArtifacts = SyntheticArtifacts.classifiedArtifacts( artifacts );
+    }
+
+    @Benchmark
+    public void extractArchitectureFromArtifact( final Blackhole blackhole )
+    {
+        for ( Artifact artifact : classifiedArtifacts )
+        {
+            blackhole.consume( NativeHelper.extractArchitectureFromArtifact( artifact, "armeabi-v7a" ) );
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Measures {@link JarHelper#unjar(JarFile, File, JarHelper.UnjarListener, int)} on a synthetic header archive of
+ * <code>entries</code> headers of <code>entrySize</code> bytes, both into an empty directory and into a directory
+ * already holding the extracted headers.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class JarHelperBenchmark
+{
+    private static final JarHelper.UnjarListener HEADERS = new JarHelper.UnjarListener()
+    {
+        @Override
+        public boolean include( JarEntry jarEntry )
+        {
+            return jarEntry.getName().startsWith( "include/" );
+        }
+    };
+
+    @Param( { "500", "5000" } )
+    public int entries;
+
+    @Param( { "4096" } )
+    public int entrySize;
+
+    @Param( { "1", "4" } )
+    public int threads;
+
+    private File workDirectory;
+    private JarFile headerArchive;
+    private File extractedDirectory;
+
+    /**
+     * A new, empty directory for each invocation.
+     */
+    @State( Scope.Thread )
+    public static class EmptyDirectory
+    {
+        private File directory;
+
+        @Setup( Level.Invocation )
+        public void create() throws IOException
+        {
+            directory = Files.createTempDirectory( "unjar-benchmark" ).toFile();
+        }
+
+        @TearDown( Level.Invocation )
+        public void delete() throws IOException
+        {
+            FileUtils.deleteDirectory( directory );
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        workDirectory = Files.createTempDirectory( "jar-helper-benchmark" ).toFile();
+        final File archive = new File( workDirectory, "headers.har" );
+        SyntheticArtifacts.headerArchive( archive, entries, entrySize );
+        headerArchive = new JarFile( archive );
+
+        extractedDirectory = new File( workDirectory, "extracted" );
+        JarHelper.unjar( headerArchive, extractedDirectory, HEADERS, threads );
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        headerArchive.close();
+        FileUtils.deleteDirectory( workDirectory );
+    }
+
+    @Benchmark
+    public int unjarIntoEmptyDirectory( final EmptyDirectory emptyDirectory ) throws IOException
+    {
+        return JarHelper.unjar( headerArchive, emptyDirectory.directory, HEADERS, threads );
+    }
+
+    @Benchmark
+    public int unjarUpToDate() throws IOException
+    {
+        return JarHelper.unjar( headerArchive, extractedDirectory, HEADERS, threads );
+    }
+}
@@ -0,0 +1,66 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link NativeHelper#getNativeDependenciesArtifacts(boolean)} over synthetic dependency graphs of
+ * <code>declaredDependencies</code> binary trees of the specified <code>depth</code>.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class NativeHelperBenchmark
+{
+    @Param( { "10", "100" } )
+    public int declaredDependencies;
+
+    @Param( { "3", "6" } )
+    public int depth;
+
+    private MavenProject project;
+    private DependencyGraphBuilder dependencyGraphBuilder;
+
+    @Setup
+    public void setUp()
+    {
+        project = new MavenProject();
+        dependencyGraphBuilder = SyntheticArtifacts.dependencyGraphBuilder(
+                SyntheticArtifacts.dependencyGraph( project, declaredDependencies, depth ) );
+    }
+
+    @Benchmark
+    public Set<Artifact> staticLibraries() throws MojoExecutionException
+    {
+        // A new helper each time, the helper keeps the resolved dependencies
+        return new NativeHelper( project, dependencyGraphBuilder, SyntheticArtifacts.quietLog() ).getNativeDependenciesArtifacts( false );
+    }
+
+    @Benchmark
+    public Set<Artifact> staticAndSharedLibraries() throws MojoExecutionException
+    {
+        final NativeHelper nativeHelper = new NativeHelper( project, dependencyGraphBuilder, SyntheticArtifacts.quietLog() );
+        final Set<Artifact> artifacts = nativeHelper.getNativeDependenciesArtifacts( false );
+        artifacts.addAll( nativeHelper.getNativeDependenciesArtifacts( true ) );
+        return artifacts;
+    }
+}
@@ -0,0 +1,221 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import com.simpligility.maven.plugins.androidndk.AndroidNdk;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.apache.maven.shared.dependency.graph.internal.DefaultDependencyNode;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Creates synthetic artifacts, dependency graphs and archives of configurable size for the benchmarks.
+ */
+public final class SyntheticArtifacts
+{
+    private static final String GROUP_ID = "com.example.native";
+    private static final String VERSION = "1.0.0";
+
+    /**
+     * Types of the nodes of the dependency graphs, in the order they are assigned.
+     */
+    private static final String[] GRAPH_TYPES = { Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE,
+            Const.ArtifactType.NATIVE_SYMBOL_OBJECT, AndroidExtension.AAR, "jar" };
+
+    private static final int HEADERS_PER_DIRECTORY = 50;
+
+    private SyntheticArtifacts()
+    {
+    }
+
+    /**
+     * @return A log only writing errors, so logging does not dominate the measurements
+     */
+    public static Log quietLog()
+    {
+        return new DefaultLog( new ConsoleLogger( Logger.LEVEL_ERROR, "benchmark" ) );
+    }
+
+    public static Artifact artifact( final String artifactId, final String type, final String classifier )
+    {
+        return new DefaultArtifact( GROUP_ID, artifactId, VERSION, Artifact.SCOPE_COMPILE, type, classifier, new DefaultArtifactHandler( type ) );
+    }
+
+    /**
+     * Creates native libraries, alternating between static and shared libraries and spread over all NDK
+     * architectures, each with an empty library file in the specified directory.
+     */
+    public static Set<Artifact> nativeLibraries( final int count, final File directory ) throws IOException
+    {
+        final Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
+        for ( int i = 0; i < count; i++ )
+        {
+            final boolean staticLibrary = i % 2 == 0;
+            final String type = staticLibrary ? Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE : Const.ArtifactType.NATIVE_SYMBOL_OBJECT;
+            final String architecture = AndroidNdk.NDK_ARCHITECTURES[ i % AndroidNdk.NDK_ARCHITECTURES.length ];
+            final Artifact artifact = artifact( "native-" + i, type, architecture );
+
+            final File file = new File( directory, "native-" + i + "-" + architecture + "." + type );
+            if ( !file.createNewFile() && !file.isFile() )
+            {
+                throw new IOException( "Unable to create " + file );
+            }
+            artifact.setFile( file );
+            artifacts.add( artifact );
+        }
+        return artifacts;
+    }
+
+    /**
+     * Creates artifacts with classifiers of all NDK architectures, with and without suffixes, and without an
+     * architecture.
+     */
+    public static List<Artifact> classifiedArtifacts( final int count )
+    {
+        final List<Artifact> artifacts = new ArrayList<Artifact>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            final String architecture = AndroidNdk.NDK_ARCHITECTURES[ i % AndroidNdk.NDK_ARCHITECTURES.length ];
+            final String classifier;
+            switch ( i % 3 )
+            {
+                case 0:
+                    classifier = architecture;
+                    break;
+                case 1:
+                    classifier = architecture + "-debug";
+                    break;
+                default:
+                    classifier = i % 2 == 0 ? null : "sources";
+                    break;
+            }
+            artifacts.add( artifact( "classified-" + i, Const.ArtifactType.NATIVE_SYMBOL_OBJECT, classifier ) );
+        }
+        return artifacts;
+    }
+
+    /**
+     * Creates a dependency graph of <code>width</code> dependencies declared by the project, each the root of a
+     * binary tree of the specified depth, and sets the dependencies and artifacts of the project accordingly.
+     *
+     * @return The root node of the graph
+     */
+    public static DependencyNode dependencyGraph( final MavenProject project, final int width, final int depth )
+    {
+        final DefaultDependencyNode root = new DefaultDependencyNode( null, artifact( "project", "jar", null ), null, null, null );
+        final Set<Artifact> declaredArtifacts = new LinkedHashSet<Artifact>();
+        final Set<Artifact> allArtifacts = new LinkedHashSet<Artifact>();
+        final List<DependencyNode> children = new ArrayList<DependencyNode>( width );
+        final int[] counter = new int[ 1 ];
+        for ( int i = 0; i < width; i++ )
+        {
+            final DefaultDependencyNode child = node( root, depth, counter, allArtifacts );
+            children.add( child );
+            declaredArtifacts.add( child.getArtifact() );
+
+            final Dependency dependency = new Dependency();
+            dependency.setGroupId( GROUP_ID );
+            dependency.setArtifactId( child.getArtifact().getArtifactId() );
+            dependency.setVersion( VERSION );
+            dependency.setType( child.getArtifact().getType() );
+            project.getDependencies().add( dependency );
+        }
+        root.setChildren( children );
+        project.setDependencyArtifacts( declaredArtifacts );
+        project.setArtifacts( allArtifacts );
+        return root;
+    }
+
+    private static DefaultDependencyNode node( final DependencyNode parent, final int depth, final int[] counter, final Set<Artifact> allArtifacts )
+    {
+        final int index = counter[ 0 ]++;
+        final Artifact artifact = artifact( "library-" + index, GRAPH_TYPES[ index % GRAPH_TYPES.length ], null );
+        allArtifacts.add( artifact );
+
+        final DefaultDependencyNode node = new DefaultDependencyNode( parent, artifact, null, null, null );
+        final List<DependencyNode> children = new ArrayList<DependencyNode>();
+        if ( depth > 1 )
+        {
+            children.add( node( node, depth - 1, counter, allArtifacts ) );
+            children.add( node( node, depth - 1, counter, allArtifacts ) );
+        }
+        node.setChildren( children );
+        return node;
+    }
+
+    /**
+     * @return A graph builder always returning the specified graph
+     */
+    public static DependencyGraphBuilder dependencyGraphBuilder( final DependencyNode root )
+    {
+        return new DependencyGraphBuilder()
+        {
+            @Override
+            public DependencyNode buildDependencyGraph( MavenProject project, ArtifactFilter filter )
+            {
+                return root;
+            }
+
+            @Override
+            public DependencyNode buildDependencyGraph( MavenProject project, ArtifactFilter filter, Collection<MavenProject> reactorProjects )
+            {
+                return root;
+            }
+        };
+    }
+
+    /**
+     * Writes a header archive with the specified number of headers below <code>include/</code>, spread over
+     * directories of {@value #HEADERS_PER_DIRECTORY} headers.
+     *
+     * @param entrySize Size of each header in bytes
+     */
+    public static void headerArchive( final File file, final int entries, final int entrySize ) throws IOException
+    {
+        final byte[] content = headerContent( entrySize );
+        final JarOutputStream out = new JarOutputStream( new FileOutputStream( file ) );
+        try
+        {
+            for ( int i = 0; i < entries; i++ )
+            {
+                out.putNextEntry( new JarEntry( "include/module" + ( i / HEADERS_PER_DIRECTORY ) + "/header" + i + ".h" ) );
+                out.write( content );
+                out.closeEntry();
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static byte[] headerContent( final int size )
+    {
+        final StringBuilder content = new StringBuilder( size );
+        for ( int line = 0; content.length() < size; line++ )
+        {
+            content.append( "extern int synthetic_function_" ).append( line ).append( "( const char *name, int flags );\n" );
+        }
+        content.setLength( size );
+        return content.toString().getBytes( StandardCharsets.US_ASCII );
+    }
+}
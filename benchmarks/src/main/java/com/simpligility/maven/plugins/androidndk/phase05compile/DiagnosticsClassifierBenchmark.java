@@ -0,0 +1,77 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the classification of the standard error of ndk-build, as done for each line through
+ * {@link com.simpligility.maven.plugins.androidndk.CommandExecutor.ErrorListener}, over a synthetic mix of compiler
+ * diagnostics and other output of <code>lines</code> lines.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class DiagnosticsClassifierBenchmark
+{
+    /**
+     * The default of <code>buildWarningsRegularExpression</code>.
+     */
+    private static final Pattern BUILD_WARNINGS = Pattern.compile( ".*(warning|note): .*" );
+
+    private static final String[] LINES = {
+        "jni/module%d/source.c:%d:12: warning: unused variable 'result' [-Wunused-variable]",
+        "jni/module%d/source.c:%d:5: note: in expansion of macro 'CHECK'",
+        "In file included from jni/module%d/source.cpp:%d:",
+        "jni/module%d/source.cpp:%d:20: error: use of undeclared identifier 'value'",
+        "make: *** [obj/local/armeabi-v7a/objs/module%d/source.o] Error %d",
+        "    int result = compute( value );",
+        "                 ^~~~~~~",
+    };
+
+    @Param( { "10000" } )
+    public int lines;
+
+    private List<String> output;
+
+    @Setup
+    public void setUp()
+    {
+        output = new ArrayList<String>( lines );
+        for ( int i = 0; i < lines; i++ )
+        {
+            output.add( String.format( LINES[ i % LINES.length ], i % 100, i ) );
+        }
+    }
+
+    @Benchmark
+    public int classify()
+    {
+        final DiagnosticsClassifier classifier = new DiagnosticsClassifier( false, BUILD_WARNINGS );
+        int errors = 0;
+        for ( String line : output )
+        {
+            if ( classifier.isError( line ) )
+            {
+                errors++;
+            }
+        }
+        return errors;
+    }
+}
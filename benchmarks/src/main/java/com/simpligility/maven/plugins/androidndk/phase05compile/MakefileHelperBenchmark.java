@@ -0,0 +1,87 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import com.simpligility.maven.plugins.androidndk.AndroidNdk;
+import com.simpligility.maven.plugins.androidndk.common.ArtifactResolverHelper;
+import com.simpligility.maven.plugins.androidndk.common.Const;
+import com.simpligility.maven.plugins.androidndk.common.HeaderArchiveCache;
+import com.simpligility.maven.plugins.androidndk.common.MavenToPlexusLogAdapter;
+import com.simpligility.maven.plugins.androidndk.common.SyntheticArtifacts;
+import com.simpligility.maven.plugins.androidndk.configuration.IgnoreHeaderFilesArchive;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MakefileHelper#createMakefileFromArtifacts(MakefileHelper.MakefileRequest)} for
+ * <code>artifacts</code> static and shared native libraries without header archives.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class MakefileHelperBenchmark
+{
+    @Param( { "100", "1000", "5000" } )
+    public int artifacts;
+
+    private File workDirectory;
+    private Set<Artifact> nativeLibraries;
+    private MakefileHelper makefileHelper;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        workDirectory = Files.createTempDirectory( "makefile-helper-benchmark" ).toFile();
+        final File librariesDirectory = new File( workDirectory, "libraries" );
+        librariesDirectory.mkdirs();
+        nativeLibraries = SyntheticArtifacts.nativeLibraries( artifacts, librariesDirectory );
+
+        final MavenProject project = new MavenProject();
+        project.setFile( new File( workDirectory, "pom.xml" ) );
+        final Log log = SyntheticArtifacts.quietLog();
+        makefileHelper = new MakefileHelper( project, log, new ArtifactResolverHelper( null, new MavenToPlexusLogAdapter( log ) ),
+                new DefaultArtifactHandler( Const.ArtifactType.NATIVE_HEADER_ARCHIVE ), new File( workDirectory, "unpacked-libs" ),
+                new File( workDirectory, "android-ndk-maven-plugin" ), new HeaderArchiveCache( new File( workDirectory, "headers" ), 0, log ) );
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory( workDirectory );
+    }
+
+    @Benchmark
+    public String createMakefileFromArtifacts() throws IOException, MojoExecutionException
+    {
+        final MakefileHelper.MakefileRequest makefileRequest = new MakefileHelper.MakefileRequest();
+        makefileRequest.artifacts = nativeLibraries;
+        makefileRequest.defaultNDKArchitecture = "armeabi-v7a";
+        makefileRequest.architectures = AndroidNdk.NDK_ARCHITECTURES;
+        makefileRequest.ignoreHeaderFilesArchives = Collections.<IgnoreHeaderFilesArchive>emptyList();
+        return makefileHelper.createMakefileFromArtifacts( makefileRequest ).getMakeFile();
+    }
+}
@@ -79,10 +79,29 @@ public class AndroidNdk
 
     private final File ndkPath;
 
+    /**
+     * Index of the NDK, used instead of probing the file system when present.
+     */
+    private final NdkIndex index;
+
     public AndroidNdk( File ndkPath )
+    {
+        this( ndkPath, null );
+    }
+
+    public AndroidNdk( File ndkPath, NdkIndex index )
     {
         assertPathIsDirectory( ndkPath );
         this.ndkPath = ndkPath;
+        this.index = index;
+    }
+
+    /**
+     * @return The index of the NDK, or null if it was created without one
+     */
+    public NdkIndex getIndex()
+    {
+        return index;
     }
 
     private void assertPathIsDirectory( final File path )
@@ -242,6 +261,11 @@ public class AndroidNdk
     {
         for ( String toolchain : toolchains )
         {
+            // The index only lists readable toolchain directories, others are checked to report them
+            if ( index != null && index.getToolchains().contains( toolchain ) )
+            {
+                return toolchain;
+            }
             File toolchainDirectory = new File( ndkPath, String.format( TOOLCHAIN_LOCATION, toolchain ) );
             if ( toolchainDirectory.exists() )
             {
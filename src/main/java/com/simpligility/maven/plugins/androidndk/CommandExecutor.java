@@ -16,13 +16,20 @@
  */
 package com.simpligility.maven.plugins.androidndk;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
@@ -129,6 +136,18 @@ public interface CommandExecutor
     void setCaptureStdOut( boolean captureStdOut );
     void setCaptureStdErr( boolean captureStdErr );
 
+    /**
+     * Sets a file to which all output (standard output and error) of the executed command is written.
+     *
+     * @param outputFile the file to write the output to, or null to not write the output to a file
+     */
+    void setOutputFile( File outputFile );
+
+    /**
+     * Adds a processor which is handed every line written to the standard output.
+     */
+    void addStdOutProcessor( LineProcessor lineProcessor );
+
     /**
      *
      */
@@ -137,11 +156,24 @@ public interface CommandExecutor
         boolean isError( String error );
     }
 
+    /**
+     * Receives the output of an executed command line by line, as it is produced, on the thread reading the
+     * standard output.
+     */
+    public interface LineProcessor
+    {
+        void processLine( String line );
+    }
+
     /**
      * Provides factory services for creating a default instance of the command executor.
      */
     class Factory
     {
+        /**
+         * Number of lines kept when capturing a stream, only the last lines of the output are kept.
+         */
+        public static final int DEFAULT_CAPTURE_LIMIT = 500;
 
         /**
          * Constructor
@@ -178,6 +210,8 @@ public interface CommandExecutor
 
             private boolean captureStdOut;
             private boolean captureStdErr;
+            private File outputFile;
+            private final List< LineProcessor > stdOutProcessors = new ArrayList< LineProcessor >();
 
             @Override
             public void setLogger( Log logger )
@@ -206,8 +240,20 @@ public interface CommandExecutor
                 {
                     commands = new ArrayList< String >();
                 }
-                stdOut = new StreamConsumerImpl( logger, captureStdOut );
-                stdErr = new ErrorStreamConsumer( logger, errorListener, captureStdErr );
+                final OutputSpill outputSpill;
+                try
+                {
+                    outputSpill = outputFile != null ? new OutputSpill( outputFile ) : null;
+                }
+                catch ( IOException e )
+                {
+                    throw new ExecutionException( "ANDROID-040-004: Could not create output file " + outputFile
+                            + ": " + e.getMessage() );
+                }
+                stdOut = new StreamConsumerImpl( logger, captureStdOut ? new BoundedLineBuffer( DEFAULT_CAPTURE_LIMIT ) : null,
+                        outputSpill, stdOutProcessors );
+                stdErr = new ErrorStreamConsumer( logger, errorListener,
+                        captureStdErr ? new BoundedLineBuffer( DEFAULT_CAPTURE_LIMIT ) : null, outputSpill );
                 commandline = new Commandline();
                 if ( customShell != null )
                 {
@@ -245,6 +291,7 @@ public interface CommandExecutor
                     }
                     if ( failsOnErrorOutput && stdErr.hasError() || result != 0 )
                     {
+                        logOutputTail();
                         throw new ExecutionException( "ANDROID-040-001: Could not execute: Command = "
                                 + commandline.toString() + ", Result = " + result );
                     }
@@ -254,9 +301,32 @@ public interface CommandExecutor
                     throw new ExecutionException( "ANDROID-040-002: Could not execute: Command = "
                             + commandline.toString() + ", Error message = " + e.getMessage() );
                 }
+                finally
+                {
+                    if ( outputSpill != null )
+                    {
+                        outputSpill.close();
+                    }
+                }
                 setPid( commandline.getPid() );
             }
 
+            /**
+             * Logs the captured tail of the standard output, which is otherwise only logged at debug level, to help
+             * diagnose a failed command.
+             */
+            private void logOutputTail()
+            {
+                if ( logger != null && captureStdOut && !logger.isDebugEnabled() )
+                {
+                    final String tail = stdOut.toString();
+                    if ( !tail.isEmpty() )
+                    {
+                        logger.info( "ANDROID-040-005: Last lines of standard output:\n" + tail );
+                    }
+                }
+            }
+
             @Override
             public int getResult()
             {
@@ -327,30 +397,146 @@ public interface CommandExecutor
             {
                 this.captureStdErr = captureStdErr;
             }
+
+            @Override
+            public void setOutputFile( File outputFile )
+            {
+                this.outputFile = outputFile;
+            }
+
+            @Override
+            public void addStdOutProcessor( LineProcessor lineProcessor )
+            {
+                stdOutProcessors.add( lineProcessor );
+            }
         }
 
         /**
-         * StreamConsumer instance that buffers the entire output
+         * Keeps the last lines added to it, discarding older lines once the limit is reached.
+         */
+        static class BoundedLineBuffer
+        {
+            private final String[] lines;
+            private int next;
+            private int size;
+
+            BoundedLineBuffer( int limit )
+            {
+                this.lines = new String[ Math.max( 1, limit ) ];
+            }
+
+            synchronized void add( String line )
+            {
+                lines[ next ] = line;
+                next = ( next + 1 ) % lines.length;
+                if ( size < lines.length )
+                {
+                    size++;
+                }
+            }
+
+            /**
+             * Returns the kept lines, oldest first, separated by new lines
+             *
+             * @return the kept lines
+             */
+            @Override
+            public synchronized String toString()
+            {
+                final StringBuilder sb = new StringBuilder();
+                final int first = ( next - size + lines.length ) % lines.length;
+                for ( int i = 0; i < size; i++ )
+                {
+                    if ( i > 0 )
+                    {
+                        sb.append( '\n' );
+                    }
+                    sb.append( lines[ ( first + i ) % lines.length ] );
+                }
+                return sb.toString();
+            }
+        }
+
+        /**
+         * Writes the output of both streams to a file as it is produced.
+         */
+        static class OutputSpill
+        {
+            private final Writer writer;
+
+            OutputSpill( File file ) throws IOException
+            {
+                final File parent = file.getAbsoluteFile().getParentFile();
+                if ( !parent.exists() && !parent.mkdirs() )
+                {
+                    throw new IOException( "Error creating directory: " + parent );
+                }
+                this.writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" ) );
+            }
+
+            synchronized void writeLine( String line )
+            {
+                try
+                {
+                    writer.write( line );
+                    writer.write( '\n' );
+                }
+                catch ( IOException e )
+                {
+                    // Keep consuming the output even if it can no longer be written
+                }
+            }
+
+            synchronized void close()
+            {
+                IOUtil.close( writer );
+            }
+        }
+
+        /**
+         * Hands a line to the output file and line processors of a stream.
+         */
+        private static void dispatch( String line, BoundedLineBuffer tail, OutputSpill outputSpill,
+                List< LineProcessor > lineProcessors )
+        {
+            if ( tail != null )
+            {
+                tail.add( line );
+            }
+            if ( outputSpill != null )
+            {
+                outputSpill.writeLine( line );
+            }
+            for ( LineProcessor lineProcessor : lineProcessors )
+            {
+                lineProcessor.processLine( line );
+            }
+        }
+
+        /**
+         * StreamConsumer instance that streams the output to the configured consumers, keeping at most the last
+         * lines in memory
          */
         static class StreamConsumerImpl implements StreamConsumer
         {
-            private StringBuffer sb = new StringBuffer();
+            private final BoundedLineBuffer tail;
             private final Log logger;
-            private boolean captureStdOut;
+            private final OutputSpill outputSpill;
+            private final List< LineProcessor > lineProcessors;
 
-            StreamConsumerImpl( Log logger, boolean captureStdOut )
+            StreamConsumerImpl( Log logger, BoundedLineBuffer tail, OutputSpill outputSpill,
+                    List< LineProcessor > lineProcessors )
             {
                 this.logger = logger;
-                this.captureStdOut = captureStdOut;
+                this.tail = tail;
+                this.outputSpill = outputSpill;
+                this.lineProcessors = lineProcessors;
             }
 
             @Override
             public void consumeLine( String line )
             {
-                if ( captureStdOut )
-                {
-                    sb.append( line );
-                }
+                dispatch( line, tail, outputSpill, lineProcessors );
                 if ( logger != null )
                 {
                     logger.debug( line );
@@ -358,14 +544,14 @@ public interface CommandExecutor
             }
 
             /**
-             * Returns the stream
+             * Returns the last lines of the stream
              * 
-             * @return the stream
+             * @return the last lines of the stream
              */
             @Override
             public String toString()
             {
-                return sb.toString();
+                return tail != null ? tail.toString() : "";
             }
         }
 
@@ -376,19 +562,21 @@ public interface CommandExecutor
          */
         static class ErrorStreamConsumer implements StreamConsumer
         {
-            /** Is true if there was anything consumed from the stream, otherwise false */
-            private boolean error;
-            /** Buffer to store the stream */
-            private StringBuffer sbe = new StringBuffer();
+            /** Is true if any line consumed from the stream was an error, otherwise false */
+            private volatile boolean error;
+            /** Last lines of the stream */
+            private final BoundedLineBuffer tail;
             private final Log logger;
             private final ErrorListener errorListener;
-            private boolean captureStdErr;
+            private final OutputSpill outputSpill;
 
-            ErrorStreamConsumer( Log logger, ErrorListener errorListener, boolean captureStdErr )
+            ErrorStreamConsumer( Log logger, ErrorListener errorListener, BoundedLineBuffer tail,
+                    OutputSpill outputSpill )
             {
                 this.logger = logger;
                 this.errorListener = errorListener;
-                this.captureStdErr = captureStdErr;
+                this.tail = tail;
+                this.outputSpill = outputSpill;
 
                 if ( logger == null )
                 {
@@ -400,22 +588,14 @@ public interface CommandExecutor
             @Override
             public void consumeLine( String line )
             {
-                if ( captureStdErr )
-                {
-                    sbe.append( line );
-                }
+                dispatch( line, tail, outputSpill, Collections.< LineProcessor >emptyList() );
                 if ( logger != null )
                 {
                     logger.info( line );
                 }
-                if ( errorListener != null )
-                {
-                    error = errorListener.isError( line );
-                }
-                else
-                {
-                    error = true;
-                }
+                // Once an error was seen it sticks, the listener still gets to see every line
+                final boolean lineIsError = errorListener == null || errorListener.isError( line );
+                error = error || lineIsError;
             }
 
             /**
@@ -429,14 +609,14 @@ public interface CommandExecutor
             }
 
             /**
-             * Returns the error stream
+             * Returns the last lines of the error stream
              * 
-             * @return error stream
+             * @return last lines of the error stream
              */
             @Override
             public String toString()
             {
-                return sbe.toString();
+                return tail != null ? tail.toString() : "";
             }
         }
 
@@ -0,0 +1,349 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.simpligility.maven.plugins.androidndk;
+
+import com.simpligility.maven.plugins.androidndk.common.DigestHelper;
+import com.simpligility.maven.plugins.androidndk.common.FileHelper;
+import com.simpligility.maven.plugins.androidndk.common.SessionRegistry;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * What the plugin needs to know about an NDK installation: its version, toolchains, platforms, prebuilt host tags
+ * and compiler versions.
+ * <p/>
+ * Scanning an NDK touches many directories, which is slow on network mounts.  The index is therefore kept in memory
+ * for the whole Maven session (see {@link #forSession(Object, File, File, Log)} and {@link SessionRegistry}) and
+ * persisted to an index directory,
+ * where it stays valid as long as the path of the NDK and the modification times of the NDK directory, its
+ * <code>source.properties</code> and the directories the index lists are unchanged.
+ */
+public final class NdkIndex
+{
+    /**
+     * NDK path -> index, per session.
+     */
+    private static final SessionRegistry<Map<String, NdkIndex>> SESSION_INDEXES = new SessionRegistry<Map<String, NdkIndex>>();
+
+    /**
+     * Version of the persisted format, indexes of other versions are rebuilt.
+     */
+    private static final String FORMAT = "2";
+
+    /**
+     * Paths, relative to the NDK directory, whose modification times are checked before a persisted index is used.
+     */
+    private static final String[] STAMPED_PATHS = { "", "source.properties", "toolchains", "toolchains/llvm/prebuilt", "platforms", "prebuilt" };
+
+    private final File ndkPath;
+    private final String stamp;
+    private final String revision;
+    private final String release;
+    private final SortedSet<String> toolchains;
+    private final SortedSet<String> platforms;
+    private final SortedSet<String> hostTags;
+    private final SortedSet<String> compilerVersions;
+
+    private NdkIndex( final File ndkPath, final String stamp, final String revision, final String release, final SortedSet<String> toolchains,
+                      final SortedSet<String> platforms, final SortedSet<String> hostTags, final SortedSet<String> compilerVersions )
+    {
+        this.ndkPath = ndkPath;
+        this.stamp = stamp;
+        this.revision = revision;
+        this.release = release;
+        this.toolchains = Collections.unmodifiableSortedSet( toolchains );
+        this.platforms = Collections.unmodifiableSortedSet( platforms );
+        this.hostTags = Collections.unmodifiableSortedSet( hostTags );
+        this.compilerVersions = Collections.unmodifiableSortedSet( compilerVersions );
+    }
+
+    /**
+     * Returns the index of an NDK for a session, loading or building it on first use.
+     *
+     * @param sessionKey     The key of the session, see {@link SessionRegistry#getSessionKey}
+     * @param ndkPath        The NDK directory
+     * @param indexDirectory Directory the index is persisted to, or null to not persist it
+     * @param log            Log to write output to
+     */
+    public static NdkIndex forSession( final Object sessionKey, final File ndkPath, final File indexDirectory, final Log log )
+    {
+        final Map<String, NdkIndex> indexes = SESSION_INDEXES.get( sessionKey, new SessionRegistry.Factory<Map<String, NdkIndex>>()
+        {
+            @Override
+            public Map<String, NdkIndex> create()
+            {
+                return new HashMap<String, NdkIndex>();
+            }
+        } );
+        synchronized ( indexes )
+        {
+            NdkIndex index = indexes.get( ndkPath.getAbsolutePath() );
+            if ( index == null )
+            {
+                index = load( ndkPath, indexDirectory, log );
+                indexes.put( ndkPath.getAbsolutePath(), index );
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Reads the persisted index of an NDK if it is still valid, otherwise scans the NDK and persists the result.
+     */
+    static NdkIndex load( final File ndkPath, final File indexDirectory, final Log log )
+    {
+        if ( indexDirectory == null )
+        {
+            return scan( ndkPath );
+        }
+
+        final File indexFile = new File( indexDirectory, DigestHelper.sha1( ndkPath.getAbsolutePath() ) + ".properties" );
+        if ( indexFile.isFile() )
+        {
+            try
+            {
+                final NdkIndex index = read( indexFile );
+                if ( index.ndkPath.equals( ndkPath.getAbsoluteFile() ) && index.stamp.equals( stamp( ndkPath.getAbsoluteFile() ) ) )
+                {
+                    log.debug( "Using NDK index " + indexFile );
+                    return index;
+                }
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Unable to read NDK index " + indexFile + ": " + e.getMessage() );
+            }
+        }
+
+        final NdkIndex index = scan( ndkPath );
+        try
+        {
+            indexDirectory.mkdirs();
+            FileHelper.writePropertiesIfChanged( indexFile, index.toProperties() );
+            log.debug( "Wrote NDK index " + indexFile );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Unable to write NDK index " + indexFile + ": " + e.getMessage() );
+        }
+        return index;
+    }
+
+    /**
+     * Builds the index by probing the NDK directory.
+     */
+    public static NdkIndex scan( final File ndkPath )
+    {
+        final File absoluteNdkPath = ndkPath.getAbsoluteFile();
+        final String stamp = stamp( absoluteNdkPath );
+
+        String revision = null;
+        final File sourcePropertiesFile = new File( absoluteNdkPath, "source.properties" );
+        if ( sourcePropertiesFile.isFile() )
+        {
+            final Properties sourceProperties = new Properties();
+            InputStream in = null;
+            try
+            {
+                in = new FileInputStream( sourcePropertiesFile );
+                sourceProperties.load( in );
+            }
+            catch ( IOException e )
+            {
+                // Still a release as of 11, just without a known revision
+            }
+            finally
+            {
+                IOUtils.closeQuietly( in );
+            }
+            revision = sourceProperties.getProperty( "Pkg.Revision", "" ).trim();
+        }
+
+        String release = null;
+        final File releaseFile = new File( absoluteNdkPath, "RELEASE.TXT" );
+        if ( releaseFile.isFile() )
+        {
+            try
+            {
+                release = FileUtils.readFileToString( releaseFile, "UTF-8" ).trim();
+            }
+            catch ( IOException e )
+            {
+                release = null;
+            }
+        }
+
+        final SortedSet<String> hostTags = listDirectories( new File( absoluteNdkPath, "prebuilt" ) );
+        hostTags.addAll( listDirectories( new File( absoluteNdkPath, "toolchains/llvm/prebuilt" ) ) );
+
+        final SortedSet<String> compilerVersions = new TreeSet<String>();
+        for ( String hostTag : hostTags )
+        {
+            for ( String libraryDirectory : new String[] { "lib64", "lib" } )
+            {
+                for ( String version : listDirectories( new File( absoluteNdkPath, "toolchains/llvm/prebuilt/" + hostTag + "/" + libraryDirectory + "/clang" ) ) )
+                {
+                    compilerVersions.add( "clang-" + version );
+                }
+            }
+        }
+
+        return new NdkIndex( absoluteNdkPath, stamp, revision, release, listDirectories( new File( absoluteNdkPath, "toolchains" ) ),
+                listDirectories( new File( absoluteNdkPath, "platforms" ) ), hostTags, compilerVersions );
+    }
+
+    /**
+     * @return The modification times of the NDK directory and the files and directories the index is built from
+     */
+    private static String stamp( final File ndkPath )
+    {
+        final StringBuilder stamp = new StringBuilder();
+        for ( String path : STAMPED_PATHS )
+        {
+            stamp.append( stamp.length() > 0 ? "," : "" ).append( new File( ndkPath, path ).lastModified() );
+        }
+        return stamp.toString();
+    }
+
+    private static SortedSet<String> listDirectories( final File directory )
+    {
+        final SortedSet<String> names = new TreeSet<String>();
+        final File[] files = directory.listFiles();
+        if ( files != null )
+        {
+            for ( File file : files )
+            {
+                if ( file.isDirectory() && file.canRead() )
+                {
+                    names.add( file.getName() );
+                }
+            }
+        }
+        return names;
+    }
+
+    private static NdkIndex read( final File indexFile ) throws IOException
+    {
+        final Properties properties = new Properties();
+        properties.load( new StringReader( FileUtils.readFileToString( indexFile, "UTF-8" ) ) );
+        if ( !FORMAT.equals( properties.getProperty( "format" ) ) )
+        {
+            throw new IOException( "Unsupported format " + properties.getProperty( "format" ) );
+        }
+        try
+        {
+            return new NdkIndex( new File( properties.getProperty( "path" ) ), properties.getProperty( "stamp" ).trim(),
+                    properties.getProperty( "revision" ), properties.getProperty( "release" ), split( properties.getProperty( "toolchains" ) ),
+                    split( properties.getProperty( "platforms" ) ), split( properties.getProperty( "hostTags" ) ),
+                    split( properties.getProperty( "compilerVersions" ) ) );
+        }
+        catch ( RuntimeException e )
+        {
+            throw new IOException( "Invalid NDK index: " + e.getMessage(), e );
+        }
+    }
+
+    private Properties toProperties()
+    {
+        final Properties properties = new Properties();
+        properties.setProperty( "format", FORMAT );
+        properties.setProperty( "path", ndkPath.getPath() );
+        properties.setProperty( "stamp", stamp );
+        if ( revision != null )
+        {
+            properties.setProperty( "revision", revision );
+        }
+        if ( release != null )
+        {
+            properties.setProperty( "release", release );
+        }
+        properties.setProperty( "toolchains", StringUtils.join( toolchains, ',' ) );
+        properties.setProperty( "platforms", StringUtils.join( platforms, ',' ) );
+        properties.setProperty( "hostTags", StringUtils.join( hostTags, ',' ) );
+        properties.setProperty( "compilerVersions", StringUtils.join( compilerVersions, ',' ) );
+
+        return properties;
+    }
+
+    private static SortedSet<String> split( final String value )
+    {
+        final SortedSet<String> values = new TreeSet<String>();
+        if ( StringUtils.isNotEmpty( value ) )
+        {
+            values.addAll( Arrays.asList( value.split( "," ) ) );
+        }
+        return values;
+    }
+
+    public File getNdkPath()
+    {
+        return ndkPath;
+    }
+
+    /**
+     * @return <code>Pkg.Revision</code> of <code>source.properties</code>, present as of r11, or null
+     */
+    public String getRevision()
+    {
+        return revision;
+    }
+
+    /**
+     * @return The content of <code>RELEASE.TXT</code>, present before r11, or null
+     */
+    public String getRelease()
+    {
+        return release;
+    }
+
+    public boolean hasSourceProperties()
+    {
+        return revision != null;
+    }
+
+    public SortedSet<String> getToolchains()
+    {
+        return toolchains;
+    }
+
+    public SortedSet<String> getPlatforms()
+    {
+        return platforms;
+    }
+
+    public SortedSet<String> getHostTags()
+    {
+        return hostTags;
+    }
+
+    public SortedSet<String> getCompilerVersions()
+    {
+        return compilerVersions;
+    }
+}
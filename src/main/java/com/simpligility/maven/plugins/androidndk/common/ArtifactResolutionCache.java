@@ -0,0 +1,104 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the files artifacts were resolved to, keyed by their coordinates.
+ * <p/>
+ * One cache is kept per Maven session (see {@link #forSession(Object)} and {@link SessionRegistry}), so all
+ * executions of the plugin in all modules of a reactor build share it.  Instances are thread safe, so they can be used by parallel builds.
+ *
+ * @see ArtifactResolverHelper#setResolutionCache(ArtifactResolutionCache)
+ */
+public final class ArtifactResolutionCache
+{
+    private static final SessionRegistry<ArtifactResolutionCache> SESSION_CACHES = new SessionRegistry<ArtifactResolutionCache>();
+
+    private final ConcurrentMap<String, File> resolvedFiles = new ConcurrentHashMap<String, File>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Returns the cache of a session, creating it on first use.
+     *
+     * @param sessionKey The key of the session, see {@link SessionRegistry#getSessionKey}
+     */
+    public static ArtifactResolutionCache forSession( final Object sessionKey )
+    {
+        return SESSION_CACHES.get( sessionKey, new SessionRegistry.Factory<ArtifactResolutionCache>()
+        {
+            @Override
+            public ArtifactResolutionCache create()
+            {
+                return new ArtifactResolutionCache();
+            }
+        } );
+    }
+
+    /**
+     * @return The file the artifact was previously resolved to, or null if it was not resolved yet or the file no
+     * longer exists.
+     */
+    public File get( final Artifact artifact )
+    {
+        final String key = getKey( artifact );
+        final File file = resolvedFiles.get( key );
+        if ( file == null || !file.exists() )
+        {
+            if ( file != null )
+            {
+                resolvedFiles.remove( key, file );
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return file;
+    }
+
+    /**
+     * Records the file a resolved artifact points to.  Artifacts without a file are not cached.
+     */
+    public void put( final Artifact resolvedArtifact )
+    {
+        if ( resolvedArtifact.getFile() != null )
+        {
+            resolvedFiles.put( getKey( resolvedArtifact ), resolvedArtifact.getFile() );
+        }
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public int size()
+    {
+        return resolvedFiles.size();
+    }
+
+    public void logStatistics( final Log log )
+    {
+        log.info( "Artifact resolution cache: " + getHits() + " hits, " + getMisses() + " misses, " + size() + " artifacts" );
+    }
+
+    /**
+     * @return groupId:artifactId:type:classifier:version - the coordinates identifying the file of an artifact
+     */
+    static String getKey( final Artifact artifact )
+    {
+        return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getType() + ":"
+                + ( artifact.getClassifier() == null ? "" : artifact.getClassifier() ) + ":" + artifact.getVersion();
+    }
+}
@@ -19,12 +19,18 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.codehaus.plexus.logging.Logger;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Provides convenient functions for resolving artifacts.
@@ -41,6 +47,8 @@ public final class ArtifactResolverHelper
     private final ArtifactResolver artifactResolver;
     private final Logger log;
     private final List<ArtifactRepository> remoteArtifactRepositories;
+    private ArtifactResolutionCache resolutionCache;
+    private int resolutionThreads = 1;
 
     /**
      * Creates an ArtifactResolver that has no remote repositories to resolve against.
@@ -58,6 +66,26 @@ public final class ArtifactResolverHelper
         this.remoteArtifactRepositories = remoteArtifactRepositories;
     }
 
+    /**
+     * Sets the cache consulted before, and updated after, resolving an artifact.
+     *
+     * @param resolutionCache Cache to use, or null to always resolve
+     */
+    public void setResolutionCache( ArtifactResolutionCache resolutionCache )
+    {
+        this.resolutionCache = resolutionCache;
+    }
+
+    /**
+     * Sets the number of resolver requests {@link #resolveArtifactBatch(List)} issues concurrently.
+     *
+     * @param resolutionThreads Number of concurrent requests, 1 or less to resolve one artifact after the other
+     */
+    public void setResolutionThreads( int resolutionThreads )
+    {
+        this.resolutionThreads = resolutionThreads;
+    }
+
     /**
      * Filters provided artifacts and selects only defined types based on {@code types} argument
      * or all types if {@code types} argument is empty.
@@ -129,12 +157,96 @@ public final class ArtifactResolverHelper
         return jar;
     }
 
+    /**
+     * Resolves all of the specified artifacts.
+     *
+     * @see #resolveArtifactBatch(List)
+     */
     public Set<Artifact> resolveArtifacts( Collection<Artifact> artifacts ) throws MojoExecutionException
     {
-        final Set<Artifact> resolvedArtifacts = new LinkedHashSet<Artifact>();
+        return new LinkedHashSet<Artifact>( resolveArtifactBatch( new ArrayList<Artifact>( artifacts ) ) );
+    }
+
+    /**
+     * Resolves a batch of artifacts, issuing up to the configured number of resolver requests concurrently.  Every
+     * artifact is attempted, and all failures are reported together.
+     *
+     * @param artifacts Artifacts to resolve
+     * @return The resolved artifacts, in the order of the requested artifacts.
+     * @throws MojoExecutionException if any of the artifacts could not be resolved.
+     */
+    public List<Artifact> resolveArtifactBatch( final List<Artifact> artifacts ) throws MojoExecutionException
+    {
+        final List<Callable<Artifact>> resolutions = new ArrayList<Callable<Artifact>>( artifacts.size() );
         for ( final Artifact artifact : artifacts )
         {
-            resolvedArtifacts.add( resolveArtifact( artifact ) );
+            resolutions.add( new Callable<Artifact>()
+            {
+                @Override
+                public Artifact call() throws MojoExecutionException
+                {
+                    return resolveArtifact( artifact );
+                }
+            } );
+        }
+
+        final List<Artifact> resolvedArtifacts = new ArrayList<Artifact>( artifacts.size() );
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        final int threads = Math.min( resolutionThreads, artifacts.size() );
+        if ( threads <= 1 )
+        {
+            for ( Callable<Artifact> resolution : resolutions )
+            {
+                try
+                {
+                    resolvedArtifacts.add( resolution.call() );
+                }
+                catch ( Exception e )
+                {
+                    failures.add( e );
+                }
+            }
+        }
+        else
+        {
+            final ExecutorService executor = Executors.newFixedThreadPool( threads );
+            try
+            {
+                for ( Future<Artifact> future : executor.invokeAll( resolutions ) )
+                {
+                    try
+                    {
+                        resolvedArtifacts.add( future.get() );
+                    }
+                    catch ( ExecutionException e )
+                    {
+                        failures.add( e.getCause() );
+                    }
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException( "Interrupted while resolving artifacts", e );
+            }
+            finally
+            {
+                executor.shutdownNow();
+            }
+        }
+
+        if ( failures.size() == 1 && failures.get( 0 ) instanceof MojoExecutionException )
+        {
+            throw ( MojoExecutionException ) failures.get( 0 );
+        }
+        if ( !failures.isEmpty() )
+        {
+            final StringBuilder message = new StringBuilder( "Could not resolve " + failures.size() + " of " + artifacts.size() + " artifacts:" );
+            for ( Throwable failure : failures )
+            {
+                message.append( "\n  - " ).append( failure.getMessage() );
+            }
+            throw new MojoExecutionException( message.toString(), failures.get( 0 ) );
         }
         return resolvedArtifacts;
     }
@@ -147,6 +259,18 @@ public final class ArtifactResolverHelper
      */
     private Artifact resolveArtifact( Artifact artifact ) throws MojoExecutionException
     {
+        if ( resolutionCache != null )
+        {
+            final File cachedFile = resolutionCache.get( artifact );
+            if ( cachedFile != null )
+            {
+                log.debug( "Resolved from cache : " + artifact + " -> " + cachedFile );
+                artifact.setFile( cachedFile );
+                artifact.setResolved( true );
+                return artifact;
+            }
+        }
+
         final ArtifactResolutionRequest artifactResolutionRequest = new ArtifactResolutionRequest();
         artifactResolutionRequest.setArtifact( artifact );
         if ( remoteArtifactRepositories != null && !remoteArtifactRepositories.isEmpty() )
@@ -171,6 +295,10 @@ public final class ArtifactResolverHelper
 
         final Artifact resolvedArtifact = resolutionResult.getArtifacts().iterator().next();
         log.debug( "Resolved : " + resolvedArtifact );
+        if ( resolutionCache != null )
+        {
+            resolutionCache.put( resolvedArtifact );
+        }
         return resolvedArtifact;
     }
 }
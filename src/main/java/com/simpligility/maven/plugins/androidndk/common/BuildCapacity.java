@@ -0,0 +1,263 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Derives the number of parallel compile jobs the host can sustain from the CPU quota and memory limit of the
+ * control group (v1 or v2) the build runs in, and from the load average.
+ * <p/>
+ * All files are read relative to a root directory, <code>/</code> for the actual host.  Missing or unreadable files
+ * are treated as "no limit".
+ */
+public class BuildCapacity
+{
+    /**
+     * The number of jobs and why it was chosen.
+     */
+    public static class Decision
+    {
+        private final int jobs;
+        private final String reason;
+
+        Decision( int jobs, String reason )
+        {
+            this.jobs = jobs;
+            this.reason = reason;
+        }
+
+        public int getJobs()
+        {
+            return jobs;
+        }
+
+        public String getReason()
+        {
+            return reason;
+        }
+    }
+
+    private static final Pattern CGROUP_V2_LINE = Pattern.compile( "^0::(/.*)$", Pattern.MULTILINE );
+    private static final Pattern MEM_AVAILABLE_LINE = Pattern.compile( "^MemAvailable:\\s+(\\d+) kB$", Pattern.MULTILINE );
+
+    private static final long KILOBYTE = 1024;
+    private static final long MEGABYTE = 1024 * KILOBYTE;
+
+    /**
+     * cgroup v1 reports "no limit" as a huge page aligned number rather than a marker.
+     */
+    private static final long UNLIMITED_V1_MEMORY = Long.MAX_VALUE / 2;
+
+    private final File rootDirectory;
+
+    /**
+     * @param rootDirectory Directory <code>proc</code> and <code>sys</code> are read from
+     */
+    public BuildCapacity( final File rootDirectory )
+    {
+        this.rootDirectory = rootDirectory;
+    }
+
+    /**
+     * Chooses the number of jobs: the processors, capped by the CPU quota, reduced by the load average (unless a
+     * quota applies, the load average covers the whole host) and capped by the available memory.
+     *
+     * @param availableProcessors Processors reported by the JVM
+     * @param memoryPerJob        Memory assumed to be used by a single compile job, in bytes
+     */
+    public Decision decide( final int availableProcessors, final long memoryPerJob )
+    {
+        int jobs = Math.max( 1, availableProcessors );
+        String reason = jobs + " available processors";
+
+        final Double cpuQuota = getCpuQuota();
+        if ( cpuQuota != null )
+        {
+            final int quotaJobs = Math.max( 1, ( int ) Math.ceil( cpuQuota ) );
+            if ( quotaJobs < jobs )
+            {
+                jobs = quotaJobs;
+                reason = "CPU quota of " + String.format( Locale.ROOT, "%.2f", cpuQuota ) + " processors";
+            }
+        }
+        else
+        {
+            final Double loadAverage = getLoadAverage();
+            if ( loadAverage != null )
+            {
+                final int idleJobs = Math.max( 1, jobs - ( int ) Math.floor( loadAverage ) );
+                if ( idleJobs < jobs )
+                {
+                    jobs = idleJobs;
+                    reason = jobs + " idle processors at a load average of " + String.format( Locale.ROOT, "%.2f", loadAverage );
+                }
+            }
+        }
+
+        final Long availableMemory = getAvailableMemory();
+        if ( availableMemory != null && memoryPerJob > 0 )
+        {
+            final int memoryJobs = ( int ) Math.max( 1, Math.min( Integer.MAX_VALUE, availableMemory / memoryPerJob ) );
+            if ( memoryJobs < jobs )
+            {
+                jobs = memoryJobs;
+                reason = ( availableMemory / MEGABYTE ) + " MB available memory at " + ( memoryPerJob / MEGABYTE ) + " MB per job";
+            }
+        }
+        return new Decision( jobs, reason );
+    }
+
+    /**
+     * @return The CPU quota in processors, or null if there is none
+     */
+    public Double getCpuQuota()
+    {
+        // cgroup v2: "<quota> <period>" or "max <period>"
+        final String cpuMax = readV2( "cpu.max" );
+        if ( cpuMax != null )
+        {
+            final String[] values = cpuMax.split( "\\s+" );
+            if ( values.length == 2 && !"max".equals( values[ 0 ] ) )
+            {
+                return ratio( values[ 0 ], values[ 1 ] );
+            }
+            return null;
+        }
+
+        // cgroup v1: a quota of -1 means unlimited
+        final String quota = read( "sys/fs/cgroup/cpu/cpu.cfs_quota_us" );
+        final String period = read( "sys/fs/cgroup/cpu/cpu.cfs_period_us" );
+        if ( quota != null && period != null && !quota.startsWith( "-" ) )
+        {
+            return ratio( quota, period );
+        }
+        return null;
+    }
+
+    /**
+     * @return The memory left to the build in bytes: the limit of the control group minus its current usage, or
+     * the available memory of the host if there is no limit.  Null if unknown.
+     */
+    public Long getAvailableMemory()
+    {
+        final String v2Limit = readV2( "memory.max" );
+        if ( v2Limit != null && !"max".equals( v2Limit ) )
+        {
+            return remaining( v2Limit, readV2( "memory.current" ) );
+        }
+
+        final String v1Limit = read( "sys/fs/cgroup/memory/memory.limit_in_bytes" );
+        if ( v2Limit == null && v1Limit != null && parse( v1Limit ) != null && parse( v1Limit ) < UNLIMITED_V1_MEMORY )
+        {
+            return remaining( v1Limit, read( "sys/fs/cgroup/memory/memory.usage_in_bytes" ) );
+        }
+
+        final String meminfo = read( "proc/meminfo" );
+        if ( meminfo != null )
+        {
+            final Matcher matcher = MEM_AVAILABLE_LINE.matcher( meminfo );
+            if ( matcher.find() )
+            {
+                return Long.parseLong( matcher.group( 1 ) ) * KILOBYTE;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The load average of the last minute, or null if unknown
+     */
+    public Double getLoadAverage()
+    {
+        final String loadavg = read( "proc/loadavg" );
+        if ( loadavg == null )
+        {
+            return null;
+        }
+        try
+        {
+            return Double.valueOf( loadavg.split( "\\s+" )[ 0 ] );
+        }
+        catch ( NumberFormatException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a file of the cgroup v2 hierarchy, from the group of this process or the root of the mount.
+     */
+    private String readV2( final String name )
+    {
+        if ( !new File( rootDirectory, "sys/fs/cgroup/cgroup.controllers" ).isFile() )
+        {
+            return null;
+        }
+        final String cgroup = read( "proc/self/cgroup" );
+        if ( cgroup != null )
+        {
+            final Matcher matcher = CGROUP_V2_LINE.matcher( cgroup );
+            if ( matcher.find() )
+            {
+                final String value = read( "sys/fs/cgroup" + matcher.group( 1 ) + "/" + name );
+                if ( value != null )
+                {
+                    return value;
+                }
+            }
+        }
+        return read( "sys/fs/cgroup/" + name );
+    }
+
+    private String read( final String path )
+    {
+        final File file = new File( rootDirectory, path );
+        if ( !file.isFile() )
+        {
+            return null;
+        }
+        try
+        {
+            return FileUtils.readFileToString( file, "UTF-8" ).trim();
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+    }
+
+    private static Double ratio( final String quota, final String period )
+    {
+        final Long quotaValue = parse( quota );
+        final Long periodValue = parse( period );
+        return quotaValue == null || periodValue == null || periodValue <= 0 ? null : ( double ) quotaValue / periodValue;
+    }
+
+    private static Long remaining( final String limit, final String usage )
+    {
+        final Long limitValue = parse( limit );
+        if ( limitValue == null )
+        {
+            return null;
+        }
+        final Long usageValue = usage == null ? null : parse( usage );
+        return Math.max( 0, limitValue - ( usageValue == null ? 0 : usageValue ) );
+    }
+
+    private static Long parse( final String value )
+    {
+        try
+        {
+            return Long.valueOf( value.trim() );
+        }
+        catch ( NumberFormatException e )
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records how long the phases of a build take, optionally per detail (artifact, architecture, ...).
+ * <p/>
+ * Phases are timed with {@link #start(String, String)} and {@link Timing#stop()}, typically in a try/finally block.
+ * At the end of the build a summary table can be logged and a JSON report written.  Instances are thread safe.
+ */
+public class BuildTimer
+{
+    /**
+     * A running or completed timing of a phase.
+     */
+    public final class Timing
+    {
+        private final String phase;
+        private final String detail;
+        private final long startNanos;
+        private final long startMillis;
+        private long durationNanos = -1;
+
+        private Timing( String phase, String detail )
+        {
+            this.phase = phase;
+            this.detail = detail;
+            this.startMillis = System.currentTimeMillis();
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * Stops the timing and records it.  Stopping an already stopped timing has no effect.
+         */
+        public void stop()
+        {
+            synchronized ( timings )
+            {
+                if ( durationNanos < 0 )
+                {
+                    durationNanos = System.nanoTime() - startNanos;
+                    timings.add( this );
+                }
+            }
+        }
+
+        public String getPhase()
+        {
+            return phase;
+        }
+
+        public String getDetail()
+        {
+            return detail;
+        }
+
+        public long getDurationMillis()
+        {
+            return durationNanos / NANOS_PER_MILLI;
+        }
+    }
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final List<Timing> timings = new ArrayList<Timing>();
+    private final long createdNanos = System.nanoTime();
+
+    /**
+     * Starts timing a phase.
+     */
+    public Timing start( final String phase )
+    {
+        return start( phase, null );
+    }
+
+    /**
+     * Starts timing a phase for a particular detail, such as an artifact or an architecture.
+     */
+    public Timing start( final String phase, final String detail )
+    {
+        return new Timing( phase, detail );
+    }
+
+    /**
+     * @return All recorded timings, in the order they completed.
+     */
+    public List<Timing> getTimings()
+    {
+        synchronized ( timings )
+        {
+            return new ArrayList<Timing>( timings );
+        }
+    }
+
+    /**
+     * Logs the number of timings and the total time per phase, in the order the phases first completed.  The
+     * individual timings are logged at debug level.
+     */
+    public void logSummary( final Log log, final String title )
+    {
+        final List<Timing> completed = getTimings();
+        if ( completed.isEmpty() )
+        {
+            return;
+        }
+
+        final Map<String, long[]> phases = summarize( completed );
+        int width = "Phase".length();
+        for ( String phase : phases.keySet() )
+        {
+            width = Math.max( width, phase.length() );
+        }
+
+        log.info( title + " (" + getElapsedMillis() + " ms)" );
+        log.info( String.format( "  %-" + width + "s %6s %10s", "Phase", "Count", "Total ms" ) );
+        for ( Map.Entry<String, long[]> entry : phases.entrySet() )
+        {
+            log.info( String.format( "  %-" + width + "s %6d %10d", entry.getKey(), entry.getValue()[ 0 ], entry.getValue()[ 1 ] ) );
+        }
+
+        if ( log.isDebugEnabled() )
+        {
+            for ( Timing timing : completed )
+            {
+                log.debug( "  " + timing.getPhase() + ( timing.getDetail() != null ? " [" + timing.getDetail() + "]" : "" ) + ": "
+                        + timing.getDurationMillis() + " ms" );
+            }
+        }
+    }
+
+    /**
+     * Writes all timings and the per phase totals as JSON to the specified file.
+     */
+    public void writeReport( final File reportFile, final Map<String, String> properties ) throws IOException
+    {
+        final List<Timing> completed = getTimings();
+        final StringBuilder json = new StringBuilder( "{\n" );
+        for ( Map.Entry<String, String> property : properties.entrySet() )
+        {
+            json.append( "  " ).append( quote( property.getKey() ) ).append( ": " ).append( quote( property.getValue() ) ).append( ",\n" );
+        }
+        json.append( "  \"totalMillis\": " ).append( getElapsedMillis() ).append( ",\n" );
+
+        json.append( "  \"phases\": [" );
+        boolean first = true;
+        for ( Map.Entry<String, long[]> entry : summarize( completed ).entrySet() )
+        {
+            json.append( first ? "\n" : ",\n" );
+            json.append( "    { \"phase\": " ).append( quote( entry.getKey() ) )
+                    .append( ", \"count\": " ).append( entry.getValue()[ 0 ] )
+                    .append( ", \"totalMillis\": " ).append( entry.getValue()[ 1 ] ).append( " }" );
+            first = false;
+        }
+        json.append( "\n  ],\n" );
+
+        json.append( "  \"timings\": [" );
+        first = true;
+        for ( Timing timing : completed )
+        {
+            json.append( first ? "\n" : ",\n" );
+            json.append( "    { \"phase\": " ).append( quote( timing.getPhase() ) )
+                    .append( ", \"detail\": " ).append( timing.getDetail() == null ? "null" : quote( timing.getDetail() ) )
+                    .append( ", \"startMillis\": " ).append( timing.startMillis )
+                    .append( ", \"durationMillis\": " ).append( timing.getDurationMillis() ).append( " }" );
+            first = false;
+        }
+        json.append( "\n  ]\n}\n" );
+
+        FileHelper.writeIfChanged( reportFile, json.toString() );
+    }
+
+    private long getElapsedMillis()
+    {
+        return ( System.nanoTime() - createdNanos ) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return phase -> { count, total milliseconds }
+     */
+    private static Map<String, long[]> summarize( final List<Timing> completed )
+    {
+        final Map<String, long[]> phases = new LinkedHashMap<String, long[]>();
+        for ( Timing timing : completed )
+        {
+            long[] totals = phases.get( timing.getPhase() );
+            if ( totals == null )
+            {
+                totals = new long[ 2 ];
+                phases.put( timing.getPhase(), totals );
+            }
+            totals[ 0 ]++;
+            totals[ 1 ] += timing.getDurationMillis();
+        }
+        return phases;
+    }
+
+    private static String quote( final String value )
+    {
+        final StringBuilder quoted = new StringBuilder( "\"" );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            final char c = value.charAt( i );
+            switch ( c )
+            {
+                case '"':
+                    quoted.append( "\\\"" );
+                    break;
+                case '\\':
+                    quoted.append( "\\\\" );
+                    break;
+                case '\n':
+                    quoted.append( "\\n" );
+                    break;
+                case '\r':
+                    quoted.append( "\\r" );
+                    break;
+                case '\t':
+                    quoted.append( "\\t" );
+                    break;
+                default:
+                    if ( c < ' ' )
+                    {
+                        quoted.append( String.format( "\\u%04x", ( int ) c ) );
+                    }
+                    else
+                    {
+                        quoted.append( c );
+                    }
+            }
+        }
+        return quoted.append( '"' ).toString();
+    }
+}
@@ -5,6 +5,11 @@ package com.simpligility.maven.plugins.androidndk.common;
  */
 public class Const
 {
+    /**
+     * Entry of a reproducible header archive listing the SHA-1 checksum and path of each header, one per line.
+     */
+    public static final String HEADER_ARCHIVE_INDEX = "META-INF/android-ndk-maven-plugin/headers.index";
+
     public static class ArtifactType
     {
         public static final String NATIVE_HEADER_ARCHIVE = "har";
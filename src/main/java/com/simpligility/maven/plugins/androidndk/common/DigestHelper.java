@@ -0,0 +1,109 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helper class for computing content checksums of files and streams.
+ */
+public final class DigestHelper
+{
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private DigestHelper()
+    {
+    }
+
+    /**
+     * Computes the SHA-1 checksum of the specified file.
+     *
+     * @param file The file to compute the checksum for
+     * @return The checksum as a lower case hex string
+     * @throws IOException If the file could not be read
+     */
+    public static String sha1( File file ) throws IOException
+    {
+        final InputStream in = new FileInputStream( file );
+        try
+        {
+            return sha1( in );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( in );
+        }
+    }
+
+    /**
+     * Computes the SHA-1 checksum of the remaining content of the specified stream.  The stream is not closed.
+     *
+     * @param in The stream to compute the checksum for
+     * @return The checksum as a lower case hex string
+     * @throws IOException If the stream could not be read
+     */
+    public static String sha1( InputStream in ) throws IOException
+    {
+        final MessageDigest digest = createDigest( "SHA-1" );
+        final byte[] buffer = new byte[ BUFFER_SIZE ];
+        int read;
+        while ( ( read = in.read( buffer ) ) != -1 )
+        {
+            digest.update( buffer, 0, read );
+        }
+        return toHex( digest.digest() );
+    }
+
+    /**
+     * Computes the SHA-1 checksum of the specified string, encoded as UTF-8.
+     *
+     * @param value The value to compute the checksum for
+     * @return The checksum as a lower case hex string
+     */
+    public static String sha1( String value )
+    {
+        final MessageDigest digest = createDigest( "SHA-1" );
+        try
+        {
+            return toHex( digest.digest( value.getBytes( "UTF-8" ) ) );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( "UTF-8 encoding not supported", e );
+        }
+    }
+
+    /**
+     * Converts the specified bytes to a lower case hex string.
+     */
+    public static String toHex( byte[] bytes )
+    {
+        final char[] chars = new char[ bytes.length * 2 ];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            chars[ i * 2 ] = HEX_DIGITS[ ( bytes[ i ] >> 4 ) & 0x0f ];
+            chars[ i * 2 + 1 ] = HEX_DIGITS[ bytes[ i ] & 0x0f ];
+        }
+        return new String( chars );
+    }
+
+    private static MessageDigest createDigest( String algorithm )
+    {
+        try
+        {
+            return MessageDigest.getInstance( algorithm );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( algorithm + " digest not available", e );
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Helper methods for writing build files in a way that keeps their timestamps stable.
+ */
+public final class FileHelper
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final Charset ISO_8859_1 = Charset.forName( "ISO-8859-1" );
+
+    private FileHelper()
+    {
+    }
+
+    /**
+     * Writes the specified content to the file, unless the file already holds exactly that content.  The file is
+     * written to a temporary file next to it first and then moved into place, so readers never see a partially
+     * written file.  An unchanged file keeps its modification time, so make does not consider anything depending
+     * on it out of date.
+     *
+     * @param file    The file to write
+     * @param content The content to write, encoded as UTF-8
+     * @return true if the file was written, false if it was already up to date
+     * @throws IOException If the file could not be read or written
+     */
+    public static boolean writeIfChanged( final File file, final String content ) throws IOException
+    {
+        final byte[] bytes = content.getBytes( UTF_8 );
+        if ( file.isFile() && file.length() == bytes.length && Arrays.equals( bytes, FileUtils.readFileToByteArray( file ) ) )
+        {
+            return false;
+        }
+
+        final File directory = file.getAbsoluteFile().getParentFile();
+        if ( !directory.exists() && !directory.mkdirs() )
+        {
+            throw new IOException( "Error creating directory: " + directory );
+        }
+
+        final File temporaryFile = File.createTempFile( file.getName(), ".tmp", directory );
+        try
+        {
+            FileUtils.writeByteArrayToFile( temporaryFile, bytes );
+            try
+            {
+                Files.move( temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            }
+            catch ( AtomicMoveNotSupportedException e )
+            {
+                Files.move( temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            }
+        }
+        finally
+        {
+            FileUtils.deleteQuietly( temporaryFile );
+        }
+        return true;
+    }
+
+    /**
+     * Writes properties with {@link #writeIfChanged(File, String)}, sorted and without the date comment that
+     * {@link Properties#store} adds, so unchanged properties leave the file untouched.  Characters outside of ASCII
+     * are escaped, so the file can be loaded from a stream as well as from a UTF-8 reader.
+     *
+     * @param file       The file to write
+     * @param properties The properties to write
+     * @return true if the file was written, false if it was already up to date
+     * @throws IOException If the file could not be read or written
+     */
+    public static boolean writePropertiesIfChanged( final File file, final Properties properties ) throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        properties.store( out, null );
+        final List<String> lines = new ArrayList<String>();
+        for ( String line : new String( out.toByteArray(), ISO_8859_1 ).split( "\\r?\\n" ) )
+        {
+            if ( !line.startsWith( "#" ) )
+            {
+                lines.add( line );
+            }
+        }
+        Collections.sort( lines );
+        final StringBuilder content = new StringBuilder();
+        for ( String line : lines )
+        {
+            content.append( line ).append( '\n' );
+        }
+        return writeIfChanged( file, content.toString() );
+    }
+}
@@ -0,0 +1,261 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipException;
+
+/**
+ * Content addressed cache of extracted native header archives (HAR files).
+ * <p/>
+ * Each header archive is extracted once into a directory named after the checksum of its index entry, or of the
+ * whole archive if it has no index.  As long as the headers do not change, the same directory is handed out again, which gives the makefile a stable
+ * <code>LOCAL_EXPORT_C_INCLUDES</code> path and lets make consider dependent object files up to date.
+ * <p/>
+ * Extraction happens into a temporary directory which is then renamed into place, so concurrent builds sharing
+ * the same cache directory never see a partially extracted archive.  Entries are evicted least recently used first
+ * once the number of entries exceeds the configured maximum.
+ */
+public class HeaderArchiveCache
+{
+    /**
+     * Marker file written once an entry is completely extracted.  Its last modified time records the last use of
+     * the entry.
+     */
+    static final String COMPLETE_MARKER = ".complete";
+
+    private static final String TEMPORARY_PREFIX = ".tmp-";
+
+    private final File cacheDirectory;
+    private final int maxEntries;
+    private final Log log;
+
+    /**
+     * Entries handed out by this instance; these are never evicted by it.
+     */
+    private final Set<String> usedKeys = Collections.synchronizedSet( new HashSet<String>() );
+
+    /**
+     * @param cacheDirectory Directory holding the extracted header archives
+     * @param maxEntries     Maximum number of extracted archives to keep, values less than 1 disable eviction
+     * @param log            Log to write output to
+     */
+    public HeaderArchiveCache( final File cacheDirectory, final int maxEntries, final Log log )
+    {
+        this.cacheDirectory = cacheDirectory;
+        this.maxEntries = maxEntries;
+        this.log = log;
+    }
+
+    public File getCacheDirectory()
+    {
+        return cacheDirectory;
+    }
+
+    /**
+     * Returns the directory holding the extracted content of the specified header archive, extracting the archive
+     * first if it is not already in the cache.
+     *
+     * @param headerArchive The header archive to extract
+     * @return The directory holding the headers of the archive
+     * @throws IOException If the archive could not be read or extracted
+     */
+    public File getIncludeDirectory( final File headerArchive ) throws IOException
+    {
+        final String key = getKey( headerArchive );
+        final File entryDirectory = new File( cacheDirectory, key );
+        usedKeys.add( key );
+
+        final File marker = new File( entryDirectory, COMPLETE_MARKER );
+        if ( marker.exists() )
+        {
+            log.debug( "Reusing extracted header archive " + headerArchive + " from " + entryDirectory );
+            touch( marker );
+            return entryDirectory;
+        }
+
+        extract( headerArchive, entryDirectory );
+        evict();
+        return entryDirectory;
+    }
+
+    /**
+     * The key of an archive is the checksum of its index entry ({@link Const#HEADER_ARCHIVE_INDEX}) if it has one,
+     * which only requires reading that entry, or the checksum of the whole archive otherwise.
+     */
+    public static String getKey( final File headerArchive ) throws IOException
+    {
+        try
+        {
+            final JarFile jarFile = new JarFile( headerArchive );
+            try
+            {
+                final JarEntry indexEntry = jarFile.getJarEntry( Const.HEADER_ARCHIVE_INDEX );
+                if ( indexEntry != null )
+                {
+                    final InputStream in = jarFile.getInputStream( indexEntry );
+                    try
+                    {
+                        return DigestHelper.sha1( in );
+                    }
+                    finally
+                    {
+                        in.close();
+                    }
+                }
+            }
+            finally
+            {
+                jarFile.close();
+            }
+        }
+        catch ( ZipException e )
+        {
+            // Not a valid archive, extraction will report it
+        }
+        return DigestHelper.sha1( headerArchive );
+    }
+
+    private void extract( final File headerArchive, final File entryDirectory ) throws IOException
+    {
+        log.debug( "Extracting header archive " + headerArchive + " to " + entryDirectory );
+
+        final File temporaryDirectory = new File( cacheDirectory, TEMPORARY_PREFIX + entryDirectory.getName() + "-" + System.nanoTime() );
+        try
+        {
+            final JarFile jarFile = new JarFile( headerArchive );
+            try
+            {
+                JarHelper.unjar( jarFile, temporaryDirectory, new JarHelper.UnjarListener()
+                {
+                    @Override
+                    public boolean include( JarEntry jarEntry )
+                    {
+                        return !jarEntry.getName().startsWith( "META-INF" );
+                    }
+                } );
+            }
+            finally
+            {
+                jarFile.close();
+            }
+
+            // An archive holding nothing but metadata still needs a directory to point the includes at
+            if ( !temporaryDirectory.exists() && !temporaryDirectory.mkdirs() )
+            {
+                throw new IOException( "Error creating directory: " + temporaryDirectory );
+            }
+            touch( new File( temporaryDirectory, COMPLETE_MARKER ) );
+
+            if ( entryDirectory.exists() && !new File( entryDirectory, COMPLETE_MARKER ).exists() )
+            {
+                // Left over from an interrupted extraction done before markers were written
+                FileUtils.deleteDirectory( entryDirectory );
+            }
+            moveIntoPlace( temporaryDirectory, entryDirectory );
+        }
+        finally
+        {
+            if ( temporaryDirectory.exists() )
+            {
+                FileUtils.deleteQuietly( temporaryDirectory );
+            }
+        }
+    }
+
+    private void moveIntoPlace( final File temporaryDirectory, final File entryDirectory ) throws IOException
+    {
+        try
+        {
+            Files.move( temporaryDirectory.toPath(), entryDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( FileAlreadyExistsException e )
+        {
+            log.debug( "Header archive extracted concurrently to " + entryDirectory + ", using existing entry" );
+        }
+        catch ( AtomicMoveNotSupportedException e )
+        {
+            if ( !entryDirectory.exists() )
+            {
+                Files.move( temporaryDirectory.toPath(), entryDirectory.toPath() );
+            }
+        }
+        catch ( IOException e )
+        {
+            // Some platforms report a non-empty target as a generic failure
+            if ( !new File( entryDirectory, COMPLETE_MARKER ).exists() )
+            {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until at most <code>maxEntries</code> entries remain.  Entries used
+     * by this instance are kept regardless.
+     */
+    synchronized void evict()
+    {
+        if ( maxEntries < 1 )
+        {
+            return;
+        }
+
+        final File[] entries = cacheDirectory.listFiles( new FileFilter()
+        {
+            @Override
+            public boolean accept( File file )
+            {
+                return file.isDirectory() && !file.getName().startsWith( TEMPORARY_PREFIX );
+            }
+        } );
+        if ( entries == null || entries.length <= maxEntries )
+        {
+            return;
+        }
+
+        Arrays.sort( entries, new Comparator<File>()
+        {
+            @Override
+            public int compare( File first, File second )
+            {
+                final long firstUse = new File( first, COMPLETE_MARKER ).lastModified();
+                final long secondUse = new File( second, COMPLETE_MARKER ).lastModified();
+                return firstUse < secondUse ? -1 : ( firstUse == secondUse ? 0 : 1 );
+            }
+        } );
+
+        int remaining = entries.length;
+        for ( int i = 0; i < entries.length && remaining > maxEntries; i++ )
+        {
+            final File entry = entries[ i ];
+            if ( usedKeys.contains( entry.getName() ) )
+            {
+                continue;
+            }
+            log.debug( "Evicting least recently used header archive extraction " + entry );
+            FileUtils.deleteQuietly( entry );
+            remaining--;
+        }
+    }
+
+    private static void touch( final File file ) throws IOException
+    {
+        FileUtils.touch( file );
+    }
+}
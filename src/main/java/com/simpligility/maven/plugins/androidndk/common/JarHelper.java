@@ -1,16 +1,27 @@
 package com.simpligility.maven.plugins.androidndk.common;
 
 import org.apache.commons.io.IOUtils;
-import org.codehaus.plexus.util.IOUtil;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.zip.CRC32;
 
 /**
  * Helper class to deal with jar files.
@@ -28,6 +39,27 @@ public class JarHelper
        boolean include( JarEntry jarEntry );
     }
 
+    /**
+     * Archives with fewer files than this are extracted on the calling thread only.
+     */
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    private static final int MAX_THREADS = 4;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Copy buffer per thread, reused for all entries extracted by that thread.
+     */
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>()
+    {
+        @Override
+        protected byte[] initialValue()
+        {
+            return new byte[ BUFFER_SIZE ];
+        }
+    };
+
     /**
      * Unjars the specified jar file into the the specified directory
      *
@@ -38,44 +70,214 @@ public class JarHelper
      */
     public static void unjar( JarFile jarFile, File outputDirectory, UnjarListener unjarListener ) throws IOException
     {
-        for ( Enumeration en = jarFile.entries(); en.hasMoreElements(); )
+        unjar( jarFile, outputDirectory, unjarListener, Math.min( MAX_THREADS, Runtime.getRuntime().availableProcessors() ) );
+    }
+
+    /**
+     * Unjars the specified jar file into the specified directory.
+     * <p/>
+     * The entries are taken from the central directory in one pass and all directories are created up front.  The
+     * files are then written by up to <code>threads</code> threads.  Files that already exist with the size and CRC
+     * of their entry are left untouched.
+     *
+     * @param jarFile         The jar to extract
+     * @param outputDirectory The directory to extract into
+     * @param unjarListener   Selects the entries to extract
+     * @param threads         Maximum number of threads writing files
+     * @return The number of files written, not counting files that were already up to date
+     * @throws IOException If an entry could not be extracted, or would be extracted outside the output directory
+     */
+    public static int unjar( final JarFile jarFile, final File outputDirectory, final UnjarListener unjarListener, final int threads )
+            throws IOException
+    {
+        final SortedSet<File> directories = new TreeSet<File>();
+        final List<JarEntry> fileEntries = new ArrayList<JarEntry>();
+        for ( Enumeration<JarEntry> en = jarFile.entries(); en.hasMoreElements(); )
         {
-            JarEntry entry = ( JarEntry ) en.nextElement();
-            File entryFile = new File( outputDirectory, entry.getName() );
-            if ( unjarListener.include( entry ) )
+            final JarEntry entry = en.nextElement();
+            if ( !unjarListener.include( entry ) )
             {
-                // Create the output directory if need be
-                if ( ! entryFile.getParentFile().exists() )
+                continue;
+            }
+
+            final File entryFile = new File( outputDirectory, entry.getName() );
+            if ( !isRelativeEntry( entry.getName() ) )
+            {
+                throw new IOException( "Entry " + entry.getName() + " of " + jarFile.getName() + " is outside of the output directory" );
+            }
+
+            if ( entry.isDirectory() )
+            {
+                directories.add( entryFile );
+            }
+            else
+            {
+                directories.add( entryFile.getParentFile() );
+                fileEntries.add( entry );
+            }
+        }
+
+        // Sorted, so parents come first and each directory is created once
+        for ( File directory : directories )
+        {
+            if ( !directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory() )
+            {
+                throw new IOException( "Error creating output directory: " + directory );
+            }
+        }
+
+        final List<Callable<Boolean>> extractions = new ArrayList<Callable<Boolean>>( fileEntries.size() );
+        for ( final JarEntry entry : fileEntries )
+        {
+            extractions.add( new Callable<Boolean>()
+            {
+                @Override
+                public Boolean call() throws IOException
                 {
-                    if ( ! entryFile.getParentFile().mkdirs() )
-                    {
-                        throw new IOException( "Error creating output directory: " + entryFile.getParentFile() );
-                    }
+                    return extractEntry( jarFile, entry, new File( outputDirectory, entry.getName() ) );
                 }
+            } );
+        }
+
+        int written = 0;
+        if ( threads <= 1 || extractions.size() < PARALLEL_THRESHOLD )
+        {
+            for ( Callable<Boolean> extraction : extractions )
+            {
+                written += callExtraction( extraction ) ? 1 : 0;
+            }
+            return written;
+        }
 
-                // If the entry is an actual file, unzip that too
-                if ( ! entry.isDirectory() )
+        final ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            for ( Future<Boolean> future : executor.invokeAll( extractions ) )
+            {
+                written += future.get() ? 1 : 0;
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while extracting " + jarFile.getName(), e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof IOException )
+            {
+                throw ( IOException ) e.getCause();
+            }
+            throw new IOException( "Error extracting " + jarFile.getName(), e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return written;
+    }
+
+    /**
+     * @return true if the entry name stays within the directory it is extracted to
+     */
+    private static boolean isRelativeEntry( final String name )
+    {
+        if ( name.startsWith( "/" ) || name.startsWith( "\\" ) || name.indexOf( ':' ) != -1 )
+        {
+            return false;
+        }
+        for ( String segment : name.split( "[/\\\\]" ) )
+        {
+            if ( "..".equals( segment ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean callExtraction( final Callable<Boolean> extraction ) throws IOException
+    {
+        try
+        {
+            return extraction.call();
+        }
+        catch ( IOException e )
+        {
+            throw e;
+        }
+        catch ( Exception e )
+        {
+            throw new IOException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * @return true if the file was written, false if it already held the content of the entry
+     */
+    private static boolean extractEntry( final JarFile jarFile, final JarEntry entry, final File entryFile ) throws IOException
+    {
+        final byte[] buffer = BUFFERS.get();
+        if ( isUpToDate( entry, entryFile, buffer ) )
+        {
+            return false;
+        }
+
+        final InputStream in = jarFile.getInputStream( entry );
+        try
+        {
+            final FileOutputStream out = new FileOutputStream( entryFile );
+            try
+            {
+                final FileChannel channel = out.getChannel();
+                int read;
+                while ( ( read = in.read( buffer ) ) != -1 )
                 {
-                    final InputStream in = jarFile.getInputStream( entry );
-                    try
+                    final ByteBuffer byteBuffer = ByteBuffer.wrap( buffer, 0, read );
+                    while ( byteBuffer.hasRemaining() )
                     {
-                        final OutputStream out = new FileOutputStream( entryFile );
-                        try
-                        {
-                            IOUtil.copy( in, out );
-                        }
-                        finally
-                        {
-                            IOUtils.closeQuietly( out );
-                        }
-                    }
-                    finally
-                    {
-                        IOUtils.closeQuietly( in );
+                        channel.write( byteBuffer );
                     }
                 }
             }
+            finally
+            {
+                // Closed normally, so a failure to write the end of the file is not lost
+                out.close();
+            }
+        }
+        finally
+        {
+            IOUtils.closeQuietly( in );
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the file exists with the size and CRC recorded for the entry
+     */
+    private static boolean isUpToDate( final JarEntry entry, final File entryFile, final byte[] buffer ) throws IOException
+    {
+        if ( entry.getSize() < 0 || entry.getCrc() < 0 || !entryFile.isFile() || entryFile.length() != entry.getSize() )
+        {
+            return false;
+        }
+
+        final CRC32 crc = new CRC32();
+        final InputStream in = new FileInputStream( entryFile );
+        try
+        {
+            int read;
+            while ( ( read = in.read( buffer ) ) != -1 )
+            {
+                crc.update( buffer, 0, read );
+            }
+        }
+        finally
+        {
+            IOUtils.closeQuietly( in );
         }
+        return crc.getValue() == entry.getCrc();
     }
 
 }
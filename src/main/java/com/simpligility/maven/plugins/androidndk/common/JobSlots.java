@@ -0,0 +1,154 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A fixed number of job slots shared by all ndk-build invocations of a Maven session, bounding the number of compiler
+ * processes of a parallel (<code>-T</code>) reactor build to the size of the pool.
+ * <p/>
+ * Every invocation holds at least one slot while it runs and is started with as many make jobs as it was granted
+ * slots.  Slots are granted first come, first served; an invocation only takes more than one slot while no other
+ * invocation is waiting.
+ */
+public final class JobSlots
+{
+    private static final SessionRegistry<JobSlots> SESSION_SLOTS = new SessionRegistry<JobSlots>();
+
+    private static final Pattern JOBS_OPTION = Pattern.compile( "-j(\\d{1,9})?|--jobs(?:=(\\d{1,9}))?" );
+    private static final Pattern JOBS = Pattern.compile( "\\d{1,9}" );
+
+    private final int capacity;
+    private final Semaphore semaphore;
+
+    JobSlots( final int capacity )
+    {
+        this.capacity = Math.max( 1, capacity );
+        this.semaphore = new Semaphore( this.capacity, true );
+    }
+
+    /**
+     * Returns the slots of a session, creating them on first use.  The capacity of the first call wins.
+     *
+     * @param sessionKey The key of the session, see {@link SessionRegistry#getSessionKey}
+     * @param capacity   Number of slots of the pool
+     */
+    public static JobSlots forSession( final Object sessionKey, final int capacity )
+    {
+        return SESSION_SLOTS.get( sessionKey, new SessionRegistry.Factory<JobSlots>()
+        {
+            @Override
+            public JobSlots create()
+            {
+                return new JobSlots( capacity );
+            }
+        } );
+    }
+
+    /**
+     * Waits for a slot, then takes up to <code>wanted</code> slots in total as long as they are free and nobody else
+     * is waiting.  The slots must be given back with {@link #release(int)}.
+     *
+     * @return The number of slots granted, at least 1
+     */
+    public int acquire( final int wanted ) throws InterruptedException
+    {
+        final int limit = Math.min( Math.max( 1, wanted ), capacity );
+        semaphore.acquire();
+        int granted = 1;
+        while ( granted < limit && !semaphore.hasQueuedThreads() && semaphore.tryAcquire() )
+        {
+            granted++;
+        }
+        return granted;
+    }
+
+    public void release( final int granted )
+    {
+        semaphore.release( granted );
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    public int getAvailable()
+    {
+        return semaphore.availablePermits();
+    }
+
+    /**
+     * @return The number of make jobs the ndk-build commands ask for through <code>-j N</code>, <code>-jN</code> or
+     * <code>--jobs=N</code>, <code>unlimited</code> if they pass <code>-j</code> without a number, 1 if they do not
+     * pass it.  The last option wins, as it does for make.
+     */
+    public static int getRequestedJobs( final List<String> commands, final int unlimited )
+    {
+        final int jobsIndex = findJobsOption( commands );
+        if ( jobsIndex < 0 )
+        {
+            return 1;
+        }
+        final String jobs = getJobs( commands, jobsIndex );
+        return jobs.isEmpty() ? unlimited : Integer.parseInt( jobs );
+    }
+
+    /**
+     * @return A copy of the ndk-build commands running the specified number of make jobs, if they pass <code>-j</code>
+     */
+    public static List<String> withJobCount( final List<String> commands, final int jobs )
+    {
+        final List<String> effectiveCommands = new ArrayList<String>( commands );
+        final int jobsIndex = findJobsOption( effectiveCommands );
+        if ( jobsIndex >= 0 )
+        {
+            if ( isSeparateJobs( effectiveCommands, jobsIndex ) )
+            {
+                effectiveCommands.set( jobsIndex + 1, String.valueOf( jobs ) );
+            }
+            else
+            {
+                effectiveCommands.set( jobsIndex, ( effectiveCommands.get( jobsIndex ).startsWith( "--" ) ? "--jobs=" : "-j" ) + jobs );
+            }
+        }
+        return effectiveCommands;
+    }
+
+    private static int findJobsOption( final List<String> commands )
+    {
+        for ( int i = commands.size() - 1; i >= 0; i-- )
+        {
+            if ( JOBS_OPTION.matcher( commands.get( i ) ).matches() )
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The number of jobs passed with the option, empty if it has none
+     */
+    private static String getJobs( final List<String> commands, final int jobsIndex )
+    {
+        if ( isSeparateJobs( commands, jobsIndex ) )
+        {
+            return commands.get( jobsIndex + 1 );
+        }
+        final Matcher matcher = JOBS_OPTION.matcher( commands.get( jobsIndex ) );
+        matcher.matches();
+        return matcher.group( 1 ) != null ? matcher.group( 1 ) : matcher.group( 2 ) != null ? matcher.group( 2 ) : "";
+    }
+
+    /**
+     * @return Whether the option is a <code>-j</code> followed by the number of jobs as the next argument
+     */
+    private static boolean isSeparateJobs( final List<String> commands, final int jobsIndex )
+    {
+        return "-j".equals( commands.get( jobsIndex ) ) && jobsIndex + 1 < commands.size() && JOBS.matcher( commands.get( jobsIndex + 1 ) ).matches();
+    }
+}
@@ -0,0 +1,187 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.resolver.filter.AndArtifactFilter;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.artifact.resolver.filter.ExcludesArtifactFilter;
+import org.apache.maven.artifact.resolver.filter.OrArtifactFilter;
+import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the transitive native dependencies of a project in a single walk over its dependency graph.
+ * <p/>
+ * The graph is built once.  The exclusions of each declared dependency are applied while walking the sub tree
+ * below that dependency, and every node is classified as static library, shared library or library bundle
+ * (AAR/APKLIB) in the same walk.
+ */
+public class NativeDependencyResolver
+{
+    /**
+     * Holder for the result of resolving the native dependencies.
+     */
+    public static class ResolvedDependencies
+    {
+        private final Set<Artifact> staticLibraries = new LinkedHashSet<Artifact>();
+        private final Set<Artifact> sharedLibraries = new LinkedHashSet<Artifact>();
+        private final Set<Artifact> libraryBundles = new LinkedHashSet<Artifact>();
+
+        public Set<Artifact> getStaticLibraries()
+        {
+            return Collections.unmodifiableSet( staticLibraries );
+        }
+
+        public Set<Artifact> getSharedLibraries()
+        {
+            return Collections.unmodifiableSet( sharedLibraries );
+        }
+    }
+
+    private final MavenProject project;
+    private final DependencyGraphBuilder dependencyGraphBuilder;
+    private final Log log;
+
+    public NativeDependencyResolver( MavenProject project, DependencyGraphBuilder dependencyGraphBuilder, Log log )
+    {
+        this.project = project;
+        this.dependencyGraphBuilder = dependencyGraphBuilder;
+        this.log = log;
+    }
+
+    public ResolvedDependencies resolve() throws MojoExecutionException
+    {
+        final long start = System.currentTimeMillis();
+        final ResolvedDependencies resolvedDependencies = new ResolvedDependencies();
+
+        final Map<String, Dependency> declaredDependencies = getDeclaredDependencies();
+        if ( declaredDependencies.isEmpty() )
+        {
+            log.debug( "No declared dependencies, skipping transitive native dependency resolution" );
+            return resolvedDependencies;
+        }
+
+        final DependencyNode root;
+        try
+        {
+            root = dependencyGraphBuilder.buildDependencyGraph( project, createGraphFilter() );
+        }
+        catch ( Exception e )
+        {
+            throw new MojoExecutionException( "Error while processing transitive dependencies", e );
+        }
+
+        for ( final DependencyNode child : root.getChildren() )
+        {
+            final Dependency dependency = declaredDependencies.get( getManagementKey( child.getArtifact() ) );
+            final ArtifactFilter exclusionFilter = createExclusionFilter( dependency );
+            log.debug( "Processing transitive dependencies for : " + child.getArtifact() );
+            visit( child, exclusionFilter, resolvedDependencies );
+        }
+
+        log.info( "Resolved native dependencies (" + resolvedDependencies.staticLibraries.size() + " static, "
+                + resolvedDependencies.sharedLibraries.size() + " shared, " + resolvedDependencies.libraryBundles.size()
+                + " library bundles) in " + ( System.currentTimeMillis() - start ) + " ms" );
+        return resolvedDependencies;
+    }
+
+    private void visit( DependencyNode node, ArtifactFilter exclusionFilter, ResolvedDependencies resolvedDependencies )
+    {
+        final Artifact artifact = node.getArtifact();
+        if ( exclusionFilter != null && !exclusionFilter.include( artifact ) )
+        {
+            log.debug( "Excluding " + artifact + " and its dependencies as per declared exclusions" );
+            return;
+        }
+
+        final String type = artifact.getType();
+        log.debug( "Processing library : " + artifact );
+        if ( Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE.equals( type ) )
+        {
+            resolvedDependencies.staticLibraries.add( artifact );
+        }
+        else if ( Const.ArtifactType.NATIVE_SYMBOL_OBJECT.equals( type ) )
+        {
+            resolvedDependencies.sharedLibraries.add( artifact );
+        }
+        else if ( AndroidExtension.AAR.equals( type ) || AndroidExtension.APKLIB.equals( type ) )
+        {
+            resolvedDependencies.libraryBundles.add( artifact );
+        }
+
+        for ( final DependencyNode child : node.getChildren() )
+        {
+            visit( child, exclusionFilter, resolvedDependencies );
+        }
+    }
+
+    private Map<String, Dependency> getDeclaredDependencies()
+    {
+        final Map<String, Dependency> declaredDependencies = new HashMap<String, Dependency>();
+        for ( Dependency dependency : project.getDependencies() )
+        {
+            if ( !Artifact.SCOPE_PROVIDED.equals( dependency.getScope() ) && !dependency.isOptional() )
+            {
+                declaredDependencies.put( dependency.getManagementKey(), dependency );
+            }
+        }
+        return declaredDependencies;
+    }
+
+    private ArtifactFilter createGraphFilter()
+    {
+        final ArtifactFilter optionalFilter = new ArtifactFilter()
+        {
+            @Override
+            public boolean include( Artifact artifact )
+            {
+                return !artifact.isOptional();
+            }
+        };
+
+        final AndArtifactFilter filter = new AndArtifactFilter();
+        filter.add( new OrArtifactFilter( Arrays.<ArtifactFilter>asList( new ScopeArtifactFilter( "compile" ),
+                new ScopeArtifactFilter( "runtime" ),
+                new ScopeArtifactFilter( "test" ) ) ) );
+        filter.add( optionalFilter );
+        return filter;
+    }
+
+    private ArtifactFilter createExclusionFilter( Dependency dependency )
+    {
+        if ( dependency == null || dependency.getExclusions() == null || dependency.getExclusions().isEmpty() )
+        {
+            return null;
+        }
+
+        final List<String> exclusionPatterns = new ArrayList<String>();
+        for ( final Exclusion exclusion : dependency.getExclusions() )
+        {
+            exclusionPatterns.add( exclusion.getGroupId() + ":" + exclusion.getArtifactId() );
+        }
+        return new ExcludesArtifactFilter( exclusionPatterns );
+    }
+
+    /**
+     * @return The key of the artifact in the same format as {@link Dependency#getManagementKey()}.
+     */
+    private String getManagementKey( Artifact artifact )
+    {
+        return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getType()
+                + ( artifact.getClassifier() != null ? ":" + artifact.getClassifier() : "" );
+    }
+}
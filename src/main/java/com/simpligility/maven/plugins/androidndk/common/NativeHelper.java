@@ -1,21 +1,12 @@
 package com.simpligility.maven.plugins.androidndk.common;
 
 import com.simpligility.maven.plugins.androidndk.AndroidNdk;
-import org.apache.commons.io.FileUtils;
+import com.simpligility.maven.plugins.androidndk.NdkIndex;
 import org.apache.maven.artifact.Artifact;
-import org.apache.maven.artifact.resolver.filter.AndArtifactFilter;
-import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
-import org.apache.maven.artifact.resolver.filter.ExcludesArtifactFilter;
-import org.apache.maven.artifact.resolver.filter.OrArtifactFilter;
-import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
-import org.apache.maven.model.Dependency;
-import org.apache.maven.model.Exclusion;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
-import org.apache.maven.shared.dependency.graph.DependencyNode;
-import org.apache.maven.shared.dependency.graph.traversal.CollectingDependencyNodeVisitor;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -40,6 +31,7 @@ public class NativeHelper
     private MavenProject project;
     private DependencyGraphBuilder dependencyGraphBuilder;
     private Log log;
+    private NativeDependencyResolver.ResolvedDependencies resolvedDependencies;
 
     public NativeHelper( MavenProject project, DependencyGraphBuilder dependencyGraphBuilder, Log log )
     {
@@ -130,118 +122,105 @@ public class NativeHelper
             }
         }
 
-        Set<Artifact> transitiveArtifacts = processTransitiveDependencies( project.getDependencies(), sharedLibraries );
+        final NativeDependencyResolver.ResolvedDependencies resolved = getResolvedDependencies();
+        final Set<Artifact> transitiveArtifacts = sharedLibraries ? resolved.getSharedLibraries() : resolved.getStaticLibraries();
+        log.debug( "Found transitive native dependencies : " + transitiveArtifacts );
 
         filteredArtifacts.addAll( transitiveArtifacts );
 
         return filteredArtifacts;
     }
 
-    private boolean isNativeLibrary( boolean sharedLibraries, String artifactType )
+    /**
+     * @return The static and shared native library dependencies of the project, without the artifacts attached by
+     * the project itself
+     */
+    public Set<Artifact> getNativeLibraryDependencies() throws MojoExecutionException
     {
-        return ( sharedLibraries
-                ? Const.ArtifactType.NATIVE_SYMBOL_OBJECT.equals( artifactType )
-                : Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE.equals( artifactType )
-        );
-    }
+        final Set<Artifact> mergedArtifacts = new LinkedHashSet<Artifact>();
+        filterNativeDependencies( mergedArtifacts, getNativeDependenciesArtifacts( false ) );
+        filterNativeDependencies( mergedArtifacts, getNativeDependenciesArtifacts( true ) );
 
-    private Set<Artifact> processTransitiveDependencies( List<Dependency> dependencies, boolean sharedLibraries )
-            throws MojoExecutionException
-    {
-        final Set<Artifact> transitiveArtifacts = new LinkedHashSet<Artifact>();
-        for ( Dependency dependency : dependencies )
-        {
-            if ( !Artifact.SCOPE_PROVIDED.equals( dependency.getScope() ) && !dependency.isOptional() )
-            {
-                final Set<Artifact> transArtifactsFor = processTransitiveDependencies( dependency, sharedLibraries );
-                log.debug( "Found transitive dependencies for : " + dependency + " transDeps : " + transArtifactsFor );
-                transitiveArtifacts.addAll( transArtifactsFor );
-            }
-        }
-
-        return transitiveArtifacts;
+        log.debug( "getNativeLibraryDependencies found " + mergedArtifacts.size() + ": " + mergedArtifacts.toString() );
 
+        return mergedArtifacts;
     }
 
-    private Set<Artifact> processTransitiveDependencies( Dependency dependency, boolean sharedLibraries )
-            throws MojoExecutionException
+    /**
+     * Selectively add artifacts from source to target excluding any whose groupId and artifactId match
+     * the current build.
+     * <p/>
+     * Introduced to work around an issue when the ndk-build is executed twice by maven for example when
+     * invoking maven 'install site'. In this case the artifacts attached by the first invocation are
+     * found but are not valid dependencies and must be excluded.
+     *
+     * @param targetSet artifact Set to copy in to
+     * @param source    artifact Set to filter
+     */
+    private void filterNativeDependencies( Set<Artifact> targetSet, Set<Artifact> source )
     {
-        log.debug( "Processing transitive dependencies for : " + dependency );
-
-        try
+        for ( Artifact a : source )
         {
-            final Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
-
-            final List<String> exclusionPatterns = new ArrayList<String>();
-            if ( dependency.getExclusions() != null && !dependency.getExclusions().isEmpty() )
+            if ( project.getGroupId().equals( a.getGroupId() ) && project.getArtifactId().equals( a.getArtifactId() ) )
             {
-                for ( final Exclusion exclusion : dependency.getExclusions() )
-                {
-                    exclusionPatterns.add( exclusion.getGroupId() + ":" + exclusion.getArtifactId() );
-                }
+                log.warn( "Excluding native dependency attached by this build" );
             }
-            final ArtifactFilter optionalFilter = new ArtifactFilter()
-            {
-                @Override
-                public boolean include( Artifact artifact )
-                {
-                    return !artifact.isOptional();
-                }
-            };
-
-            final AndArtifactFilter filter = new AndArtifactFilter();
-            filter.add( new ExcludesArtifactFilter( exclusionPatterns ) );
-            filter.add( new OrArtifactFilter( Arrays.<ArtifactFilter>asList( new ScopeArtifactFilter( "compile" ),
-                    new ScopeArtifactFilter( "runtime" ),
-                    new ScopeArtifactFilter( "test" ) ) ) );
-            filter.add( optionalFilter );
-
-            final DependencyNode node = dependencyGraphBuilder.buildDependencyGraph( project, filter );
-            final CollectingDependencyNodeVisitor collectingVisitor = new CollectingDependencyNodeVisitor();
-            node.accept( collectingVisitor );
-
-            final List<DependencyNode> dependencies = collectingVisitor.getNodes();
-            for ( final DependencyNode dep : dependencies )
+            else
             {
-                final boolean isNativeLibrary = isNativeLibrary( sharedLibraries, dep.getArtifact().getType() );
-                log.debug( "Processing library : " + dep.getArtifact() + " isNative=" + isNativeLibrary );
-                if ( isNativeLibrary )
-                {
-                    artifacts.add( dep.getArtifact() );
-                }
+                targetSet.add( a );
             }
-
-            return artifacts;
         }
-        catch ( Exception e )
+    }
+
+    private boolean isNativeLibrary( boolean sharedLibraries, String artifactType )
+    {
+        return ( sharedLibraries
+                ? Const.ArtifactType.NATIVE_SYMBOL_OBJECT.equals( artifactType )
+                : Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE.equals( artifactType )
+        );
+    }
+
+    /**
+     * Resolves the transitive native dependencies of the project.  The dependency graph is only built and walked
+     * once per helper, the result is shared by the static and shared library lookups.
+     */
+    private NativeDependencyResolver.ResolvedDependencies getResolvedDependencies() throws MojoExecutionException
+    {
+        if ( resolvedDependencies == null )
         {
-            throw new MojoExecutionException( "Error while processing transitive dependencies", e );
+            resolvedDependencies = new NativeDependencyResolver( project, dependencyGraphBuilder, log ).resolve();
         }
+        return resolvedDependencies;
     }
 
     public static void validateNDKVersion( File ndkHomeDir ) throws MojoExecutionException
     {
-        final File ndkSourcePropertiesFile = new File( ndkHomeDir, "source.properties" );
+        validateNDKVersion( NdkIndex.scan( ndkHomeDir ) );
+    }
 
-        if ( ndkSourcePropertiesFile.exists() )
+    /**
+     * Validates the version of an NDK from its index, without touching the NDK directory.
+     */
+    public static void validateNDKVersion( NdkIndex ndkIndex ) throws MojoExecutionException
+    {
+        if ( ndkIndex.hasSourceProperties() )
         {
             // As of 11 this file is a sign of a good release
             return;
         }
 
-        final File ndkVersionFile = new File( ndkHomeDir, "RELEASE.TXT" );
+        final File ndkVersionFile = new File( ndkIndex.getNdkPath(), "RELEASE.TXT" );
 
-        if ( !ndkVersionFile.exists() )
+        if ( ndkIndex.getRelease() == null )
         {
             throw new MojoExecutionException(
-                    "Could not locate RELEASE.TXT in the Android NDK base directory '" + ndkHomeDir.getAbsolutePath()
+                    "Could not locate RELEASE.TXT in the Android NDK base directory '" + ndkIndex.getNdkPath().getAbsolutePath()
                             + "'.  Please verify your setup! " + AndroidNdk.PROPER_NDK_HOME_DIRECTORY_MESSAGE );
         }
 
         try
         {
-            String versionStr = FileUtils.readFileToString( ndkVersionFile );
-            validateNDKVersion( NDK_REQUIRED_VERSION, versionStr );
+            validateNDKVersion( NDK_REQUIRED_VERSION, ndkIndex.getRelease() );
         }
         catch ( Exception e )
         {
@@ -445,14 +424,19 @@ public class NativeHelper
         File libsFolder = new File( unpackDirectory, architecture );
         if ( libsFolder.exists () )
         {
-            // list all the files
-            return libsFolder.listFiles( new FilenameFilter ()
+            // list all the files, sorted to keep generated makefiles stable
+            final File[] files = libsFolder.listFiles( new FilenameFilter ()
             {
                 public boolean accept( final File dir, final String name )
                 {
                     return name.startsWith( "lib" ) && name.endsWith( ( staticLibrary ? ".a" : ".so" ) );
                 }
             } );
+            if ( files != null )
+            {
+                Arrays.sort( files );
+                return files;
+            }
         }
         return new File[0];
     }
@@ -0,0 +1,55 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps one value per Maven session, shared by all executions of the plugin in all modules of a reactor build.
+ * <p/>
+ * Values are keyed by an object that lives exactly as long as the session and is the same for all modules of the
+ * reactor (see {@link #getSessionKey(MavenSession, MavenProject)}).  The keys are weak, so the values go away with
+ * their session.  Instances are thread safe.
+ *
+ * @param <T> Type of the values
+ */
+public final class SessionRegistry<T>
+{
+    /**
+     * Creates the value of a session on first use.
+     */
+    public interface Factory<T>
+    {
+        T create();
+    }
+
+    private final Map<Object, T> values = new WeakHashMap<Object, T>();
+
+    /**
+     * Returns the value of a session, creating it on first use.
+     *
+     * @param sessionKey The key of the session, see {@link #getSessionKey(MavenSession, MavenProject)}
+     * @param factory    Creates the value if the session has none yet
+     */
+    public synchronized T get( final Object sessionKey, final Factory<T> factory )
+    {
+        T value = values.get( sessionKey );
+        if ( value == null )
+        {
+            value = factory.create();
+            values.put( sessionKey, value );
+        }
+        return value;
+    }
+
+    /**
+     * @return The request of the session, which unlike the session itself is not cloned per module in parallel
+     * builds.  The project if there is no session, such as in tests.
+     */
+    public static Object getSessionKey( final MavenSession session, final MavenProject project )
+    {
+        return session != null ? session.getRequest() : project;
+    }
+}
@@ -11,7 +11,13 @@
 package com.simpligility.maven.plugins.androidndk.common;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Properties;
 
 import com.android.SdkConstants;
 import com.google.common.io.PatternFilenameFilter;
@@ -20,8 +26,9 @@ import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.archiver.ArchiverException;
-import org.codehaus.plexus.archiver.UnArchiver;
 import org.codehaus.plexus.archiver.zip.ZipUnArchiver;
+import org.codehaus.plexus.components.io.fileselectors.FileSelector;
+import org.codehaus.plexus.components.io.fileselectors.FileInfo;
 import org.codehaus.plexus.logging.Logger;
 import org.codehaus.plexus.logging.console.ConsoleLogger;
 
@@ -37,9 +44,34 @@ public final class UnpackedLibHelper
     public static final String APKLIB_NATIVE_LIBRARIES_FOLDER = "libs";
 
 
+    /**
+     * Name of the file, inside each unpacked folder, recording which archive was extracted into it.
+     */
+    public static final String UNPACK_MARKER_FILE = ".android-ndk-maven-plugin-unpacked";
+
+    /**
+     * Selects the native library folders (<code>jni/</code> and <code>libs/</code>) of a library, without its jars.
+     * Matched by hand, as the pattern based selectors of plexus-io need a newer plexus-utils than Maven provides.
+     */
+    private static final FileSelector NATIVE_LIBRARIES_SELECTOR = new FileSelector()
+    {
+        @Override
+        public boolean isSelected( FileInfo fileInfo )
+        {
+            final String name = fileInfo.getName().replace( '\\', '/' );
+            return ( name.startsWith( AAR_NATIVE_LIBRARIES_FOLDER + "/" ) || name.startsWith( APKLIB_NATIVE_LIBRARIES_FOLDER + "/" ) )
+                    && !name.toLowerCase( Locale.ENGLISH ).endsWith( ".jar" );
+        }
+    };
+
     // ${project.build.directory}/unpacked-libs
     private final File unpackedLibsDirectory;
 
+    /**
+     * If true, only the native library folders (<code>jni/</code> and <code>libs/</code>) are extracted.
+     */
+    private boolean nativeLibrariesOnly;
+
     public UnpackedLibHelper ( ArtifactResolverHelper artifactResolverHelper, MavenProject project, Logger log,
                                File unpackedLibsFolder )
     {
@@ -71,28 +103,19 @@ public final class UnpackedLibHelper
             return;
         }
 
-        final UnArchiver unArchiver = new ZipUnArchiver ( apkLibFile )
+        final File apklibDirectory = getUnpackedLibFolder( apklibArtifact );
+        final UnpackMarker marker = new UnpackMarker( apkLibFile, apklibDirectory );
+        if ( marker.isUpToDate() )
         {
-            @Override
-            protected Logger getLogger()
-            {
-                return new ConsoleLogger( log.getThreshold(), "dependencies-unarchiver" );
-            }
-        };
+            log.debug( "APKLIB " + apklibArtifact + " already extracted to " + apklibDirectory + ", skipping" );
+            return;
+        }
 
-        final File apklibDirectory = getUnpackedLibFolder( apklibArtifact );
+        marker.invalidate();
         apklibDirectory.mkdirs();
-        unArchiver.setDestDirectory( apklibDirectory );
         log.debug( "Extracting APKLIB to " + apklibDirectory );
-        try
-        {
-            unArchiver.extract();
-        }
-        catch ( ArchiverException e )
-        {
-            throw new MojoExecutionException ( "ArchiverException while extracting " + apklibDirectory
-                    + ". Message: " + e.getLocalizedMessage(), e );
-        }
+        extract( apkLibFile, apklibDirectory );
+        marker.write();
     }
 
     public void extractAarLib( Artifact aarArtifact ) throws MojoExecutionException
@@ -105,28 +128,18 @@ public final class UnpackedLibHelper
             return;
         }
 
-        final UnArchiver unArchiver = new ZipUnArchiver ( aarFile )
+        final File aarDirectory = getUnpackedLibFolder( aarArtifact );
+        final UnpackMarker marker = new UnpackMarker( aarFile, aarDirectory );
+        if ( marker.isUpToDate() )
         {
-            @Override
-            protected Logger getLogger()
-            {
-                return new ConsoleLogger( log.getThreshold(), "dependencies-unarchiver" );
-            }
-        };
+            log.debug( "AAR " + aarArtifact + " already extracted to " + aarDirectory + ", skipping" );
+            return;
+        }
 
-        final File aarDirectory = getUnpackedLibFolder( aarArtifact );
+        marker.invalidate();
         aarDirectory.mkdirs();
-        unArchiver.setDestDirectory( aarDirectory );
         log.debug( "Extracting AAR to " + aarDirectory );
-        try
-        {
-            unArchiver.extract();
-        }
-        catch ( ArchiverException e )
-        {
-            throw new MojoExecutionException ( "ArchiverException while extracting " + aarDirectory.getAbsolutePath()
-                    + ". Message: " + e.getLocalizedMessage(), e );
-        }
+        extract( aarFile, aarDirectory );
 
         // Move native libraries from libs to jni folder for legacy AARs.
         // This ensures backward compatibility with older AARs where libs are in "libs" folder.
@@ -152,6 +165,44 @@ public final class UnpackedLibHelper
                 }
             }
         }
+        marker.write();
+    }
+
+    private void extract( final File archive, final File destinationDirectory ) throws MojoExecutionException
+    {
+        final ZipUnArchiver unArchiver = new ZipUnArchiver ( archive )
+        {
+            @Override
+            protected Logger getLogger()
+            {
+                return new ConsoleLogger( log.getThreshold(), "dependencies-unarchiver" );
+            }
+        };
+        unArchiver.setDestDirectory( destinationDirectory );
+
+        if ( nativeLibrariesOnly )
+        {
+            unArchiver.setFileSelectors( new FileSelector[] { NATIVE_LIBRARIES_SELECTOR } );
+        }
+
+        try
+        {
+            unArchiver.extract();
+        }
+        catch ( ArchiverException e )
+        {
+            throw new MojoExecutionException ( "ArchiverException while extracting " + destinationDirectory.getAbsolutePath()
+                    + ". Message: " + e.getLocalizedMessage(), e );
+        }
+    }
+
+    /**
+     * @param nativeLibrariesOnly If true, only the native library folders (<code>jni/</code> and <code>libs/</code>)
+     *                            of the libraries are extracted.
+     */
+    public void setNativeLibrariesOnly( boolean nativeLibrariesOnly )
+    {
+        this.nativeLibrariesOnly = nativeLibrariesOnly;
     }
 
     public File getArtifactToFile( Artifact artifact ) throws MojoExecutionException
@@ -243,4 +294,125 @@ public final class UnpackedLibHelper
     {
         return AndroidExtension.APK.equals( project.getPackaging() );
     }
+
+    /**
+     * Records which archive was extracted into an unpacked folder, so that an unchanged archive is not extracted
+     * again.  The archive is considered unchanged if its path, size and modification time match, or failing that,
+     * if its checksum matches.  A folder extracted in native libraries only mode does not satisfy a full extraction.
+     */
+    private final class UnpackMarker
+    {
+        private final File archive;
+        private final File markerFile;
+        private String checksum;
+
+        UnpackMarker( File archive, File unpackedFolder )
+        {
+            this.archive = archive;
+            this.markerFile = new File( unpackedFolder, UNPACK_MARKER_FILE );
+        }
+
+        boolean isUpToDate() throws MojoExecutionException
+        {
+            if ( !markerFile.isFile() )
+            {
+                return false;
+            }
+
+            final Properties recorded = new Properties();
+            try
+            {
+                final InputStream in = new FileInputStream( markerFile );
+                try
+                {
+                    recorded.load( in );
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Unable to read " + markerFile + ", extracting again: " + e.getMessage() );
+                return false;
+            }
+
+            final boolean recordedNativeOnly = Boolean.parseBoolean( recorded.getProperty( "nativeLibrariesOnly" ) );
+            if ( recordedNativeOnly && !nativeLibrariesOnly )
+            {
+                return false;
+            }
+
+            if ( archive.getAbsolutePath().equals( recorded.getProperty( "path" ) )
+                    && String.valueOf( archive.length() ).equals( recorded.getProperty( "size" ) )
+                    && String.valueOf( archive.lastModified() ).equals( recorded.getProperty( "lastModified" ) ) )
+            {
+                return true;
+            }
+
+            // Same content at a different location or with a different timestamp (for example re-downloaded)
+            if ( getChecksum().equals( recorded.getProperty( "sha1" ) ) )
+            {
+                writeMarker( recordedNativeOnly );
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Removes the marker ahead of an extraction, so an interrupted extraction is never considered up to date.
+         */
+        void invalidate()
+        {
+            FileUtils.deleteQuietly( markerFile );
+        }
+
+        void write() throws MojoExecutionException
+        {
+            writeMarker( nativeLibrariesOnly );
+        }
+
+        private void writeMarker( boolean nativeOnly ) throws MojoExecutionException
+        {
+            final Properties properties = new Properties();
+            properties.setProperty( "path", archive.getAbsolutePath() );
+            properties.setProperty( "size", String.valueOf( archive.length() ) );
+            properties.setProperty( "lastModified", String.valueOf( archive.lastModified() ) );
+            properties.setProperty( "sha1", getChecksum() );
+            properties.setProperty( "nativeLibrariesOnly", String.valueOf( nativeOnly ) );
+            try
+            {
+                final OutputStream out = new FileOutputStream( markerFile );
+                try
+                {
+                    properties.store( out, "Extracted by android-ndk-maven-plugin" );
+                }
+                finally
+                {
+                    out.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Unable to write " + markerFile, e );
+            }
+        }
+
+        private String getChecksum() throws MojoExecutionException
+        {
+            if ( checksum == null )
+            {
+                try
+                {
+                    checksum = DigestHelper.sha1( archive );
+                }
+                catch ( IOException e )
+                {
+                    throw new MojoExecutionException( "Unable to compute checksum of " + archive, e );
+                }
+            }
+            return checksum;
+        }
+    }
 }
@@ -0,0 +1,133 @@
+package com.simpligility.maven.plugins.androidndk.configuration;
+
+/**
+ * Configuration of the compiler cache (ccache) used by the native build, passed to ndk-build as
+ * <code>NDK_CCACHE</code>.
+ */
+public class CompilerCache
+{
+
+    /**
+     * Whether the compiler cache is used.
+     *
+     * @parameter
+     */
+    private boolean enabled = true;
+
+    /**
+     * The compiler cache launcher, either an absolute path or a name looked up on the <code>PATH</code>.  Defaults to
+     * <code>ccache</code>.
+     *
+     * @parameter
+     */
+    private String executable = "ccache";
+
+    /**
+     * Directory holding the cache (<code>CCACHE_DIR</code>).  When not specified, the launcher's own default is used.
+     *
+     * @parameter
+     */
+    private String directory;
+
+    /**
+     * Maximum size of the cache (<code>CCACHE_MAXSIZE</code>), for example <code>5G</code>.
+     *
+     * @parameter
+     */
+    private String maxSize;
+
+    /**
+     * Absolute paths below this directory are rewritten to relative paths before hashing
+     * (<code>CCACHE_BASEDIR</code>), so builds from different checkout locations share cache hits.  Defaults to the
+     * base directory of the top level project of the build.
+     *
+     * @parameter
+     */
+    private String baseDirectory;
+
+    /**
+     * Whether the current working directory is left out of the hash (<code>CCACHE_NOHASHDIR</code>), so builds from
+     * different checkout locations share cache hits.  Only affects builds with debug information.
+     *
+     * @parameter
+     */
+    private boolean ignoreWorkingDirectory = true;
+
+    /**
+     * Whether the cache statistics are collected before and after the build, and the hits and misses of the build
+     * logged.
+     *
+     * @parameter
+     */
+    private boolean statistics = true;
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public void setEnabled( boolean enabled )
+    {
+        this.enabled = enabled;
+    }
+
+    public String getExecutable()
+    {
+        return executable;
+    }
+
+    public void setExecutable( String executable )
+    {
+        this.executable = executable;
+    }
+
+    public String getDirectory()
+    {
+        return directory;
+    }
+
+    public void setDirectory( String directory )
+    {
+        this.directory = directory;
+    }
+
+    public String getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public void setMaxSize( String maxSize )
+    {
+        this.maxSize = maxSize;
+    }
+
+    public String getBaseDirectory()
+    {
+        return baseDirectory;
+    }
+
+    public void setBaseDirectory( String baseDirectory )
+    {
+        this.baseDirectory = baseDirectory;
+    }
+
+    public boolean isIgnoreWorkingDirectory()
+    {
+        return ignoreWorkingDirectory;
+    }
+
+    public void setIgnoreWorkingDirectory( boolean ignoreWorkingDirectory )
+    {
+        this.ignoreWorkingDirectory = ignoreWorkingDirectory;
+    }
+
+    public boolean isStatistics()
+    {
+        return statistics;
+    }
+
+    public void setStatistics( boolean statistics )
+    {
+        this.statistics = statistics;
+    }
+}
@@ -0,0 +1,347 @@
+package com.simpligility.maven.plugins.androidndk.phase00clean;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Removes selected parts of the outputs of the native build: the objects and libraries of architectures or modules,
+ * and those no longer produced by the build.
+ * <p/>
+ * The objects of an architecture are found in <code>NDK_OUT/local/&lt;architecture&gt;</code>, or
+ * <code>NDK_OUT/&lt;architecture&gt;/local/&lt;architecture&gt;</code> for parallel architecture builds, the objects
+ * of a module in the <code>objs</code> and <code>objs-debug</code> directories below.  Executions building into their
+ * own directories use <code>NDK_OUT/&lt;execution&gt;</code> and <code>NDK_LIBS_OUT/&lt;execution&gt;</code>, and
+ * <code>NDK_OUT/&lt;execution&gt;/&lt;architecture&gt;</code> for their parallel architecture builds.
+ */
+public class NativeOutputCleaner
+{
+    private static final Pattern MANIFEST_NAME = Pattern.compile( "ndk-build-manifest-.*\\.txt" );
+    private static final Pattern MANIFEST_HEADER = Pattern.compile( "^# Modules built for ([^,\\s]+)(,.*)?$" );
+    private static final Pattern MANIFEST_OBJECTS = Pattern.compile( "^# Objects in (.+)$" );
+
+    private final File objectsDirectory;
+    private final File librariesDirectory;
+    private final Log log;
+
+    /**
+     * @param objectsDirectory   <code>NDK_OUT</code> of the build
+     * @param librariesDirectory <code>NDK_LIBS_OUT</code> of the build
+     * @param log                Log to write output to
+     */
+    public NativeOutputCleaner( final File objectsDirectory, final File librariesDirectory, final Log log )
+    {
+        this.objectsDirectory = objectsDirectory;
+        this.librariesDirectory = librariesDirectory;
+        this.log = log;
+    }
+
+    /**
+     * @return The architectures objects were built for
+     */
+    public Set<String> getBuiltArchitectures()
+    {
+        final Set<String> architectures = new TreeSet<String>();
+        for ( File outputDirectory : getOutputDirectories() )
+        {
+            architectures.addAll( listDirectories( new File( outputDirectory, "local" ) ) );
+        }
+        return architectures;
+    }
+
+    /**
+     * Removes the objects and libraries of the specified architectures.
+     *
+     * @return The number of directories removed
+     */
+    public int cleanArchitectures( final Collection<String> architectures ) throws IOException
+    {
+        int removed = 0;
+        for ( String architecture : architectures )
+        {
+            for ( File outputDirectory : getOutputDirectories() )
+            {
+                final File executionDirectory = getExecutionDirectory( outputDirectory );
+                if ( !outputDirectory.equals( executionDirectory ) )
+                {
+                    if ( outputDirectory.getName().equals( architecture ) )
+                    {
+                        removed += delete( outputDirectory );
+                    }
+                    continue;
+                }
+                removed += delete( new File( outputDirectory, "local/" + architecture ) );
+            }
+            for ( File executionDirectory : getExecutionDirectories() )
+            {
+                removed += delete( new File( getLibrariesDirectory( executionDirectory ), architecture ) );
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the objects and libraries of the specified modules.
+     *
+     * @param architectures The architectures to clean the modules of
+     * @param modules       The names of the modules, as in <code>LOCAL_MODULE</code>
+     * @return The number of files and directories removed
+     */
+    public int cleanModules( final Collection<String> architectures, final Collection<String> modules ) throws IOException
+    {
+        int removed = 0;
+        for ( String architecture : architectures )
+        {
+            for ( File architectureDirectory : getArchitectureDirectories( architecture ) )
+            {
+                for ( String module : modules )
+                {
+                    final String filename = module.startsWith( "lib" ) ? module : "lib" + module;
+                    removed += delete( new File( architectureDirectory, "objs/" + module ) );
+                    removed += delete( new File( architectureDirectory, "objs-debug/" + module ) );
+                    removed += delete( new File( architectureDirectory, filename + ".a" ) );
+                    removed += delete( new File( architectureDirectory, filename + ".so" ) );
+                }
+            }
+            for ( String module : modules )
+            {
+                final String filename = ( module.startsWith( "lib" ) ? module : "lib" + module ) + ".so";
+                for ( File executionDirectory : getExecutionDirectories() )
+                {
+                    removed += delete( new File( getLibrariesDirectory( executionDirectory ), architecture + "/" + filename ) );
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the objects of architectures and modules the last build did not produce, according to the build
+     * manifests it wrote.  Each manifest names the objects directory of its architecture, so the output directories
+     * of every execution are compared to the manifests of that execution only, and executions without manifests are
+     * left alone.  Nothing is removed if there are no manifests.  Modules are only considered for manifests listing
+     * the modules of the makefiles.
+     *
+     * @param manifestDirectory Directory holding the build manifests
+     * @return The number of directories removed
+     */
+    public int cleanStale( final File manifestDirectory ) throws IOException
+    {
+        final Map<File, Set<String>> builtModules = readManifests( manifestDirectory );
+        if ( builtModules.isEmpty() )
+        {
+            log.debug( "No build manifests in " + manifestDirectory + ", not looking for stale objects" );
+            return 0;
+        }
+
+        final Set<File> builtExecutionDirectories = new HashSet<File>();
+        for ( File architectureDirectory : builtModules.keySet() )
+        {
+            builtExecutionDirectories.add( getExecutionDirectory( architectureDirectory.getParentFile().getParentFile() ) );
+        }
+
+        int removed = 0;
+        for ( File outputDirectory : getOutputDirectories() )
+        {
+            final File executionDirectory = getExecutionDirectory( outputDirectory );
+            if ( !builtExecutionDirectories.contains( executionDirectory ) )
+            {
+                continue;
+            }
+            for ( String architecture : listDirectories( new File( outputDirectory, "local" ) ) )
+            {
+                final File architectureDirectory = new File( outputDirectory, "local/" + architecture );
+                if ( !builtModules.containsKey( architectureDirectory ) )
+                {
+                    // A parallel architecture build has an output directory of its own
+                    removed += delete( outputDirectory.equals( executionDirectory ) ? architectureDirectory : outputDirectory );
+                    removed += delete( new File( getLibrariesDirectory( executionDirectory ), architecture ) );
+                }
+                else if ( builtModules.get( architectureDirectory ) != null )
+                {
+                    removed += cleanUnlistedModules( architectureDirectory, builtModules.get( architectureDirectory ) );
+                }
+            }
+        }
+        return removed;
+    }
+
+    private int cleanUnlistedModules( final File architectureDirectory, final Set<String> modules ) throws IOException
+    {
+        int removed = 0;
+        for ( String objectsName : new String[] { "objs", "objs-debug" } )
+        {
+            for ( String module : listDirectories( new File( architectureDirectory, objectsName ) ) )
+            {
+                if ( !modules.contains( module ) )
+                {
+                    removed += delete( new File( architectureDirectory, objectsName + "/" + module ) );
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return Objects directory of an architecture -> modules of its build manifest, null modules for manifests not
+     * listing the modules of the makefiles
+     */
+    private Map<File, Set<String>> readManifests( final File manifestDirectory ) throws IOException
+    {
+        final Map<File, Set<String>> builtModules = new HashMap<File, Set<String>>();
+        final File[] files = manifestDirectory.listFiles();
+        for ( File file : files == null ? new File[ 0 ] : files )
+        {
+            if ( !MANIFEST_NAME.matcher( file.getName() ).matches() )
+            {
+                continue;
+            }
+            final List<String> lines = FileUtils.readLines( file, "UTF-8" );
+            final Matcher header = lines.isEmpty() ? null : MANIFEST_HEADER.matcher( lines.get( 0 ) );
+            if ( header == null || !header.matches() )
+            {
+                continue;
+            }
+
+            // Found in the output directories rather than captured from the makefiles if the header says so
+            File architectureDirectory = new File( objectsDirectory, "local/" + header.group( 1 ) );
+            final Set<String> modules = header.group( 2 ) != null ? null : new HashSet<String>();
+            for ( String line : lines.subList( 1, lines.size() ) )
+            {
+                final Matcher objects = MANIFEST_OBJECTS.matcher( line );
+                final int end = line.indexOf( '\t' );
+                if ( objects.matches() )
+                {
+                    architectureDirectory = new File( objects.group( 1 ) );
+                }
+                else if ( modules != null && end > 0 )
+                {
+                    modules.add( line.substring( 0, end ) );
+                }
+            }
+            builtModules.put( normalize( architectureDirectory ), modules );
+        }
+        return builtModules;
+    }
+
+    /**
+     * @return The <code>NDK_OUT</code> and the directories below it used as <code>NDK_OUT</code> by parallel
+     * architecture builds and executions building into their own directories, including the parallel architecture
+     * builds of those executions
+     */
+    private List<File> getOutputDirectories()
+    {
+        final List<File> directories = new ArrayList<File>();
+        final File root = normalize( objectsDirectory );
+        directories.add( root );
+        for ( String name : listDirectories( root ) )
+        {
+            final File directory = new File( root, name );
+            if ( "local".equals( name ) || name.startsWith( "." ) )
+            {
+                continue;
+            }
+            if ( new File( directory, "local" ).isDirectory() )
+            {
+                directories.add( directory );
+            }
+            for ( String childName : listDirectories( directory ) )
+            {
+                if ( !"local".equals( childName ) && new File( directory, childName + "/local/" + childName ).isDirectory() )
+                {
+                    directories.add( new File( directory, childName ) );
+                }
+            }
+        }
+        return directories;
+    }
+
+    /**
+     * @return The output directories of the executions, the <code>NDK_OUT</code> and those of executions building
+     * into their own directories
+     */
+    private Set<File> getExecutionDirectories()
+    {
+        final Set<File> directories = new LinkedHashSet<File>();
+        for ( File outputDirectory : getOutputDirectories() )
+        {
+            directories.add( getExecutionDirectory( outputDirectory ) );
+        }
+        return directories;
+    }
+
+    /**
+     * @return The output directory of the execution an output directory belongs to, the parent of the output
+     * directory of a parallel architecture build
+     */
+    private File getExecutionDirectory( final File outputDirectory )
+    {
+        if ( !outputDirectory.equals( normalize( objectsDirectory ) ) && new File( outputDirectory, "local/" + outputDirectory.getName() ).isDirectory() )
+        {
+            return outputDirectory.getParentFile();
+        }
+        return outputDirectory;
+    }
+
+    private File getLibrariesDirectory( final File executionDirectory )
+    {
+        return executionDirectory.equals( normalize( objectsDirectory ) ) ? librariesDirectory : new File( librariesDirectory, executionDirectory.getName() );
+    }
+
+    private List<File> getArchitectureDirectories( final String architecture )
+    {
+        final List<File> directories = new ArrayList<File>();
+        for ( File outputDirectory : getOutputDirectories() )
+        {
+            final File directory = new File( outputDirectory, "local/" + architecture );
+            if ( directory.isDirectory() )
+            {
+                directories.add( directory );
+            }
+        }
+        return directories;
+    }
+
+    private static File normalize( final File file )
+    {
+        return file.getAbsoluteFile().toPath().normalize().toFile();
+    }
+
+    private int delete( final File file ) throws IOException
+    {
+        if ( !file.exists() )
+        {
+            return 0;
+        }
+        log.debug( "Removing " + file );
+        FileUtils.forceDelete( file );
+        return 1;
+    }
+
+    private static Set<String> listDirectories( final File directory )
+    {
+        final Set<String> names = new TreeSet<String>();
+        final File[] files = directory.listFiles();
+        for ( File file : files == null ? new File[ 0 ] : files )
+        {
+            if ( file.isDirectory() )
+            {
+                names.add( file.getName() );
+            }
+        }
+        return names;
+    }
+}
@@ -1,57 +1,149 @@
 package com.simpligility.maven.plugins.androidndk.phase00clean;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
 
 /**
+ * Cleans the native build, without forcing a full rebuild afterwards.
+ * <p/>
+ * The generated makefiles, makefile capture files, build fingerprints and unpacked libraries are always removed.
+ * The objects and libraries of selected <code>architectures</code> and <code>modules</code> are removed, as are the
+ * objects of architectures and modules the last build no longer produced.  The remaining objects are left to the
+ * maven-clean-plugin.  Compiled objects are kept across a clean by the <code>objectCacheDirectory</code> of the
+ * <code>ndk-build</code> goal, which is outside of the build directory: the next build restores the objects whose
+ * sources, headers and configuration are unchanged from it, and only compiles the rest.
+ * <p/>
+ * Runs in the <code>pre-clean</code> phase, before the maven-clean-plugin removes the build directory.  The lifecycle
+ * mappings of the <code>so</code> and <code>a</code> packagings bind it there, other projects bind it in an
+ * execution.
+ *
  * @author Johan Lindquist <johanlindquist@gmail.com>
- * @goal clean
- * @requiresProject true
- * @requiresOnline false
- * @phase clean
  */
+@Mojo( name = "clean", defaultPhase = LifecyclePhase.PRE_CLEAN, requiresProject = true )
 public class NdkCleanMojo extends AbstractMojo
 {
 
     /**
-     * @parameter property="android.nativeBuildLibsOutputDirectory" default-value="${project.basedir}/libs"
+     * Folder in which the NDK makefiles are constructed.
      */
-    File ndkBuildLibsOutputDirectory;
+    @Parameter( property = "android.ndk.buildDirectory", defaultValue = "${project.build.directory}/android-ndk-maven-plugin", readonly = true )
+    private File buildDirectory;
 
     /**
-     * @parameter property="android.nativeBuildObjOutputDirectory" default-value="${project.basedir}/obj"
+     * Folder containing native, static libraries compiled and linked by the NDK (<code>NDK_OUT</code>).
      */
-    File ndkBuildObjOutputDirectory;
+    @Parameter( property = "android.ndk.objectsOutputDirectory", defaultValue = "${project.build.directory}/obj" )
+    private File objectsOutputDirectory;
+
+    /**
+     * Folder containing the native libraries installed by the NDK (<code>NDK_LIBS_OUT</code>).
+     */
+    @Parameter( property = "android.ndk.librariesOutputDirectory", defaultValue = "${project.build.directory}/ndk-libs" )
+    private File librariesOutputDirectory;
+
+    /**
+     * Folder in which AAR/APKLIB library dependencies are unpacked.
+     */
+    @Parameter( property = "unpackedLibsFolder", defaultValue = "${project.build.directory}/unpacked-libs" )
+    private File unpackedLibsFolder;
 
     /**
      * Forces the clean process to be skipped.
-     *
-     * @parameter property="android.nativeBuildSkipClean" default-value="false"
      */
-    boolean skipClean = false;
+    @Parameter( property = "android.ndk.skipClean", defaultValue = "false" )
+    private boolean skipClean;
+
+    /**
+     * Architectures whose objects and libraries are removed.  When <code>modules</code> are specified as well, only
+     * those modules are removed for these architectures.
+     */
+    @Parameter( property = "android.ndk.clean.architectures" )
+    private String[] architectures;
 
     /**
-     * Specifies whether the deletion of the libs/ folder structure should be skipped.  This is by default set to
-     * skip (true) to avoid unwanted deletions of libraries already present in this structure.
-     *
-     * @parameter property="android.nativeBuildSkipCleanLibsOutputDirectory" default-value="true"
+     * Modules (as in <code>LOCAL_MODULE</code>) whose objects and libraries are removed, for all architectures unless
+     * <code>architectures</code> are specified.
      */
-    boolean skipBuildLibsOutputDirectory = true;
+    @Parameter( property = "android.ndk.clean.modules" )
+    private String[] modules;
 
     /**
-     * Specifies whether the obj/ build folder structure should be deleted.
-     *
-     * @parameter property="android.nativeBuildSkipCleanLibsOutputDirectory" default-value="false"
+     * Whether the objects of architectures and modules the last build did not produce are removed, as listed by the
+     * build manifests of the <code>ndk-build</code> goal.
      */
-    boolean skipBuildObjsOutputDirectory = false;
+    @Parameter( property = "android.ndk.clean.staleObjects", defaultValue = "true" )
+    private boolean cleanStaleObjects;
 
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException
     {
+        if ( skipClean )
+        {
+            getLog().info( "Skipping native clean as per configuration" );
+            return;
+        }
+
+        try
+        {
+            cleanGeneratedFiles();
 
+            final NativeOutputCleaner nativeOutputCleaner = new NativeOutputCleaner( objectsOutputDirectory, librariesOutputDirectory, getLog() );
+            if ( modules != null && modules.length > 0 )
+            {
+                final Collection<String> moduleArchitectures = architectures != null && architectures.length > 0
+                        ? Arrays.asList( architectures ) : nativeOutputCleaner.getBuiltArchitectures();
+                final int removed = nativeOutputCleaner.cleanModules( moduleArchitectures, Arrays.asList( modules ) );
+                getLog().info( "Removed " + removed + " outputs of modules " + Arrays.asList( modules ) + " for " + moduleArchitectures );
+            }
+            else if ( architectures != null && architectures.length > 0 )
+            {
+                final int removed = nativeOutputCleaner.cleanArchitectures( Arrays.asList( architectures ) );
+                getLog().info( "Removed " + removed + " output directories of " + Arrays.asList( architectures ) );
+            }
+
+            if ( cleanStaleObjects )
+            {
+                final int removed = nativeOutputCleaner.cleanStale( buildDirectory );
+                if ( removed > 0 )
+                {
+                    getLog().info( "Removed " + removed + " stale object directories" );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failure during native clean: " + e.getMessage(), e );
+        }
     }
 
+    /**
+     * Removes the files generated for and by ndk-build besides its outputs.
+     */
+    private void cleanGeneratedFiles() throws IOException
+    {
+        FileUtils.deleteDirectory( new File( buildDirectory, "makefile" ) );
+        FileUtils.deleteDirectory( unpackedLibsFolder );
+
+        final File[] files = buildDirectory.listFiles();
+        for ( File file : files == null ? new File[ 0 ] : files )
+        {
+            final String name = file.getName();
+            if ( ( name.startsWith( "android_maven_plugin_makefile_captures" ) && name.endsWith( ".tmp" ) )
+                    || ( name.startsWith( "ndk-build-" ) && name.endsWith( ".fingerprint" ) ) )
+            {
+                getLog().debug( "Removing " + file );
+                FileUtils.forceDelete( file );
+            }
+        }
+    }
 }
@@ -0,0 +1,365 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import com.simpligility.maven.plugins.androidndk.common.DigestHelper;
+import org.apache.maven.plugin.logging.Log;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fingerprint of everything that goes into a native build - configuration, dependencies, makefiles and sources.
+ * <p/>
+ * After a successful build the fingerprint is stored together with the artifacts the build attached.  When a later
+ * build computes the same fingerprint, and all the recorded outputs are still in place, the previous outputs can be
+ * attached again instead of running the native toolchain.
+ *
+ * @see NdkBuildMojo
+ */
+public class BuildFingerprint
+{
+    /**
+     * An artifact attached to the project by a build.
+     */
+    public static class AttachedArtifact
+    {
+        private final String type;
+        private final String classifier;
+        private final File file;
+
+        public AttachedArtifact( final String type, final String classifier, final File file )
+        {
+            this.type = type;
+            this.classifier = classifier;
+            this.file = file;
+        }
+
+        public String getType()
+        {
+            return type;
+        }
+
+        public String getClassifier()
+        {
+            return classifier;
+        }
+
+        public File getFile()
+        {
+            return file;
+        }
+    }
+
+    private static final Pattern INCLUDE_PATTERN = Pattern.compile( "^\\s*-?include\\s+(.+?)\\s*$", Pattern.MULTILINE );
+    private static final Pattern MAKEFILE_DIRECTORY_PATTERN = Pattern.compile( "\\$\\((LOCAL_PATH|call my-dir)\\)" );
+
+    private final StringBuilder content = new StringBuilder();
+    private final Log log;
+    private String hash;
+
+    public BuildFingerprint( final Log log )
+    {
+        this.log = log;
+    }
+
+    /**
+     * Adds a named value to the fingerprint.  Arrays and collections are added element by element.
+     */
+    public void addValue( final String name, final Object value )
+    {
+        final String stringValue;
+        if ( value instanceof Object[] )
+        {
+            stringValue = Arrays.deepToString( ( Object[] ) value );
+        }
+        else
+        {
+            stringValue = String.valueOf( value );
+        }
+        append( "value", name, stringValue );
+    }
+
+    /**
+     * Adds the path, size and modification time of the specified file to the fingerprint.
+     */
+    public void addFile( final String name, final File file )
+    {
+        if ( file == null )
+        {
+            append( "file", name, "null" );
+        }
+        else
+        {
+            append( "file", name, describe( file ) );
+        }
+    }
+
+    /**
+     * Adds the checksum of the content of the specified file to the fingerprint.  Used for files, such as the
+     * makefiles, whose modification time may change without the content changing.
+     */
+    public void addFileContent( final String name, final File file ) throws IOException
+    {
+        append( "content", name, file != null && file.isFile() ? DigestHelper.sha1( file ) : "missing" );
+    }
+
+    /**
+     * Adds the checksum of the content of the specified makefile to the fingerprint, and that of the makefiles it
+     * includes.  Includes are followed when their path is literal or relative to <code>$(LOCAL_PATH)</code> or
+     * <code>$(call my-dir)</code>, which are taken to be the directory of the including makefile.
+     */
+    public void addMakefile( final String name, final File file ) throws IOException
+    {
+        addMakefile( name, file, new HashSet<File>() );
+    }
+
+    private void addMakefile( final String name, final File file, final Set<File> visited ) throws IOException
+    {
+        addFileContent( name, file );
+        if ( !file.isFile() || !visited.add( file.getCanonicalFile() ) )
+        {
+            return;
+        }
+
+        final String directory = Matcher.quoteReplacement( file.getParentFile().getAbsolutePath() );
+        final Matcher matcher = INCLUDE_PATTERN.matcher( FileUtils.readFileToString( file, "UTF-8" ) );
+        while ( matcher.find() )
+        {
+            for ( String include : matcher.group( 1 ).split( "\\s+" ) )
+            {
+                final String path = MAKEFILE_DIRECTORY_PATTERN.matcher( include ).replaceAll( directory );
+                if ( !path.contains( "$" ) )
+                {
+                    final File includedFile = new File( path );
+                    addMakefile( name, includedFile.isAbsolute() ? includedFile : new File( file.getParentFile(), path ), visited );
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the path, size and modification time of the sources and headers listed by the make dependency files
+     * (<code>*.d</code>) below the specified directory to the fingerprint.  These are written by the compiler during
+     * the previous build, and include the files outside of the project the build reads, such as sources referenced
+     * through <code>../</code> or the headers of the NDK.
+     *
+     * @param baseDirectory Directory relative paths in the dependency files are relative to
+     */
+    public void addDependencies( final String name, final File directory, final File baseDirectory ) throws IOException
+    {
+        final SortedSet<String> dependencies = new TreeSet<String>();
+        collectDependencies( directory, baseDirectory, dependencies );
+        for ( String dependency : dependencies )
+        {
+            append( "dependency", name, describe( new File( dependency ) ) );
+        }
+    }
+
+    private static void collectDependencies( final File directory, final File baseDirectory, final Set<String> dependencies ) throws IOException
+    {
+        final File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        for ( File file : files )
+        {
+            if ( file.isDirectory() )
+            {
+                collectDependencies( file, baseDirectory, dependencies );
+            }
+            else if ( file.getName().endsWith( ".d" ) )
+            {
+                // Targets end with a colon, escaped spaces are part of the file name
+                final String rules = FileUtils.readFileToString( file, "UTF-8" ).replaceAll( "\\\\\\r?\\n", " " ).replace( "\\ ", "\u0000" );
+                for ( String token : rules.split( "\\s+" ) )
+                {
+                    if ( !token.isEmpty() && !token.endsWith( ":" ) )
+                    {
+                        final File dependency = new File( token.replace( '\u0000', ' ' ) );
+                        final File absoluteDependency = dependency.isAbsolute() ? dependency : new File( baseDirectory, dependency.getPath() );
+                        dependencies.add( absoluteDependency.toPath().normalize().toString() );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the path, size and modification time of all files below the specified directory to the fingerprint.
+     * The directory is walked in a stable order.
+     */
+    public void addDirectory( final String name, final File directory )
+    {
+        if ( directory == null || !directory.isDirectory() )
+        {
+            append( "directory", name, "missing" );
+            return;
+        }
+        append( "directory", name, directory.getAbsolutePath() );
+        addDirectoryEntries( name, directory );
+    }
+
+    private void addDirectoryEntries( final String name, final File directory )
+    {
+        final File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        Arrays.sort( files );
+        for ( File file : files )
+        {
+            if ( file.isDirectory() )
+            {
+                addDirectoryEntries( name, file );
+            }
+            else
+            {
+                append( "entry", name, describe( file ) );
+            }
+        }
+    }
+
+    /**
+     * @return The hash of everything added to the fingerprint.
+     */
+    public String getHash()
+    {
+        if ( hash == null )
+        {
+            hash = DigestHelper.sha1( content.toString() );
+        }
+        return hash;
+    }
+
+    /**
+     * Loads the artifacts attached by the build recorded in the specified file, if that build had the same
+     * fingerprint and all of its outputs are unchanged.
+     *
+     * @param fingerprintFile The file written by {@link #store(File, Collection)}
+     * @return The previously attached artifacts, or <code>null</code> if the build must run again
+     */
+    public List<AttachedArtifact> loadUnchangedOutputs( final File fingerprintFile )
+    {
+        if ( !fingerprintFile.isFile() )
+        {
+            log.debug( "No build fingerprint found at " + fingerprintFile );
+            return null;
+        }
+
+        final Properties properties = new Properties();
+        try
+        {
+            final InputStream in = new FileInputStream( fingerprintFile );
+            try
+            {
+                properties.load( in );
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Unable to read build fingerprint " + fingerprintFile + ": " + e.getMessage() );
+            return null;
+        }
+
+        if ( !getHash().equals( properties.getProperty( "fingerprint" ) ) )
+        {
+            log.debug( "Build fingerprint changed since the previous build" );
+            return null;
+        }
+
+        final int count = Integer.parseInt( properties.getProperty( "attached.count", "0" ) );
+        final List<AttachedArtifact> attachedArtifacts = new ArrayList<AttachedArtifact>();
+        for ( int i = 0; i < count; i++ )
+        {
+            final String prefix = "attached." + i + ".";
+            final File file = new File( properties.getProperty( prefix + "file" ) );
+            if ( !describe( file ).equals( properties.getProperty( prefix + "state" ) ) )
+            {
+                log.debug( "Output of previous build changed or missing: " + file );
+                return null;
+            }
+            attachedArtifacts.add( new AttachedArtifact( properties.getProperty( prefix + "type" ),
+                    properties.getProperty( prefix + "classifier" ), file ) );
+        }
+        return Collections.unmodifiableList( attachedArtifacts );
+    }
+
+    /**
+     * Stores the fingerprint and the artifacts attached by the build in the specified file.
+     */
+    public void store( final File fingerprintFile, final Collection<AttachedArtifact> attachedArtifacts ) throws IOException
+    {
+        final Properties properties = new Properties();
+        properties.setProperty( "fingerprint", getHash() );
+        properties.setProperty( "attached.count", String.valueOf( attachedArtifacts.size() ) );
+        int i = 0;
+        for ( AttachedArtifact attachedArtifact : attachedArtifacts )
+        {
+            final String prefix = "attached." + i++ + ".";
+            properties.setProperty( prefix + "type", attachedArtifact.getType() );
+            properties.setProperty( prefix + "classifier", attachedArtifact.getClassifier() );
+            properties.setProperty( prefix + "file", attachedArtifact.getFile().getAbsolutePath() );
+            properties.setProperty( prefix + "state", describe( attachedArtifact.getFile() ) );
+        }
+
+        fingerprintFile.getParentFile().mkdirs();
+        final OutputStream out = new FileOutputStream( fingerprintFile );
+        try
+        {
+            properties.store( out, "Native build fingerprint" );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Removes a stored fingerprint, so that the next build runs regardless.
+     */
+    public static void invalidate( final File fingerprintFile )
+    {
+        if ( fingerprintFile.exists() && !fingerprintFile.delete() )
+        {
+            fingerprintFile.deleteOnExit();
+        }
+    }
+
+    private void append( final String kind, final String name, final String value )
+    {
+        hash = null;
+        content.append( kind ).append( ':' ).append( name ).append( '=' ).append( value ).append( '\n' );
+    }
+
+    private static String describe( final File file )
+    {
+        if ( !file.exists() )
+        {
+            return file.getAbsolutePath() + "|missing";
+        }
+        return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+    }
+}
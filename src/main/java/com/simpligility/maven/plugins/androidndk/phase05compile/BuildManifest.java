@@ -0,0 +1,348 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import com.simpligility.maven.plugins.androidndk.common.DigestHelper;
+import com.simpligility.maven.plugins.androidndk.common.FileHelper;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The modules the native build produced for one architecture: their name, type, file, size and hash.
+ * <p/>
+ * The modules are taken from the makefile capture (see {@link MakefileCapture}), which lists every module the
+ * makefiles defined, so the output directories do not have to be searched.  Prebuilt modules are left out, they are
+ * not produced by the build.  If nothing was captured, because the generated makefile was not included, the top level
+ * of the output directories is listed once instead.
+ */
+public class BuildManifest
+{
+    /**
+     * Type of a module producing a shared library.
+     */
+    public static final String SHARED_LIBRARY = "SHARED_LIBRARY";
+
+    /**
+     * Type of a module producing a static library.
+     */
+    public static final String STATIC_LIBRARY = "STATIC_LIBRARY";
+
+    /**
+     * Type of a module producing an executable.
+     */
+    public static final String EXECUTABLE = "EXECUTABLE";
+
+    private static final String MANIFEST_PREFIX = "ndk-build-manifest-";
+    private static final Pattern MANIFEST_HEADER = Pattern.compile( "^# Modules built for ([^,\\s]+)(,.*)?$" );
+
+    /**
+     * A module produced by the build.
+     */
+    public static class Module
+    {
+        private final String name;
+        private final String type;
+        private final File file;
+        private final long size;
+        private final String sha1;
+
+        Module( String name, String type, File file ) throws IOException
+        {
+            this.name = name;
+            this.type = type;
+            this.file = file;
+            this.size = file.length();
+            this.sha1 = DigestHelper.sha1( file );
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public String getType()
+        {
+            return type;
+        }
+
+        public File getFile()
+        {
+            return file;
+        }
+
+        public long getSize()
+        {
+            return size;
+        }
+
+        public String getSha1()
+        {
+            return sha1;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name + " (" + file + ")";
+        }
+    }
+
+    private final String architecture;
+    private final File librariesDirectory;
+    private final File objectsDirectory;
+    private final boolean captured;
+    private final List<Module> modules = new ArrayList<Module>();
+
+    private BuildManifest( final String architecture, final File librariesDirectory, final File objectsDirectory, final boolean captured )
+    {
+        this.architecture = architecture;
+        this.librariesDirectory = librariesDirectory;
+        this.objectsDirectory = objectsDirectory;
+        this.captured = captured;
+    }
+
+    /**
+     * Creates the manifest of an architecture.
+     *
+     * @param makefileCapture    The capture of the build
+     * @param architecture       The architecture
+     * @param librariesDirectory Where the build installed the shared libraries and executables of the architecture
+     * @param objectsDirectory   Where the build created the static libraries of the architecture
+     *                           (<code>NDK_OUT/local/&lt;architecture&gt;</code>)
+     */
+    public static BuildManifest create( final MakefileCapture makefileCapture, final String architecture, final File librariesDirectory,
+                                        final File objectsDirectory ) throws IOException
+    {
+        final List<String> capturedModules = makefileCapture.getModules( architecture );
+        final BuildManifest buildManifest = new BuildManifest( architecture, librariesDirectory, objectsDirectory, !capturedModules.isEmpty() );
+        if ( capturedModules.isEmpty() )
+        {
+            buildManifest.scan();
+            return buildManifest;
+        }
+
+        for ( String module : capturedModules )
+        {
+            final String type = makefileCapture.getVariable( architecture, module, "LOCAL_MODULE_CLASS" );
+            if ( type != null && type.startsWith( "PREBUILT" ) )
+            {
+                continue;
+            }
+            String filename = makefileCapture.getVariable( architecture, module, "LOCAL_MODULE_FILENAME" );
+            if ( filename == null || filename.isEmpty() )
+            {
+                filename = EXECUTABLE.equals( type ) || module.startsWith( "lib" ) ? module : "lib" + module;
+            }
+            buildManifest.addModule( module, type, filename );
+        }
+        return buildManifest;
+    }
+
+    private void addModule( final String module, final String type, final String filename ) throws IOException
+    {
+        final List<File> candidates = new ArrayList<File>();
+        if ( SHARED_LIBRARY.equals( type ) )
+        {
+            candidates.add( new File( librariesDirectory, filename + ".so" ) );
+            candidates.add( new File( objectsDirectory, filename + ".so" ) );
+        }
+        else if ( STATIC_LIBRARY.equals( type ) )
+        {
+            candidates.add( new File( objectsDirectory, filename + ".a" ) );
+        }
+        else if ( EXECUTABLE.equals( type ) )
+        {
+            candidates.add( new File( librariesDirectory, filename ) );
+            candidates.add( new File( objectsDirectory, filename ) );
+        }
+        else
+        {
+            // Without the module class, try the outputs of libraries
+            candidates.add( new File( librariesDirectory, filename + ".so" ) );
+            candidates.add( new File( objectsDirectory, filename + ".a" ) );
+            candidates.add( new File( objectsDirectory, filename + ".so" ) );
+        }
+
+        for ( File candidate : candidates )
+        {
+            if ( candidate.isFile() )
+            {
+                modules.add( new Module( module, type != null && !type.isEmpty() ? type : typeOf( candidate ), candidate ) );
+                return;
+            }
+        }
+    }
+
+    private void scan() throws IOException
+    {
+        for ( File directory : new File[] { librariesDirectory, objectsDirectory } )
+        {
+            final File[] files = directory.listFiles();
+            if ( files == null )
+            {
+                continue;
+            }
+            final List<File> sortedFiles = new ArrayList<File>();
+            Collections.addAll( sortedFiles, files );
+            Collections.sort( sortedFiles );
+            for ( File file : sortedFiles )
+            {
+                final String name = file.getName();
+                if ( file.isFile() && ( name.endsWith( ".so" ) || name.endsWith( ".a" ) ) )
+                {
+                    final String module = name.substring( 0, name.lastIndexOf( '.' ) );
+                    modules.add( new Module( module.startsWith( "lib" ) ? module.substring( "lib".length() ) : module, typeOf( file ), file ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Describes a library that is not a module of the manifest.
+     */
+    public Module toModule( final String name, final File file ) throws IOException
+    {
+        return new Module( name, typeOf( file ), file );
+    }
+
+    private static String typeOf( final File file )
+    {
+        return file.getName().endsWith( ".a" ) ? STATIC_LIBRARY : SHARED_LIBRARY;
+    }
+
+    /**
+     * @return Whether the modules were captured from the makefiles, rather than found in the output directories
+     */
+    public boolean isCaptured()
+    {
+        return captured;
+    }
+
+    public String getArchitecture()
+    {
+        return architecture;
+    }
+
+    public List<Module> getModules()
+    {
+        return Collections.unmodifiableList( modules );
+    }
+
+    /**
+     * @return The module producing the file with the specified name in either output directory, or null
+     */
+    public Module getModuleByFile( final File directory, final String filename )
+    {
+        final File file = new File( directory, filename );
+        for ( Module module : modules )
+        {
+            if ( module.getFile().equals( file ) )
+            {
+                return module;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the libraries a library name may refer to: all libraries whose file name starts with
+     * <code>lib&lt;name&gt;</code> (or the name itself if it starts with <code>lib</code>), those in the libraries
+     * directory if there are any, otherwise those in the objects directory.
+     *
+     * @param libraryName The name of the library
+     * @param extension   The extension of the libraries, <code>.so</code> or <code>.a</code>
+     * @param all         Whether to return all matches, otherwise only the module with exactly the library name is
+     *                    returned if there is one
+     */
+    public List<Module> findLibraries( final String libraryName, final String extension, final boolean all )
+    {
+        for ( Module module : all ? Collections.<Module>emptyList() : modules )
+        {
+            if ( module.getName().equals( libraryName ) && module.getFile().getName().endsWith( extension ) )
+            {
+                return Collections.singletonList( module );
+            }
+        }
+
+        final List<Module> found = new ArrayList<Module>();
+        for ( File directory : new File[] { librariesDirectory, objectsDirectory } )
+        {
+            for ( Module module : modules )
+            {
+                final String name = module.getFile().getName();
+                if ( module.getFile().getParentFile().equals( directory ) && name.endsWith( extension )
+                        && ( name.startsWith( "lib" + libraryName ) || ( libraryName.startsWith( "lib" ) && name.startsWith( libraryName ) ) ) )
+                {
+                    found.add( module );
+                }
+            }
+            if ( !found.isEmpty() )
+            {
+                break;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return The file the manifest of an architecture built by an execution is written to
+     */
+    public static File getManifestFile( final File directory, final String executionId, final String architecture )
+    {
+        return new File( directory, MANIFEST_PREFIX + executionId + "-" + architecture + ".txt" );
+    }
+
+    /**
+     * Removes the manifests an execution wrote for architectures it no longer builds, so the clean goal considers
+     * their objects stale.
+     *
+     * @param directory     Directory holding the manifests
+     * @param executionId   Id of the execution
+     * @param architectures The architectures the execution builds
+     */
+    public static void removeOtherArchitectures( final File directory, final String executionId, final Collection<String> architectures )
+            throws IOException
+    {
+        final File[] files = directory.listFiles();
+        for ( File file : files == null ? new File[ 0 ] : files )
+        {
+            if ( !file.getName().startsWith( MANIFEST_PREFIX + executionId + "-" ) )
+            {
+                continue;
+            }
+            // The architecture is read from the manifest, execution ids and architectures may both contain dashes
+            final List<String> lines = FileUtils.readLines( file, "UTF-8" );
+            final Matcher header = lines.isEmpty() ? null : MANIFEST_HEADER.matcher( lines.get( 0 ) );
+            if ( header != null && header.matches() && file.equals( getManifestFile( directory, executionId, header.group( 1 ) ) )
+                    && !architectures.contains( header.group( 1 ) ) )
+            {
+                FileUtils.forceDelete( file );
+            }
+        }
+    }
+
+    /**
+     * Writes the manifest: a header naming the architecture and the directory of its objects, followed by one line per
+     * module: name, type, size, SHA-1 and path, separated by tabs.
+     */
+    public void write( final File manifestFile ) throws IOException
+    {
+        final StringBuilder content = new StringBuilder();
+        content.append( "# Modules built for " ).append( architecture )
+                .append( captured ? "" : ", found in the output directories" ).append( '\n' );
+        content.append( "# Objects in " ).append( objectsDirectory.getAbsolutePath() ).append( '\n' );
+        for ( Module module : modules )
+        {
+            content.append( module.getName() ).append( '\t' ).append( module.getType() ).append( '\t' ).append( module.getSize() ).append( '\t' )
+                    .append( module.getSha1() ).append( '\t' ).append( module.getFile().getAbsolutePath() ).append( '\n' );
+        }
+        manifestFile.getParentFile().mkdirs();
+        FileHelper.writeIfChanged( manifestFile, content.toString() );
+    }
+}
@@ -0,0 +1,74 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.Artifact;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * The output directories, dependencies and architectures of an ndk-build invocation.
+ */
+class CompileCommand
+{
+    File objectsOutputDirectory;
+    File librariesOutputDirectory;
+
+    /**
+     * Directory handed to ndk-build as <code>NDK_LIBS_OUT</code> - if null, the libraries output directory is used.
+     */
+    File buildLibrariesOutputDirectory;
+
+    Set<Artifact> nativeLibraryDepedencies;
+    String[] resolvedArchitectures;
+
+    public Set<Artifact> getNativeLibraryDepedencies ()
+    {
+        return nativeLibraryDepedencies;
+    }
+
+    public String[] getResolvedArchitectures ()
+    {
+        return resolvedArchitectures;
+    }
+
+    public File getBuildLibrariesOutputDirectory ()
+    {
+        return buildLibrariesOutputDirectory != null ? buildLibrariesOutputDirectory : librariesOutputDirectory;
+    }
+
+    /**
+     * Creates the command for building a single architecture in isolation.  ndk-build removes the installed
+     * libraries of all architectures before installing its own, so each architecture also gets a private
+     * <code>NDK_LIBS_OUT</code> which is copied into the shared libraries output directory afterwards.
+     */
+    public CompileCommand forArchitecture ( final String architecture )
+    {
+        final CompileCommand compileCommand = new CompileCommand ();
+        compileCommand.nativeLibraryDepedencies = nativeLibraryDepedencies;
+        compileCommand.resolvedArchitectures = new String[] { architecture };
+        compileCommand.objectsOutputDirectory = new File ( objectsOutputDirectory, architecture );
+        compileCommand.librariesOutputDirectory = librariesOutputDirectory;
+        compileCommand.buildLibrariesOutputDirectory = new File ( compileCommand.objectsOutputDirectory, "libs" );
+        return compileCommand;
+    }
+
+    /**
+     * Copies the libraries installed into the private <code>NDK_LIBS_OUT</code> of an architecture build into the
+     * shared libraries output directory, replacing whatever a previous build installed there for the architecture.
+     */
+    public void copyArchitectureLibraries ( final String architecture ) throws IOException
+    {
+        final File buildLibrariesDirectory = new File ( getBuildLibrariesOutputDirectory (), architecture );
+        final File librariesDirectory = new File ( librariesOutputDirectory, architecture );
+
+        if ( buildLibrariesDirectory.equals ( librariesDirectory ) || !buildLibrariesDirectory.exists () )
+        {
+            return;
+        }
+
+        FileUtils.deleteDirectory ( librariesDirectory );
+        FileUtils.copyDirectory ( buildLibrariesDirectory, librariesDirectory );
+    }
+}
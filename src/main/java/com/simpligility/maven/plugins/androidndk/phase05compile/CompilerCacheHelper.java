@@ -0,0 +1,258 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import com.simpligility.maven.plugins.androidndk.configuration.CompilerCache;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sets up the compiler cache (ccache) for ndk-build and reports its statistics.
+ *
+ * @see CompilerCache
+ */
+public class CompilerCacheHelper
+{
+    /**
+     * Hit and miss counters of the compiler cache.
+     */
+    public static class Statistics
+    {
+        private final long hits;
+        private final long misses;
+
+        Statistics( long hits, long misses )
+        {
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        public long getHits()
+        {
+            return hits;
+        }
+
+        public long getMisses()
+        {
+            return misses;
+        }
+    }
+
+    private static final Pattern PRINT_STATS_LINE = Pattern.compile( "^(\\w+)\\s+(\\d+)\\s*$" );
+    private static final Pattern SUMMARY_LINE = Pattern.compile( "^\\s*(cache hit \\(direct\\)|cache hit \\(preprocessed\\)|cache miss)\\s+(\\d+)\\s*$" );
+
+    private static final int PERCENT = 100;
+
+    private final CompilerCache compilerCache;
+    private final File defaultBaseDirectory;
+    private final Log log;
+
+    /**
+     * @param compilerCache        The configuration
+     * @param defaultBaseDirectory Base directory used if none is configured
+     * @param log                  Log to write output to
+     */
+    public CompilerCacheHelper( final CompilerCache compilerCache, final File defaultBaseDirectory, final Log log )
+    {
+        this.compilerCache = compilerCache;
+        this.defaultBaseDirectory = defaultBaseDirectory;
+        this.log = log;
+    }
+
+    /**
+     * Locates the launcher, either the configured absolute path or the first match on the <code>PATH</code>.
+     *
+     * @return The launcher, or null if it could not be found
+     */
+    public File findLauncher()
+    {
+        final String executable = compilerCache.getExecutable();
+        final File executableFile = new File( executable );
+        if ( executableFile.isAbsolute() )
+        {
+            return executableFile.canExecute() ? executableFile : null;
+        }
+
+        final String path = System.getenv( "PATH" );
+        if ( path == null )
+        {
+            return null;
+        }
+        for ( String directory : path.split( Pattern.quote( File.pathSeparator ) ) )
+        {
+            for ( String name : new String[] { executable, executable + ".exe" } )
+            {
+                final File candidate = new File( directory, name );
+                if ( candidate.isFile() && candidate.canExecute() )
+                {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The environment variables to pass to ndk-build for using the specified launcher.
+     */
+    public Map<String, String> getEnvironment( final File launcher )
+    {
+        final Map<String, String> environment = new LinkedHashMap<String, String>();
+        environment.put( "NDK_CCACHE", launcher.getAbsolutePath() );
+        environment.putAll( getCacheEnvironment() );
+        return environment;
+    }
+
+    private Map<String, String> getCacheEnvironment()
+    {
+        final Map<String, String> environment = new LinkedHashMap<String, String>();
+        if ( StringUtils.isNotBlank( compilerCache.getDirectory() ) )
+        {
+            environment.put( "CCACHE_DIR", new File( compilerCache.getDirectory() ).getAbsolutePath() );
+        }
+        if ( StringUtils.isNotBlank( compilerCache.getMaxSize() ) )
+        {
+            environment.put( "CCACHE_MAXSIZE", compilerCache.getMaxSize() );
+        }
+        final String baseDirectory = StringUtils.isNotBlank( compilerCache.getBaseDirectory() )
+                ? compilerCache.getBaseDirectory() : ( defaultBaseDirectory == null ? null : defaultBaseDirectory.getAbsolutePath() );
+        if ( baseDirectory != null )
+        {
+            environment.put( "CCACHE_BASEDIR", baseDirectory );
+        }
+        if ( compilerCache.isIgnoreWorkingDirectory() )
+        {
+            environment.put( "CCACHE_NOHASHDIR", "1" );
+        }
+        return environment;
+    }
+
+    /**
+     * Reads the current statistics of the cache, if statistics are enabled.
+     *
+     * @return The statistics, or null if disabled or they could not be read
+     */
+    public Statistics readStatistics( final File launcher )
+    {
+        if ( !compilerCache.isStatistics() )
+        {
+            return null;
+        }
+
+        // ccache 4 prints machine readable statistics, older versions only the summary
+        String output = runLauncher( launcher, "--print-stats" );
+        Statistics statistics = output == null ? null : parsePrintStats( output );
+        if ( statistics == null )
+        {
+            output = runLauncher( launcher, "-s" );
+            statistics = output == null ? null : parseSummary( output );
+        }
+        if ( statistics == null )
+        {
+            log.debug( "Unable to read compiler cache statistics from " + launcher );
+        }
+        return statistics;
+    }
+
+    /**
+     * Logs the hits and misses between the two statistics.
+     */
+    public void logStatistics( final Statistics before, final Statistics after )
+    {
+        if ( before == null || after == null )
+        {
+            return;
+        }
+        final long hits = after.getHits() - before.getHits();
+        final long misses = after.getMisses() - before.getMisses();
+        final long total = hits + misses;
+        log.info( "Compiler cache: " + hits + " hits, " + misses + " misses" + ( total > 0 ? " (" + ( hits * PERCENT / total ) + "% hit rate)" : "" ) );
+    }
+
+    private String runLauncher( final File launcher, final String option )
+    {
+        try
+        {
+            final ProcessBuilder processBuilder = new ProcessBuilder( launcher.getAbsolutePath(), option );
+            processBuilder.environment().putAll( getCacheEnvironment() );
+            processBuilder.redirectErrorStream( true );
+            final Process process = processBuilder.start();
+            final InputStream in = process.getInputStream();
+            final String output;
+            try
+            {
+                output = IOUtils.toString( in );
+            }
+            finally
+            {
+                IOUtils.closeQuietly( in );
+            }
+            return process.waitFor() == 0 ? output : null;
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Unable to run " + launcher + " " + option + ": " + e.getMessage() );
+            return null;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Parses the output of <code>ccache --print-stats</code>.
+     */
+    static Statistics parsePrintStats( final String output )
+    {
+        final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+        for ( String line : output.split( "\r?\n" ) )
+        {
+            final Matcher matcher = PRINT_STATS_LINE.matcher( line );
+            if ( matcher.matches() )
+            {
+                counters.put( matcher.group( 1 ), Long.valueOf( matcher.group( 2 ) ) );
+            }
+        }
+        if ( !counters.containsKey( "cache_miss" ) )
+        {
+            return null;
+        }
+        return new Statistics( get( counters, "direct_cache_hit" ) + get( counters, "preprocessed_cache_hit" ), get( counters, "cache_miss" ) );
+    }
+
+    /**
+     * Parses the output of <code>ccache -s</code> of ccache 3.
+     */
+    static Statistics parseSummary( final String output )
+    {
+        final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+        for ( String line : output.split( "\r?\n" ) )
+        {
+            final Matcher matcher = SUMMARY_LINE.matcher( line );
+            if ( matcher.matches() )
+            {
+                counters.put( matcher.group( 1 ), Long.valueOf( matcher.group( 2 ) ) );
+            }
+        }
+        if ( !counters.containsKey( "cache miss" ) )
+        {
+            return null;
+        }
+        return new Statistics( get( counters, "cache hit (direct)" ) + get( counters, "cache hit (preprocessed)" ), get( counters, "cache miss" ) );
+    }
+
+    private static long get( final Map<String, Long> counters, final String name )
+    {
+        final Long value = counters.get( name );
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,90 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import com.simpligility.maven.plugins.androidndk.CommandExecutor;
+import com.simpligility.maven.plugins.androidndk.common.DigestHelper;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collects the compiler commands ndk-build prints when run with <code>-n -B</code>, keyed by architecture and object.
+ * <p/>
+ * Each command is reduced to a key, with <code>NDK_OUT</code> and the base directory of the project replaced by
+ * tokens.  Objects with the same key are compiled by the same command, whichever <code>NDK_OUT</code> they were built
+ * in, so executions building different variants can share the objects that do not differ between them.
+ */
+public class CompilerCommands implements CommandExecutor.LineProcessor
+{
+    private static final Pattern OBJECT_OUTPUT = Pattern.compile( "\\s-o\\s+['\"]?([^\\s'\"]+\\.o)['\"]?(\\s|$)" );
+    private static final Pattern COMPILE_ONLY = Pattern.compile( "\\s-c(\\s|$)" );
+
+    private final String ndkOut;
+    private final String baseDirectory;
+    private final File workingDirectory;
+
+    /**
+     * Architecture -> object path, relative to the architecture directory -> command key.
+     */
+    private final Map<String, Map<String, String>> commandKeys = new HashMap<String, Map<String, String>>();
+
+    /**
+     * @param ndkOut           The <code>NDK_OUT</code> of the build
+     * @param baseDirectory    Base directory of the project
+     * @param workingDirectory Directory ndk-build runs in, relative paths are relative to it
+     */
+    public CompilerCommands( final File ndkOut, final File baseDirectory, final File workingDirectory )
+    {
+        this.ndkOut = ndkOut.getAbsolutePath();
+        this.baseDirectory = baseDirectory.getAbsolutePath();
+        this.workingDirectory = workingDirectory;
+    }
+
+    @Override
+    public synchronized void processLine( final String line )
+    {
+        final Matcher output = OBJECT_OUTPUT.matcher( line );
+        if ( !COMPILE_ONLY.matcher( line ).find() || !output.find() )
+        {
+            return;
+        }
+
+        File objectFile = new File( output.group( 1 ) );
+        if ( !objectFile.isAbsolute() )
+        {
+            objectFile = new File( workingDirectory, objectFile.getPath() );
+        }
+        final String localPrefix = new File( ndkOut, "local" ).getAbsolutePath() + File.separator;
+        final String objectPath = objectFile.toPath().normalize().toString();
+        if ( !objectPath.startsWith( localPrefix ) )
+        {
+            return;
+        }
+
+        final String architecturePath = objectPath.substring( localPrefix.length() ).replace( File.separatorChar, '/' );
+        final int separator = architecturePath.indexOf( '/' );
+        if ( separator < 1 )
+        {
+            return;
+        }
+        final String architecture = architecturePath.substring( 0, separator );
+        if ( !commandKeys.containsKey( architecture ) )
+        {
+            commandKeys.put( architecture, new HashMap<String, String>() );
+        }
+        final String command = line.trim().replace( ndkOut, "${ndkout}" ).replace( baseDirectory, "${basedir}" );
+        commandKeys.get( architecture ).put( architecturePath.substring( separator + 1 ), DigestHelper.sha1( command ) );
+    }
+
+    /**
+     * @return Object path, relative to the architecture directory -> key of the command compiling it
+     */
+    public synchronized Map<String, String> getCommandKeys( final String architecture )
+    {
+        final Map<String, String> keys = commandKeys.get( architecture );
+        return keys == null ? Collections.<String, String>emptyMap() : new HashMap<String, String>( keys );
+    }
+}
@@ -0,0 +1,224 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import com.simpligility.maven.plugins.androidndk.CommandExecutor;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies the lines written to the standard error by the native build.
+ * <p/>
+ * GCC and Clang diagnostics (<code>file:line:col: severity: message</code>) are parsed into {@link Diagnostic}s and
+ * counted per severity.  Only error and fatal error diagnostics fail the build, unless build warnings are ignored or
+ * the line matches the build warnings regular expression, which downgrades it.  Warnings, notes and the context
+ * lines around diagnostics (<code>In file included from</code>, source and caret lines, summaries) never fail the
+ * build.  All patterns are compiled once.
+ * <p/>
+ * Instances are thread safe.
+ */
+public class DiagnosticsClassifier implements CommandExecutor.ErrorListener
+{
+    /**
+     * Severity of a compiler diagnostic.
+     */
+    public enum Severity
+    {
+        FATAL, ERROR, WARNING, NOTE
+    }
+
+    /**
+     * A single compiler diagnostic.
+     */
+    public static class Diagnostic
+    {
+        private final String file;
+        private final int line;
+        private final int column;
+        private final Severity severity;
+        private final String message;
+
+        Diagnostic( String file, int line, int column, Severity severity, String message )
+        {
+            this.file = file;
+            this.line = line;
+            this.column = column;
+            this.severity = severity;
+            this.message = message;
+        }
+
+        public String getFile()
+        {
+            return file;
+        }
+
+        public int getLine()
+        {
+            return line;
+        }
+
+        /**
+         * @return The column, or 0 if the diagnostic did not include one
+         */
+        public int getColumn()
+        {
+            return column;
+        }
+
+        public Severity getSeverity()
+        {
+            return severity;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+
+        @Override
+        public String toString()
+        {
+            return file + ":" + line + ( column > 0 ? ":" + column : "" ) + ": " + severity.name().toLowerCase() + ": " + message;
+        }
+    }
+
+    private static final Pattern DIAGNOSTIC_PATTERN =
+            Pattern.compile( "^(.+?):(\\d+):(?:(\\d+):)?\\s*(fatal error|error|warning|note):\\s*(.*)$" );
+
+    /**
+     * Number of error diagnostics kept for the summary.
+     */
+    private static final int MAX_KEPT_ERRORS = 20;
+
+    private final boolean ignoreBuildWarnings;
+    private final Pattern buildWarningsPattern;
+
+    private final AtomicInteger[] counts = new AtomicInteger[ Severity.values().length ];
+    private final List<Diagnostic> errors = new ArrayList<Diagnostic>();
+    private volatile boolean errorOutput;
+
+    /**
+     * @param ignoreBuildWarnings  If true, no output fails the build
+     * @param buildWarningsPattern Error lines matching this pattern do not fail the build
+     */
+    public DiagnosticsClassifier( final boolean ignoreBuildWarnings, final Pattern buildWarningsPattern )
+    {
+        this.ignoreBuildWarnings = ignoreBuildWarnings;
+        this.buildWarningsPattern = buildWarningsPattern;
+        for ( int i = 0; i < counts.length; i++ )
+        {
+            counts[ i ] = new AtomicInteger();
+        }
+    }
+
+    @Override
+    public boolean isError( final String line )
+    {
+        final Diagnostic diagnostic = parse( line );
+        if ( diagnostic == null )
+        {
+            return false;
+        }
+
+        counts[ diagnostic.getSeverity().ordinal() ].incrementAndGet();
+        if ( diagnostic.getSeverity() != Severity.ERROR && diagnostic.getSeverity() != Severity.FATAL )
+        {
+            return false;
+        }
+        synchronized ( errors )
+        {
+            if ( errors.size() < MAX_KEPT_ERRORS )
+            {
+                errors.add( diagnostic );
+            }
+        }
+
+        // Unconditionally ignore *All* build warning if configured to
+        if ( ignoreBuildWarnings )
+        {
+            return false;
+        }
+
+        // If the the reg.exp actually matches, we can safely say this is not an error
+        // since in theory the user told us so
+        if ( buildWarningsPattern != null && buildWarningsPattern.matcher( line ).matches() )
+        {
+            return false;
+        }
+
+        // Otherwise, it is just another error
+        errorOutput = true;
+        return true;
+    }
+
+    /**
+     * Parses a GCC/Clang diagnostic line.
+     *
+     * @return The diagnostic, or null if the line is not a diagnostic
+     */
+    static Diagnostic parse( final String line )
+    {
+        final Matcher matcher = DIAGNOSTIC_PATTERN.matcher( line );
+        if ( !matcher.matches() )
+        {
+            return null;
+        }
+        final String severityText = matcher.group( 4 );
+        final Severity severity = "fatal error".equals( severityText ) ? Severity.FATAL : Severity.valueOf( severityText.toUpperCase() );
+        return new Diagnostic( matcher.group( 1 ), Integer.parseInt( matcher.group( 2 ) ),
+                matcher.group( 3 ) == null ? 0 : Integer.parseInt( matcher.group( 3 ) ), severity, matcher.group( 5 ) );
+    }
+
+    /**
+     * @return true if any line was classified as failing the build so far
+     */
+    public boolean hasErrorOutput()
+    {
+        return errorOutput;
+    }
+
+    public int getCount( final Severity severity )
+    {
+        return counts[ severity.ordinal() ].get();
+    }
+
+    /**
+     * @return The first error (and fatal error) diagnostics reported by the build
+     */
+    public List<Diagnostic> getErrors()
+    {
+        synchronized ( errors )
+        {
+            return Collections.unmodifiableList( new ArrayList<Diagnostic>( errors ) );
+        }
+    }
+
+    /**
+     * Logs the number of diagnostics per severity, and the first errors if there were any.
+     */
+    public void logSummary( final Log log, final String buildName )
+    {
+        final int errorCount = getCount( Severity.ERROR ) + getCount( Severity.FATAL );
+        final String summary = buildName + " diagnostics: " + errorCount + " errors, " + getCount( Severity.WARNING ) + " warnings, "
+                + getCount( Severity.NOTE ) + " notes";
+        if ( errorCount == 0 )
+        {
+            log.info( summary );
+            return;
+        }
+
+        log.error( summary );
+        for ( Diagnostic diagnostic : getErrors() )
+        {
+            log.error( "  " + diagnostic );
+        }
+        if ( errorCount > MAX_KEPT_ERRORS )
+        {
+            log.error( "  ... and " + ( errorCount - MAX_KEPT_ERRORS ) + " more" );
+        }
+    }
+}
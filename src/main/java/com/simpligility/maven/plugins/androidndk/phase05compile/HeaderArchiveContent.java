@@ -0,0 +1,176 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import com.simpligility.maven.plugins.androidndk.common.Const;
+import com.simpligility.maven.plugins.androidndk.common.DigestHelper;
+import com.simpligility.maven.plugins.androidndk.configuration.HeaderFilesDirective;
+import org.apache.commons.io.FileUtils;
+import org.codehaus.plexus.util.DirectoryScanner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * The header files selected by a set of {@link HeaderFilesDirective}s, identified by a key derived from their
+ * relative paths and contents.  Two header archives built from selections with the same key hold the same headers,
+ * so an archive only needs to be built again when the key changes.
+ * <p/>
+ * The selection can be written as a reproducible header archive: entries sorted by name, fixed timestamps, a
+ * normalized manifest and an index entry ({@link Const#HEADER_ARCHIVE_INDEX}) listing the checksum and path of each
+ * header.  The same headers always give a byte for byte identical archive, and consumers can tell whether a
+ * previous extraction is still valid from the index alone.
+ */
+public final class HeaderArchiveContent
+{
+    private static final String CREATED_BY = "android-ndk-maven-plugin";
+    private static final int ENTRY_YEAR = 2000;
+
+    /**
+     * Archive path -> header file, sorted by path.
+     */
+    private final SortedMap<String, File> headerFiles;
+    private final String index;
+
+    private HeaderArchiveContent( final SortedMap<String, File> headerFiles, final String index )
+    {
+        this.headerFiles = headerFiles;
+        this.index = index;
+    }
+
+    /**
+     * Scans the directories of the directives the same way the archiver does, using the default excludes.  Missing
+     * directories are skipped.  If several directives select the same path, the first one wins.
+     */
+    public static HeaderArchiveContent scan( final List<HeaderFilesDirective> headerFilesDirectives ) throws IOException
+    {
+        final SortedMap<String, File> headerFiles = new TreeMap<String, File>();
+        for ( HeaderFilesDirective headerFilesDirective : headerFilesDirectives )
+        {
+            final File directory = new File( headerFilesDirective.getDirectory() );
+            if ( !directory.isDirectory() )
+            {
+                continue;
+            }
+
+            final DirectoryScanner scanner = new DirectoryScanner();
+            scanner.setBasedir( directory );
+            scanner.setIncludes( headerFilesDirective.getIncludes() );
+            scanner.setExcludes( headerFilesDirective.getExcludes() );
+            scanner.addDefaultExcludes();
+            scanner.scan();
+
+            for ( String includedFile : scanner.getIncludedFiles() )
+            {
+                final String path = includedFile.replace( File.separatorChar, '/' );
+                if ( !headerFiles.containsKey( path ) )
+                {
+                    headerFiles.put( path, new File( directory, includedFile ) );
+                }
+            }
+        }
+
+        final StringBuilder index = new StringBuilder();
+        for ( Map.Entry<String, File> headerFile : headerFiles.entrySet() )
+        {
+            index.append( DigestHelper.sha1( headerFile.getValue() ) ).append( "  " ).append( headerFile.getKey() ).append( '\n' );
+        }
+        return new HeaderArchiveContent( headerFiles, index.toString() );
+    }
+
+    /**
+     * @return The SHA-1 of the index, in hex.  Equal to the key {@link
+     * com.simpligility.maven.plugins.androidndk.common.HeaderArchiveCache} derives from a reproducible archive.
+     */
+    public String getKey()
+    {
+        return DigestHelper.sha1( index );
+    }
+
+    /**
+     * @return One line per header, <code>sha1&nbsp;&nbsp;path</code>, sorted by path.
+     */
+    public String getIndex()
+    {
+        return index;
+    }
+
+    public int getFileCount()
+    {
+        return headerFiles.size();
+    }
+
+    /**
+     * Writes the headers as a reproducible archive to the specified file.
+     */
+    public void writeArchive( final File archiveFile ) throws IOException
+    {
+        final long timestamp = getEntryTimestamp();
+
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put( Attributes.Name.MANIFEST_VERSION, "1.0" );
+        manifest.getMainAttributes().put( new Attributes.Name( "Created-By" ), CREATED_BY );
+
+        // Directories first appear right before their content when sorted by name
+        final SortedSet<String> directories = new TreeSet<String>();
+        for ( String path : headerFiles.keySet() )
+        {
+            for ( int slash = path.indexOf( '/' ); slash != -1; slash = path.indexOf( '/', slash + 1 ) )
+            {
+                directories.add( path.substring( 0, slash + 1 ) );
+            }
+        }
+        final SortedSet<String> entries = new TreeSet<String>( directories );
+        entries.addAll( headerFiles.keySet() );
+
+        final JarOutputStream jar = new JarOutputStream( new FileOutputStream( archiveFile ) );
+        try
+        {
+            putEntry( jar, "META-INF/", timestamp );
+            putEntry( jar, "META-INF/MANIFEST.MF", timestamp );
+            manifest.write( jar );
+            putEntry( jar, Const.HEADER_ARCHIVE_INDEX.substring( 0, Const.HEADER_ARCHIVE_INDEX.lastIndexOf( '/' ) + 1 ), timestamp );
+            putEntry( jar, Const.HEADER_ARCHIVE_INDEX, timestamp );
+            jar.write( index.getBytes( "UTF-8" ) );
+
+            for ( String entry : entries )
+            {
+                putEntry( jar, entry, timestamp );
+                if ( !directories.contains( entry ) )
+                {
+                    FileUtils.copyFile( headerFiles.get( entry ), jar );
+                }
+            }
+        }
+        finally
+        {
+            jar.close();
+        }
+    }
+
+    private static void putEntry( final JarOutputStream jar, final String name, final long timestamp ) throws IOException
+    {
+        final JarEntry entry = new JarEntry( name );
+        entry.setTime( timestamp );
+        jar.putNextEntry( entry );
+    }
+
+    /**
+     * Zip entries store their time in local time, so a fixed local time gives the same bytes in every time zone.
+     */
+    private static long getEntryTimestamp()
+    {
+        return new GregorianCalendar( ENTRY_YEAR, Calendar.JANUARY, 1 ).getTimeInMillis();
+    }
+}
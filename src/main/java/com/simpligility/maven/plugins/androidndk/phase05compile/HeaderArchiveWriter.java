@@ -0,0 +1,152 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import com.simpligility.maven.plugins.androidndk.common.DigestHelper;
+import com.simpligility.maven.plugins.androidndk.configuration.HeaderFilesDirective;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.archiver.MavenArchiveConfiguration;
+import org.apache.maven.archiver.MavenArchiver;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.archiver.jar.JarArchiver;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the header archives of an execution to <code>&lt;directory&gt;/&lt;executionId&gt;-&lt;key&gt;.har</code>,
+ * where the key identifies the content of the archive and how it was written.  Architectures selecting the same
+ * headers share one archive, which is kept as long as the headers and the archive mode are unchanged.
+ */
+public class HeaderArchiveWriter
+{
+    private final File directory;
+    private final String executionId;
+    private final boolean reproducible;
+    private final JarArchiver jarArchiver;
+    private final MavenProject project;
+    private final Log log;
+
+    /**
+     * Header archives created or reused by this execution, by their key.
+     */
+    private final Map<String, File> headerArchives = new HashMap<String, File>();
+
+    /**
+     * @param directory    Directory the archives are written to
+     * @param executionId  Id of the execution the archives belong to
+     * @param reproducible Whether to write reproducible archives, or use the Maven archiver
+     * @param jarArchiver  Archiver used if the archives are not reproducible
+     * @param project      Project the archives are created for
+     * @param log          Log to write output to
+     */
+    public HeaderArchiveWriter( final File directory, final String executionId, final boolean reproducible, final JarArchiver jarArchiver,
+                                final MavenProject project, final Log log )
+    {
+        this.directory = directory;
+        this.executionId = executionId;
+        this.reproducible = reproducible;
+        this.jarArchiver = jarArchiver;
+        this.project = project;
+        this.log = log;
+    }
+
+    /**
+     * Returns the archive of the headers selected by the directives, writing it unless an archive with the same
+     * content exists.
+     */
+    public File getArchive( final List<HeaderFilesDirective> headerFilesDirectives ) throws Exception
+    {
+        final HeaderArchiveContent headerArchiveContent = HeaderArchiveContent.scan( headerFilesDirectives );
+        final String key = getKey( headerArchiveContent );
+        final File jarFile = new File( directory, executionId + "-" + key + ".har" );
+
+        if ( headerArchives.containsKey( key ) || jarFile.isFile() )
+        {
+            log.debug( "Reusing header archive " + jarFile + " holding " + headerArchiveContent.getFileCount() + " unchanged header files" );
+        }
+        else
+        {
+            writeArchive( headerFilesDirectives, headerArchiveContent, jarFile );
+        }
+        headerArchives.put( key, jarFile );
+        return jarFile;
+    }
+
+    /**
+     * @return The key of the content for reproducible archives, which the header archive cache derives from the
+     * archive as well.  Archives of the Maven archiver hold the same headers but differ otherwise, so their key is
+     * derived from the key of the content, at the same length.
+     */
+    private String getKey( final HeaderArchiveContent headerArchiveContent )
+    {
+        return reproducible ? headerArchiveContent.getKey() : DigestHelper.sha1( "maven-archiver:" + headerArchiveContent.getKey() );
+    }
+
+    private void writeArchive( final List<HeaderFilesDirective> headerFilesDirectives, final HeaderArchiveContent headerArchiveContent,
+                               final File jarFile ) throws Exception
+    {
+        // Written next to the final file and moved into place, so an interrupted build never leaves a partial archive
+        jarFile.getParentFile().mkdirs();
+        final File temporaryFile = File.createTempFile( "tmp", ".har", jarFile.getParentFile() );
+        try
+        {
+            if ( reproducible )
+            {
+                headerArchiveContent.writeArchive( temporaryFile );
+            }
+            else
+            {
+                MavenArchiver mavenArchiver = new MavenArchiver();
+                mavenArchiver.setArchiver( jarArchiver );
+
+                mavenArchiver.setOutputFile( temporaryFile );
+
+                for ( HeaderFilesDirective headerFilesDirective : headerFilesDirectives )
+                {
+                    mavenArchiver.getArchiver().addDirectory( new File( headerFilesDirective.getDirectory() ), headerFilesDirective.getIncludes(),
+                            headerFilesDirective.getExcludes() );
+                }
+
+                final MavenArchiveConfiguration mavenArchiveConfiguration = new MavenArchiveConfiguration();
+                mavenArchiveConfiguration.setAddMavenDescriptor( false );
+
+                mavenArchiver.createArchive( project, mavenArchiveConfiguration );
+            }
+
+            Files.move( temporaryFile.toPath(), jarFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            removeStaleArchives( jarFile );
+        }
+        finally
+        {
+            FileUtils.deleteQuietly( temporaryFile );
+        }
+    }
+
+    /**
+     * Removes the header archives of earlier builds of this execution, keeping those used by the current build.
+     */
+    private void removeStaleArchives( final File jarFile )
+    {
+        final String prefix = executionId + "-";
+        final int length = jarFile.getName().length();
+        final File[] files = jarFile.getParentFile().listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        for ( File file : files )
+        {
+            final String name = file.getName();
+            if ( name.startsWith( prefix ) && name.endsWith( ".har" ) && name.length() == length
+                    && !file.equals( jarFile ) && !headerArchives.containsValue( file ) )
+            {
+                log.debug( "Removing stale header archive " + file );
+                FileUtils.deleteQuietly( file );
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>LOCAL_</code> variables of the modules defined by the native build, as captured by the generated makefile.
+ * <p/>
+ * The generated makefile writes one line per architecture, module and variable to the capture file, in the form
+ * <code>architecture|module|LOCAL_VARIABLE=value</code>.
+ *
+ * @see MakefileHelper#MAKEFILE_CAPTURE_FILE
+ */
+public class MakefileCapture
+{
+    /**
+     * The variables captured for each module, without their <code>LOCAL_</code> prefix.
+     */
+    static final String[] CAPTURED_VARIABLES = {
+            "PATH", "MODULE_FILENAME", "MODULE_CLASS", "SRC_FILES", "C_INCLUDES", "CFLAGS",
+            "SHARED_LIBRARIES", "STATIC_LIBRARIES", "EXPORT_C_INCLUDES"
+    };
+
+    private static final char SEPARATOR = '|';
+
+    /**
+     * Architecture -> module -> variable -> value, in the order they were captured.
+     */
+    private final Map<String, Map<String, Map<String, String>>> architectures = new LinkedHashMap<String, Map<String, Map<String, String>>>();
+
+    /**
+     * Reads the specified capture file.  A missing file results in an empty capture.
+     */
+    public static MakefileCapture read( final File captureFile ) throws IOException
+    {
+        final MakefileCapture makefileCapture = new MakefileCapture();
+        if ( captureFile.isFile() )
+        {
+            for ( String line : FileUtils.readLines( captureFile, "UTF-8" ) )
+            {
+                makefileCapture.parseLine( line.trim() );
+            }
+        }
+        return makefileCapture;
+    }
+
+    void parseLine( final String line )
+    {
+        final int architectureEnd = line.indexOf( SEPARATOR );
+        final int moduleEnd = architectureEnd == -1 ? -1 : line.indexOf( SEPARATOR, architectureEnd + 1 );
+        final int valueStart = moduleEnd == -1 ? -1 : line.indexOf( '=', moduleEnd + 1 );
+        if ( valueStart == -1 )
+        {
+            return;
+        }
+
+        final String architecture = line.substring( 0, architectureEnd );
+        final String module = line.substring( architectureEnd + 1, moduleEnd );
+        final String variable = line.substring( moduleEnd + 1, valueStart );
+        final String value = line.substring( valueStart + 1 ).trim();
+
+        Map<String, Map<String, String>> modules = architectures.get( architecture );
+        if ( modules == null )
+        {
+            modules = new LinkedHashMap<String, Map<String, String>>();
+            architectures.put( architecture, modules );
+        }
+        Map<String, String> variables = modules.get( module );
+        if ( variables == null )
+        {
+            variables = new LinkedHashMap<String, String>();
+            modules.put( module, variables );
+        }
+        variables.put( variable, value );
+    }
+
+    /**
+     * @return The modules captured for the specified architecture, in the order they were defined.
+     */
+    public List<String> getModules( final String architecture )
+    {
+        final Map<String, Map<String, String>> modules = architectures.get( architecture );
+        if ( modules == null )
+        {
+            return Collections.emptyList();
+        }
+        return new ArrayList<String>( modules.keySet() );
+    }
+
+    /**
+     * @param architecture The architecture the module was built for
+     * @param module       The name of the module
+     * @param variable     The name of the variable, including the <code>LOCAL_</code> prefix
+     * @return The captured value, or null if the variable was not captured for the module
+     */
+    public String getVariable( final String architecture, final String module, final String variable )
+    {
+        final Map<String, Map<String, String>> modules = architectures.get( architecture );
+        if ( modules == null || !modules.containsKey( module ) )
+        {
+            return null;
+        }
+        return modules.get( module ).get( variable );
+    }
+
+    /**
+     * Returns the value of a variable for the module with the specified name, or the last module captured for the
+     * architecture if there is no such module.
+     *
+     * @see #getVariable(String, String, String)
+     */
+    public String getModuleVariable( final String architecture, final String preferredModule, final String variable )
+    {
+        final List<String> modules = getModules( architecture );
+        if ( modules.isEmpty() )
+        {
+            return null;
+        }
+        final String module = modules.contains( preferredModule ) ? preferredModule : modules.get( modules.size() - 1 );
+        return getVariable( architecture, module, variable );
+    }
+}
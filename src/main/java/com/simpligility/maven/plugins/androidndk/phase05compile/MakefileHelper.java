@@ -2,8 +2,9 @@ package com.simpligility.maven.plugins.androidndk.phase05compile;
 
 import com.simpligility.maven.plugins.androidndk.common.AndroidExtension;
 import com.simpligility.maven.plugins.androidndk.common.ArtifactResolverHelper;
+import com.simpligility.maven.plugins.androidndk.common.BuildTimer;
 import com.simpligility.maven.plugins.androidndk.common.Const;
-import com.simpligility.maven.plugins.androidndk.common.JarHelper;
+import com.simpligility.maven.plugins.androidndk.common.HeaderArchiveCache;
 import com.simpligility.maven.plugins.androidndk.common.MavenToPlexusLogAdapter;
 import com.simpligility.maven.plugins.androidndk.common.NativeHelper;
 import com.simpligility.maven.plugins.androidndk.common.UnpackedLibHelper;
@@ -11,6 +12,7 @@ import com.simpligility.maven.plugins.androidndk.configuration.IgnoreHeaderFiles
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.DefaultArtifact;
 import org.apache.maven.artifact.handler.ArtifactHandler;
@@ -22,11 +24,19 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * Various helper methods for dealing with Android Native makefiles.
@@ -40,9 +50,11 @@ public class MakefileHelper
         Set<Artifact> artifacts;
         String defaultNDKArchitecture;
         boolean useHeaderArchives;
-        boolean leaveTemporaryBuildArtifacts;
         String[] architectures;
         List<IgnoreHeaderFilesArchive> ignoreHeaderFilesArchives;
+        boolean unpackNativeLibrariesOnly;
+        int headerArchiveThreads = 1;
+        BuildTimer buildTimer = new BuildTimer();
     }
 
 
@@ -50,6 +62,7 @@ public class MakefileHelper
     {
         Artifact artifact;
         Artifact harArtifact;
+        File headerArchiveIncludeDirectory;
 
         String architecture;
         String localModule;
@@ -58,36 +71,42 @@ public class MakefileHelper
         String localModuleFileName;
 
         boolean useHeaderArchives;
-        boolean leaveTemporaryBuildArtifacts;
 
-        List<File> includeDirectories;
         MakefileResponse makefileResponse;
     }
 
+    /**
+     * Stable order in which dependencies are added to the makefile.
+     */
+    private static final Comparator<Artifact> ARTIFACT_ORDER = new Comparator<Artifact>()
+    {
+        @Override
+        public int compare( Artifact first, Artifact second )
+        {
+            return getSortKey( first ).compareTo( getSortKey( second ) );
+        }
+
+        private String getSortKey( Artifact artifact )
+        {
+            return artifact.getGroupId () + ":" + artifact.getArtifactId () + ":" + artifact.getType () + ":"
+                    + ( artifact.getClassifier () == null ? "" : artifact.getClassifier () ) + ":" + artifact.getVersion ();
+        }
+    };
+
     public static final String MAKEFILE_CAPTURE_FILE = "ANDROID_MAVEN_PLUGIN_LOCAL_C_INCLUDES_FILE";
     
     /**
-     * Holder for the result of creating a makefile.  This in particular keep tracks of all directories created
-     * for extracted header files.
+     * Holder for the result of creating a makefile.
      */
     public static class MakefileResponse
     {
-        final boolean leaveTemporaryBuildArtifacts;
         final StringBuilder makeFile;
-        final List<File> includeDirectories;
-        private Set<String> staticLibraryList = new HashSet<String> (  );
-        private Set<String> sharedLibraryList = new HashSet<String> (  );
+        private Set<String> staticLibraryList = new LinkedHashSet<String> (  );
+        private Set<String> sharedLibraryList = new LinkedHashSet<String> (  );
 
-        public MakefileResponse ( List<File> includeDirectories, StringBuilder makeFile, boolean leaveTemporaryBuildArtifacts )
+        public MakefileResponse ( StringBuilder makeFile )
         {
-            this.includeDirectories = includeDirectories;
             this.makeFile = makeFile;
-            this.leaveTemporaryBuildArtifacts = leaveTemporaryBuildArtifacts;
-        }
-
-        public List<File> getIncludeDirectories()
-        {
-            return includeDirectories;
         }
 
         public String getMakeFile()
@@ -95,11 +114,6 @@ public class MakefileHelper
             return makeFile.toString ();
         }
 
-        public boolean isLeaveTemporaryBuildArtifacts()
-        {
-            return leaveTemporaryBuildArtifacts;
-        }
-
         public boolean hasStaticLibraryDepdendencies ()
         {
             return !staticLibraryList.isEmpty ();
@@ -148,8 +162,10 @@ public class MakefileHelper
     private final Log log;
     private final ArtifactResolverHelper artifactResolverHelper;
     private final ArtifactHandler harArtifactHandler;
-    private final File unpackedApkLibsDirectory;
+    private final UnpackedLibHelper unpackedLibHelper;
     private final File ndkBuildDirectory;
+    private final HeaderArchiveCache headerArchiveCache;
+    private BuildTimer buildTimer = new BuildTimer();
 
     /**
      * Initialize the MakefileHelper by storing the supplied parameters to local variables.
@@ -157,45 +173,21 @@ public class MakefileHelper
      * @param artifactResolverHelper    ArtifactResolverHelper to use to resolve the artifacts.
      * @param harHandler                ArtifactHandler for har files.
      * @param unpackedApkLibsDirectory  Folder in which apklibs are unpacked.
+     * @param headerArchiveCache        Cache in which header archives are extracted.
      */
     public MakefileHelper( final MavenProject project, final Log log, final ArtifactResolverHelper artifactResolverHelper,
-                           final ArtifactHandler harHandler, final File unpackedApkLibsDirectory, final File ndkBuildDirectory )
+                           final ArtifactHandler harHandler, final File unpackedApkLibsDirectory, final File ndkBuildDirectory,
+                           final HeaderArchiveCache headerArchiveCache )
     {
         this.project = project;
         this.log = log;
         this.artifactResolverHelper = artifactResolverHelper;
         this.harArtifactHandler = harHandler;
-        this.unpackedApkLibsDirectory = unpackedApkLibsDirectory;
+        this.unpackedLibHelper = new UnpackedLibHelper ( artifactResolverHelper, project, new MavenToPlexusLogAdapter ( log ), unpackedApkLibsDirectory );
         this.ndkBuildDirectory = ndkBuildDirectory;
+        this.headerArchiveCache = headerArchiveCache;
     }
     
-    /**
-     * Cleans up all include directories created in the temp directory during the build.
-     *
-     * @param makefileResponse The holder produced by the
-     * {@link MakefileHelper#createMakefileFromArtifacts(Set, String, String, boolean)}
-     */
-    public static void cleanupAfterBuild( final MakefileResponse makefileResponse )
-    {
-        if ( !makefileResponse.isLeaveTemporaryBuildArtifacts() )
-        {
-            if ( makefileResponse.getIncludeDirectories() != null )
-            {
-                for ( File file : makefileResponse.getIncludeDirectories() )
-                {
-                    try
-                    {
-                        FileUtils.deleteDirectory( file );
-                    }
-                    catch ( IOException e )
-                    {
-                        e.printStackTrace();
-                    }
-                }
-            }
-        }
-    }
-
     /**
      * Creates an Android Makefile based on the specified set of static library dependency artifacts.
      *
@@ -207,34 +199,22 @@ public class MakefileHelper
     public MakefileResponse createMakefileFromArtifacts ( MakefileRequest makefileRequest )
             throws IOException, MojoExecutionException
     {
-        final List<File> includeDirectories = new ArrayList<File>();
         final StringBuilder makeFile = new StringBuilder( "# Generated by Android Maven Plugin\n" );
 
-        final MakefileResponse makefileResponse = new MakefileResponse ( includeDirectories, makeFile, makefileRequest.leaveTemporaryBuildArtifacts );
+        final MakefileResponse makefileResponse = new MakefileResponse ( makeFile );
 
-        final Set<Artifact> artifacts = makefileRequest.artifacts;
+        // Sorted so the generated makefile only changes when the dependencies do
+        final List<Artifact> artifacts = new ArrayList<Artifact> ( makefileRequest.artifacts );
+        Collections.sort ( artifacts, ARTIFACT_ORDER );
+
+        unpackedLibHelper.setNativeLibrariesOnly ( makefileRequest.unpackNativeLibrariesOnly );
+        buildTimer = makefileRequest.buildTimer;
 
         // Add now output - allows us to somewhat intelligently determine the include paths to use for the header
         // archive
-        makeFile.append( "$(shell echo \"LOCAL_C_INCLUDES=$(LOCAL_C_INCLUDES)\" > $(" + MAKEFILE_CAPTURE_FILE + "))" );
-        makeFile.append( '\n' );
-        makeFile.append( "$(shell echo \"LOCAL_PATH=$(LOCAL_PATH)\" >> $(" + MAKEFILE_CAPTURE_FILE + "))" );
-        makeFile.append( '\n' );
-        makeFile.append( "$(shell echo \"LOCAL_MODULE=$(LOCAL_MODULE)\" >> $(" + MAKEFILE_CAPTURE_FILE + "))" );
-        makeFile.append( '\n' );
-        makeFile.append( "$(shell echo \"LOCAL_MODULE_FILENAME=$(LOCAL_MODULE_FILENAME)\" >> $("
-                + MAKEFILE_CAPTURE_FILE + "))" );
-        makeFile.append( '\n' );
-        makeFile.append( "$(shell echo \"LOCAL_CFLAGS=$(LOCAL_CFLAGS)\" >> $(" + MAKEFILE_CAPTURE_FILE + "))" );
-        makeFile.append( '\n' );
-        makeFile.append( "$(shell echo \"LOCAL_SHARED_LIBRARIES=$(LOCAL_SHARED_LIBRARIES)\" >> $(" + MAKEFILE_CAPTURE_FILE + "))" );
-        makeFile.append( '\n' );
-        makeFile.append( "$(shell echo \"LOCAL_STATIC_LIBRARIES=$(LOCAL_STATIC_LIBRARIES)\" >> $(" + MAKEFILE_CAPTURE_FILE + "))" );
-        makeFile.append( '\n' );
-        makeFile.append( "$(shell echo \"LOCAL_EXPORT_C_INCLUDES=$(LOCAL_EXPORT_C_INCLUDES)\" >> $(" + MAKEFILE_CAPTURE_FILE + "))" );
-        makeFile.append( '\n' );
-        makeFile.append( "$(shell echo \"LOCAL_SRC_FILES=$(LOCAL_SRC_FILES)\" >> $(" + MAKEFILE_CAPTURE_FILE + "))" );
-        makeFile.append( '\n' );
+        appendVariableCapture ( makeFile );
+
+        final Map<Artifact, File> headerArchiveIncludeDirectories = prepareHeaderArchives ( artifacts, makefileRequest );
 
         if ( ! artifacts.isEmpty() )
         {
@@ -255,13 +235,8 @@ public class MakefileHelper
                     libraryDetails.libraryPath = artifact.getFile ();
 
                     libraryDetails.useHeaderArchives = useHeaderArchives( artifact, makefileRequest.useHeaderArchives, makefileRequest.ignoreHeaderFilesArchives );
-                    libraryDetails.leaveTemporaryBuildArtifacts = makefileRequest.leaveTemporaryBuildArtifacts;
-
-                    libraryDetails.includeDirectories = includeDirectories;
 
-                    libraryDetails.harArtifact = new DefaultArtifact ( artifact.getGroupId (), artifact.getArtifactId (),
-                                          artifact.getVersion (), artifact.getScope (),
-                                          Const.ArtifactType.NATIVE_HEADER_ARCHIVE, artifact.getClassifier (), harArtifactHandler );
+                    libraryDetails.headerArchiveIncludeDirectory = headerArchiveIncludeDirectories.get ( artifact );
 
                     addLocalModule( libraryDetails );
                 }
@@ -272,11 +247,6 @@ public class MakefileHelper
                     libraryDetails.makefileResponse = makefileResponse;
                     libraryDetails.artifact = artifact;
                     libraryDetails.useHeaderArchives = makefileRequest.useHeaderArchives;
-                    libraryDetails.leaveTemporaryBuildArtifacts = makefileRequest.leaveTemporaryBuildArtifacts;
-
-                    // Collect added include directorie
-                    libraryDetails.includeDirectories = includeDirectories;
-
 
                     addLibraryBundleDetails ( libraryDetails, makefileRequest.architectures );
                 }
@@ -285,6 +255,145 @@ public class MakefileHelper
         return makefileResponse;
     }
 
+    /**
+     * Resolves and extracts the header archives of all native libraries that use one, up front and concurrently
+     * using <code>headerArchiveThreads</code> workers.  Each worker extracts its archive as soon as it is resolved.
+     * All archives are attempted, and all failures are reported together.
+     *
+     * @return Native library artifact -> directory holding the extracted headers
+     */
+    private Map<Artifact, File> prepareHeaderArchives ( final List<Artifact> artifacts, final MakefileRequest makefileRequest )
+            throws MojoExecutionException
+    {
+        final List<Artifact> libraryArtifacts = new ArrayList<Artifact> ();
+        final List<Callable<File>> preparations = new ArrayList<Callable<File>> ();
+        for ( final Artifact artifact : artifacts )
+        {
+            if ( !isLibraryBundle ( artifact ) && useHeaderArchives ( artifact, makefileRequest.useHeaderArchives, makefileRequest.ignoreHeaderFilesArchives ) )
+            {
+                final Artifact harArtifact = new DefaultArtifact ( artifact.getGroupId (), artifact.getArtifactId (),
+                        artifact.getVersion (), artifact.getScope (),
+                        Const.ArtifactType.NATIVE_HEADER_ARCHIVE, artifact.getClassifier (), harArtifactHandler );
+                libraryArtifacts.add ( artifact );
+                preparations.add ( new Callable<File> ()
+                {
+                    @Override
+                    public File call () throws MojoExecutionException, IOException
+                    {
+                        return prepareHeaderArchive ( artifact, harArtifact );
+                    }
+                } );
+            }
+        }
+
+        final Map<Artifact, File> includeDirectories = new HashMap<Artifact, File> ();
+        final List<String> failures = new ArrayList<String> ();
+        Throwable firstFailure = null;
+        final int threads = Math.min ( makefileRequest.headerArchiveThreads, preparations.size () );
+        final ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool ( threads ) : null;
+        try
+        {
+            final List<Future<File>> futures = new ArrayList<Future<File>> ();
+            for ( Callable<File> preparation : preparations )
+            {
+                if ( executor != null )
+                {
+                    futures.add ( executor.submit ( preparation ) );
+                }
+                else
+                {
+                    final FutureTask<File> task = new FutureTask<File> ( preparation );
+                    task.run ();
+                    futures.add ( task );
+                }
+            }
+
+            for ( int i = 0; i < futures.size (); i++ )
+            {
+                try
+                {
+                    includeDirectories.put ( libraryArtifacts.get ( i ), futures.get ( i ).get () );
+                }
+                catch ( ExecutionException e )
+                {
+                    firstFailure = firstFailure == null ? e.getCause () : firstFailure;
+                    failures.add ( libraryArtifacts.get ( i ).getId () + ": " + e.getCause ().getMessage () );
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread ().interrupt ();
+            throw new MojoExecutionException ( "Interrupted while preparing header archives", e );
+        }
+        finally
+        {
+            if ( executor != null )
+            {
+                executor.shutdownNow ();
+            }
+        }
+
+        if ( !failures.isEmpty () )
+        {
+            throw new MojoExecutionException ( "Error while resolving header archive files for " + failures.size () + " of " + preparations.size ()
+                    + " artifacts:\n  - " + StringUtils.join ( failures, "\n  - " ), firstFailure );
+        }
+        return includeDirectories;
+    }
+
+    private File prepareHeaderArchive ( final Artifact artifact, final Artifact harArtifact ) throws MojoExecutionException, IOException
+    {
+        final BuildTimer.Timing resolveTiming = buildTimer.start ( "resolve-header-archive", harArtifact.getId () );
+        final File harFile;
+        try
+        {
+            harFile = artifactResolverHelper.resolveArtifactToFile ( harArtifact );
+        }
+        finally
+        {
+            resolveTiming.stop ();
+        }
+        log.debug ( "Resolved har artifact file : " + harFile );
+
+        final BuildTimer.Timing extractTiming = buildTimer.start ( "extract-header-archive", artifact.getId () );
+        try
+        {
+            return headerArchiveCache.getIncludeDirectory ( harFile );
+        }
+        finally
+        {
+            extractTiming.stop ();
+        }
+    }
+
+    /**
+     * Appends the statements capturing the <code>LOCAL_</code> variables of each module defined so far into the
+     * capture file, one line per architecture, module and variable (see {@link MakefileCapture}).  The modules are
+     * taken from the NDK's module database, falling back to the current <code>LOCAL_</code> values.  On make 4 and
+     * above the lines are written with <code>$(file)</code>, otherwise a single shell is spawned for all of them.
+     */
+    private void appendVariableCapture ( final StringBuilder makeFile )
+    {
+        final String captureLines = "$(foreach __amp_module,$(ANDROID_MAVEN_PLUGIN_CAPTURE_MODULES),"
+                + "$(foreach __amp_variable,$(ANDROID_MAVEN_PLUGIN_CAPTURE_VARIABLES),%s))";
+
+        makeFile.append ( "ANDROID_MAVEN_PLUGIN_CAPTURE_VARIABLES := " );
+        makeFile.append ( StringUtils.join ( MakefileCapture.CAPTURED_VARIABLES, ' ' ) );
+        makeFile.append ( '\n' );
+        makeFile.append ( "ANDROID_MAVEN_PLUGIN_CAPTURE_MODULES := $(if $(strip $(__ndk_modules)),$(__ndk_modules),$(LOCAL_MODULE))\n" );
+        makeFile.append ( "android-maven-plugin-capture-value = $(strip $(if $(strip $(__ndk_modules)),$(__ndk_modules.$1.$2),$(LOCAL_$2)))\n" );
+        makeFile.append ( "android-maven-plugin-capture-line = $(TARGET_ARCH_ABI)|$1|LOCAL_$2=$(call android-maven-plugin-capture-value,$1,$2)\n" );
+        makeFile.append ( "ifeq ($(firstword $(sort $(MAKE_VERSION) 4)),4)\n" );
+        makeFile.append ( String.format ( captureLines, "$(file >>$(" + MAKEFILE_CAPTURE_FILE + "),"
+                + "$(call android-maven-plugin-capture-line,$(__amp_module),$(__amp_variable)))" ) );
+        makeFile.append ( "\nelse\n" );
+        makeFile.append ( "$(shell printf '%s\\n' " );
+        makeFile.append ( String.format ( captureLines, "'$(subst ','\\'',$(call android-maven-plugin-capture-line,$(__amp_module),$(__amp_variable)))'" ) );
+        makeFile.append ( " >> '$(" + MAKEFILE_CAPTURE_FILE + ")')" );
+        makeFile.append ( "\nendif\n" );
+    }
+
     private boolean useHeaderArchives ( final Artifact artifact, final boolean useHeaderArchives, final List<IgnoreHeaderFilesArchive> ignoreHeaderFilesArchives )
     {
         if ( !useHeaderArchives )
@@ -353,28 +462,13 @@ public class MakefileHelper
             {
                 final String classifier = artifact.getClassifier ();
 
-                File resolvedHarArtifactFile = artifactResolverHelper.resolveArtifactToFile ( libraryDetails.harArtifact );
-                log.debug ( "Resolved har artifact file : " + resolvedHarArtifactFile );
-
-                final File includeDir = new File ( ndkBuildDirectory, "android_maven_plugin_native_includes" + System.currentTimeMillis () + "_"
-                        + libraryDetails.harArtifact.getArtifactId () );
-
-                if ( !libraryDetails.leaveTemporaryBuildArtifacts )
+                // Header archives of native libraries were prepared up front, those of bundled libraries are not
+                File includeDir = libraryDetails.headerArchiveIncludeDirectory;
+                if ( includeDir == null )
                 {
-                    includeDir.deleteOnExit ();
+                    includeDir = prepareHeaderArchive ( artifact, libraryDetails.harArtifact );
                 }
-
-                libraryDetails.includeDirectories.add ( includeDir );
-
-                JarHelper.unjar ( new JarFile ( resolvedHarArtifactFile ), includeDir,
-                        new JarHelper.UnjarListener ()
-                        {
-                            @Override
-                            public boolean include ( JarEntry jarEntry )
-                            {
-                                return !jarEntry.getName ().startsWith ( "META-INF" );
-                            }
-                        } );
+                log.debug ( "Using header archive include directory : " + includeDir );
 
                 makeFile.append ( "LOCAL_EXPORT_C_INCLUDES := " );
                 makeFile.append ( includeDir.getAbsolutePath () );
@@ -421,8 +515,8 @@ public class MakefileHelper
         // Also, from the list of architectures in the
 
         // So, extract the artifact, if need be
-        UnpackedLibHelper unpackedLibHelper = new UnpackedLibHelper ( artifactResolverHelper, project, new MavenToPlexusLogAdapter ( log ), unpackedApkLibsDirectory );
 
+        final BuildTimer.Timing unpackTiming = buildTimer.start ( "unpack-library", artifact.getId () );
         if ( artifact.getType ().equals ( AndroidExtension.AAR ) )
         {
             unpackedLibHelper.extractAarLib ( artifact );
@@ -431,6 +525,7 @@ public class MakefileHelper
         {
             unpackedLibHelper.extractApklib ( artifact );
         }
+        unpackTiming.stop ();
 
         for ( int i = 0; i < architectures.length; i++ )
         {
@@ -15,20 +15,35 @@ package com.simpligility.maven.plugins.androidndk.phase05compile;
 
 import com.simpligility.maven.plugins.androidndk.AndroidNdk;
 import com.simpligility.maven.plugins.androidndk.CommandExecutor;
+import com.simpligility.maven.plugins.androidndk.ExecutionException;
+import com.simpligility.maven.plugins.androidndk.NdkIndex;
+import com.simpligility.maven.plugins.androidndk.PluginInfo;
+import com.simpligility.maven.plugins.androidndk.common.AndroidExtension;
+import com.simpligility.maven.plugins.androidndk.common.ArtifactResolutionCache;
 import com.simpligility.maven.plugins.androidndk.common.ArtifactResolverHelper;
+import com.simpligility.maven.plugins.androidndk.common.BuildCapacity;
+import com.simpligility.maven.plugins.androidndk.common.BuildTimer;
 import com.simpligility.maven.plugins.androidndk.common.Const;
+import com.simpligility.maven.plugins.androidndk.common.DigestHelper;
+import com.simpligility.maven.plugins.androidndk.common.FileHelper;
+import com.simpligility.maven.plugins.androidndk.common.HeaderArchiveCache;
+import com.simpligility.maven.plugins.androidndk.common.JobSlots;
 import com.simpligility.maven.plugins.androidndk.common.MavenToPlexusLogAdapter;
 import com.simpligility.maven.plugins.androidndk.common.NativeHelper;
+import com.simpligility.maven.plugins.androidndk.common.SessionRegistry;
 import com.simpligility.maven.plugins.androidndk.configuration.AdditionallyBuiltModule;
 import com.simpligility.maven.plugins.androidndk.configuration.HeaderFilesDirective;
 import com.simpligility.maven.plugins.androidndk.configuration.ArchitectureToolchainMappings;
+import com.simpligility.maven.plugins.androidndk.configuration.CompilerCache;
 import com.simpligility.maven.plugins.androidndk.configuration.IgnoreHeaderFilesArchive;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.maven.archiver.MavenArchiveConfiguration;
-import org.apache.maven.archiver.MavenArchiver;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.handler.ArtifactHandler;
 import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -40,21 +55,22 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectHelper;
 import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
 import org.codehaus.plexus.archiver.jar.JarArchiver;
-import org.codehaus.plexus.util.IOUtil;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedHashSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
 
 /**
@@ -68,6 +84,8 @@ public class NdkBuildMojo extends AbstractMojo
      */
     public static final String ENV_ANDROID_NDK_HOME = "ANDROID_NDK_HOME";
 
+    private static final long MEGABYTE = 1024L * 1024;
+
     /**
      * <p>Parameter designed to pick up <code>-Dandroid.ndk.ndkPath</code> in case there is no pom with an
      * <code>&lt;ndk&gt;</code> configuration tag.</p>
@@ -122,6 +140,14 @@ public class NdkBuildMojo extends AbstractMojo
     @Parameter( property = "unpackedLibsFolder", defaultValue = "${project.build.directory}/unpacked-libs" )
     private File unpackedLibsFolder;
 
+    /**
+     * Flag indicating whether only the native library folders (<code>jni/</code> and <code>libs/</code>) of AAR and
+     * APKLIB dependencies should be extracted to the <code>unpackedLibsFolder</code>, instead of the complete archive.
+     * Extraction is skipped altogether for dependencies that are already extracted and unchanged.
+     */
+    @Parameter( property = "android.ndk.unpackNativeLibrariesOnly", defaultValue = "false" )
+    private Boolean unpackNativeLibrariesOnly;
+
     /**
      * <p>Target to invoke on the native makefile.</p>
      */
@@ -146,11 +172,30 @@ public class NdkBuildMojo extends AbstractMojo
 
     /**
      * Flag indicating whether the header files used in the build should be included and attached to the build as
-     * an additional artifact.
+     * an additional artifact.  Architectures including the same header files share a single archive, which is only
+     * rewritten when the included header files change.  No header archive is created for <code>apk</code> projects,
+     * since nothing can depend on their headers.
      */
     @Parameter( property = "android.ndk.attachHeaderFiles", defaultValue = "true" )
     private Boolean attachHeaderFiles;
 
+    /**
+     * Flag indicating whether header archives are built reproducibly: entries sorted by name, fixed timestamps, a
+     * normalized manifest and an index entry listing the checksum of each header.  The same headers then always
+     * give the same archive, and consumers can validate a previous extraction by reading the index only.
+     */
+    @Parameter( property = "android.ndk.reproducibleHeaderArchives", defaultValue = "true" )
+    private Boolean reproducibleHeaderArchives;
+
+    /**
+     * Flag indicating whether the complete output of ndk-build should be written to a log file in the
+     * <code>buildDirectory</code> (<code>ndk-build.log</code>, or <code>ndk-build-&lt;architecture&gt;.log</code>
+     * for parallel architecture builds).  The output is streamed to the file, so verbose builds do not need
+     * additional memory.
+     */
+    @Parameter( property = "android.ndk.writeBuildLog", defaultValue = "false" )
+    private Boolean writeBuildLog;
+
     /**
      * Flag indicating whether the final artifacts should be included and attached to the build as an artifact.
      */
@@ -164,7 +209,8 @@ public class NdkBuildMojo extends AbstractMojo
     private Boolean leaveTemporaryBuildArtifacts;
 
     /**
-     * Flag indicating whether the make files last LOCAL_SRC_INCLUDES should be used for determining what header
+     * Flag indicating whether the LOCAL_C_INCLUDES of the module building the final library (or, if there is no
+     * module of that name, the last module defined by the make file) should be used for determining what header
      * files to include.  Setting this flag to true, overrides any defined header files directives.
      * <strong>Note: </strong> By setting this flag to true, all header files used in the project will be
      * added to the resulting header archive.  This may be undesirable in most cases and is therefore turned off by
@@ -215,6 +261,30 @@ public class NdkBuildMojo extends AbstractMojo
     @Parameter( property = "android.ndk.build.use-header-archive", defaultValue = "true" )
     private Boolean useHeaderArchives;
 
+    /**
+     * Directory in which header archives of dependencies are extracted.  Each archive is extracted once into a
+     * directory named after its checksum and reused by later builds, so the include paths passed to ndk-build stay
+     * stable.  Point this to a shared location (for example below <code>${user.home}</code>) to share the
+     * extracted headers between projects.
+     */
+    @Parameter( property = "android.ndk.headerArchiveCacheDirectory", defaultValue = "${project.build.directory}/android-ndk-maven-plugin/header-archives" )
+    private File headerArchiveCacheDirectory;
+
+    /**
+     * Maximum number of extracted header archives kept in the <code>headerArchiveCacheDirectory</code>.  The least
+     * recently used extractions are removed once this number is exceeded.  A value of 0 disables eviction.
+     */
+    @Parameter( property = "android.ndk.headerArchiveCacheMaxEntries", defaultValue = "64" )
+    private int headerArchiveCacheMaxEntries;
+
+    /**
+     * Number of artifacts, native libraries and their header archives, resolved concurrently.  Header archives are
+     * extracted by the same workers as soon as they are resolved.  All artifacts are attempted even if some of them
+     * fail, and the failures are reported together.  A value of 1 resolves one artifact after the other.
+     */
+    @Parameter( property = "android.ndk.resolutionThreads", defaultValue = "4" )
+    private int resolutionThreads;
+
     /** Specifies a set of group/artifact identifiers for which header archives should not be attempted to be resolved.
      * This is useful when a static library dependcy on other static libraries but the headers of those libraries are not necessarily
      * available.  This allows the plugin to exclude the retrieval of those header archives
@@ -261,10 +331,10 @@ public class NdkBuildMojo extends AbstractMojo
      * Defines the regular expression used to detect whether error/warning output from ndk-build is a minor compile
      * warning or is actually an error which should cause the build to fail.
      * <p/>
-     * If the pattern matches, the output from the compiler will <strong>not</strong> be considered an error and compile
-     * will be successful.
+     * Only error diagnostics of the compiler are considered errors.  If the pattern matches one, it will
+     * <strong>not</strong> be considered an error and compile will be successful.
      */
-    @Parameter( property = "android.ndk.buildWarningsRegularExpression", defaultValue = ".*[warning|note]: .*" )
+    @Parameter( property = "android.ndk.buildWarningsRegularExpression", defaultValue = ".*(warning|note): .*" )
     private String buildWarningsRegularExpression;
 
     /** Specifies the NDK toolchain to use for the build.  This will be using the NDK_TOOLCHAIN define on the ndk-build commandline.
@@ -297,12 +367,128 @@ public class NdkBuildMojo extends AbstractMojo
     @Parameter( property = "android.ndk.maxJobs", defaultValue = "false" )
     private Boolean maxJobs;
 
+    /**
+     * Flag indicating whether the jobs used by <code>maxJobs</code> are derived from the resources actually left to the
+     * build rather than the number of processors: the CPU quota and memory limit of the control group (v1 or v2) of a
+     * container, the available memory and, without a CPU quota, the load average of the host.  The chosen number and
+     * the limit it is based on are logged.
+     */
+    @Parameter( property = "android.ndk.adaptiveJobs", defaultValue = "false" )
+    private boolean adaptiveJobs;
+
+    /**
+     * Memory in megabytes assumed to be used by a single compile job when <code>adaptiveJobs</code> is enabled.
+     */
+    @Parameter( property = "android.ndk.memoryPerJob", defaultValue = "1024" )
+    private int memoryPerJob;
+
+    /**
+     * Number of make jobs shared by all ndk-build invocations of the build, including those of other modules in a
+     * parallel (<code>-T</code>) reactor build.  Every invocation waits for at least one free slot and runs with as
+     * many jobs as it was granted slots, up to the jobs it asked for through <code>maxJobs</code>.  A value of 0 (the
+     * default) uses the number of available processors, a negative value disables the coordination.  The value of the
+     * first execution of the build is used.
+     */
+    @Parameter( property = "android.ndk.jobSlots", defaultValue = "0" )
+    private int jobSlots;
+
+    /**
+     * Flag indicating whether each of the resolved architectures should be built by its own ndk-build invocation.
+     * The invocations are executed concurrently, each using its own <code>NDK_OUT</code> sub directory, its own
+     * makefile capture file and a share of the jobs configured through <code>maxJobs</code>.  The compiled
+     * libraries of an architecture are attached as soon as its build has finished.
+     */
+    @Parameter( property = "android.ndk.parallelArchitectureBuilds", defaultValue = "false" )
+    private Boolean parallelArchitectureBuilds;
+
+    /**
+     * Maximum number of architectures built concurrently when <code>parallelArchitectureBuilds</code> is enabled.
+     * A value of 0 (the default) uses the number of available processors.
+     */
+    @Parameter( property = "android.ndk.maxParallelArchitectureBuilds", defaultValue = "0" )
+    private int maxParallelArchitectureBuilds;
+
+    /**
+     * Directory of a content addressed store of compiled objects, shared by all builds pointing to it.  Objects
+     * missing from the objects output directory whose sources, headers and build configuration match a stored object
+     * are restored before ndk-build runs, and the objects of a successful build are added to the store afterwards.
+     * Works with any toolchain, independent of a compiler cache.  Defaults to
+     * <code>android-ndk-maven-plugin/object-cache</code> next to the local repository, outside of the build directory,
+     * so the objects survive a clean and a build after <code>mvn clean</code> only compiles what changed.
+     */
+    @Parameter( property = "android.ndk.objectCacheDirectory" )
+    private File objectCacheDirectory;
+
+    /**
+     * Whether compiled objects are stored in and restored from the <code>objectCacheDirectory</code>.
+     */
+    @Parameter( property = "android.ndk.useObjectCache", defaultValue = "true" )
+    private boolean useObjectCache;
+
+    /**
+     * Maximum size of the object store in megabytes.  The least recently used objects are evicted first.  A value of
+     * 0 disables eviction.
+     */
+    @Parameter( property = "android.ndk.objectCacheMaxSize", defaultValue = "2048" )
+    private long objectCacheMaxSize;
+
+    /**
+     * Whether executions other than the default one build into a subdirectory of the objects and libraries output
+     * directories named after the execution, so executions building different variants do not rebuild each others
+     * objects.  Only applies to projects with more than one <code>ndk-build</code> execution, the only execution of a
+     * project always builds into the configured directories.
+     */
+    @Parameter( property = "android.ndk.isolateExecutions", defaultValue = "true" )
+    private boolean isolateExecutions;
+
+    /**
+     * Whether objects are shared between the executions of a project building into their own directories.  Objects
+     * compiled by the same command from the same sources are copied from the shared store instead of compiled again,
+     * so only the objects that differ between the variants are compiled.  Costs one dry run of ndk-build for each
+     * build of an execution whose objects output directory is missing the objects of an architecture, such as the
+     * first build after a clean.
+     */
+    @Parameter( property = "android.ndk.shareObjects", defaultValue = "true" )
+    private boolean shareObjects;
+
+    /**
+     * Directory of the store of objects shared between the executions of the project.  Defaults to the
+     * <code>objectCacheDirectory</code>, so the shared objects survive a clean.
+     */
+    @Parameter( property = "android.ndk.sharedObjectsDirectory" )
+    private File sharedObjectsDirectory;
+
+    /**
+     * Compiler cache (ccache) to use for the native build, for example:
+     * <pre>
+     * &lt;compilerCache&gt;
+     *   &lt;directory&gt;/cache/ccache&lt;/directory&gt;
+     *   &lt;maxSize&gt;5G&lt;/maxSize&gt;
+     * &lt;/compilerCache&gt;
+     * </pre>
+     * The launcher is passed to ndk-build as <code>NDK_CCACHE</code>, together with the cache directory, its maximum
+     * size and a base directory (the root of the build by default), so cache hits survive different checkout
+     * locations.  The cache hits and misses of the build are logged.
+     */
+    @Parameter
+    private CompilerCache compilerCache;
+
     /**
      *
      */
     @Parameter()
     private List<AdditionallyBuiltModule> additionallyBuiltModules;
 
+    /**
+     * Flag indicating whether the native build should be skipped when nothing changed since the previous successful
+     * build.  A fingerprint of the resolved dependencies, the makefiles, the sources below the <code>jni</code>
+     * folder, the header file directives, the ndk-build command line and the plugin configuration is stored after
+     * each build.  When the fingerprint is unchanged and the previous outputs are still in place, those outputs are
+     * attached again without invoking ndk-build.
+     */
+    @Parameter( property = "android.ndk.skipUnchangedBuilds", defaultValue = "false" )
+    private Boolean skipUnchangedBuilds;
+
     /**
      * Flag indicating whether or not the build should be skipped entirely
      */
@@ -330,6 +516,12 @@ public class NdkBuildMojo extends AbstractMojo
     @Parameter( defaultValue = "${project}", readonly = true, required = true )
     protected MavenProject project;
 
+    /**
+     * The maven session.
+     */
+    @Parameter( defaultValue = "${session}", readonly = true, required = true )
+    protected MavenSession session;
+
     /**
      * Maven ProjectHelper.
      */
@@ -347,6 +539,20 @@ public class NdkBuildMojo extends AbstractMojo
 
     private ArtifactResolverHelper artifactResolverHelper;
     private NativeHelper nativeHelper;
+    private Pattern buildWarningsPattern;
+    private BuildTimer buildTimer = new BuildTimer ();
+
+    private HeaderArchiveWriter headerArchiveWriter;
+    private Integer adaptiveJobCount;
+    private AndroidNdk androidNdk;
+
+    private CompilerCacheHelper compilerCacheHelper;
+    private File compilerCacheLauncher;
+
+    /**
+     * Artifacts attached to the project by this execution.
+     */
+    private final List<BuildFingerprint.AttachedArtifact> attachedArtifacts = new ArrayList<BuildFingerprint.AttachedArtifact>();
 
     /**
      * @parameter expression="${mojoExecution}"
@@ -371,20 +577,37 @@ public class NdkBuildMojo extends AbstractMojo
             getLog().warn( "Configured to not attach artifacts, this may cause an error at install/deploy time" );
         }
 
+        try
+        {
+            executeBuild ();
+        }
+        finally
+        {
+            reportTimings ();
+        }
+    }
+
+    private void executeBuild () throws MojoExecutionException
+    {
         // Validate the NDK
-        final File ndkBuildFile = new File( getAndroidNdk().getNdkBuildPath() );
-        NativeHelper.validateNDKVersion( ndkBuildFile.getParentFile() );
+        final BuildTimer.Timing validateTiming = buildTimer.start ( "validate-ndk" );
+        NativeHelper.validateNDKVersion( getAndroidNdk().getIndex() );
 
         validateMakefile( project, makefile );
 
         final String[] resolvedNDKArchitectures = NativeHelper.getNdkArchitectures( architectures, applicationMakefile, project.getBasedir() );
+        validateTiming.stop ();
 
         // Resolve all dependencies
 
-        final Set<Artifact> nativeLibraryArtifacts = findNativeLibraryDependencies();
+        final BuildTimer.Timing dependenciesTiming = buildTimer.start ( "resolve-dependencies" );
+        final Set<Artifact> nativeLibraryArtifacts = getNativeHelper().getNativeLibraryDependencies();
+        dependenciesTiming.stop ();
 
         // If there are any static libraries the code needs to link to, include those in the make file
+        final BuildTimer.Timing artifactsTiming = buildTimer.start ( "resolve-artifacts" );
         final Set<Artifact> resolvedNativeLibraryArtifacts = getArtifactResolverHelper().resolveArtifacts( nativeLibraryArtifacts );
+        artifactsTiming.stop ();
 
         getLog().debug( "resolveArtifacts found " + resolvedNativeLibraryArtifacts.size() + ": " + resolvedNativeLibraryArtifacts.toString() );
 
@@ -394,191 +617,820 @@ public class NdkBuildMojo extends AbstractMojo
 
         setupOutputDirectories( compileCommand );
 
+        if ( skipUnchangedBuilds )
+        {
+            compileIfChanged ( compileCommand );
+        }
+        else
+        {
+            compile ( compileCommand );
+        }
+
+    }
+
+    /**
+     * Logs the time spent in each phase of the build and writes them as JSON report to the build directory.
+     */
+    private void reportTimings ()
+    {
+        buildTimer.logSummary ( getLog (), "ndk-build timings" );
+        final ArtifactResolutionCache resolutionCache = getArtifactResolutionCache ();
+        resolutionCache.logStatistics ( getLog () );
+
+        final File reportFile = new File ( buildDirectory, "ndk-build-timings-" + execution.getExecutionId () + ".json" );
+        final Map<String, String> properties = new LinkedHashMap<String, String> ();
+        properties.put ( "project", project.getId () );
+        properties.put ( "executionId", execution.getExecutionId () );
+        properties.put ( "resolutionCacheHits", String.valueOf ( resolutionCache.getHits () ) );
+        properties.put ( "resolutionCacheMisses", String.valueOf ( resolutionCache.getMisses () ) );
+        try
+        {
+            buildTimer.writeReport ( reportFile, properties );
+        }
+        catch ( IOException e )
+        {
+            getLog ().warn ( "Unable to write timing report " + reportFile + ": " + e.getMessage () );
+        }
+    }
+
+    /**
+     * Runs the build unless the fingerprint of its inputs matches the one recorded by the previous build, in which
+     * case the outputs of the previous build are attached again.
+     */
+    private void compileIfChanged ( final CompileCommand compileCommand ) throws MojoExecutionException
+    {
+        final File fingerprintFile = new File ( buildDirectory, "ndk-build-" + execution.getExecutionId () + ".fingerprint" );
+        final List<BuildFingerprint.AttachedArtifact> previousOutputs = computeBuildFingerprint ( compileCommand ).loadUnchangedOutputs ( fingerprintFile );
+        if ( previousOutputs != null )
+        {
+            getLog ().info ( "Native build is up to date, attaching " + previousOutputs.size () + " outputs of the previous build" );
+            for ( BuildFingerprint.AttachedArtifact previousOutput : previousOutputs )
+            {
+                attachArtifact ( previousOutput.getType (), previousOutput.getClassifier (), previousOutput.getFile () );
+            }
+            return;
+        }
+
+        BuildFingerprint.invalidate ( fingerprintFile );
         compile ( compileCommand );
 
+        // Computed again, as the fingerprint covers the dependency files the build has just written
+        try
+        {
+            computeBuildFingerprint ( compileCommand ).store ( fingerprintFile, attachedArtifacts );
+        }
+        catch ( IOException e )
+        {
+            getLog ().warn ( "Unable to store build fingerprint " + fingerprintFile + ": " + e.getMessage () );
+        }
+    }
+
+    private BuildFingerprint computeBuildFingerprint ( final CompileCommand compileCommand ) throws MojoExecutionException
+    {
+        final BuildTimer.Timing fingerprintTiming = buildTimer.start ( "fingerprint" );
+        try
+        {
+            return createBuildFingerprint ( compileCommand );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException ( "Unable to compute build fingerprint: " + e.getMessage (), e );
+        }
+        finally
+        {
+            fingerprintTiming.stop ();
+        }
+    }
+
+    private BuildFingerprint createBuildFingerprint ( final CompileCommand compileCommand ) throws IOException, MojoExecutionException
+    {
+        final BuildFingerprint fingerprint = new BuildFingerprint ( getLog () );
+
+        fingerprint.addValue ( "plugin", PluginInfo.getGAV () );
+        fingerprint.addValue ( "executionId", execution.getExecutionId () );
+        fingerprint.addValue ( "ndkBuild", resolveNdkBuildExecutable () );
+        fingerprint.addValue ( "ndkRevision", getAndroidNdk ().getIndex ().getRevision () );
+        fingerprint.addValue ( "ndkRelease", getAndroidNdk ().getIndex ().getRelease () );
+        // The number of jobs does not affect the outputs, and varies with adaptiveJobs
+        fingerprint.addValue ( "commandLine", createNdkBuildCommands ( compileCommand, maxJobs ? 1 : 0 ) );
+        fingerprint.addValue ( "parallelArchitectureBuilds", parallelArchitectureBuilds );
+        fingerprint.addValue ( "systemProperties", systemProperties == null ? null : new TreeMap<String, String> ( systemProperties ) );
+        fingerprint.addValue ( "packaging", project.getPackaging () );
+        fingerprint.addValue ( "classifier", classifier );
+        fingerprint.addValue ( "finalLibraryName", finalLibraryName );
+        fingerprint.addValue ( "allowMultiArtifacts", allowMultiArtifacts );
+        fingerprint.addValue ( "attachLibrariesArtifacts", attachLibrariesArtifacts );
+        fingerprint.addValue ( "attachHeaderFiles", attachHeaderFiles );
+        fingerprint.addValue ( "reproducibleHeaderArchives", reproducibleHeaderArchives );
+        fingerprint.addValue ( "useLocalSrcIncludePaths", useLocalSrcIncludePaths );
+        fingerprint.addValue ( "useHeaderArchives", useHeaderArchives );
+
+        if ( ignoreHeaderFilesArchives != null )
+        {
+            for ( IgnoreHeaderFilesArchive ignoreHeaderFilesArchive : ignoreHeaderFilesArchives )
+            {
+                fingerprint.addValue ( "ignoreHeaderFilesArchive", ignoreHeaderFilesArchive.getGroupId () + ":" + ignoreHeaderFilesArchive.getArtifactId () );
+            }
+        }
+        if ( additionallyBuiltModules != null )
+        {
+            for ( AdditionallyBuiltModule additionallyBuiltModule : additionallyBuiltModules )
+            {
+                fingerprint.addValue ( "additionallyBuiltModule", additionallyBuiltModule.getName () + ":" + additionallyBuiltModule.getClassifier () );
+            }
+        }
+        if ( headerFilesDirectives != null )
+        {
+            for ( HeaderFilesDirective headerFilesDirective : headerFilesDirectives )
+            {
+                fingerprint.addValue ( "headerFilesDirective.includes", headerFilesDirective.getIncludes () );
+                fingerprint.addValue ( "headerFilesDirective.excludes", headerFilesDirective.getExcludes () );
+                fingerprint.addDirectory ( "headerFilesDirective", new File ( headerFilesDirective.getDirectory () ) );
+            }
+        }
+
+        for ( Artifact artifact : compileCommand.getNativeLibraryDepedencies () )
+        {
+            fingerprint.addValue ( "dependency", artifact.getId () );
+            fingerprint.addFile ( "dependency", artifact.getFile () );
+        }
+
+        final File makefileFile = makefile != null ? new File ( project.getBasedir (), makefile ) : new File ( workingDirectory, "jni/Android.mk" );
+        fingerprint.addMakefile ( "makefile", makefileFile );
+        fingerprint.addMakefile ( "applicationMakefile", applicationMakefile != null
+                ? new File ( project.getBasedir (), applicationMakefile ) : new File ( workingDirectory, "jni/Application.mk" ) );
+        fingerprint.addDirectory ( "sources", makefileFile.getParentFile () );
+
+        // Sources and headers outside of the makefile directory, as recorded by the compiler during the previous build
+        for ( String architecture : compileCommand.getResolvedArchitectures () )
+        {
+            fingerprint.addDependencies ( "dependencies", new File ( compileCommand.objectsOutputDirectory, "local/" + architecture ), workingDirectory );
+            fingerprint.addDependencies ( "dependencies", new File ( compileCommand.objectsOutputDirectory, architecture + "/local/" + architecture ), workingDirectory );
+        }
+
+        getLog ().debug ( "Build fingerprint: " + fingerprint.getHash () );
+        return fingerprint;
+    }
+
+    private void setupOutputDirectories ( final CompileCommand compileCommand )
+    {
+        compileCommand.librariesOutputDirectory = librariesOutputDirectory;
+        compileCommand.objectsOutputDirectory = objectsOutputDirectory;
+
+        // The default execution (by extension, or within an AAR/APKLIB build) and the only execution of a project keep
+        // the configured directories, so the packaging finds the libraries where it expects them.  Other executions,
+        // such as a debug build next to the release build, get their own, so they do not rebuild each others objects.
+        if ( isolateExecutions && !isDefaultExecution ( execution.getExecutionId () ) && hasSeveralNdkBuildExecutions () )
+        {
+            compileCommand.librariesOutputDirectory = new File ( librariesOutputDirectory, execution.getExecutionId () );
+            compileCommand.objectsOutputDirectory = new File ( objectsOutputDirectory, execution.getExecutionId () );
+        }
+
+        getLog ().debug ( "Setting library out to " + compileCommand.librariesOutputDirectory.getAbsolutePath () );
+        getLog ().debug ( "Setting out to " + compileCommand.objectsOutputDirectory.getAbsolutePath () );
+    }
+
+    private static boolean isDefaultExecution ( final String executionId )
+    {
+        return "default-ndk-build".equals ( executionId ) || "default".equals ( executionId );
+    }
+
+    /**
+     * @return Whether objects are shared with other ndk-build executions of the project, which is the case when the
+     * project has several, building into their own directories
+     */
+    private boolean isSharingObjects ()
+    {
+        return shareObjects && isolateExecutions && hasSeveralNdkBuildExecutions ();
+    }
+
+    /**
+     * Only objects missing from <code>NDK_OUT</code> are restored from the shared store.  Once the objects of every
+     * architecture are in place, make rebuilds the outdated ones and the dry run listing the compiler commands is not
+     * worth its cost.
+     *
+     * @return Whether the objects output directory of an architecture holds no objects yet
+     */
+    private boolean isMissingObjects ( final CompileCommand compileCommand )
+    {
+        for ( String architecture : compileCommand.getResolvedArchitectures () )
+        {
+            if ( !new File ( getNdkOutDirectory ( compileCommand, architecture ), "local/" + architecture + "/objs" ).isDirectory () )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether the project has other ndk-build executions besides this one
+     */
+    private boolean hasSeveralNdkBuildExecutions ()
+    {
+        final Plugin plugin = execution.getPlugin () != null ? project.getPlugin ( execution.getPlugin ().getKey () ) : null;
+        for ( PluginExecution pluginExecution : plugin != null ? plugin.getExecutions () : Collections.<PluginExecution>emptyList () )
+        {
+            if ( pluginExecution.getGoals ().contains ( "ndk-build" ) && !pluginExecution.getId ().equals ( execution.getExecutionId () ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A single ndk-build invocation for one architecture, executed as part of a parallel build.
+     */
+    private class ArchitectureBuild implements Callable<ArchitectureBuild>
+    {
+        private final String architecture;
+        private final CompileCommand compileCommand;
+        private final CommandExecutor executor;
+        private final List<String> commands;
+        private final File makefileCaptureFile;
+        private final DiagnosticsClassifier diagnosticsClassifier;
+
+        ArchitectureBuild ( final String architecture, final CompileCommand compileCommand, final CommandExecutor executor,
+                            final List<String> commands, final File makefileCaptureFile, final DiagnosticsClassifier diagnosticsClassifier )
+        {
+            this.architecture = architecture;
+            this.compileCommand = compileCommand;
+            this.executor = executor;
+            this.commands = commands;
+            this.makefileCaptureFile = makefileCaptureFile;
+            this.diagnosticsClassifier = diagnosticsClassifier;
+        }
+
+        @Override
+        public ArchitectureBuild call () throws Exception
+        {
+            try
+            {
+                executeNdkBuild ( executor, commands, diagnosticsClassifier, "ndk-build " + architecture );
+                compileCommand.copyArchitectureLibraries ( architecture );
+                return this;
+            }
+            catch ( Exception e )
+            {
+                throw new MojoExecutionException ( "Failure during build of architecture " + architecture + ": " + e.getMessage (), e );
+            }
+        }
+    }
+
+    private void compile ( CompileCommand compileCommand ) throws MojoExecutionException
+    {
+        MakefileHelper.MakefileResponse makefileResponse = null;
+        CompilerCacheHelper.Statistics compilerCacheStatistics = null;
+        try
+        {
+            configureCompilerCache ();
+            if ( compilerCacheLauncher != null )
+            {
+                compilerCacheStatistics = compilerCacheHelper.readStatistics ( compilerCacheLauncher );
+            }
+
+            // The dependencies were already resolved by execute ()
+            final Set<Artifact> resolvedNativeLibraryArtifacts = compileCommand.getNativeLibraryDepedencies ();
+
+            final File buildFolder = new File ( buildDirectory, "makefile" );
+            buildFolder.mkdirs ();
+
+            final File androidMavenMakefile = new File ( buildFolder, "android_maven_plugin_makefile.mk" );
+            final MakefileHelper makefileHelper = new MakefileHelper ( project, getLog (), getArtifactResolverHelper (), harArtifactHandler, unpackedLibsFolder,
+                    buildDirectory, new HeaderArchiveCache ( headerArchiveCacheDirectory, headerArchiveCacheMaxEntries, getLog () ) );
+
+            MakefileHelper.MakefileRequest makefileRequest = new MakefileHelper.MakefileRequest ();
+            makefileRequest.artifacts = resolvedNativeLibraryArtifacts;
+            makefileRequest.defaultNDKArchitecture = "armeabi";
+            makefileRequest.useHeaderArchives = useHeaderArchives;
+            makefileRequest.ignoreHeaderFilesArchives = ignoreHeaderFilesArchives;
+            makefileRequest.unpackNativeLibrariesOnly = unpackNativeLibrariesOnly;
+            makefileRequest.architectures = compileCommand.getResolvedArchitectures ();
+
+            makefileRequest.headerArchiveThreads = resolutionThreads;
+            makefileRequest.buildTimer = buildTimer;
+
+            final BuildTimer.Timing makefileTiming = buildTimer.start ( "makefile-generation" );
+            try
+            {
+                makefileResponse = makefileHelper.createMakefileFromArtifacts ( makefileRequest );
+            }
+            finally
+            {
+                makefileTiming.stop ();
+            }
+
+            if ( FileHelper.writeIfChanged ( androidMavenMakefile, makefileResponse.getMakeFile () ) )
+            {
+                getLog ().debug ( "Wrote generated makefile " + androidMavenMakefile );
+            }
+            else
+            {
+                getLog ().debug ( "Generated makefile " + androidMavenMakefile + " is unchanged" );
+            }
+
+            final ObjectCache objectCache = createObjectCache ( compileCommand, makefileResponse );
+            if ( objectCache != null )
+            {
+                restoreObjects ( objectCache, compileCommand, null );
+            }
+            final File sharedObjectsStore = sharedObjectsDirectory != null ? sharedObjectsDirectory : getObjectCacheDirectory ();
+            final Map<String, CompilerCommands> compilerCommands = sharedObjectsStore != null && isSharingObjects () && isMissingObjects ( compileCommand )
+                    ? collectCompilerCommands ( compileCommand, androidMavenMakefile, makefileResponse ) : null;
+            final ObjectCache sharedObjects = compilerCommands != null ? new ObjectCache ( sharedObjectsStore, objectCacheMaxSize * MEGABYTE,
+                    DigestHelper.sha1 ( project.getGroupId () + ":" + project.getArtifactId () + "\n" + resolveNdkBuildExecutable () + "\n"
+                            + getAndroidNdk ().getIndex ().getRevision () ), project.getBasedir (), workingDirectory, getLog () ) : null;
+            if ( sharedObjects != null )
+            {
+                restoreObjects ( sharedObjects, compileCommand, compilerCommands );
+            }
+
+            if ( parallelArchitectureBuilds && compileCommand.getResolvedArchitectures ().length > 1 )
+            {
+                compileArchitecturesInParallel ( compileCommand, androidMavenMakefile, makefileResponse );
+            }
+            else
+            {
+                // Adds the location of the Makefile capturer file - this file will after the build include
+                // things like header files, flags etc.  It is processed after the build to retrieve the headers
+                // and also capture flags etc ...
+                final File makefileCaptureFile = createMakefileCaptureFile ( "android_maven_plugin_makefile_captures" );
+                final DiagnosticsClassifier diagnosticsClassifier = createDiagnosticsClassifier ();
+                final CommandExecutor executor = createNdkBuildExecutor ( androidMavenMakefile, makefileResponse, makefileCaptureFile,
+                        getBuildLogFile ( "ndk-build.log" ), diagnosticsClassifier );
+                final List<String> commands = createNdkBuildCommands ( compileCommand, maxJobs ? getMaxJobCount () : 0 );
+
+                executeNdkBuild ( executor, commands, diagnosticsClassifier, "ndk-build" );
+
+                if ( attachLibrariesArtifacts )
+                {
+                    // Attempt to attach the native libraries (shared only)
+                    for ( int i = 0; i < compileCommand.getResolvedArchitectures ().length; i++ )
+                    {
+                        String architecture = compileCommand.getResolvedArchitectures ()[ i ];
+                        processCompiledArtifacts ( compileCommand, architecture, makefileCaptureFile );
+                    }
+                }
+                else
+                {
+                    getLog ().info ( "Will skip attaching compiled libraries as per configuration" );
+                }
+            }
+            if ( attachLibrariesArtifacts )
+            {
+                BuildManifest.removeOtherArchitectures ( buildDirectory, execution.getExecutionId (), Arrays.asList ( compileCommand.getResolvedArchitectures () ) );
+            }
+
+            if ( objectCache != null )
+            {
+                harvestObjects ( objectCache, compileCommand, null );
+            }
+            if ( sharedObjects != null )
+            {
+                harvestObjects ( sharedObjects, compileCommand, compilerCommands );
+            }
+        }
+        catch ( MojoExecutionException e )
+        {
+            throw e;
+        }
+        catch ( Exception e )
+        {
+            throw new MojoExecutionException ( "Failure during build: " + e.getMessage (), e );
+        }
+        finally
+        {
+            if ( compilerCacheStatistics != null )
+            {
+                compilerCacheHelper.logStatistics ( compilerCacheStatistics, compilerCacheHelper.readStatistics ( compilerCacheLauncher ) );
+            }
+        }
+
+    }
+
+    /**
+     * Builds each of the resolved architectures with a separate ndk-build invocation on a bounded thread pool.  The
+     * compiled artifacts of an architecture are processed (on the calling thread) as soon as its build completes.
+     */
+    private void compileArchitecturesInParallel ( final CompileCommand compileCommand, final File androidMavenMakefile,
+                                                  final MakefileHelper.MakefileResponse makefileResponse ) throws Exception
+    {
+        final String[] resolvedArchitectures = compileCommand.getResolvedArchitectures ();
+        final int availableProcessors = getMaxJobCount ();
+        final int threads = Math.min ( resolvedArchitectures.length,
+                maxParallelArchitectureBuilds > 0 ? maxParallelArchitectureBuilds : availableProcessors );
+        final int jobsPerArchitecture = maxJobs ? Math.max ( 1, availableProcessors / threads ) : 0;
+
+        getLog ().info ( "Building " + resolvedArchitectures.length + " architectures using " + threads + " parallel ndk-build invocations"
+                + ( maxJobs ? " with " + jobsPerArchitecture + " jobs each" : "" ) );
+
+        final ExecutorService executorService = Executors.newFixedThreadPool ( threads );
+        try
+        {
+            final CompletionService<ArchitectureBuild> completionService = new ExecutorCompletionService<ArchitectureBuild> ( executorService );
+            for ( String architecture : resolvedArchitectures )
+            {
+                final CompileCommand architectureCompileCommand = compileCommand.forArchitecture ( architecture );
+                final File makefileCaptureFile = createMakefileCaptureFile ( "android_maven_plugin_makefile_captures_" + architecture + "_" );
+                final DiagnosticsClassifier diagnosticsClassifier = createDiagnosticsClassifier ();
+                final CommandExecutor executor = createNdkBuildExecutor ( androidMavenMakefile, makefileResponse, makefileCaptureFile,
+                        getBuildLogFile ( "ndk-build-" + architecture + ".log" ), diagnosticsClassifier );
+                final List<String> commands = createNdkBuildCommands ( architectureCompileCommand, jobsPerArchitecture );
+
+                completionService.submit ( new ArchitectureBuild ( architecture, architectureCompileCommand, executor, commands, makefileCaptureFile,
+                        diagnosticsClassifier ) );
+            }
+
+            for ( int i = 0; i < resolvedArchitectures.length; i++ )
+            {
+                final ArchitectureBuild architectureBuild;
+                try
+                {
+                    architectureBuild = completionService.take ().get ();
+                }
+                catch ( java.util.concurrent.ExecutionException e )
+                {
+                    if ( e.getCause () instanceof MojoExecutionException )
+                    {
+                        throw ( MojoExecutionException ) e.getCause ();
+                    }
+                    throw new MojoExecutionException ( "Failure during build: " + e.getCause ().getMessage (), e.getCause () );
+                }
+
+                getLog ().debug ( "Finished ndk-build for architecture " + architectureBuild.architecture );
+
+                if ( attachLibrariesArtifacts )
+                {
+                    processCompiledArtifacts ( architectureBuild.compileCommand, architectureBuild.architecture, architectureBuild.makefileCaptureFile );
+                }
+            }
+
+            if ( !attachLibrariesArtifacts )
+            {
+                getLog ().info ( "Will skip attaching compiled libraries as per configuration" );
+            }
+        }
+        finally
+        {
+            executorService.shutdownNow ();
+        }
+    }
+
+    private File createMakefileCaptureFile ( final String prefix ) throws IOException
+    {
+        final File makefileCaptureFile = File.createTempFile ( prefix, ".tmp", buildDirectory );
+
+        if ( !leaveTemporaryBuildArtifacts )
+        {
+            makefileCaptureFile.deleteOnExit ();
+        }
+        return makefileCaptureFile;
+    }
+
+    /**
+     * @return The file in the build directory the output of ndk-build is written to, or null if it is not written
+     */
+    private File getBuildLogFile ( final String name )
+    {
+        return writeBuildLog ? new File ( buildDirectory, name ) : null;
+    }
+
+    /**
+     * Creates the object store, keyed by everything besides the sources that affects the compilation: the NDK, the
+     * command line, the makefiles and the generated makefile.  Paths below the project are left out of the key.
+     *
+     * @return The object store, or null if none is configured
+     */
+    private ObjectCache createObjectCache ( final CompileCommand compileCommand, final MakefileHelper.MakefileResponse makefileResponse )
+            throws IOException, MojoExecutionException
+    {
+        final File storeDirectory = getObjectCacheDirectory ();
+        if ( storeDirectory == null )
+        {
+            return null;
+        }
+
+        final String basedir = project.getBasedir ().getAbsolutePath ();
+        final BuildFingerprint configuration = new BuildFingerprint ( getLog () );
+        configuration.addValue ( "ndkBuild", resolveNdkBuildExecutable () );
+        final List<String> commandLine = new ArrayList<String> ();
+        for ( String command : createNdkBuildCommands ( compileCommand, 0 ) )
+        {
+            // The output directories and architectures do not affect the objects themselves
+            if ( !command.startsWith ( "NDK_OUT=" ) && !command.startsWith ( "NDK_LIBS_OUT=" ) && !command.startsWith ( "APP_ABI=" ) )
+            {
+                commandLine.add ( command.replace ( basedir, "${basedir}" ) );
+            }
+        }
+        configuration.addValue ( "commandLine", commandLine );
+        configuration.addValue ( "systemProperties", systemProperties == null ? null : new TreeMap<String, String> ( systemProperties ) );
+        configuration.addValue ( "generatedMakefile", makefileResponse.getMakeFile ().replace ( basedir, "${basedir}" ) );
+
+        final File makefileDirectory = makefile != null ? new File ( project.getBasedir (), makefile ).getParentFile () : new File ( workingDirectory, "jni" );
+        final List<File> makefiles = new ArrayList<File> ( FileUtils.listFiles ( makefileDirectory, new String[] { "mk" }, true ) );
+        if ( applicationMakefile != null )
+        {
+            makefiles.add ( new File ( project.getBasedir (), applicationMakefile ) );
+        }
+        for ( File makefileToHash : makefiles )
+        {
+            configuration.addFileContent ( makefileToHash.getAbsolutePath ().replace ( basedir, "${basedir}" ), makefileToHash );
+        }
+
+        return new ObjectCache ( storeDirectory, objectCacheMaxSize * MEGABYTE, configuration.getHash (), project.getBasedir (),
+                workingDirectory, getLog () );
+    }
+
+    /**
+     * @return The directory of the object store, or null if it is disabled
+     */
+    private File getObjectCacheDirectory ()
+    {
+        if ( !useObjectCache )
+        {
+            return null;
+        }
+        return objectCacheDirectory != null ? objectCacheDirectory : getLocalDataDirectory ( "object-cache" );
+    }
+
+    /**
+     * @return The <code>NDK_OUT</code> ndk-build uses for an architecture
+     */
+    private File getNdkOutDirectory ( final CompileCommand compileCommand, final String architecture )
+    {
+        if ( parallelArchitectureBuilds && compileCommand.getResolvedArchitectures ().length > 1 )
+        {
+            return compileCommand.forArchitecture ( architecture ).objectsOutputDirectory;
+        }
+        return compileCommand.objectsOutputDirectory;
+    }
+
+    /**
+     * Runs ndk-build with <code>-n -B</code>, which prints the command of every object without building anything.
+     *
+     * @return The commands by architecture, or null if they could not be collected
+     */
+    private Map<String, CompilerCommands> collectCompilerCommands ( final CompileCommand compileCommand, final File androidMavenMakefile,
+                                                                    final MakefileHelper.MakefileResponse makefileResponse )
+            throws IOException, MojoExecutionException
+    {
+        final BuildTimer.Timing timing = buildTimer.start ( "compiler-commands" );
+        final File makefileCaptureFile = createMakefileCaptureFile ( "android_maven_plugin_makefile_captures" );
+        try
+        {
+            final Map<String, CompilerCommands> compilerCommands = new LinkedHashMap<String, CompilerCommands> ();
+            final boolean perArchitecture = parallelArchitectureBuilds && compileCommand.getResolvedArchitectures ().length > 1;
+            for ( String architecture : perArchitecture ? compileCommand.getResolvedArchitectures () : new String[] { null } )
+            {
+                final CompileCommand build = architecture != null ? compileCommand.forArchitecture ( architecture ) : compileCommand;
+                final CompilerCommands commands = new CompilerCommands ( build.objectsOutputDirectory, project.getBasedir (), workingDirectory );
+                final CommandExecutor executor = createNdkBuildExecutor ( androidMavenMakefile, makefileResponse, makefileCaptureFile, null,
+                        new DiagnosticsClassifier ( true, null ) );
+                executor.addStdOutProcessor ( commands );
+                final List<String> dryRun = createNdkBuildCommands ( build, 0 );
+                dryRun.addAll ( 0, Arrays.asList ( "-n", "-B" ) );
+                executor.executeCommand ( resolveNdkBuildExecutable (), dryRun, buildDirectory, false );
+                for ( String builtArchitecture : build.getResolvedArchitectures () )
+                {
+                    compilerCommands.put ( builtArchitecture, commands );
+                }
+            }
+            return compilerCommands;
+        }
+        catch ( ExecutionException e )
+        {
+            getLog ().warn ( "Unable to collect the compiler commands, not sharing objects with other executions: " + e.getMessage () );
+            return null;
+        }
+        finally
+        {
+            FileUtils.deleteQuietly ( makefileCaptureFile );
+            timing.stop ();
+        }
     }
 
-    private void setupOutputDirectories ( final CompileCommand compileCommand )
+    /**
+     * @param compilerCommands The commands compiling the objects by architecture, to restore the objects compiled by
+     *                         the same command, or null to restore the objects of the build configuration
+     */
+    private void restoreObjects ( final ObjectCache objectCache, final CompileCommand compileCommand,
+                                  final Map<String, CompilerCommands> compilerCommands ) throws IOException
     {
-        compileCommand.librariesOutputDirectory = librariesOutputDirectory;
-        compileCommand.objectsOutputDirectory = objectsOutputDirectory;
-
-        // This indicates that the build is either the default build (by extension)
-        // or an execution within an (for example) APKLIB build.
-        // The execution can currently not be named since it would differ
-        // for APKLIB once that is executed.
-        //
-        // TODO: Once the AAR/APKLIB can pull the attached artifacts from the
-        // TODO: Maven session, this can be sorted out better.
-        //
-        if ( ! "default-ndk-build".equals( execution.getExecutionId () ) && ! "default".equals ( execution.getExecutionId () ) )
+        final BuildTimer.Timing timing = buildTimer.start ( "object-cache-restore" );
+        try
         {
-            String libsOut = librariesOutputDirectory.getAbsolutePath();
-            String out = objectsOutputDirectory.getAbsolutePath();
-
-            libsOut = libsOut + "/" + execution.getExecutionId ();
-            out = out + "/" + execution.getExecutionId ();
-
-            // FIXME: Will this actually work - what happens if the execution is the single one & it has an ID?
-            // compileCommand.librariesOutputDirectory = new File( libsOut );
-            // compileCommand.objectsOutputDirectory = new File( out );
-
+            int restored = 0;
+            for ( String architecture : compileCommand.getResolvedArchitectures () )
+            {
+                restored += objectCache.restore ( getNdkOutDirectory ( compileCommand, architecture ), architecture,
+                        compilerCommands != null ? compilerCommands.get ( architecture ).getCommandKeys ( architecture ) : null );
+            }
+            getLog ().info ( "Restored " + restored + " objects from " + objectCache.getStoreDirectory () );
+        }
+        finally
+        {
+            timing.stop ();
         }
-
-        getLog ().debug ( "Setting library out to " + compileCommand.librariesOutputDirectory.getAbsolutePath () );
-        getLog ().debug ( "Setting out to " + compileCommand.objectsOutputDirectory.getAbsolutePath () );
-
     }
 
-    private class CompileCommand
+    private void harvestObjects ( final ObjectCache objectCache, final CompileCommand compileCommand,
+                                  final Map<String, CompilerCommands> compilerCommands )
     {
-        private File objectsOutputDirectory;
-        private File librariesOutputDirectory;
-
-        private Set<Artifact> nativeLibraryDepedencies;
-        private String[] resolvedArchitectures;
-
-        public Set<Artifact> getNativeLibraryDepedencies ()
+        final BuildTimer.Timing timing = buildTimer.start ( "object-cache-harvest" );
+        try
         {
-            return nativeLibraryDepedencies;
+            int stored = 0;
+            for ( String architecture : compileCommand.getResolvedArchitectures () )
+            {
+                stored += objectCache.harvest ( getNdkOutDirectory ( compileCommand, architecture ), architecture,
+                        compilerCommands != null ? compilerCommands.get ( architecture ).getCommandKeys ( architecture ) : null );
+            }
+            getLog ().info ( "Stored " + stored + " new objects in " + objectCache.getStoreDirectory () );
         }
-
-        public String[] getResolvedArchitectures ()
+        catch ( IOException e )
         {
-            return resolvedArchitectures;
+            // The build itself succeeded, the store is only an optimization
+            getLog ().warn ( "Unable to store objects in " + objectCache.getStoreDirectory () + ": " + e.getMessage () );
+        }
+        finally
+        {
+            timing.stop ();
         }
     }
 
-    private void compile ( CompileCommand compileCommand ) throws MojoExecutionException
+    /**
+     * Locates the compiler cache launcher, if a compiler cache is configured and enabled.
+     */
+    private void configureCompilerCache ()
     {
-        MakefileHelper.MakefileResponse makefileResponse = null;
-        try
+        if ( compilerCache == null || !compilerCache.isEnabled () )
         {
-            // Start setting up the command line to be executed
-            final CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor ();
-
-            // Add an error listener to the build - this allows the build to conditionally fail
-            // depending on a) the output of the build b) whether or not build errors (output on stderr) should be
-            // ignored and c) whether the pattern matches or not
-            executor.setErrorListener ( getNdkErrorListener () );
-
-            final Set<Artifact> nativeLibraryArtifacts = compileCommand.getNativeLibraryDepedencies ();
-            // If there are any static libraries the code needs to link to, include those in the make file
-            final Set<Artifact> resolvedNativeLibraryArtifacts = getArtifactResolverHelper ().resolveArtifacts ( nativeLibraryArtifacts );
-
-            getLog ().debug ( "resolveArtifacts found " + resolvedNativeLibraryArtifacts.size () + ": " + resolvedNativeLibraryArtifacts.toString () );
-
-            final File buildFolder = new File ( buildDirectory, "makefile" );
-            buildFolder.mkdirs ();
-
-            final File androidMavenMakefile = new File ( buildFolder, "android_maven_plugin_makefile.mk" );
-            final MakefileHelper makefileHelper = new MakefileHelper ( project, getLog (), getArtifactResolverHelper (), harArtifactHandler, unpackedLibsFolder,
-                    buildDirectory );
+            return;
+        }
 
-            MakefileHelper.MakefileRequest makefileRequest = new MakefileHelper.MakefileRequest ();
-            makefileRequest.artifacts = resolvedNativeLibraryArtifacts;
-            makefileRequest.defaultNDKArchitecture = "armeabi";
-            makefileRequest.useHeaderArchives = useHeaderArchives;
-            makefileRequest.ignoreHeaderFilesArchives = ignoreHeaderFilesArchives;
-            makefileRequest.leaveTemporaryBuildArtifacts = leaveTemporaryBuildArtifacts;
-            makefileRequest.architectures = compileCommand.getResolvedArchitectures ();
+        final File baseDirectory = session != null && session.getExecutionRootDirectory () != null
+                ? new File ( session.getExecutionRootDirectory () ) : project.getBasedir ();
+        compilerCacheHelper = new CompilerCacheHelper ( compilerCache, baseDirectory, getLog () );
+        compilerCacheLauncher = compilerCacheHelper.findLauncher ();
+        if ( compilerCacheLauncher == null )
+        {
+            getLog ().warn ( "Compiler cache " + compilerCache.getExecutable () + " not found, building without it" );
+        }
+        else
+        {
+            getLog ().info ( "Using compiler cache " + compilerCacheLauncher );
+        }
+    }
 
-            makefileResponse = makefileHelper.createMakefileFromArtifacts ( makefileRequest );
+    private CommandExecutor createNdkBuildExecutor ( final File androidMavenMakefile, final MakefileHelper.MakefileResponse makefileResponse,
+                                                     final File makefileCaptureFile, final File buildLogFile,
+                                                     final DiagnosticsClassifier diagnosticsClassifier )
+    {
+        // Start setting up the command line to be executed
+        final CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor ();
 
-            final FileOutputStream output = new FileOutputStream ( androidMavenMakefile );
-            try
-            {
-                IOUtil.copy ( makefileResponse.getMakeFile (), output );
-            }
-            finally
-            {
-                output.close ();
-            }
+        // Add an error listener to the build - this allows the build to conditionally fail
+        // depending on a) the output of the build b) whether or not build errors (output on stderr) should be
+        // ignored and c) whether the pattern matches or not
+        executor.setErrorListener ( diagnosticsClassifier );
 
-            // Add the path to the generated makefile - this is picked up by the build (by an include from the user)
-            executor.addEnvironment ( "ANDROID_MAVEN_PLUGIN_MAKEFILE", androidMavenMakefile.getAbsolutePath () );
+        // Add the path to the generated makefile - this is picked up by the build (by an include from the user)
+        executor.addEnvironment ( "ANDROID_MAVEN_PLUGIN_MAKEFILE", androidMavenMakefile.getAbsolutePath () );
 
-            setupNativeLibraryEnvironment ( executor, makefileResponse );
+        setupNativeLibraryEnvironment ( executor, makefileResponse );
 
-            // Adds the location of the Makefile capturer file - this file will after the build include
-            // things like header files, flags etc.  It is processed after the build to retrieve the headers
-            // and also capture flags etc ...
-            final File makefileCaptureFile = File.createTempFile ( "android_maven_plugin_makefile_captures", ".tmp", buildDirectory );
+        executor.addEnvironment ( MakefileHelper.MAKEFILE_CAPTURE_FILE, makefileCaptureFile.getAbsolutePath () );
 
-            if ( !leaveTemporaryBuildArtifacts )
+        if ( compilerCacheLauncher != null )
+        {
+            for ( Map.Entry<String, String> entry : compilerCacheHelper.getEnvironment ( compilerCacheLauncher ).entrySet () )
             {
-                makefileCaptureFile.deleteOnExit ();
+                executor.addEnvironment ( entry.getKey (), entry.getValue () );
             }
+        }
 
-            executor.addEnvironment ( MakefileHelper.MAKEFILE_CAPTURE_FILE, makefileCaptureFile.getAbsolutePath () );
-
-            // Add any defined system properties
-            if ( systemProperties != null && !systemProperties.isEmpty() )
+        // Add any defined system properties
+        if ( systemProperties != null && !systemProperties.isEmpty() )
+        {
+            for ( Map.Entry<String, String> entry : systemProperties.entrySet() )
             {
-                for ( Map.Entry<String, String> entry : systemProperties.entrySet() )
-                {
-                    executor.addEnvironment( entry.getKey(), entry.getValue() );
-                }
+                executor.addEnvironment( entry.getKey(), entry.getValue() );
             }
+        }
 
-            executor.setLogger( this.getLog() );
+        executor.setLogger( this.getLog() );
+        // Only the last lines are kept, these are logged if the build fails
+        executor.setCaptureStdOut ( true );
+        executor.setOutputFile ( buildLogFile );
+        if ( buildLogFile != null )
+        {
+            getLog ().info ( "Writing ndk-build output to " + buildLogFile );
+        }
+        return executor;
+    }
 
-            // Setup the command line for the make
-            final List<String> commands = new ArrayList<String>();
+    private List<String> createNdkBuildCommands ( final CompileCommand compileCommand, final int jobs ) throws MojoExecutionException
+    {
+        // Setup the command line for the make
+        final List<String> commands = new ArrayList<String>();
 
-            configureArchitectures( commands, compileCommand.getResolvedArchitectures () );
+        configureArchitectures( commands, compileCommand.getResolvedArchitectures () );
 
-            configureBuildDirectory( compileCommand, commands );
+        configureBuildDirectory( compileCommand, commands );
 
-            configureMakefile( commands );
+        configureMakefile( commands );
 
-            configureApplicationMakefile( commands );
+        configureApplicationMakefile( commands );
 
-            configureMaxJobs( commands );
+        configureMaxJobs( commands, jobs );
 
-            // Only allow configuration of the toolchain if the architecture being built is a single one!
-            if ( compileCommand.getResolvedArchitectures ().length == 1 )
-            {
-                configureNdkToolchain ( compileCommand.getResolvedArchitectures ()[0], commands );
-            }
+        // Only allow configuration of the toolchain if the architecture being built is a single one!
+        if ( compileCommand.getResolvedArchitectures ().length == 1 )
+        {
+            configureNdkToolchain ( compileCommand.getResolvedArchitectures ()[0], commands );
+        }
 
-            configureAdditionalCommands( commands );
+        configureAdditionalCommands( commands );
 
-            // If a build target is specified, tag that onto the command line as the very last of the parameters
-            commands.add ( target != null ? target : "all" );
+        // If a build target is specified, tag that onto the command line as the very last of the parameters
+        commands.add ( target != null ? target : "all" );
+        return commands;
+    }
 
-            final String ndkBuildPath = resolveNdkBuildExecutable ();
-            getLog ().debug ( ndkBuildPath + " " + commands.toString () );
+    private void executeNdkBuild ( final CommandExecutor executor, final List<String> commands, final DiagnosticsClassifier diagnosticsClassifier,
+                                   final String buildName ) throws MojoExecutionException, ExecutionException
+    {
+        final String ndkBuildPath = resolveNdkBuildExecutable ();
+        final JobSlots sharedJobSlots = getJobSlots ();
+        final int grantedJobs = sharedJobSlots != null ? acquireJobSlots ( sharedJobSlots, commands, buildName ) : 0;
+        try
+        {
+            final List<String> effectiveCommands = grantedJobs > 0 ? JobSlots.withJobCount ( commands, grantedJobs ) : commands;
+            getLog ().debug ( ndkBuildPath + " " + effectiveCommands.toString () );
             getLog ().info ( "Executing NDK make at : " + buildDirectory );
 
-            executor.setCaptureStdOut ( true );
-            executor.executeCommand ( ndkBuildPath, commands, buildDirectory, true );
-            getLog ().debug ( "Executed NDK  make at : " + buildDirectory );
-
-            if ( attachLibrariesArtifacts )
+            final BuildTimer.Timing ndkBuildTiming = buildTimer.start ( "ndk-build", buildName );
+            try
             {
-                // Attempt to attach the native libraries (shared only)
-                for ( int i = 0; i < compileCommand.getResolvedArchitectures ().length; i++ )
-                {
-                    String architecture = compileCommand.getResolvedArchitectures ()[ i ];
-                    processCompiledArtifacts ( compileCommand, architecture, makefileCaptureFile );
-                }
+                executor.executeCommand ( ndkBuildPath, effectiveCommands, buildDirectory, true );
             }
-            else
+            finally
             {
-                getLog ().info ( "Will skip attaching compiled libraries as per configuration" );
+                ndkBuildTiming.stop ();
+                diagnosticsClassifier.logSummary ( getLog (), buildName );
+            }
+        }
+        finally
+        {
+            if ( grantedJobs > 0 )
+            {
+                sharedJobSlots.release ( grantedJobs );
             }
+        }
+        getLog ().debug ( "Executed NDK  make at : " + buildDirectory );
+    }
 
+    /**
+     * @return The job slots shared by the session, or null if the coordination is disabled
+     */
+    private JobSlots getJobSlots ()
+    {
+        if ( jobSlots < 0 )
+        {
+            return null;
         }
-        catch ( Exception e )
+        return JobSlots.forSession ( SessionRegistry.getSessionKey ( session, project ), jobSlots > 0 ? jobSlots : getMaxJobCount () );
+    }
+
+    /**
+     * Waits for job slots for the number of jobs the commands ask for, one if they do not pass <code>-j</code>.
+     *
+     * @return The number of slots granted
+     */
+    private int acquireJobSlots ( final JobSlots sharedJobSlots, final List<String> commands, final String buildName ) throws MojoExecutionException
+    {
+        final int requestedJobs = JobSlots.getRequestedJobs ( commands, sharedJobSlots.getCapacity () );
+        final BuildTimer.Timing waitTiming = buildTimer.start ( "job-slot-wait", buildName );
+        try
         {
-            throw new MojoExecutionException ( "Failure during build: " + e.getMessage (), e );
+            final int grantedJobs = sharedJobSlots.acquire ( requestedJobs );
+            if ( grantedJobs < requestedJobs )
+            {
+                getLog ().info ( buildName + " runs " + grantedJobs + " of " + requestedJobs + " jobs, the other job slots of the "
+                        + sharedJobSlots.getCapacity () + " shared by the build are in use" );
+            }
+            return grantedJobs;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread ().interrupt ();
+            throw new MojoExecutionException ( "Interrupted while waiting for a job slot for " + buildName, e );
         }
         finally
         {
-            cleanupAfterBuild( makefileResponse );
+            waitTiming.stop ();
         }
-
     }
 
     private void configureArchitectures ( final List<String> commands, final String[] resolvedArchitectures )
@@ -608,7 +1460,7 @@ public class NdkBuildMojo extends AbstractMojo
         commands.add( workingDirectory.getAbsolutePath() );
 
         // Next, configure the output directories
-        commands.add( "NDK_LIBS_OUT=" + compileCommand.librariesOutputDirectory.getAbsolutePath () );
+        commands.add( "NDK_LIBS_OUT=" + compileCommand.getBuildLibrariesOutputDirectory ().getAbsolutePath () );
         commands.add( "NDK_OUT=" + compileCommand.objectsOutputDirectory.getAbsolutePath ()  );
 
     }
@@ -629,16 +1481,6 @@ public class NdkBuildMojo extends AbstractMojo
         }
     }
 
-    private void cleanupAfterBuild ( final MakefileHelper.MakefileResponse makefileResponse )
-    {
-        // directories after we're done
-        if ( makefileResponse != null )
-        {
-            getLog().info( "Cleaning up extracted include directories used for build" );
-            MakefileHelper.cleanupAfterBuild( makefileResponse );
-        }
-    }
-
     private void configureAdditionalCommands( final List<String> commands )
     {
         // Anything else on the command line the user wants to add - simply splice it up and
@@ -665,15 +1507,30 @@ public class NdkBuildMojo extends AbstractMojo
         }
     }
 
-    private void configureMaxJobs( List<String> commands )
+    private void configureMaxJobs( List<String> commands, int jobs )
     {
-        if ( maxJobs )
+        if ( jobs > 0 )
         {
-            String jobs = String.valueOf( Runtime.getRuntime().availableProcessors() );
-            getLog().info( "executing " + jobs + " parallel jobs" );
+            getLog().debug( "executing " + jobs + " parallel jobs" );
             commands.add( "-j" );
-            commands.add( jobs );
+            commands.add( String.valueOf( jobs ) );
+        }
+    }
+
+    private int getMaxJobCount()
+    {
+        if ( !adaptiveJobs )
+        {
+            return Runtime.getRuntime().availableProcessors();
         }
+        if ( adaptiveJobCount == null )
+        {
+            final BuildCapacity.Decision decision = new BuildCapacity( new File( "/" ) )
+                    .decide( Runtime.getRuntime().availableProcessors(), memoryPerJob * MEGABYTE );
+            getLog().info( "Using " + decision.getJobs() + " jobs, limited by " + decision.getReason() );
+            adaptiveJobCount = decision.getJobs();
+        }
+        return adaptiveJobCount;
     }
 
     private void configureNdkToolchain( String architecture, List<String> commands )
@@ -712,68 +1569,76 @@ public class NdkBuildMojo extends AbstractMojo
         // Where the NDK build creates the object files - static files end up here
         final File nativeObjDirectory = new File( new File( compileCommand.objectsOutputDirectory, "local" ), architecture );
 
+        final BuildTimer.Timing attachTiming = buildTimer.start ( "attach-artifacts", architecture );
+        final MakefileCapture makefileCapture = MakefileCapture.read( makefileCaptureFile );
+        final BuildManifest buildManifest = BuildManifest.create( makefileCapture, architecture, nativeLibraryDirectory, nativeObjDirectory );
+        buildManifest.write( BuildManifest.getManifestFile( buildDirectory, execution.getExecutionId(), architecture ) );
+        getLog().debug( "Built " + buildManifest.getModules().size() + " modules for " + architecture
+                + ( buildManifest.isCaptured() ? "" : ", found in " + nativeLibraryDirectory + " and " + nativeObjDirectory ) );
+
         final List<String> classifiers = new ArrayList<String>();
+        final List<BuildManifest.Module> libraries;
         if ( allowMultiArtifacts )
         {
-            attachManyArtifacts( nativeLibraryDirectory, architecture, nativeObjDirectory, classifiers );
+            libraries = findNativeLibraries( buildManifest );
+        }
+        else if ( finalLibraryName == null )
+        {
+            libraries = Collections.singletonList( findNativeLibraries( buildManifest ).get( 0 ) );
         }
         else
         {
-            attachOneArtifact( nativeLibraryDirectory, architecture, nativeObjDirectory, classifiers );
+            libraries = Collections.singletonList( nativeLibraryFromName( buildManifest, nativeLibraryDirectory, nativeObjDirectory, finalLibraryName ) );
+        }
+        for ( BuildManifest.Module library : libraries )
+        {
+            attachArtifactFile( architecture, classifiers, library.getFile() );
         }
 
         if ( additionallyBuiltModules != null && !additionallyBuiltModules.isEmpty() )
         {
             for ( AdditionallyBuiltModule additionallyBuiltModule : additionallyBuiltModules )
             {
-                File additionalBuiltModuleFile = nativeLibraryFromName( true, nativeLibraryDirectory, additionallyBuiltModule.getName() );
-
-                // If it doesnt exist, check the object directory
-                if ( !additionalBuiltModuleFile.exists() )
-                {
-                    additionalBuiltModuleFile = nativeLibraryFromName( true, nativeObjDirectory, additionallyBuiltModule.getName() );
-                }
+                final File additionalBuiltModuleFile = nativeLibraryFromName( buildManifest, nativeLibraryDirectory, nativeObjDirectory,
+                        additionallyBuiltModule.getName() ).getFile();
 
                 // FIMXE: This should be validated
                 final String additionallyBuiltArtifactType = resolveArtifactType( additionalBuiltModuleFile );
 
                 String additionallyBuiltClassifier = architecture + "-" + additionallyBuiltModule.getClassifier();
-                projectHelper.attachArtifact( this.project, additionallyBuiltArtifactType, additionallyBuiltClassifier, additionalBuiltModuleFile );
+                attachArtifact( additionallyBuiltArtifactType, additionallyBuiltClassifier, additionalBuiltModuleFile );
                 classifiers.add( additionallyBuiltClassifier );
             }
         }
 
+        attachTiming.stop ();
+
         // Process conditionally any of the headers to include into the header archive file
-        if ( attachHeaderFiles )
+        if ( attachHeaderFiles && AndroidExtension.APK.equals( project.getPackaging() ) )
         {
-            attachHeaderFiles( compileCommand, makefileCaptureFile, classifiers );
+            getLog().debug( "Not creating a header archive for a project with packaging " + project.getPackaging() );
         }
-
-
-    }
-
-    private void attachManyArtifacts( File nativeLibraryDirectory, String architecture, File nativeObjDirectory, List<String> classifiers ) throws MojoExecutionException
-    {
-        List<File> artifacts = Arrays.asList( findNativeLibrary( nativeLibraryDirectory, nativeObjDirectory ) );
-        for ( File file : artifacts )
+        else if ( attachHeaderFiles )
         {
-            attachArtifactFile( architecture, classifiers, file );
+            final BuildTimer.Timing headerArchiveTiming = buildTimer.start ( "header-archive", architecture );
+            try
+            {
+                // Use the includes of the module producing the final library
+                attachHeaderFiles( compileCommand, architecture, makefileCapture, libraries.isEmpty () ? null : libraries.get ( 0 ).getName (), classifiers );
+            }
+            finally
+            {
+                headerArchiveTiming.stop ();
+            }
         }
+
+
     }
 
-    private void attachOneArtifact( File nativeLibraryDirectory, String architecture, File nativeObjDirectory, List<String> classifiers ) throws MojoExecutionException
+    private void attachArtifact ( final String type, final String artifactClassifier, final File file )
     {
-        final File nativeArtifactFile;
-        if ( finalLibraryName == null )
-        {
-            nativeArtifactFile = findNativeLibrary( nativeLibraryDirectory, nativeObjDirectory )[0];
-        }
-        else
-        {
-            nativeArtifactFile = nativeLibraryFromName( nativeLibraryDirectory, nativeObjDirectory, finalLibraryName );
-        }
-
-        attachArtifactFile( architecture, classifiers, nativeArtifactFile );
+        projectHelper.attachArtifact ( project, type, artifactClassifier, file );
+        attachedArtifacts.add ( new BuildFingerprint.AttachedArtifact ( type, artifactClassifier, file ) );
     }
 
     private void attachArtifactFile( String architecture, List<String> classifiers, File nativeArtifactFile )
@@ -782,86 +1647,34 @@ public class NdkBuildMojo extends AbstractMojo
         getLog().debug( "Adding native compiled artifact: " + nativeArtifactFile );
 
         final String actualClassifier = ( classifier == null ) ? architecture : architecture + "-" + classifier;
-        projectHelper.attachArtifact( this.project, artifactType, actualClassifier, nativeArtifactFile );
+        attachArtifact( artifactType, actualClassifier, nativeArtifactFile );
         classifiers.add( actualClassifier );
     }
 
     /**
-     * Search the specified directory for native artifacts that match the artifact Id
+     * Finds the built library of the module named after the final library name or the artifact id, or else those
+     * whose name starts with it.
      */
-    private File[] findNativeLibrary( File nativeLibDirectory, final File nativeObjDirectory ) throws MojoExecutionException
+    private List<BuildManifest.Module> findNativeLibraries( final BuildManifest buildManifest ) throws MojoExecutionException
     {
-        getLog().info( "Searching " + nativeLibDirectory + " for built shared library" );
-        // FIXME: Should really just look for shared libraries in here really ....
-        File[] files = nativeLibDirectory.listFiles( new FilenameFilter()
-        {
-            public boolean accept( final File dir, final String name )
-            {
-                String libraryName = finalLibraryName;
+        final String libraryName = finalLibraryName == null || finalLibraryName.isEmpty () ? project.getArtifactId () : finalLibraryName;
 
-                if ( libraryName == null || libraryName.isEmpty() )
-                {
-                    libraryName = project.getArtifactId();
-                }
-
-                // FIXME: The following logic won't work for an APKLIB building a static library
-                final String extension = Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE.equals( project.getPackaging() ) ? ".a" : ".so";
-                boolean found = name.startsWith( "lib" + libraryName ) && name.endsWith( extension );
-                if ( !found )
-                {
-                    // Issue #14 : Work-around issue where the project is actually called "lib" something
-                    if ( libraryName.startsWith( "lib" ) )
-                    {
-                        found = name.startsWith( libraryName ) && name.endsWith( extension );
-                    }
-                }
-                return found;
-            }
-        } );
-
-        // Check the object output directory as well
-        // FIXME: Should really just look for static libraries in here really ....
-
-        if ( files == null || files.length == 0 )
-        {
-            getLog().info( "Searching " + nativeObjDirectory + " for built static library" );
-            files = nativeObjDirectory.listFiles( new FilenameFilter()
-            {
-                public boolean accept( final File dir, final String name )
-                {
-                    String libraryName = finalLibraryName;
-
-                    if ( libraryName == null || libraryName.isEmpty() )
-                    {
-                        libraryName = project.getArtifactId();
-                    }
-
-                    // FIXME: The following logic won't work for an APKLIB building a static library
-                    if ( Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE.equals( project.getPackaging() ) )
-                    {
-                        return name.startsWith( "lib" + libraryName ) && name.endsWith( ".a" );
-                    }
-                    else
-                    {
-                        return name.startsWith( "lib" + libraryName ) && name.endsWith( ".so" );
-                    }
-                }
-            } );
-
-        }
+        // FIXME: The following logic won't work for an APKLIB building a static library
+        final String extension = Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE.equals( project.getPackaging() ) ? ".a" : ".so";
+        final List<BuildManifest.Module> libraries = buildManifest.findLibraries( libraryName, extension, allowMultiArtifacts );
 
         // slight limitation at this stage - we only handle a single .so artifact
-        if ( ( files == null || files.length != 1 )  && !allowMultiArtifacts )
+        if ( libraries.size() != 1 && !allowMultiArtifacts )
         {
-            getLog().warn( "Error while detecting native compile artifacts: " + ( files == null || files.length == 0 ? "None found" : "Found more than 1 artifact" ) );
+            getLog().warn( "Error while detecting native compile artifacts: " + ( libraries.isEmpty() ? "None found" : "Found more than 1 artifact" ) );
             if ( target != null )
             {
                 getLog().warn( "Using the 'target' configuration option to specify the output file name is no longer supported, use 'finalLibraryName' instead." );
             }
 
-            if ( files != null && files.length > 1 )
+            if ( libraries.size() > 1 )
             {
-                getLog().debug( "List of files found: " + Arrays.asList( files ) );
+                getLog().debug( "List of modules found: " + libraries );
                 getLog().error( "Currently, only a single, final native library is supported by the build" );
                 throw new MojoExecutionException( "Currently, only a single, final native library is supported by the build" );
             }
@@ -871,83 +1684,63 @@ public class NdkBuildMojo extends AbstractMojo
                 throw new MojoExecutionException( "No native compiled library found, did the native compile complete successfully?" );
             }
         }
-        return files;
+        return libraries;
     }
 
-    private File nativeLibraryFromName( File nativeLibDirectory, final File nativeObjDirectory, final String libraryName ) throws MojoExecutionException
+    /**
+     * Finds the library with exactly the specified name, in the libraries directory before the objects directory.
+     */
+    private BuildManifest.Module nativeLibraryFromName( final BuildManifest buildManifest, final File nativeLibDirectory, final File nativeObjDirectory,
+                                                        final String libraryName ) throws MojoExecutionException, IOException
     {
-        try
+        final String[] extensions;
+        if ( Const.ArtifactType.NATIVE_SYMBOL_OBJECT.equals( project.getPackaging() ) || Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE.equals( project.getPackaging() ) )
         {
-            return nativeLibraryFromName( false, nativeLibDirectory, libraryName );
+            extensions = new String[] { "." + project.getPackaging() };
         }
-        catch ( MojoExecutionException e )
+        else
         {
-            // Try the obj directory
-            return nativeLibraryFromName( true, nativeObjDirectory, libraryName );
+            extensions = new String[] { ".a", ".so" };
         }
-    }
 
-    private File nativeLibraryFromName( boolean logErrors, File directory, final String libraryName ) throws MojoExecutionException
-    {
-        final File libraryFile;
-        // Find the nativeArtifactFile in the nativeLibDirectory/finalLibraryName
-        if ( Const.ArtifactType.NATIVE_SYMBOL_OBJECT.equals( project.getPackaging() ) || Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE.equals( project.getPackaging() ) )
-        {
-            libraryFile = new File( directory, "lib" + libraryName + "." + project.getPackaging() );
-        }
-        else
+        for ( File directory : new File[] { nativeLibDirectory, nativeObjDirectory } )
         {
-            final File staticLib = new File( directory, "lib" + libraryName + ".a" );
-            if ( staticLib.exists() )
+            for ( String extension : extensions )
             {
-                libraryFile = staticLib;
-            }
-            else
-            {
-                libraryFile = new File( directory, "lib" + libraryName + ".so" );
+                final BuildManifest.Module module = buildManifest.getModuleByFile( directory, "lib" + libraryName + extension );
+                if ( module != null )
+                {
+                    return module;
+                }
             }
         }
-        if ( !libraryFile.exists() )
+
+        // Not a module of the build, such as a prebuilt library installed next to the built ones
+        for ( File directory : new File[] { nativeLibDirectory, nativeObjDirectory } )
         {
-            if ( logErrors )
+            for ( String extension : extensions )
             {
-                getLog().error( "Could not locate final native library using the provided finalLibraryName " + libraryName + " (tried " + libraryFile.getAbsolutePath() + ")" );
+                final File libraryFile = new File( directory, "lib" + libraryName + extension );
+                if ( libraryFile.isFile() )
+                {
+                    return buildManifest.toModule( libraryName, libraryFile );
+                }
             }
-            throw new MojoExecutionException( "Could not locate final native library using the provided finalLibraryName " + libraryName + " (tried " + libraryFile.getAbsolutePath() + ")" );
         }
 
-        return libraryFile;
+        final File libraryFile = new File( nativeObjDirectory, "lib" + libraryName + extensions[ extensions.length - 1 ] );
+        getLog().error( "Could not locate final native library using the provided finalLibraryName " + libraryName + " (tried " + libraryFile.getAbsolutePath() + ")" );
+        throw new MojoExecutionException( "Could not locate final native library using the provided finalLibraryName " + libraryName + " (tried " + libraryFile.getAbsolutePath() + ")" );
     }
 
 
-    private CommandExecutor.ErrorListener getNdkErrorListener()
+    private DiagnosticsClassifier createDiagnosticsClassifier ()
     {
-        return new CommandExecutor.ErrorListener()
+        if ( buildWarningsPattern == null && !ignoreBuildWarnings )
         {
-            @Override
-            public boolean isError( String error )
-            {
-
-                // Unconditionally ignore *All* build warning if configured to
-                if ( ignoreBuildWarnings )
-                {
-                    return false;
-                }
-
-                final Pattern pattern = Pattern.compile( buildWarningsRegularExpression );
-                final Matcher matcher = pattern.matcher( error );
-
-                // If the the reg.exp actually matches, we can safely say this is not an error
-                // since in theory the user told us so
-                if ( matcher.matches() )
-                {
-                    return false;
-                }
-
-                // Otherwise, it is just another error
-                return true;
-            }
-        };
+            buildWarningsPattern = Pattern.compile ( buildWarningsRegularExpression );
+        }
+        return new DiagnosticsClassifier ( ignoreBuildWarnings, buildWarningsPattern );
     }
 
     /**
@@ -970,23 +1763,27 @@ public class NdkBuildMojo extends AbstractMojo
         return getAndroidNdk().getNdkBuildPath();
     }
 
-    private void attachHeaderFiles ( final CompileCommand compileCommand, final File localCIncludesFile, final List<String> classifiers ) throws MojoExecutionException, IOException
+    private void attachHeaderFiles ( final CompileCommand compileCommand, final String architecture, final MakefileCapture makefileCapture,
+                                     final String libraryModule, final List<String> classifiers ) throws MojoExecutionException, IOException
     {
 
         final List<HeaderFilesDirective> finalHeaderFilesDirectives = new ArrayList<HeaderFilesDirective>();
 
         if ( useLocalSrcIncludePaths )
         {
-            Properties props = new Properties();
-            props.load( new FileInputStream( localCIncludesFile ) );
-            String localCIncludes = props.getProperty( "LOCAL_C_INCLUDES" );
+            // Use the includes of the module producing the final library, or the last module defined if there is none
+            String localCIncludes = makefileCapture.getModuleVariable( architecture, libraryModule, "LOCAL_C_INCLUDES" );
             if ( localCIncludes != null && !localCIncludes.trim().isEmpty() )
             {
-                String[] includes = localCIncludes.split( " " );
+                String[] includes = localCIncludes.trim().split( "\\s+" );
                 for ( String include : includes )
                 {
                     final HeaderFilesDirective headerFilesDirective = new HeaderFilesDirective();
-                    File includeDir = new File( project.getBasedir(), include );
+                    File includeDir = new File( include );
+                    if ( !includeDir.isAbsolute() )
+                    {
+                        includeDir = new File( project.getBasedir(), include );
+                    }
                     headerFilesDirective.setDirectory( includeDir.getAbsolutePath() );
                     headerFilesDirective.setIncludes( new String[]{ "**/*.h", "**/*.hpp" } );
                     finalHeaderFilesDirectives.add( headerFilesDirective );
@@ -1019,27 +1816,17 @@ public class NdkBuildMojo extends AbstractMojo
     {
         try
         {
-            MavenArchiver mavenArchiver = new MavenArchiver();
-            mavenArchiver.setArchiver( jarArchiver );
-
-            final File jarFile = File.createTempFile( "tmp", ".har", buildDirectory );
-
-            mavenArchiver.setOutputFile( jarFile );
-
-            for ( HeaderFilesDirective headerFilesDirective : finalHeaderFilesDirectives )
+            if ( headerArchiveWriter == null )
             {
-                mavenArchiver.getArchiver().addDirectory( new File( headerFilesDirective.getDirectory() ), headerFilesDirective.getIncludes(), headerFilesDirective.getExcludes() );
+                headerArchiveWriter = new HeaderArchiveWriter( new File( buildDirectory, "ndk-headers" ), execution.getExecutionId(), reproducibleHeaderArchives,
+                        jarArchiver, project, getLog() );
             }
-
-            final MavenArchiveConfiguration mavenArchiveConfiguration = new MavenArchiveConfiguration();
-            mavenArchiveConfiguration.setAddMavenDescriptor( false );
-
-            mavenArchiver.createArchive( project, mavenArchiveConfiguration );
+            final File jarFile = headerArchiveWriter.getArchive( finalHeaderFilesDirectives );
 
             for ( String classifier : classifiers )
             {
                 getLog().debug( "Attaching 'har' classifier=" + classifier + " file=" + jarFile );
-                projectHelper.attachArtifact( project, Const.ArtifactType.NATIVE_HEADER_ARCHIVE, classifier, jarFile );
+                attachArtifact( Const.ArtifactType.NATIVE_HEADER_ARCHIVE, classifier, jarFile );
             }
 
         }
@@ -1067,47 +1854,6 @@ public class NdkBuildMojo extends AbstractMojo
         }
     }
 
-    private Set<Artifact> findNativeLibraryDependencies() throws MojoExecutionException
-    {
-        final NativeHelper nativeHelper = getNativeHelper();
-        final Set<Artifact> staticLibraryArtifacts = nativeHelper.getNativeDependenciesArtifacts( false );
-        final Set<Artifact> sharedLibraryArtifacts = nativeHelper.getNativeDependenciesArtifacts( true );
-
-        final Set<Artifact> mergedArtifacts = new LinkedHashSet<Artifact>();
-        filterNativeDependencies( mergedArtifacts, staticLibraryArtifacts );
-        filterNativeDependencies( mergedArtifacts, sharedLibraryArtifacts );
-
-        getLog().debug( "findNativeLibraryDependencies found " + mergedArtifacts.size() + ": " + mergedArtifacts.toString() );
-
-        return mergedArtifacts;
-    }
-
-    /**
-     * Selectively add artifacts from source to target excluding any whose groupId and artifactId match
-     * the current build.
-     * <p/>
-     * Introduced to work around an issue when the ndk-build is executed twice by maven for example when
-     * invoking maven 'install site'. In this case the artifacts attached by the first invocation are
-     * found but are not valid dependencies and must be excluded.
-     *
-     * @param targetSet artifact Set to copy in to
-     * @param source    artifact Set to filter
-     */
-    private void filterNativeDependencies( Set<Artifact> targetSet, Set<Artifact> source )
-    {
-        for ( Artifact a : source )
-        {
-            if ( project.getGroupId().equals( a.getGroupId() ) && project.getArtifactId().equals( a.getArtifactId() ) )
-            {
-                getLog().warn( "Excluding native dependency attached by this build" );
-            }
-            else
-            {
-                targetSet.add( a );
-            }
-        }
-    }
-
     /**
      * Resolve the artifact type from the current project and the specified file.  If the project packaging is
      * either 'a' or 'so' it will use the packaging, otherwise it checks the file for the extension
@@ -1143,6 +1889,11 @@ public class NdkBuildMojo extends AbstractMojo
      */
     protected AndroidNdk getAndroidNdk() throws MojoExecutionException
     {
+        if ( androidNdk != null )
+        {
+            return androidNdk;
+        }
+
         final File chosenNdkPath;
 
         if ( ndkPath != null )
@@ -1156,7 +1907,20 @@ public class NdkBuildMojo extends AbstractMojo
             chosenNdkPath = new File( getAndroidNdkHomeOrThrow() );
         }
 
-        return new AndroidNdk( chosenNdkPath );
+        // The index is shared by all modules of the session and persisted next to the local repository
+        androidNdk = new AndroidNdk( chosenNdkPath,
+                NdkIndex.forSession( SessionRegistry.getSessionKey( session, project ), chosenNdkPath, getLocalDataDirectory( "ndk-index" ), getLog() ) );
+        return androidNdk;
+    }
+
+    /**
+     * @return A directory of the plugin next to the local repository, where data kept across builds and projects
+     * survives a clean, or null if there is no local repository
+     */
+    private File getLocalDataDirectory( final String name )
+    {
+        return session != null && session.getLocalRepository() != null
+                ? new File( new File( session.getLocalRepository().getBasedir() ).getParentFile(), "android-ndk-maven-plugin/" + name ) : null;
     }
 
 
@@ -1181,10 +1945,20 @@ public class NdkBuildMojo extends AbstractMojo
         if ( artifactResolverHelper == null )
         {
             artifactResolverHelper = new ArtifactResolverHelper( artifactResolver, new MavenToPlexusLogAdapter( getLog() ), project.getRemoteArtifactRepositories() );
+            artifactResolverHelper.setResolutionCache( getArtifactResolutionCache() );
+            artifactResolverHelper.setResolutionThreads( resolutionThreads );
         }
         return artifactResolverHelper;
     }
 
+    /**
+     * @return The artifact resolution cache shared by all executions and modules of the current Maven session.
+     */
+    protected final ArtifactResolutionCache getArtifactResolutionCache()
+    {
+        return ArtifactResolutionCache.forSession( SessionRegistry.getSessionKey( session, project ) );
+    }
+
     protected final NativeHelper getNativeHelper()
     {
         if ( nativeHelper == null )
@@ -0,0 +1,449 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import com.simpligility.maven.plugins.androidndk.common.DigestHelper;
+import com.simpligility.maven.plugins.androidndk.common.FileHelper;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * Content addressed store of object files compiled by ndk-build, shared by all builds using the same store directory.
+ * <p/>
+ * After a successful build, every object file in <code>NDK_OUT</code> is stored under a key derived from the build
+ * configuration, the architecture, the path of the object and the content of every source and header it depends on,
+ * as listed in the dependency file the compiler wrote next to it.  Before a build, objects missing from
+ * <code>NDK_OUT</code> whose dependencies still have the stored content are restored together with their dependency
+ * files, so make considers them up to date and only compiles what changed.  Paths below the project and below
+ * <code>NDK_OUT</code> are stored relative to those, so checkouts in different locations share the store.
+ * <p/>
+ * The store is bounded in size, the least recently used objects are evicted first.
+ * <p/>
+ * Objects can also be keyed by the command line that compiles them, see {@link CompilerCommands}.  Objects compiled
+ * by the same command from the same sources are then shared across build configurations, such as the executions of
+ * a project building different variants.
+ */
+public class ObjectCache
+{
+    private static final String BASE_DIRECTORY_TOKEN = "${basedir}";
+    private static final String NDK_OUT_TOKEN = "${ndkout}";
+    private static final String OBJECT_SUFFIX = ".o";
+    private static final String DEPENDENCY_SUFFIX = ".o.d";
+
+    private final File storeDirectory;
+    private final long maxSize;
+    private final String configurationKey;
+    private final String baseDirectory;
+    private final File workingDirectory;
+    private final Log log;
+
+    /**
+     * Content hashes of the dependencies seen by this instance, by absolute path.
+     */
+    private final Map<String, String> contentHashes = new HashMap<String, String>();
+
+    /**
+     * @param storeDirectory   Directory holding the store
+     * @param maxSize          Maximum size of the stored objects in bytes, values less than 1 disable eviction
+     * @param configurationKey Key of everything affecting the compilation besides the sources, such as the NDK, the
+     *                         makefiles and the command line
+     * @param baseDirectory    Base directory of the project
+     * @param workingDirectory Directory ndk-build runs in, relative dependencies are relative to it
+     * @param log              Log to write output to
+     */
+    public ObjectCache( final File storeDirectory, final long maxSize, final String configurationKey, final File baseDirectory,
+                        final File workingDirectory, final Log log )
+    {
+        this.storeDirectory = storeDirectory;
+        this.maxSize = maxSize;
+        this.configurationKey = configurationKey;
+        this.baseDirectory = baseDirectory.getAbsolutePath();
+        this.workingDirectory = workingDirectory;
+        this.log = log;
+    }
+
+    /**
+     * @return The directory holding the store
+     */
+    public File getStoreDirectory()
+    {
+        return storeDirectory;
+    }
+
+    /**
+     * Restores the stored objects of an architecture that are missing from <code>NDK_OUT</code> and whose
+     * dependencies are unchanged.
+     *
+     * @return The number of objects restored
+     */
+    public int restore( final File ndkOut, final String architecture ) throws IOException
+    {
+        return restore( ndkOut, architecture, null );
+    }
+
+    /**
+     * Restores the stored objects of an architecture that are missing from <code>NDK_OUT</code>, are compiled by the
+     * same command and whose dependencies are unchanged.
+     *
+     * @param commandKeys Keys of the compiler commands by object path, null to restore all objects of the
+     *                    configuration
+     * @return The number of objects restored
+     */
+    public int restore( final File ndkOut, final String architecture, final Map<String, String> commandKeys ) throws IOException
+    {
+        final File architectureDirectory = getArchitectureDirectory( ndkOut, architecture );
+        final Properties index = readIndex( architecture );
+        contentHashes.clear();
+
+        int restored = 0;
+        for ( String objectPath : new TreeSet<String>( commandKeys != null ? commandKeys.keySet() : index.stringPropertyNames() ) )
+        {
+            final File objectFile = new File( architectureDirectory, objectPath );
+            final String commandKey = commandKeys != null ? commandKeys.get( objectPath ) : null;
+            final String dependencies = index.getProperty( getIndexKey( objectPath, commandKey ) );
+            if ( objectFile.exists() || dependencies == null )
+            {
+                continue;
+            }
+
+            final String key = computeKey( ndkOut, architecture, objectPath, commandKey, Arrays.asList( dependencies.split( "\n" ) ) );
+            if ( key == null )
+            {
+                continue;
+            }
+            final File storedObject = getStoredFile( key, OBJECT_SUFFIX );
+            final File storedDependencies = getStoredFile( key, DEPENDENCY_SUFFIX );
+            if ( !storedObject.isFile() || !storedDependencies.isFile() )
+            {
+                continue;
+            }
+
+            objectFile.getParentFile().mkdirs();
+            FileUtils.writeStringToFile( new File( architectureDirectory, objectPath.substring( 0, objectPath.length() - OBJECT_SUFFIX.length() )
+                    + DEPENDENCY_SUFFIX ), expand( FileUtils.readFileToString( storedDependencies, "UTF-8" ), ndkOut ), "UTF-8" );
+            Files.copy( storedObject.toPath(), objectFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            storedObject.setLastModified( System.currentTimeMillis() );
+            restored++;
+        }
+
+        log.debug( "Restored " + restored + " objects for " + architecture + " from " + storeDirectory );
+        return restored;
+    }
+
+    /**
+     * Stores the objects of an architecture found in <code>NDK_OUT</code>, and evicts the least recently used
+     * objects if the store exceeds its maximum size.
+     *
+     * @return The number of objects added to the store
+     */
+    public int harvest( final File ndkOut, final String architecture ) throws IOException
+    {
+        return harvest( ndkOut, architecture, null );
+    }
+
+    /**
+     * Stores the objects of an architecture found in <code>NDK_OUT</code> under the key of the command compiling
+     * them, and evicts the least recently used objects if the store exceeds its maximum size.
+     *
+     * @param commandKeys Keys of the compiler commands by object path, objects without one are not stored.  Null to
+     *                    store all objects under the configuration
+     * @return The number of objects added to the store
+     */
+    public int harvest( final File ndkOut, final String architecture, final Map<String, String> commandKeys ) throws IOException
+    {
+        final File architectureDirectory = getArchitectureDirectory( ndkOut, architecture );
+        final List<File> objectFiles = new ArrayList<File>();
+        findObjects( architectureDirectory, objectFiles );
+
+        final Properties index = readIndex( architecture );
+        contentHashes.clear();
+        int stored = 0;
+        for ( File objectFile : objectFiles )
+        {
+            final File dependencyFile = new File( objectFile.getPath().substring( 0, objectFile.getPath().length() - OBJECT_SUFFIX.length() )
+                    + DEPENDENCY_SUFFIX );
+            if ( !dependencyFile.isFile() )
+            {
+                continue;
+            }
+
+            final String objectPath = architectureDirectory.toURI().relativize( objectFile.toURI() ).getPath();
+            final String commandKey = commandKeys != null ? commandKeys.get( objectPath ) : null;
+            if ( commandKeys != null && commandKey == null )
+            {
+                continue;
+            }
+            final List<String> dependencies = new ArrayList<String>();
+            for ( String dependency : parseDependencies( FileUtils.readFileToString( dependencyFile, "UTF-8" ) ) )
+            {
+                dependencies.add( normalize( dependency, ndkOut ) );
+            }
+            final String key = computeKey( ndkOut, architecture, objectPath, commandKey, dependencies );
+            if ( key == null )
+            {
+                continue;
+            }
+            index.setProperty( getIndexKey( objectPath, commandKey ), join( dependencies ) );
+
+            final File storedObject = getStoredFile( key, OBJECT_SUFFIX );
+            if ( storedObject.isFile() )
+            {
+                storedObject.setLastModified( System.currentTimeMillis() );
+                continue;
+            }
+
+            storedObject.getParentFile().mkdirs();
+            FileHelper.writeIfChanged( getStoredFile( key, DEPENDENCY_SUFFIX ), normalize( FileUtils.readFileToString( dependencyFile, "UTF-8" ), ndkOut ) );
+            final File temporaryFile = File.createTempFile( key, ".tmp", storedObject.getParentFile() );
+            try
+            {
+                Files.copy( objectFile.toPath(), temporaryFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+                moveIntoPlace( temporaryFile, storedObject );
+            }
+            finally
+            {
+                FileUtils.deleteQuietly( temporaryFile );
+            }
+            stored++;
+        }
+
+        writeIndex( architecture, index );
+        log.debug( "Stored " + stored + " of " + objectFiles.size() + " objects for " + architecture + " in " + storeDirectory );
+        evict();
+        return stored;
+    }
+
+    /**
+     * Removes the least recently used objects until the store is within its maximum size.
+     */
+    void evict()
+    {
+        if ( maxSize < 1 )
+        {
+            return;
+        }
+
+        final List<File> objects = new ArrayList<File>();
+        final File[] shards = new File( storeDirectory, "objects" ).listFiles();
+        long size = 0;
+        if ( shards != null )
+        {
+            for ( File shard : shards )
+            {
+                final File[] files = shard.listFiles();
+                for ( File file : files == null ? new File[ 0 ] : files )
+                {
+                    if ( file.getName().endsWith( OBJECT_SUFFIX ) )
+                    {
+                        objects.add( file );
+                        size += file.length();
+                    }
+                }
+            }
+        }
+        if ( size <= maxSize )
+        {
+            return;
+        }
+
+        final Map<File, Long> lastUse = new HashMap<File, Long>();
+        for ( File object : objects )
+        {
+            lastUse.put( object, object.lastModified() );
+        }
+        Collections.sort( objects, new Comparator<File>()
+        {
+            @Override
+            public int compare( File first, File second )
+            {
+                return lastUse.get( first ).compareTo( lastUse.get( second ) );
+            }
+        } );
+
+        for ( int i = 0; i < objects.size() && size > maxSize; i++ )
+        {
+            final File object = objects.get( i );
+            size -= object.length();
+            log.debug( "Evicting least recently used object " + object );
+            FileUtils.deleteQuietly( object );
+            FileUtils.deleteQuietly( new File( object.getPath().substring( 0, object.getPath().length() - OBJECT_SUFFIX.length() ) + DEPENDENCY_SUFFIX ) );
+        }
+    }
+
+    /**
+     * @return The key of an object, or null if one of its dependencies no longer exists
+     */
+    private String computeKey( final File ndkOut, final String architecture, final String objectPath, final String commandKey,
+                               final List<String> dependencies ) throws IOException
+    {
+        final StringBuilder content = new StringBuilder();
+        content.append( configurationKey ).append( '\n' ).append( architecture ).append( '\n' ).append( objectPath ).append( '\n' );
+        if ( commandKey != null )
+        {
+            content.append( commandKey ).append( '\n' );
+        }
+        for ( String dependency : dependencies )
+        {
+            File dependencyFile = new File( expand( dependency, ndkOut ) );
+            if ( !dependencyFile.isAbsolute() )
+            {
+                dependencyFile = new File( workingDirectory, dependencyFile.getPath() );
+            }
+            String contentHash = contentHashes.get( dependencyFile.getPath() );
+            if ( contentHash == null )
+            {
+                if ( !dependencyFile.isFile() )
+                {
+                    return null;
+                }
+                contentHash = DigestHelper.sha1( dependencyFile );
+                contentHashes.put( dependencyFile.getPath(), contentHash );
+            }
+            content.append( dependency ).append( '=' ).append( contentHash ).append( '\n' );
+        }
+        return DigestHelper.sha1( content.toString() );
+    }
+
+    /**
+     * Parses the prerequisites of the first rule of a make dependency file, as written by <code>-MMD</code>.
+     */
+    static List<String> parseDependencies( final String dependencyFileContent )
+    {
+        final String joined = dependencyFileContent.replace( "\\\r\n", " " ).replace( "\\\n", " " );
+        final String rule = joined.split( "\r?\n" )[ 0 ];
+        final int separator = rule.indexOf( ": " );
+        final List<String> dependencies = new ArrayList<String>();
+        if ( separator == -1 )
+        {
+            return dependencies;
+        }
+        for ( String dependency : rule.substring( separator + 2 ).replace( "\\ ", "\u0000" ).trim().split( "\\s+" ) )
+        {
+            if ( !dependency.isEmpty() )
+            {
+                dependencies.add( dependency.replace( '\u0000', ' ' ) );
+            }
+        }
+        return dependencies;
+    }
+
+    private String normalize( final String value, final File ndkOut )
+    {
+        return value.replace( ndkOut.getAbsolutePath(), NDK_OUT_TOKEN ).replace( baseDirectory, BASE_DIRECTORY_TOKEN );
+    }
+
+    private String expand( final String value, final File ndkOut )
+    {
+        return value.replace( NDK_OUT_TOKEN, ndkOut.getAbsolutePath() ).replace( BASE_DIRECTORY_TOKEN, baseDirectory );
+    }
+
+    private static void findObjects( final File directory, final List<File> objectFiles )
+    {
+        final File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        Arrays.sort( files );
+        for ( File file : files )
+        {
+            if ( file.isDirectory() )
+            {
+                findObjects( file, objectFiles );
+            }
+            else if ( file.getName().endsWith( OBJECT_SUFFIX ) )
+            {
+                objectFiles.add( file );
+            }
+        }
+    }
+
+    private static File getArchitectureDirectory( final File ndkOut, final String architecture )
+    {
+        return new File( new File( ndkOut, "local" ), architecture );
+    }
+
+    private File getStoredFile( final String key, final String suffix )
+    {
+        return key == null ? null : new File( new File( new File( storeDirectory, "objects" ), key.substring( 0, 2 ) ), key + suffix );
+    }
+
+    /**
+     * @return The entry of an object in the index, per command if the object is keyed by its command
+     */
+    private static String getIndexKey( final String objectPath, final String commandKey )
+    {
+        return commandKey != null ? objectPath + "@" + commandKey : objectPath;
+    }
+
+    private File getIndexFile( final String architecture )
+    {
+        return new File( new File( storeDirectory, "index" ), configurationKey + "-" + architecture + ".properties" );
+    }
+
+    private Properties readIndex( final String architecture ) throws IOException
+    {
+        final Properties index = new Properties();
+        final File indexFile = getIndexFile( architecture );
+        if ( indexFile.isFile() )
+        {
+            final InputStream in = new FileInputStream( indexFile );
+            try
+            {
+                index.load( in );
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        return index;
+    }
+
+    private void writeIndex( final String architecture, final Properties index ) throws IOException
+    {
+        FileHelper.writePropertiesIfChanged( getIndexFile( architecture ), index );
+    }
+
+    private static String join( final List<String> values )
+    {
+        final StringBuilder joined = new StringBuilder();
+        for ( String value : values )
+        {
+            if ( joined.length() > 0 )
+            {
+                joined.append( '\n' );
+            }
+            joined.append( value );
+        }
+        return joined.toString();
+    }
+
+    private static void moveIntoPlace( final File temporaryFile, final File target ) throws IOException
+    {
+        try
+        {
+            Files.move( temporaryFile.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( AtomicMoveNotSupportedException e )
+        {
+            Files.move( temporaryFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+
+}
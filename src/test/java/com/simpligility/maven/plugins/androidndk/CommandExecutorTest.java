@@ -0,0 +1,65 @@
+package com.simpligility.maven.plugins.androidndk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CommandExecutorTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void boundedLineBufferKeepsLastLines()
+    {
+        final CommandExecutor.Factory.BoundedLineBuffer buffer = new CommandExecutor.Factory.BoundedLineBuffer( 3 );
+        assertEquals( "", buffer.toString() );
+
+        buffer.add( "one" );
+        buffer.add( "two" );
+        assertEquals( "one\ntwo", buffer.toString() );
+
+        buffer.add( "three" );
+        buffer.add( "four" );
+        buffer.add( "five" );
+        assertEquals( "three\nfour\nfive", buffer.toString() );
+    }
+
+    @Test
+    public void streamsOutputToFileAndProcessors() throws Exception
+    {
+        Assume.assumeTrue( new File( "/bin/sh" ).canExecute() );
+
+        final File outputFile = new File( temporaryFolder.getRoot(), "logs/output.log" );
+        final List<String> processed = new ArrayList<String>();
+
+        final CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
+        executor.setLogger( new SilentLog() );
+        executor.setCaptureStdOut( true );
+        executor.setOutputFile( outputFile );
+        executor.addStdOutProcessor( new CommandExecutor.LineProcessor()
+        {
+            @Override
+            public void processLine( String line )
+            {
+                processed.add( line );
+            }
+        } );
+
+        executor.executeCommand( "/bin/sh", Arrays.asList( "-c", "'echo a; echo b; echo c'" ), false );
+
+        assertEquals( "a\nb\nc", executor.getStandardOut() );
+        assertEquals( Arrays.asList( "a", "b", "c" ), processed );
+        assertEquals( Arrays.asList( "a", "b", "c" ), FileUtils.readLines( outputFile, "UTF-8" ) );
+    }
+}
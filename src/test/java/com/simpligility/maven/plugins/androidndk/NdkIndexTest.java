@@ -0,0 +1,73 @@
+package com.simpligility.maven.plugins.androidndk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class NdkIndexTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void indexesNdkAndReusesPersistedIndex() throws Exception
+    {
+        final File ndk = temporaryFolder.newFolder( "ndk" );
+        FileUtils.writeStringToFile( new File( ndk, "source.properties" ), "Pkg.Desc = Android NDK\nPkg.Revision = 16.1.4479499\n", "UTF-8" );
+        new File( ndk, "toolchains/arm-linux-androideabi-4.9" ).mkdirs();
+        new File( ndk, "toolchains/llvm/prebuilt/linux-x86_64/lib64/clang/5.0.300080" ).mkdirs();
+        new File( ndk, "platforms/android-21" ).mkdirs();
+        new File( ndk, "prebuilt/linux-x86_64" ).mkdirs();
+        ndk.setLastModified( 1500000000000L );
+
+        final File indexDirectory = new File( temporaryFolder.getRoot(), "index" );
+        final NdkIndex index = NdkIndex.load( ndk, indexDirectory, new SilentLog() );
+        assertEquals( "16.1.4479499", index.getRevision() );
+        assertEquals( Arrays.asList( "arm-linux-androideabi-4.9", "llvm" ), Arrays.asList( index.getToolchains().toArray() ) );
+        assertEquals( Arrays.asList( "android-21" ), Arrays.asList( index.getPlatforms().toArray() ) );
+        assertEquals( Arrays.asList( "linux-x86_64" ), Arrays.asList( index.getHostTags().toArray() ) );
+        assertEquals( Arrays.asList( "clang-5.0.300080" ), Arrays.asList( index.getCompilerVersions().toArray() ) );
+
+        // The persisted index is used while the NDK is unchanged
+        final File indexFile = indexDirectory.listFiles()[ 0 ];
+        FileUtils.writeStringToFile( indexFile, FileUtils.readFileToString( indexFile, "UTF-8" ).replace( "android-21", "android-99" ), "UTF-8" );
+        assertEquals( Arrays.asList( "android-99" ), Arrays.asList( NdkIndex.load( ndk, indexDirectory, new SilentLog() ).getPlatforms().toArray() ) );
+
+        // A toolchain removed from the NDK is noticed, although the NDK directory itself is unchanged
+        final File toolchains = new File( ndk, "toolchains" );
+        FileUtils.deleteDirectory( new File( toolchains, "arm-linux-androideabi-4.9" ) );
+        toolchains.setLastModified( toolchains.lastModified() + 2000 );
+        assertEquals( Arrays.asList( "llvm" ), Arrays.asList( NdkIndex.load( ndk, indexDirectory, new SilentLog() ).getToolchains().toArray() ) );
+
+        // So is an NDK updated in place
+        final File sourceProperties = new File( ndk, "source.properties" );
+        FileUtils.writeStringToFile( sourceProperties, "Pkg.Desc = Android NDK\nPkg.Revision = 16.1.4479500\n", "UTF-8" );
+        sourceProperties.setLastModified( sourceProperties.lastModified() + 2000 );
+        assertEquals( "16.1.4479500", NdkIndex.load( ndk, indexDirectory, new SilentLog() ).getRevision() );
+    }
+
+    @Test
+    public void sharesIndexWithinSession() throws Exception
+    {
+        final File ndk = temporaryFolder.newFolder( "ndk" );
+        final Object session = new Object();
+        assertSame( NdkIndex.forSession( session, ndk, null, new SilentLog() ), NdkIndex.forSession( session, ndk, null, new SilentLog() ) );
+    }
+
+    @Test
+    public void resolvesToolchainsFromIndex() throws Exception
+    {
+        final File ndk = temporaryFolder.newFolder( "ndk" );
+        new File( ndk, "toolchains/x86-4.9" ).mkdirs();
+        final AndroidNdk androidNdk = new AndroidNdk( ndk, NdkIndex.scan( ndk ) );
+        assertEquals( "x86-4.9", androidNdk.getToolchainFromArchitecture( "x86", null ) );
+    }
+}
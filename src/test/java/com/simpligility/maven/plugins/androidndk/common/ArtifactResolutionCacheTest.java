@@ -0,0 +1,64 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ArtifactResolutionCacheTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void returnsFileOfArtifactWithSameCoordinates() throws Exception
+    {
+        final ArtifactResolutionCache cache = new ArtifactResolutionCache();
+        final Artifact resolved = createArtifact( "so", null );
+        resolved.setFile( temporaryFolder.newFile( "lib.so" ) );
+
+        assertNull( cache.get( createArtifact( "so", null ) ) );
+        cache.put( resolved );
+
+        assertEquals( resolved.getFile(), cache.get( createArtifact( "so", null ) ) );
+        assertNull( cache.get( createArtifact( "so", "armeabi" ) ) );
+        assertNull( cache.get( createArtifact( "a", null ) ) );
+        assertEquals( 1, cache.getHits() );
+        assertEquals( 3, cache.getMisses() );
+    }
+
+    @Test
+    public void ignoresFilesThatNoLongerExist() throws Exception
+    {
+        final ArtifactResolutionCache cache = new ArtifactResolutionCache();
+        final Artifact resolved = createArtifact( "har", null );
+        resolved.setFile( temporaryFolder.newFile( "lib.har" ) );
+        cache.put( resolved );
+
+        resolved.getFile().delete();
+        assertNull( cache.get( resolved ) );
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void sharesCachePerSession()
+    {
+        final Object session = new Object();
+        assertSame( ArtifactResolutionCache.forSession( session ), ArtifactResolutionCache.forSession( session ) );
+        assertNotSame( ArtifactResolutionCache.forSession( session ), ArtifactResolutionCache.forSession( new Object() ) );
+    }
+
+    private static Artifact createArtifact( final String type, final String classifier )
+    {
+        return new DefaultArtifact( "com.acme", "native", "1.0", "compile", type, classifier, new DefaultArtifactHandler( type ) );
+    }
+}
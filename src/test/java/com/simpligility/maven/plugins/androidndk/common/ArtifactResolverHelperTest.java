@@ -0,0 +1,97 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.resolver.ArtifactResolutionRequest;
+import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ArtifactResolverHelperTest
+{
+    @Test
+    public void resolvesBatchConcurrentlyInRequestedOrder() throws Exception
+    {
+        final ArtifactResolverHelper helper = createHelper();
+        helper.setResolutionThreads( 4 );
+
+        final List<Artifact> artifacts = new ArrayList<Artifact>();
+        for ( int i = 0; i < 10; i++ )
+        {
+            artifacts.add( createArtifact( "lib" + i ) );
+        }
+
+        final List<Artifact> resolved = helper.resolveArtifactBatch( artifacts );
+        assertEquals( artifacts.size(), resolved.size() );
+        for ( int i = 0; i < artifacts.size(); i++ )
+        {
+            assertEquals( new File( "lib" + i + ".so" ), resolved.get( i ).getFile() );
+        }
+    }
+
+    @Test
+    public void reportsAllFailuresTogether() throws Exception
+    {
+        final ArtifactResolverHelper helper = createHelper();
+        helper.setResolutionThreads( 2 );
+
+        try
+        {
+            helper.resolveArtifactBatch( Arrays.asList( createArtifact( "missing1" ), createArtifact( "lib" ), createArtifact( "missing2" ) ) );
+            fail( "Expected resolution failure" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().startsWith( "Could not resolve 2 of 3 artifacts" ) );
+            assertTrue( e.getMessage(), e.getMessage().contains( "missing1" ) );
+            assertTrue( e.getMessage(), e.getMessage().contains( "missing2" ) );
+        }
+    }
+
+    /**
+     * @return A helper whose resolver resolves every artifact, except those whose id starts with "missing", to a
+     * file named after the artifact.
+     */
+    private static ArtifactResolverHelper createHelper()
+    {
+        final ArtifactResolver resolver = ( ArtifactResolver ) Proxy.newProxyInstance( ArtifactResolver.class.getClassLoader(),
+                new Class<?>[] { ArtifactResolver.class }, new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke( Object proxy, Method method, Object[] args )
+                    {
+                        final Artifact artifact = ( ( ArtifactResolutionRequest ) args[ 0 ] ).getArtifact();
+                        final ArtifactResolutionResult result = new ArtifactResolutionResult();
+                        if ( !artifact.getArtifactId().startsWith( "missing" ) )
+                        {
+                            artifact.setFile( new File( artifact.getArtifactId() + ".so" ) );
+                            result.setArtifacts( Collections.singleton( artifact ) );
+                        }
+                        return result;
+                    }
+                } );
+        return new ArtifactResolverHelper( resolver, new ConsoleLogger( Logger.LEVEL_DISABLED, "test" ) );
+    }
+
+    private static Artifact createArtifact( final String artifactId )
+    {
+        return new DefaultArtifact( "com.acme", artifactId, "1.0", "compile", "so", null, new DefaultArtifactHandler( "so" ) );
+    }
+}
@@ -0,0 +1,70 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BuildCapacityTest
+{
+    private static final long GIGABYTE = 1024L * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void usesQuotaAndMemoryLimitOfCgroupV2() throws Exception
+    {
+        final File root = temporaryFolder.getRoot();
+        write( root, "sys/fs/cgroup/cgroup.controllers", "cpu memory" );
+        write( root, "proc/self/cgroup", "0::/kubepods/pod1\n" );
+        write( root, "sys/fs/cgroup/kubepods/pod1/cpu.max", "250000 100000" );
+        write( root, "sys/fs/cgroup/kubepods/pod1/memory.max", String.valueOf( 8 * GIGABYTE ) );
+        write( root, "sys/fs/cgroup/kubepods/pod1/memory.current", String.valueOf( 2 * GIGABYTE ) );
+        write( root, "proc/loadavg", "30.00 20.00 10.00 1/100 1234" );
+
+        final BuildCapacity buildCapacity = new BuildCapacity( root );
+        assertEquals( 2.5, buildCapacity.getCpuQuota(), 0.001 );
+        assertEquals( 3, buildCapacity.decide( 16, GIGABYTE ).getJobs() );
+        assertEquals( 3, buildCapacity.decide( 16, 2 * GIGABYTE ).getJobs() );
+        assertEquals( 2, buildCapacity.decide( 16, 3 * GIGABYTE ).getJobs() );
+    }
+
+    @Test
+    public void usesLimitsOfCgroupV1() throws Exception
+    {
+        final File root = temporaryFolder.getRoot();
+        write( root, "sys/fs/cgroup/cpu/cpu.cfs_quota_us", "-1" );
+        write( root, "sys/fs/cgroup/cpu/cpu.cfs_period_us", "100000" );
+        write( root, "sys/fs/cgroup/memory/memory.limit_in_bytes", String.valueOf( 4 * GIGABYTE ) );
+        write( root, "sys/fs/cgroup/memory/memory.usage_in_bytes", "0" );
+
+        final BuildCapacity buildCapacity = new BuildCapacity( root );
+        assertNull( buildCapacity.getCpuQuota() );
+        assertEquals( 8, buildCapacity.decide( 8, 512 * 1024 * 1024 ).getJobs() );
+        assertEquals( 4, buildCapacity.decide( 8, GIGABYTE ).getJobs() );
+    }
+
+    @Test
+    public void reducesJobsByLoadWithoutQuota() throws Exception
+    {
+        final File root = temporaryFolder.getRoot();
+        write( root, "proc/loadavg", "5.70 3.00 1.00 1/100 1234" );
+
+        final BuildCapacity.Decision decision = new BuildCapacity( root ).decide( 8, GIGABYTE );
+        assertEquals( 3, decision.getJobs() );
+        assertEquals( "3 idle processors at a load average of 5.70", decision.getReason() );
+        assertEquals( 1, new BuildCapacity( root ).decide( 4, GIGABYTE ).getJobs() );
+    }
+
+    private static void write( final File root, final String path, final String content ) throws IOException
+    {
+        FileUtils.writeStringToFile( new File( root, path ), content, "UTF-8" );
+    }
+}
@@ -0,0 +1,107 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BuildTimerTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writesPropertiesPhaseTotalsAndTimingsAsJson() throws Exception
+    {
+        final BuildTimer buildTimer = new BuildTimer();
+        buildTimer.start( "resolve", "com.acme:native:so:1.0" ).stop();
+        buildTimer.start( "ndk-build", "x86" ).stop();
+        buildTimer.start( "resolve" ).stop();
+
+        final Map<String, String> properties = new LinkedHashMap<String, String>();
+        properties.put( "project", "com.acme:app:so:1.0" );
+        properties.put( "note", "a \"quoted\"\tvalue\\" );
+        final File reportFile = new File( temporaryFolder.getRoot(), "ndk-build-timings.json" );
+        buildTimer.writeReport( reportFile, properties );
+
+        final String expected = "{\n"
+                + "  \"project\": \"com.acme:app:so:1.0\",\n"
+                + "  \"note\": \"a \\\"quoted\\\"\\tvalue\\\\\",\n"
+                + "  \"totalMillis\": N,\n"
+                + "  \"phases\": [\n"
+                + "    { \"phase\": \"resolve\", \"count\": 2, \"totalMillis\": N },\n"
+                + "    { \"phase\": \"ndk-build\", \"count\": 1, \"totalMillis\": N }\n"
+                + "  ],\n"
+                + "  \"timings\": [\n"
+                + "    { \"phase\": \"resolve\", \"detail\": \"com.acme:native:so:1.0\", \"startMillis\": N, \"durationMillis\": N },\n"
+                + "    { \"phase\": \"ndk-build\", \"detail\": \"x86\", \"startMillis\": N, \"durationMillis\": N },\n"
+                + "    { \"phase\": \"resolve\", \"detail\": null, \"startMillis\": N, \"durationMillis\": N }\n"
+                + "  ]\n"
+                + "}\n";
+        assertEquals( expected, readReport( reportFile ) );
+    }
+
+    @Test
+    public void writesEmptyListsWithoutTimings() throws Exception
+    {
+        final File reportFile = new File( temporaryFolder.getRoot(), "ndk-build-timings.json" );
+        new BuildTimer().writeReport( reportFile, new LinkedHashMap<String, String>() );
+
+        assertEquals( "{\n  \"totalMillis\": N,\n  \"phases\": [\n  ],\n  \"timings\": [\n  ]\n}\n", readReport( reportFile ) );
+    }
+
+    @Test
+    public void logsPhaseTableBeforeIndividualTimings() throws Exception
+    {
+        final BuildTimer buildTimer = new BuildTimer();
+        buildTimer.start( "ndk-build", "x86" ).stop();
+
+        final List<String> info = new ArrayList<String>();
+        final List<String> debug = new ArrayList<String>();
+        buildTimer.logSummary( new SilentLog()
+        {
+            @Override
+            public boolean isDebugEnabled()
+            {
+                return true;
+            }
+
+            @Override
+            public void info( CharSequence content )
+            {
+                info.add( content.toString() );
+            }
+
+            @Override
+            public void debug( CharSequence content )
+            {
+                debug.add( content.toString() );
+            }
+        }, "ndk-build timings" );
+
+        assertEquals( 3, info.size() );
+        assertTrue( info.get( 0 ), info.get( 0 ).startsWith( "ndk-build timings (" ) );
+        assertTrue( info.get( 1 ), info.get( 1 ).contains( "Total ms" ) );
+        assertTrue( info.get( 2 ), info.get( 2 ).trim().startsWith( "ndk-build" ) );
+        assertEquals( 1, debug.size() );
+        assertTrue( debug.get( 0 ), debug.get( 0 ).trim().startsWith( "ndk-build [x86]: " ) );
+    }
+
+    /**
+     * @return The report, with the measured milliseconds replaced by N
+     */
+    private static String readReport( final File reportFile ) throws Exception
+    {
+        return FileUtils.readFileToString( reportFile, "UTF-8" ).replaceAll( "(Millis\": )\\d+", "$1N" );
+    }
+}
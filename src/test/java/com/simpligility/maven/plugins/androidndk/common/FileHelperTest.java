@@ -0,0 +1,77 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Properties;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileHelperTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void unchangedWriteKeepsModificationTime() throws Exception
+    {
+        final File file = new File( temporaryFolder.getRoot(), "makefile/android_maven_plugin_makefile.mk" );
+        assertTrue( FileHelper.writeIfChanged( file, "LOCAL_MODULE := native\n" ) );
+
+        final long writtenAt = file.lastModified() - 10000;
+        assertTrue( file.setLastModified( writtenAt ) );
+
+        assertFalse( FileHelper.writeIfChanged( file, "LOCAL_MODULE := native\n" ) );
+        assertEquals( writtenAt, file.lastModified() );
+    }
+
+    @Test
+    public void changedWriteReplacesFile() throws Exception
+    {
+        final File file = new File( temporaryFolder.getRoot(), "android_maven_plugin_makefile.mk" );
+        FileHelper.writeIfChanged( file, "LOCAL_MODULE := native\n" );
+        assertTrue( file.setLastModified( file.lastModified() - 10000 ) );
+        final long writtenAt = file.lastModified();
+
+        // Same length, different content
+        assertTrue( FileHelper.writeIfChanged( file, "LOCAL_MODULE := nativf\n" ) );
+        assertEquals( "LOCAL_MODULE := nativf\n", FileUtils.readFileToString( file, "UTF-8" ) );
+        assertTrue( file.lastModified() != writtenAt );
+
+        // No temporary file is left next to it
+        assertArrayEquals( new String[] { file.getName() }, temporaryFolder.getRoot().list() );
+    }
+
+    @Test
+    public void writesPropertiesSortedWithoutDateComment() throws Exception
+    {
+        final Properties properties = new Properties();
+        properties.setProperty( "path", "/opt/ndk-\u00e9" );
+        properties.setProperty( "format", "2" );
+        final File file = new File( temporaryFolder.getRoot(), "index.properties" );
+
+        assertTrue( FileHelper.writePropertiesIfChanged( file, properties ) );
+        assertEquals( "format=2\npath=/opt/ndk-\\u00E9\n", FileUtils.readFileToString( file, "UTF-8" ) );
+        assertFalse( FileHelper.writePropertiesIfChanged( file, properties ) );
+
+        final Properties loaded = new Properties();
+        final InputStream in = new FileInputStream( file );
+        try
+        {
+            loaded.load( in );
+        }
+        finally
+        {
+            in.close();
+        }
+        assertEquals( properties, loaded );
+    }
+}
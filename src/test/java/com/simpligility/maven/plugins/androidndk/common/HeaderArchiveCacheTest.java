@@ -0,0 +1,90 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HeaderArchiveCacheTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void reusesExtractionOfUnchangedArchive() throws Exception
+    {
+        final File cacheDirectory = temporaryFolder.newFolder( "cache" );
+        final File archive = createArchive( "lib.har", "include/lib.h", "int lib();" );
+
+        final File first = new HeaderArchiveCache( cacheDirectory, 0, new SilentLog() ).getIncludeDirectory( archive );
+        assertTrue( new File( first, "include/lib.h" ).isFile() );
+        assertFalse( new File( first, "META-INF" ).exists() );
+
+        final File extracted = new File( first, "include/lib.h" );
+        final long extractedAt = extracted.lastModified() - 10000;
+        assertTrue( extracted.setLastModified( extractedAt ) );
+
+        final File second = new HeaderArchiveCache( cacheDirectory, 0, new SilentLog() ).getIncludeDirectory( archive );
+        assertEquals( first, second );
+        assertEquals( extractedAt, extracted.lastModified() );
+    }
+
+    @Test
+    public void changedArchiveGetsNewDirectory() throws Exception
+    {
+        final File cacheDirectory = temporaryFolder.newFolder( "cache" );
+        final HeaderArchiveCache cache = new HeaderArchiveCache( cacheDirectory, 0, new SilentLog() );
+
+        final File first = cache.getIncludeDirectory( createArchive( "a.har", "a.h", "int a();" ) );
+        final File second = cache.getIncludeDirectory( createArchive( "b.har", "a.h", "int b();" ) );
+
+        assertFalse( first.equals( second ) );
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() throws Exception
+    {
+        final File cacheDirectory = temporaryFolder.newFolder( "cache" );
+
+        final File oldest = new HeaderArchiveCache( cacheDirectory, 2, new SilentLog() ).getIncludeDirectory( createArchive( "a.har", "a.h", "a" ) );
+        assertTrue( new File( oldest, HeaderArchiveCache.COMPLETE_MARKER ).setLastModified( System.currentTimeMillis() - 20000 ) );
+        final File recent = new HeaderArchiveCache( cacheDirectory, 2, new SilentLog() ).getIncludeDirectory( createArchive( "b.har", "b.h", "b" ) );
+        assertTrue( new File( recent, HeaderArchiveCache.COMPLETE_MARKER ).setLastModified( System.currentTimeMillis() - 10000 ) );
+
+        final File newest = new HeaderArchiveCache( cacheDirectory, 2, new SilentLog() ).getIncludeDirectory( createArchive( "c.har", "c.h", "c" ) );
+
+        assertFalse( oldest.exists() );
+        assertTrue( recent.exists() );
+        assertTrue( newest.exists() );
+    }
+
+    private File createArchive( String name, String entryName, String content ) throws IOException
+    {
+        final File archive = new File( temporaryFolder.getRoot(), name );
+        final JarOutputStream out = new JarOutputStream( new FileOutputStream( archive ) );
+        try
+        {
+            out.putNextEntry( new JarEntry( "META-INF/MANIFEST.MF" ) );
+            out.write( "Manifest-Version: 1.0\n".getBytes( "UTF-8" ) );
+            out.closeEntry();
+            out.putNextEntry( new JarEntry( entryName ) );
+            out.write( content.getBytes( "UTF-8" ) );
+            out.closeEntry();
+        }
+        finally
+        {
+            out.close();
+        }
+        return archive;
+    }
+}
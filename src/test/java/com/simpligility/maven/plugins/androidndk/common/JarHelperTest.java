@@ -0,0 +1,99 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class JarHelperTest
+{
+    private static final JarHelper.UnjarListener ALL = new JarHelper.UnjarListener()
+    {
+        @Override
+        public boolean include( JarEntry jarEntry )
+        {
+            return true;
+        }
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void extractsInParallelAndSkipsUnchangedFiles() throws Exception
+    {
+        final File archive = temporaryFolder.newFile( "headers.har" );
+        final JarOutputStream out = new JarOutputStream( new FileOutputStream( archive ) );
+        try
+        {
+            for ( int i = 0; i < 200; i++ )
+            {
+                out.putNextEntry( new JarEntry( "include/dir" + ( i % 7 ) + "/header" + i + ".h" ) );
+                out.write( ( "int header" + i + "();" ).getBytes( "UTF-8" ) );
+                out.closeEntry();
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        final File outputDirectory = new File( temporaryFolder.getRoot(), "out" );
+        assertEquals( 200, unjar( archive, outputDirectory ) );
+        assertEquals( "int header42();", FileUtils.readFileToString( new File( outputDirectory, "include/dir0/header42.h" ), "UTF-8" ) );
+
+        FileUtils.writeStringToFile( new File( outputDirectory, "include/dir1/header43.h" ), "int changed();", "UTF-8" );
+        assertEquals( 1, unjar( archive, outputDirectory ) );
+        assertEquals( "int header43();", FileUtils.readFileToString( new File( outputDirectory, "include/dir1/header43.h" ), "UTF-8" ) );
+    }
+
+    @Test
+    public void rejectsEntriesOutsideOutputDirectory() throws Exception
+    {
+        final File archive = temporaryFolder.newFile( "evil.har" );
+        final JarOutputStream out = new JarOutputStream( new FileOutputStream( archive ) );
+        try
+        {
+            out.putNextEntry( new JarEntry( "../evil.h" ) );
+            out.closeEntry();
+        }
+        finally
+        {
+            out.close();
+        }
+
+        try
+        {
+            unjar( archive, new File( temporaryFolder.getRoot(), "out" ) );
+            fail( "Expected entry outside of output directory to be rejected" );
+        }
+        catch ( IOException e )
+        {
+            assertFalse( new File( temporaryFolder.getRoot(), "evil.h" ).exists() );
+        }
+    }
+
+    private static int unjar( final File archive, final File outputDirectory ) throws IOException
+    {
+        final JarFile jarFile = new JarFile( archive );
+        try
+        {
+            return JarHelper.unjar( jarFile, outputDirectory, ALL, 4 );
+        }
+        finally
+        {
+            jarFile.close();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JobSlotsTest
+{
+    @Test
+    public void sharesSlotsPerSession()
+    {
+        final Object session = new Object();
+        assertSame( JobSlots.forSession( session, 4 ), JobSlots.forSession( session, 8 ) );
+        assertEquals( 4, JobSlots.forSession( session, 8 ).getCapacity() );
+    }
+
+    @Test
+    public void grantsFreeSlotsAndBlocksWhenExhausted() throws Exception
+    {
+        final JobSlots jobSlots = new JobSlots( 4 );
+        assertEquals( 3, jobSlots.acquire( 3 ) );
+        assertEquals( 1, jobSlots.acquire( 8 ) );
+        assertEquals( 0, jobSlots.getAvailable() );
+
+        final AtomicInteger granted = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch( 1 );
+        final Thread waiting = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    granted.set( jobSlots.acquire( 2 ) );
+                    done.countDown();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        waiting.start();
+        assertEquals( 1, done.getCount() );
+
+        jobSlots.release( 3 );
+        assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 2, granted.get() );
+        jobSlots.release( 1 );
+        jobSlots.release( 2 );
+        assertEquals( 4, jobSlots.getAvailable() );
+    }
+
+    @Test
+    public void readsAndRewritesEveryFormOfTheJobsOption()
+    {
+        assertEquals( 1, JobSlots.getRequestedJobs( Arrays.asList( "-C", "/project", "V=1" ), 16 ) );
+        assertEquals( 8, JobSlots.getRequestedJobs( Arrays.asList( "-j", "8", "V=1" ), 16 ) );
+        assertEquals( 8, JobSlots.getRequestedJobs( Arrays.asList( "-j8", "V=1" ), 16 ) );
+        assertEquals( 8, JobSlots.getRequestedJobs( Arrays.asList( "--jobs=8" ), 16 ) );
+        assertEquals( 16, JobSlots.getRequestedJobs( Arrays.asList( "-j", "V=1" ), 16 ) );
+        assertEquals( 16, JobSlots.getRequestedJobs( Arrays.asList( "-j" ), 16 ) );
+        assertEquals( 16, JobSlots.getRequestedJobs( Arrays.asList( "-j", "4", "--jobs" ), 16 ) );
+
+        assertEquals( Arrays.asList( "-j", "2", "V=1" ), JobSlots.withJobCount( Arrays.asList( "-j", "8", "V=1" ), 2 ) );
+        assertEquals( Arrays.asList( "-j2", "V=1" ), JobSlots.withJobCount( Arrays.asList( "-j8", "V=1" ), 2 ) );
+        assertEquals( Arrays.asList( "--jobs=2" ), JobSlots.withJobCount( Arrays.asList( "--jobs=8" ), 2 ) );
+        assertEquals( Arrays.asList( "-j2", "V=1" ), JobSlots.withJobCount( Arrays.asList( "-j", "V=1" ), 2 ) );
+        assertEquals( Arrays.asList( "V=1" ), JobSlots.withJobCount( Arrays.asList( "V=1" ), 2 ) );
+    }
+}
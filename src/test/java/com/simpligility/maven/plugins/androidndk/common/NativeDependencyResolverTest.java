@@ -0,0 +1,135 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.apache.maven.shared.dependency.graph.internal.DefaultDependencyNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NativeDependencyResolverTest
+{
+    private MavenProject project;
+    private DefaultDependencyNode root;
+    private int graphBuilds;
+
+    private final DependencyGraphBuilder dependencyGraphBuilder = new DependencyGraphBuilder()
+    {
+        @Override
+        public DependencyNode buildDependencyGraph( MavenProject mavenProject, ArtifactFilter filter )
+        {
+            graphBuilds++;
+            return root;
+        }
+
+        @Override
+        public DependencyNode buildDependencyGraph( MavenProject mavenProject, ArtifactFilter filter, Collection<MavenProject> reactorProjects )
+        {
+            return buildDependencyGraph( mavenProject, filter );
+        }
+    };
+
+    @Before
+    public void setupGraph()
+    {
+        project = new MavenProject();
+        root = new DefaultDependencyNode( null, artifact( "project", "jar" ), null, null, null );
+
+        // project -> lib-a (so) -> lib-b (a) -> lib-c (so)
+        //         -> lib-d (aar) -> lib-e (a)
+        final DefaultDependencyNode libA = node( root, "lib-a", Const.ArtifactType.NATIVE_SYMBOL_OBJECT );
+        final DefaultDependencyNode libB = node( libA, "lib-b", Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE );
+        final DefaultDependencyNode libC = node( libB, "lib-c", Const.ArtifactType.NATIVE_SYMBOL_OBJECT );
+        final DefaultDependencyNode libD = node( root, "lib-d", AndroidExtension.AAR );
+        final DefaultDependencyNode libE = node( libD, "lib-e", Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE );
+
+        root.setChildren( Arrays.<DependencyNode>asList( libA, libD ) );
+        libA.setChildren( Arrays.<DependencyNode>asList( libB ) );
+        libB.setChildren( Arrays.<DependencyNode>asList( libC ) );
+        libD.setChildren( Arrays.<DependencyNode>asList( libE ) );
+        libC.setChildren( Collections.<DependencyNode>emptyList() );
+        libE.setChildren( Collections.<DependencyNode>emptyList() );
+
+        project.getDependencies().add( dependency( "lib-a", Const.ArtifactType.NATIVE_SYMBOL_OBJECT ) );
+        project.getDependencies().add( dependency( "lib-d", AndroidExtension.AAR ) );
+    }
+
+    @Test
+    public void classifiesAllNodesInOneGraphBuild() throws Exception
+    {
+        NativeDependencyResolver.ResolvedDependencies resolved = new NativeDependencyResolver( project, dependencyGraphBuilder, new SilentLog() ).resolve();
+
+        assertEquals( 1, graphBuilds );
+        assertEquals( Arrays.asList( "lib-b", "lib-e" ), artifactIds( resolved.getStaticLibraries() ) );
+        assertEquals( Arrays.asList( "lib-a", "lib-c" ), artifactIds( resolved.getSharedLibraries() ) );
+    }
+
+    @Test
+    public void appliesExclusionsOfDeclaredDependency() throws Exception
+    {
+        final Exclusion exclusion = new Exclusion();
+        exclusion.setGroupId( "acme" );
+        exclusion.setArtifactId( "lib-b" );
+        project.getDependencies().get( 0 ).addExclusion( exclusion );
+
+        NativeDependencyResolver.ResolvedDependencies resolved = new NativeDependencyResolver( project, dependencyGraphBuilder, new SilentLog() ).resolve();
+
+        assertEquals( Arrays.asList( "lib-e" ), artifactIds( resolved.getStaticLibraries() ) );
+        assertEquals( Arrays.asList( "lib-a" ), artifactIds( resolved.getSharedLibraries() ) );
+    }
+
+    @Test
+    public void skipsGraphWithoutDeclaredDependencies() throws Exception
+    {
+        project.getDependencies().clear();
+
+        NativeDependencyResolver.ResolvedDependencies resolved = new NativeDependencyResolver( project, dependencyGraphBuilder, new SilentLog() ).resolve();
+
+        assertEquals( 0, graphBuilds );
+        assertTrue( resolved.getStaticLibraries().isEmpty() );
+    }
+
+    private static DefaultDependencyNode node( DependencyNode parent, String artifactId, String type )
+    {
+        return new DefaultDependencyNode( parent, artifact( artifactId, type ), null, null, null );
+    }
+
+    private static Artifact artifact( String artifactId, String type )
+    {
+        return new DefaultArtifact( "acme", artifactId, "1.0", "compile", type, null, new DefaultArtifactHandler( type ) );
+    }
+
+    private static Dependency dependency( String artifactId, String type )
+    {
+        final Dependency dependency = new Dependency();
+        dependency.setGroupId( "acme" );
+        dependency.setArtifactId( artifactId );
+        dependency.setVersion( "1.0" );
+        dependency.setType( type );
+        return dependency;
+    }
+
+    private static java.util.List<String> artifactIds( Collection<Artifact> artifacts )
+    {
+        final java.util.List<String> artifactIds = new java.util.ArrayList<String>();
+        for ( Artifact artifact : artifacts )
+        {
+            artifactIds.add( artifact.getArtifactId() );
+        }
+        return artifactIds;
+    }
+}
@@ -0,0 +1,142 @@
+package com.simpligility.maven.plugins.androidndk.common;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.resolver.ArtifactResolutionRequest;
+import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UnpackedLibHelperTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void skipsExtractionOfUnchangedArchive() throws Exception
+    {
+        final File aar = writeAar( "native" );
+        final UnpackedLibHelper helper = createHelper( aar );
+        final Artifact artifact = createArtifact();
+
+        helper.extractAarLib( artifact );
+        final File library = new File( helper.getUnpackedLibNativesFolder( artifact ), "x86/libnative.so" );
+        assertEquals( "native", FileUtils.readFileToString( library, "UTF-8" ) );
+        assertTrue( new File( helper.getUnpackedLibFolder( artifact ), UnpackedLibHelper.UNPACK_MARKER_FILE ).isFile() );
+
+        // An up to date folder is left alone, so the local change survives
+        FileUtils.writeStringToFile( library, "local", "UTF-8" );
+        helper.extractAarLib( artifact );
+        assertEquals( "local", FileUtils.readFileToString( library, "UTF-8" ) );
+    }
+
+    @Test
+    public void extractsChangedArchiveAgain() throws Exception
+    {
+        final File aar = writeAar( "native" );
+        final UnpackedLibHelper helper = createHelper( aar );
+        final Artifact artifact = createArtifact();
+        helper.extractAarLib( artifact );
+
+        writeAar( "updated native" );
+        aar.setLastModified( aar.lastModified() + 2000 );
+        helper.extractAarLib( artifact );
+
+        final File library = new File( helper.getUnpackedLibNativesFolder( artifact ), "x86/libnative.so" );
+        assertEquals( "updated native", FileUtils.readFileToString( library, "UTF-8" ) );
+    }
+
+    @Test
+    public void extractsOnlyNativeLibrariesWhenRequested() throws Exception
+    {
+        final File aar = writeAar( "native" );
+        final UnpackedLibHelper helper = createHelper( aar );
+        final Artifact artifact = createArtifact();
+        final File unpackedFolder = helper.getUnpackedLibFolder( artifact );
+
+        helper.setNativeLibrariesOnly( true );
+        helper.extractAarLib( artifact );
+        assertTrue( new File( helper.getUnpackedLibNativesFolder( artifact ), "x86/libnative.so" ).isFile() );
+        assertFalse( new File( unpackedFolder, "classes.jar" ).exists() );
+        assertFalse( new File( unpackedFolder, "res" ).exists() );
+
+        // A folder holding only the native libraries does not satisfy a full extraction
+        helper.setNativeLibrariesOnly( false );
+        helper.extractAarLib( artifact );
+        assertTrue( new File( unpackedFolder, "classes.jar" ).isFile() );
+        assertTrue( new File( unpackedFolder, "res/values/strings.xml" ).isFile() );
+    }
+
+    private File writeAar( final String nativeLibrary ) throws Exception
+    {
+        final File aar = new File( temporaryFolder.getRoot(), "library.aar" );
+        final ZipOutputStream out = new ZipOutputStream( new FileOutputStream( aar ) );
+        try
+        {
+            writeEntry( out, "AndroidManifest.xml", "<manifest package=\"com.acme.library\"/>" );
+            writeEntry( out, "classes.jar", "classes" );
+            writeEntry( out, "res/values/strings.xml", "<resources/>" );
+            writeEntry( out, "jni/x86/libnative.so", nativeLibrary );
+        }
+        finally
+        {
+            out.close();
+        }
+        return aar;
+    }
+
+    private static void writeEntry( final ZipOutputStream out, final String name, final String content ) throws Exception
+    {
+        out.putNextEntry( new ZipEntry( name ) );
+        out.write( content.getBytes( StandardCharsets.UTF_8 ) );
+        out.closeEntry();
+    }
+
+    /**
+     * @return A helper unpacking into the temporary folder, whose resolver resolves every artifact to the archive.
+     */
+    private UnpackedLibHelper createHelper( final File archive )
+    {
+        final ArtifactResolver resolver = ( ArtifactResolver ) Proxy.newProxyInstance( ArtifactResolver.class.getClassLoader(),
+                new Class<?>[] { ArtifactResolver.class }, new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke( Object proxy, Method method, Object[] args )
+                    {
+                        final Artifact artifact = ( ( ArtifactResolutionRequest ) args[ 0 ] ).getArtifact();
+                        artifact.setFile( archive );
+                        final ArtifactResolutionResult result = new ArtifactResolutionResult();
+                        result.setArtifacts( Collections.singleton( artifact ) );
+                        return result;
+                    }
+                } );
+        final Logger log = new ConsoleLogger( Logger.LEVEL_DISABLED, "test" );
+        return new UnpackedLibHelper( new ArtifactResolverHelper( resolver, log ), null, log,
+                new File( temporaryFolder.getRoot(), "unpacked-libs" ) );
+    }
+
+    private static Artifact createArtifact()
+    {
+        return new DefaultArtifact( "com.acme", "library", "1.0", "compile", "aar", null, new DefaultArtifactHandler( "aar" ) );
+    }
+}
@@ -0,0 +1,149 @@
+package com.simpligility.maven.plugins.androidndk.phase00clean;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NativeOutputCleanerTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File objects;
+    private File libraries;
+    private NativeOutputCleaner cleaner;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        objects = temporaryFolder.newFolder( "obj" );
+        libraries = temporaryFolder.newFolder( "libs" );
+        for ( String architecture : new String[] { "armeabi-v7a", "x86" } )
+        {
+            for ( String module : new String[] { "native", "helper" } )
+            {
+                FileUtils.touch( new File( objects, "local/" + architecture + "/objs/" + module + "/main.o" ) );
+                FileUtils.touch( new File( objects, "local/" + architecture + "/lib" + module + ".so" ) );
+                FileUtils.touch( new File( libraries, architecture + "/lib" + module + ".so" ) );
+            }
+        }
+        cleaner = new NativeOutputCleaner( objects, libraries, new SilentLog() );
+    }
+
+    @Test
+    public void cleansArchitectures() throws IOException
+    {
+        assertEquals( 2, cleaner.cleanArchitectures( Collections.singleton( "x86" ) ) );
+        assertFalse( new File( objects, "local/x86" ).exists() );
+        assertFalse( new File( libraries, "x86" ).exists() );
+        assertEquals( Collections.singleton( "armeabi-v7a" ), cleaner.getBuiltArchitectures() );
+    }
+
+    @Test
+    public void cleansArchitecturesOfExecutions() throws IOException
+    {
+        FileUtils.touch( new File( objects, "debug-build/local/mips/objs/native/main.o" ) );
+        FileUtils.touch( new File( libraries, "debug-build/mips/libnative.so" ) );
+        assertEquals( Arrays.asList( "armeabi-v7a", "mips", "x86" ), new ArrayList<String>( cleaner.getBuiltArchitectures() ) );
+
+        assertEquals( 2, cleaner.cleanArchitectures( Collections.singleton( "mips" ) ) );
+        assertFalse( new File( objects, "debug-build/local/mips" ).exists() );
+        assertFalse( new File( libraries, "debug-build/mips" ).exists() );
+    }
+
+    @Test
+    public void cleansModules() throws IOException
+    {
+        assertEquals( 6, cleaner.cleanModules( Arrays.asList( "armeabi-v7a", "x86" ), Collections.singleton( "helper" ) ) );
+        assertFalse( new File( objects, "local/x86/objs/helper" ).exists() );
+        assertFalse( new File( libraries, "armeabi-v7a/libhelper.so" ).exists() );
+        assertTrue( new File( objects, "local/x86/objs/native/main.o" ).exists() );
+        assertTrue( new File( libraries, "x86/libnative.so" ).exists() );
+    }
+
+    @Test
+    public void cleansWhatTheManifestsDoNotList() throws IOException
+    {
+        final File manifests = temporaryFolder.newFolder( "manifests" );
+        assertEquals( 0, cleaner.cleanStale( manifests ) );
+
+        FileUtils.writeStringToFile( new File( manifests, "ndk-build-manifest-default-armeabi-v7a.txt" ),
+                "# Modules built for armeabi-v7a\nnative\tSHARED_LIBRARY\t0\tsha1\t/libnative.so\n", "UTF-8" );
+        assertEquals( 3, cleaner.cleanStale( manifests ) );
+        assertFalse( new File( objects, "local/x86" ).exists() );
+        assertFalse( new File( objects, "local/armeabi-v7a/objs/helper" ).exists() );
+        assertTrue( new File( objects, "local/armeabi-v7a/objs/native/main.o" ).exists() );
+    }
+
+    @Test
+    public void keepsModulesOfUncapturedManifests() throws IOException
+    {
+        final File manifests = temporaryFolder.newFolder( "manifests" );
+        FileUtils.writeStringToFile( new File( manifests, "ndk-build-manifest-default-x86.txt" ),
+                "# Modules built for x86, found in the output directories\n", "UTF-8" );
+        assertEquals( 2, cleaner.cleanStale( manifests ) );
+        assertTrue( new File( objects, "local/x86/objs/helper/main.o" ).exists() );
+    }
+
+    @Test
+    public void cleansEachExecutionAgainstItsOwnManifests() throws IOException
+    {
+        FileUtils.touch( new File( objects, "debug-build/local/x86/objs/native/main.o" ) );
+        FileUtils.touch( new File( objects, "debug-build/local/x86/objs/helper/main.o" ) );
+        FileUtils.touch( new File( libraries, "debug-build/x86/libnative.so" ) );
+        FileUtils.touch( new File( objects, "other-build/local/x86/objs/native/main.o" ) );
+
+        final File manifests = temporaryFolder.newFolder( "manifests" );
+        FileUtils.writeStringToFile( new File( manifests, "ndk-build-manifest-default-armeabi-v7a.txt" ),
+                "# Modules built for armeabi-v7a\n# Objects in " + new File( objects, "local/armeabi-v7a" ).getAbsolutePath()
+                + "\nnative\tSHARED_LIBRARY\t0\tsha1\t/libnative.so\nhelper\tSHARED_LIBRARY\t0\tsha1\t/libhelper.so\n", "UTF-8" );
+        FileUtils.writeStringToFile( new File( manifests, "ndk-build-manifest-debug-build-x86.txt" ),
+                "# Modules built for x86\n# Objects in " + new File( objects, "debug-build/local/x86" ).getAbsolutePath()
+                + "\nnative\tSHARED_LIBRARY\t0\tsha1\t/libnative.so\n", "UTF-8" );
+
+        assertEquals( 3, cleaner.cleanStale( manifests ) );
+        assertFalse( new File( objects, "local/x86" ).exists() );
+        assertFalse( new File( libraries, "x86" ).exists() );
+        assertTrue( new File( objects, "local/armeabi-v7a/objs/helper/main.o" ).exists() );
+        assertTrue( new File( objects, "debug-build/local/x86/objs/native/main.o" ).exists() );
+        assertFalse( new File( objects, "debug-build/local/x86/objs/helper" ).exists() );
+        assertTrue( new File( libraries, "debug-build/x86/libnative.so" ).exists() );
+        assertTrue( new File( objects, "other-build/local/x86/objs/native/main.o" ).exists() );
+    }
+
+    @Test
+    public void reachesParallelArchitectureBuildsOfExecutions() throws IOException
+    {
+        FileUtils.touch( new File( objects, "debug-build/x86/local/x86/objs/native/main.o" ) );
+        FileUtils.touch( new File( objects, "debug-build/mips/local/mips/objs/native/main.o" ) );
+        FileUtils.touch( new File( libraries, "debug-build/mips/libnative.so" ) );
+        assertEquals( Arrays.asList( "armeabi-v7a", "mips", "x86" ), new ArrayList<String>( cleaner.getBuiltArchitectures() ) );
+
+        final File manifests = temporaryFolder.newFolder( "manifests" );
+        FileUtils.writeStringToFile( new File( manifests, "ndk-build-manifest-debug-build-x86.txt" ),
+                "# Modules built for x86\n# Objects in " + new File( objects, "debug-build/x86/local/x86" ).getAbsolutePath()
+                + "\nnative\tSHARED_LIBRARY\t0\tsha1\t/libnative.so\n", "UTF-8" );
+
+        assertEquals( 2, cleaner.cleanStale( manifests ) );
+        assertFalse( new File( objects, "debug-build/mips" ).exists() );
+        assertFalse( new File( libraries, "debug-build/mips" ).exists() );
+        assertTrue( new File( objects, "debug-build/x86/local/x86/objs/native/main.o" ).exists() );
+        assertTrue( new File( objects, "local/x86/objs/helper/main.o" ).exists() );
+
+        assertEquals( 4, cleaner.cleanModules( Collections.singleton( "x86" ), Collections.singleton( "native" ) ) );
+        assertFalse( new File( objects, "debug-build/x86/local/x86/objs/native" ).exists() );
+    }
+}
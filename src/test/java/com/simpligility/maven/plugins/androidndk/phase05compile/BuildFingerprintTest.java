@@ -0,0 +1,94 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class BuildFingerprintTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void followsIncludedMakefiles() throws Exception
+    {
+        final File jni = temporaryFolder.newFolder( "project", "jni" );
+        final File common = temporaryFolder.newFolder( "common" );
+        final File makefile = new File( jni, "Android.mk" );
+        FileUtils.writeStringToFile( makefile, "LOCAL_PATH := $(call my-dir)\ninclude $(LOCAL_PATH)/../../common/defs.mk\n", "UTF-8" );
+        FileUtils.writeStringToFile( new File( common, "defs.mk" ), "LOCAL_CFLAGS := -O2\ninclude $(CLEAR_VARS)\n", "UTF-8" );
+
+        final String before = fingerprintMakefile( makefile );
+        FileUtils.writeStringToFile( new File( common, "defs.mk" ), "LOCAL_CFLAGS := -O3\ninclude $(CLEAR_VARS)\n", "UTF-8" );
+
+        assertNotEquals( before, fingerprintMakefile( makefile ) );
+    }
+
+    @Test
+    public void coversSourcesListedByDependencyFiles() throws Exception
+    {
+        final File project = temporaryFolder.newFolder( "project" );
+        final File objs = temporaryFolder.newFolder( "project", "obj", "local", "x86", "objs", "hello" );
+        final File shared = temporaryFolder.newFolder( "shared src" );
+        final File source = new File( shared, "util.c" );
+        FileUtils.writeStringToFile( source, "int util() { return 1; }", "UTF-8" );
+        FileUtils.writeStringToFile( new File( objs, "util.o.d" ),
+                "obj/local/x86/objs/hello/util.o: ../shared\\ src/util.c \\\n  jni/util.h\n\njni/util.h:\n", "UTF-8" );
+
+        final String before = fingerprintDependencies( project );
+        FileUtils.writeStringToFile( source, "int util() { return 2; }", "UTF-8" );
+        source.setLastModified( source.lastModified() + 2000 );
+
+        assertNotEquals( before, fingerprintDependencies( project ) );
+    }
+
+    @Test
+    public void reattachesOutputsOnlyWhileUnchanged() throws Exception
+    {
+        final File fingerprintFile = new File( temporaryFolder.getRoot(), "ndk-build.fingerprint" );
+        final File library = temporaryFolder.newFile( "libhello.so" );
+        FileUtils.writeStringToFile( library, "library", "UTF-8" );
+
+        final BuildFingerprint fingerprint = new BuildFingerprint( new SilentLog() );
+        fingerprint.addValue( "architectures", new String[] { "x86" } );
+        fingerprint.store( fingerprintFile, Collections.singletonList( new BuildFingerprint.AttachedArtifact( "so", "x86", library ) ) );
+
+        final BuildFingerprint sameFingerprint = new BuildFingerprint( new SilentLog() );
+        sameFingerprint.addValue( "architectures", new String[] { "x86" } );
+        final List<BuildFingerprint.AttachedArtifact> outputs = sameFingerprint.loadUnchangedOutputs( fingerprintFile );
+        assertNotNull( outputs );
+        assertEquals( library.getAbsoluteFile(), outputs.get( 0 ).getFile().getAbsoluteFile() );
+
+        final BuildFingerprint otherFingerprint = new BuildFingerprint( new SilentLog() );
+        otherFingerprint.addValue( "architectures", new String[] { "x86_64" } );
+        assertNull( otherFingerprint.loadUnchangedOutputs( fingerprintFile ) );
+
+        FileUtils.writeStringToFile( library, "changed library", "UTF-8" );
+        assertNull( sameFingerprint.loadUnchangedOutputs( fingerprintFile ) );
+    }
+
+    private static String fingerprintMakefile( final File makefile ) throws Exception
+    {
+        final BuildFingerprint fingerprint = new BuildFingerprint( new SilentLog() );
+        fingerprint.addMakefile( "makefile", makefile );
+        return fingerprint.getHash();
+    }
+
+    private static String fingerprintDependencies( final File project ) throws Exception
+    {
+        final BuildFingerprint fingerprint = new BuildFingerprint( new SilentLog() );
+        fingerprint.addDependencies( "dependencies", new File( project, "obj/local/x86" ), project );
+        return fingerprint.getHash();
+    }
+}
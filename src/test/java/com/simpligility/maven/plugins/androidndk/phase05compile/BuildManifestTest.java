@@ -0,0 +1,87 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BuildManifestTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void listsCapturedModulesWithoutPrebuilts() throws Exception
+    {
+        final File libs = temporaryFolder.newFolder( "libs", "x86" );
+        final File objs = temporaryFolder.newFolder( "obj", "local", "x86" );
+        FileUtils.writeStringToFile( new File( libs, "libfoo.so" ), "shared", "UTF-8" );
+        FileUtils.writeStringToFile( new File( libs, "libfoo-extra.so" ), "other", "UTF-8" );
+        FileUtils.writeStringToFile( new File( libs, "libdependency.so" ), "prebuilt", "UTF-8" );
+        FileUtils.writeStringToFile( new File( objs, "libbar.a" ), "static", "UTF-8" );
+
+        final MakefileCapture makefileCapture = new MakefileCapture();
+        makefileCapture.parseLine( "x86|foo|LOCAL_MODULE_CLASS=SHARED_LIBRARY" );
+        makefileCapture.parseLine( "x86|foo|LOCAL_MODULE_FILENAME=libfoo" );
+        makefileCapture.parseLine( "x86|foo-extra|LOCAL_MODULE_CLASS=SHARED_LIBRARY" );
+        makefileCapture.parseLine( "x86|bar|LOCAL_MODULE_CLASS=STATIC_LIBRARY" );
+        makefileCapture.parseLine( "x86|dependency|LOCAL_MODULE_CLASS=PREBUILT_SHARED_LIBRARY" );
+
+        final BuildManifest buildManifest = BuildManifest.create( makefileCapture, "x86", libs, objs );
+        assertTrue( buildManifest.isCaptured() );
+        assertEquals( 3, buildManifest.getModules().size() );
+
+        final List<BuildManifest.Module> libraries = buildManifest.findLibraries( "foo", ".so", false );
+        assertEquals( 1, libraries.size() );
+        assertEquals( new File( libs, "libfoo.so" ), libraries.get( 0 ).getFile() );
+        assertEquals( 6, libraries.get( 0 ).getSize() );
+        assertEquals( 2, buildManifest.findLibraries( "foo", ".so", true ).size() );
+        assertEquals( BuildManifest.STATIC_LIBRARY, buildManifest.getModuleByFile( objs, "libbar.a" ).getType() );
+
+        final File manifestFile = new File( temporaryFolder.getRoot(), "manifest.txt" );
+        buildManifest.write( manifestFile );
+        final String manifest = FileUtils.readFileToString( manifestFile, "UTF-8" );
+        assertTrue( manifest.contains( "foo\tSHARED_LIBRARY\t6\t" ) );
+        assertFalse( manifest.contains( "dependency" ) );
+    }
+
+    @Test
+    public void listsOutputDirectoriesWithoutCapture() throws Exception
+    {
+        final File libs = temporaryFolder.newFolder( "libs", "x86" );
+        final File objs = temporaryFolder.newFolder( "obj", "local", "x86" );
+        FileUtils.writeStringToFile( new File( objs, "libbar.a" ), "static", "UTF-8" );
+        new File( objs, "objs" ).mkdirs();
+
+        final BuildManifest buildManifest = BuildManifest.create( new MakefileCapture(), "x86", libs, objs );
+        assertFalse( buildManifest.isCaptured() );
+        assertEquals( 1, buildManifest.findLibraries( "bar", ".a", false ).size() );
+        assertEquals( "bar", buildManifest.getModules().get( 0 ).getName() );
+    }
+
+    @Test
+    public void removesManifestsOfArchitecturesNoLongerBuilt() throws Exception
+    {
+        final File directory = temporaryFolder.newFolder( "manifests" );
+        for ( String architecture : new String[] { "x86", "armeabi-v7a" } )
+        {
+            BuildManifest.create( new MakefileCapture(), architecture, temporaryFolder.newFolder( "libs-" + architecture ),
+                    temporaryFolder.newFolder( "obj-" + architecture ) ).write( BuildManifest.getManifestFile( directory, "default", architecture ) );
+        }
+        BuildManifest.create( new MakefileCapture(), "x86", temporaryFolder.getRoot(), temporaryFolder.getRoot() )
+                .write( BuildManifest.getManifestFile( directory, "default-debug", "x86" ) );
+
+        BuildManifest.removeOtherArchitectures( directory, "default", Collections.singleton( "armeabi-v7a" ) );
+        assertFalse( BuildManifest.getManifestFile( directory, "default", "x86" ).exists() );
+        assertTrue( BuildManifest.getManifestFile( directory, "default", "armeabi-v7a" ).exists() );
+        assertTrue( BuildManifest.getManifestFile( directory, "default-debug", "x86" ).exists() );
+    }
+}
@@ -0,0 +1,67 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompileCommandTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void mergesTheLibrariesOfEveryArchitecture() throws Exception
+    {
+        final CompileCommand compileCommand = new CompileCommand();
+        compileCommand.objectsOutputDirectory = temporaryFolder.newFolder( "obj" );
+        compileCommand.librariesOutputDirectory = temporaryFolder.newFolder( "ndk-libs" );
+
+        // Left by a previous build: an architecture not built this time, and an outdated library of one that is
+        final File previousArchitecture = new File( compileCommand.librariesOutputDirectory, "mips/libnative.so" );
+        final File outdatedLibrary = new File( compileCommand.librariesOutputDirectory, "x86/libremoved.so" );
+        FileUtils.writeStringToFile( previousArchitecture, "mips", "UTF-8" );
+        FileUtils.writeStringToFile( outdatedLibrary, "removed", "UTF-8" );
+
+        final String[] architectures = { "armeabi-v7a", "arm64-v8a", "x86" };
+        for ( String architecture : architectures )
+        {
+            final CompileCommand architectureCommand = compileCommand.forArchitecture( architecture );
+            assertEquals( compileCommand.librariesOutputDirectory, architectureCommand.librariesOutputDirectory );
+            assertFalse( compileCommand.librariesOutputDirectory.equals( architectureCommand.getBuildLibrariesOutputDirectory() ) );
+
+            // ndk-build installs the libraries of its single architecture into the private NDK_LIBS_OUT
+            FileUtils.writeStringToFile( new File( architectureCommand.getBuildLibrariesOutputDirectory(), architecture + "/libnative.so" ),
+                    architecture, "UTF-8" );
+            architectureCommand.copyArchitectureLibraries( architecture );
+        }
+
+        for ( String architecture : architectures )
+        {
+            final File library = new File( compileCommand.librariesOutputDirectory, architecture + "/libnative.so" );
+            assertEquals( architecture, FileUtils.readFileToString( library, "UTF-8" ) );
+        }
+        assertTrue( previousArchitecture.isFile() );
+        assertFalse( outdatedLibrary.exists() );
+    }
+
+    @Test
+    public void leavesLibrariesInstalledInPlaceAlone() throws Exception
+    {
+        final CompileCommand compileCommand = new CompileCommand();
+        compileCommand.objectsOutputDirectory = temporaryFolder.newFolder( "obj" );
+        compileCommand.librariesOutputDirectory = temporaryFolder.newFolder( "ndk-libs" );
+        final File library = new File( compileCommand.librariesOutputDirectory, "x86/libnative.so" );
+        FileUtils.writeStringToFile( library, "x86", "UTF-8" );
+
+        compileCommand.copyArchitectureLibraries( "x86" );
+
+        assertEquals( "x86", FileUtils.readFileToString( library, "UTF-8" ) );
+    }
+}
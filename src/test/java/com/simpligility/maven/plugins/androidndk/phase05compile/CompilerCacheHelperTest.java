@@ -0,0 +1,50 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import com.simpligility.maven.plugins.androidndk.configuration.CompilerCache;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CompilerCacheHelperTest
+{
+    @Test
+    public void parsesMachineReadableStatistics()
+    {
+        final CompilerCacheHelper.Statistics statistics = CompilerCacheHelper.parsePrintStats(
+                "stats_updated_timestamp\t1700000000\ndirect_cache_hit\t12\npreprocessed_cache_hit\t3\ncache_miss\t5\n" );
+        assertEquals( 15, statistics.getHits() );
+        assertEquals( 5, statistics.getMisses() );
+        assertNull( CompilerCacheHelper.parsePrintStats( "ccache: invalid option -- '-'" ) );
+    }
+
+    @Test
+    public void parsesSummaryOfOlderVersions()
+    {
+        final CompilerCacheHelper.Statistics statistics = CompilerCacheHelper.parseSummary(
+                "cache directory                     /cache\ncache hit (direct)                    12\ncache hit (preprocessed)               3\n"
+                + "cache miss                             5\ncache hit rate                     75.00 %\n" );
+        assertEquals( 15, statistics.getHits() );
+        assertEquals( 5, statistics.getMisses() );
+    }
+
+    @Test
+    public void configuresEnvironment()
+    {
+        final CompilerCache compilerCache = new CompilerCache();
+        compilerCache.setDirectory( "/cache/ccache" );
+        compilerCache.setMaxSize( "5G" );
+
+        final Map<String, String> environment = new CompilerCacheHelper( compilerCache, new File( "/work/checkout" ), new SilentLog() )
+                .getEnvironment( new File( "/usr/bin/ccache" ) );
+        assertEquals( new File( "/usr/bin/ccache" ).getAbsolutePath(), environment.get( "NDK_CCACHE" ) );
+        assertEquals( new File( "/cache/ccache" ).getAbsolutePath(), environment.get( "CCACHE_DIR" ) );
+        assertEquals( "5G", environment.get( "CCACHE_MAXSIZE" ) );
+        assertEquals( new File( "/work/checkout" ).getAbsolutePath(), environment.get( "CCACHE_BASEDIR" ) );
+        assertEquals( "1", environment.get( "CCACHE_NOHASHDIR" ) );
+    }
+}
@@ -0,0 +1,50 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompilerCommandsTest
+{
+    private static final File BASE_DIRECTORY = new File( "/work/project" );
+
+    @Test
+    public void keysCompilerCommandsIndependentOfTheOutputDirectory()
+    {
+        final CompilerCommands release = new CompilerCommands( new File( BASE_DIRECTORY, "target/obj" ), BASE_DIRECTORY, BASE_DIRECTORY );
+        release.processLine( compile( "target/obj", "-O2" ) );
+        release.processLine( "[x86] Compile        : m <= a.c" );
+        release.processLine( "/ndk/clang -shared -o /work/project/target/obj/local/x86/libm.so /work/project/target/obj/local/x86/objs/m/a.o" );
+
+        final CompilerCommands debug = new CompilerCommands( new File( BASE_DIRECTORY, "target/obj/debug-build" ), BASE_DIRECTORY, BASE_DIRECTORY );
+        debug.processLine( compile( "target/obj/debug-build", "-O2" ) );
+        final CompilerCommands optimized = new CompilerCommands( new File( BASE_DIRECTORY, "target/obj" ), BASE_DIRECTORY, BASE_DIRECTORY );
+        optimized.processLine( compile( "target/obj", "-O3" ) );
+
+        final Map<String, String> releaseKeys = release.getCommandKeys( "x86" );
+        assertEquals( 1, releaseKeys.size() );
+        assertEquals( releaseKeys, debug.getCommandKeys( "x86" ) );
+        assertNotEquals( releaseKeys, optimized.getCommandKeys( "x86" ) );
+        assertTrue( release.getCommandKeys( "armeabi-v7a" ).isEmpty() );
+    }
+
+    @Test
+    public void resolvesRelativeOutputs()
+    {
+        final CompilerCommands commands = new CompilerCommands( new File( BASE_DIRECTORY, "target/obj" ), BASE_DIRECTORY, BASE_DIRECTORY );
+        commands.processLine( "/ndk/clang -MMD -c jni/a.c -o ./target/obj/local/x86/objs/m/a.o" );
+        assertEquals( 1, commands.getCommandKeys( "x86" ).size() );
+        assertTrue( commands.getCommandKeys( "x86" ).containsKey( "objs/m/a.o" ) );
+    }
+
+    private static String compile( final String ndkOut, final String optimization )
+    {
+        final String objects = new File( BASE_DIRECTORY, ndkOut ).getAbsolutePath() + "/local/x86/objs/m";
+        return "/ndk/clang -MMD -MP -MF " + objects + "/a.o.d " + optimization + " -I/work/project/jni -c /work/project/jni/a.c -o " + objects + "/a.o";
+    }
+}
@@ -0,0 +1,81 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DiagnosticsClassifierTest
+{
+    @Test
+    public void parsesGccAndClangDiagnostics()
+    {
+        final DiagnosticsClassifier.Diagnostic withColumn = DiagnosticsClassifier.parse( "jni/hello.c:12:5: warning: unused variable 'x' [-Wunused-variable]" );
+        assertEquals( "jni/hello.c", withColumn.getFile() );
+        assertEquals( 12, withColumn.getLine() );
+        assertEquals( 5, withColumn.getColumn() );
+        assertEquals( DiagnosticsClassifier.Severity.WARNING, withColumn.getSeverity() );
+        assertEquals( "unused variable 'x' [-Wunused-variable]", withColumn.getMessage() );
+
+        final DiagnosticsClassifier.Diagnostic withoutColumn = DiagnosticsClassifier.parse( "C:/src/jni/a.cpp:3: fatal error: a.h: No such file or directory" );
+        assertEquals( "C:/src/jni/a.cpp", withoutColumn.getFile() );
+        assertEquals( 0, withoutColumn.getColumn() );
+        assertEquals( DiagnosticsClassifier.Severity.FATAL, withoutColumn.getSeverity() );
+
+        assertNull( DiagnosticsClassifier.parse( "In file included from jni/hello.c:1:" ) );
+    }
+
+    @Test
+    public void countsPerSeverityAndKeepsErrors()
+    {
+        final DiagnosticsClassifier classifier = new DiagnosticsClassifier( true, null );
+        assertFalse( classifier.isError( "a.c:1:1: warning: one" ) );
+        assertFalse( classifier.isError( "a.c:2:1: warning: two" ) );
+        assertFalse( classifier.isError( "a.c:2:1: note: three" ) );
+        assertFalse( classifier.isError( "a.c:3:1: error: four" ) );
+
+        assertEquals( 2, classifier.getCount( DiagnosticsClassifier.Severity.WARNING ) );
+        assertEquals( 1, classifier.getCount( DiagnosticsClassifier.Severity.NOTE ) );
+        assertEquals( 1, classifier.getCount( DiagnosticsClassifier.Severity.ERROR ) );
+        assertEquals( "four", classifier.getErrors().get( 0 ).getMessage() );
+        assertFalse( classifier.hasErrorOutput() );
+    }
+
+    @Test
+    public void errorOutputIsSticky()
+    {
+        final DiagnosticsClassifier classifier = new DiagnosticsClassifier( false, Pattern.compile( ".*(warning|note): .*" ) );
+        assertFalse( classifier.isError( "a.c:1:1: warning: one" ) );
+        assertTrue( classifier.isError( "a.c:2:1: error: use of undeclared identifier 'x'" ) );
+        assertFalse( classifier.isError( "a.c:2:1: note: two" ) );
+        assertTrue( classifier.hasErrorOutput() );
+    }
+
+    @Test
+    public void onlyErrorDiagnosticsFailTheBuild()
+    {
+        final DiagnosticsClassifier classifier = new DiagnosticsClassifier( false, Pattern.compile( ".*(warning|note): .*" ) );
+        assertFalse( classifier.isError( "In file included from jni/hello.c:1:" ) );
+        assertFalse( classifier.isError( "jni/hello.h:3:5: warning: unused variable 'x' [-Wunused-variable]" ) );
+        assertFalse( classifier.isError( "    int x;" ) );
+        assertFalse( classifier.isError( "        ^" ) );
+        assertFalse( classifier.isError( "1 warning generated." ) );
+        assertFalse( classifier.hasErrorOutput() );
+
+        assertTrue( classifier.isError( "jni/hello.c:7:1: fatal error: 'missing.h' file not found" ) );
+        assertTrue( classifier.hasErrorOutput() );
+    }
+
+    @Test
+    public void buildWarningsPatternDowngradesErrors()
+    {
+        final DiagnosticsClassifier classifier = new DiagnosticsClassifier( false, Pattern.compile( ".*deprecated.*" ) );
+        assertFalse( classifier.isError( "a.c:1:1: error: 'f' is deprecated" ) );
+        assertFalse( classifier.hasErrorOutput() );
+        assertEquals( 1, classifier.getCount( DiagnosticsClassifier.Severity.ERROR ) );
+    }
+}
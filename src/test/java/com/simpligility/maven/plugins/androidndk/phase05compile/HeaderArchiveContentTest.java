@@ -0,0 +1,95 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import com.simpligility.maven.plugins.androidndk.common.Const;
+import com.simpligility.maven.plugins.androidndk.common.HeaderArchiveCache;
+import com.simpligility.maven.plugins.androidndk.configuration.HeaderFilesDirective;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HeaderArchiveContentTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void keyChangesOnlyWithIncludedHeaders() throws Exception
+    {
+        final File directory = temporaryFolder.newFolder( "jni" );
+        final File header = new File( directory, "include/lib.h" );
+        FileUtils.writeStringToFile( header, "int lib();" );
+        FileUtils.writeStringToFile( new File( directory, "lib.c" ), "int lib() { return 0; }" );
+
+        final List<HeaderFilesDirective> directives = createDirectives( directory );
+        final HeaderArchiveContent first = HeaderArchiveContent.scan( directives );
+        assertEquals( 1, first.getFileCount() );
+
+        FileUtils.writeStringToFile( new File( directory, "lib.c" ), "int lib() { return 1; }" );
+        assertEquals( first.getKey(), HeaderArchiveContent.scan( directives ).getKey() );
+
+        assertTrue( header.setLastModified( header.lastModified() - 10000 ) );
+        assertEquals( first.getKey(), HeaderArchiveContent.scan( directives ).getKey() );
+
+        FileUtils.writeStringToFile( header, "int lib( void );" );
+        assertFalse( first.getKey().equals( HeaderArchiveContent.scan( directives ).getKey() ) );
+    }
+
+    @Test
+    public void writesReproducibleArchiveWithIndex() throws Exception
+    {
+        final File directory = temporaryFolder.newFolder( "jni" );
+        final File header = new File( directory, "include/lib.h" );
+        FileUtils.writeStringToFile( header, "int lib();" );
+        FileUtils.writeStringToFile( new File( directory, "a.h" ), "int a();" );
+
+        final File first = temporaryFolder.newFile( "first.har" );
+        HeaderArchiveContent.scan( createDirectives( directory ) ).writeArchive( first );
+
+        assertTrue( header.setLastModified( header.lastModified() - 10000 ) );
+        final File second = temporaryFolder.newFile( "second.har" );
+        final HeaderArchiveContent content = HeaderArchiveContent.scan( createDirectives( directory ) );
+        content.writeArchive( second );
+
+        assertTrue( FileUtils.contentEquals( first, second ) );
+        assertEquals( content.getKey(), HeaderArchiveCache.getKey( second ) );
+
+        final JarFile jarFile = new JarFile( second );
+        try
+        {
+            final List<String> names = new ArrayList<String>();
+            for ( JarEntry entry : Collections.list( jarFile.entries() ) )
+            {
+                names.add( entry.getName() );
+            }
+            assertEquals( Arrays.asList( "META-INF/", "META-INF/MANIFEST.MF", "META-INF/android-ndk-maven-plugin/", Const.HEADER_ARCHIVE_INDEX,
+                    "a.h", "include/", "include/lib.h" ), names );
+            assertEquals( content.getIndex(), IOUtils.toString( jarFile.getInputStream( jarFile.getJarEntry( Const.HEADER_ARCHIVE_INDEX ) ), "UTF-8" ) );
+        }
+        finally
+        {
+            jarFile.close();
+        }
+    }
+
+    private static List<HeaderFilesDirective> createDirectives( final File directory )
+    {
+        final HeaderFilesDirective directive = new HeaderFilesDirective();
+        directive.setDirectory( directory.getAbsolutePath() );
+        directive.setIncludes( new String[] { "**/*.h", "**/*.hpp" } );
+        return Collections.singletonList( directive );
+    }
+}
@@ -0,0 +1,105 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import com.simpligility.maven.plugins.androidndk.common.HeaderArchiveCache;
+import com.simpligility.maven.plugins.androidndk.configuration.HeaderFilesDirective;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.archiver.jar.JarArchiver;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HeaderArchiveWriterTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void reusesArchiveOfUnchangedHeaders() throws Exception
+    {
+        final File jni = temporaryFolder.newFolder( "jni" );
+        FileUtils.writeStringToFile( new File( jni, "include/lib.h" ), "int lib();", "UTF-8" );
+        final File directory = temporaryFolder.newFolder( "ndk-headers" );
+
+        final File first = createWriter( directory, "default", true ).getArchive( createDirectives( jni ) );
+        final long writtenAt = first.lastModified() - 10000;
+        assertTrue( first.setLastModified( writtenAt ) );
+
+        final File second = createWriter( directory, "default", true ).getArchive( createDirectives( jni ) );
+        assertEquals( first, second );
+        assertEquals( writtenAt, second.lastModified() );
+    }
+
+    @Test
+    public void rewritesArchiveWhenModeChanges() throws Exception
+    {
+        final File jni = temporaryFolder.newFolder( "jni" );
+        FileUtils.writeStringToFile( new File( jni, "include/lib.h" ), "int lib();", "UTF-8" );
+        final File directory = temporaryFolder.newFolder( "ndk-headers" );
+
+        final File reproducible = createWriter( directory, "default", true ).getArchive( createDirectives( jni ) );
+        final String key = HeaderArchiveCache.getKey( reproducible );
+
+        final File archived = createWriter( directory, "default", false ).getArchive( createDirectives( jni ) );
+        assertFalse( archived.equals( reproducible ) );
+        assertTrue( archived.isFile() );
+        assertFalse( reproducible.exists() );
+
+        final File rewritten = createWriter( directory, "default", true ).getArchive( createDirectives( jni ) );
+        assertEquals( reproducible, rewritten );
+        assertEquals( key, HeaderArchiveCache.getKey( rewritten ) );
+        assertFalse( archived.exists() );
+    }
+
+    @Test
+    public void removesStaleArchivesOfTheExecutionOnly() throws Exception
+    {
+        final File jni = temporaryFolder.newFolder( "jni" );
+        final File header = new File( jni, "include/lib.h" );
+        FileUtils.writeStringToFile( header, "int lib();", "UTF-8" );
+        final File otherJni = temporaryFolder.newFolder( "other-jni" );
+        FileUtils.writeStringToFile( new File( otherJni, "other.h" ), "int other();", "UTF-8" );
+        final File directory = temporaryFolder.newFolder( "ndk-headers" );
+
+        final File otherExecution = createWriter( directory, "debug", true ).getArchive( createDirectives( jni ) );
+        final File stale = createWriter( directory, "default", true ).getArchive( createDirectives( jni ) );
+
+        // One build of the execution writing the archives of two architectures
+        FileUtils.writeStringToFile( header, "int lib( void );", "UTF-8" );
+        final HeaderArchiveWriter writer = createWriter( directory, "default", true );
+        final File current = writer.getArchive( createDirectives( jni ) );
+        final File otherArchitecture = writer.getArchive( createDirectives( otherJni ) );
+
+        assertFalse( stale.exists() );
+        assertTrue( current.isFile() );
+        assertTrue( otherArchitecture.isFile() );
+        assertTrue( otherExecution.isFile() );
+    }
+
+    private static HeaderArchiveWriter createWriter( final File directory, final String executionId, final boolean reproducible )
+    {
+        final Model model = new Model();
+        model.setGroupId( "com.acme" );
+        model.setArtifactId( "native" );
+        model.setVersion( "1.0" );
+        return new HeaderArchiveWriter( directory, executionId, reproducible, new JarArchiver(), new MavenProject( model ), new SilentLog() );
+    }
+
+    private static List<HeaderFilesDirective> createDirectives( final File directory )
+    {
+        final HeaderFilesDirective directive = new HeaderFilesDirective();
+        directive.setDirectory( directory.getAbsolutePath() );
+        directive.setIncludes( new String[] { "**/*.h" } );
+        return Collections.singletonList( directive );
+    }
+}
@@ -0,0 +1,60 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MakefileCaptureTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readsVariablesPerArchitectureAndModule() throws Exception
+    {
+        final File captureFile = temporaryFolder.newFile( "capture.tmp" );
+        FileUtils.writeStringToFile( captureFile,
+                "armeabi|native|LOCAL_C_INCLUDES=/src/jni/include /src/jni/common\n"
+                + " armeabi|native|LOCAL_CFLAGS=-DNAME=value -O2\n"
+                + "armeabi|helper|LOCAL_C_INCLUDES=/src/helper\n"
+                + "x86|native|LOCAL_C_INCLUDES=/src/jni/x86\n"
+                + "garbage line\n", "UTF-8" );
+
+        final MakefileCapture makefileCapture = MakefileCapture.read( captureFile );
+
+        assertEquals( Arrays.asList( "native", "helper" ), makefileCapture.getModules( "armeabi" ) );
+        assertEquals( "/src/jni/include /src/jni/common", makefileCapture.getVariable( "armeabi", "native", "LOCAL_C_INCLUDES" ) );
+        assertEquals( "-DNAME=value -O2", makefileCapture.getVariable( "armeabi", "native", "LOCAL_CFLAGS" ) );
+        assertEquals( "/src/jni/x86", makefileCapture.getVariable( "x86", "native", "LOCAL_C_INCLUDES" ) );
+        assertNull( makefileCapture.getVariable( "x86", "helper", "LOCAL_C_INCLUDES" ) );
+    }
+
+    @Test
+    public void fallsBackToLastModule() throws Exception
+    {
+        final File captureFile = temporaryFolder.newFile( "capture.tmp" );
+        FileUtils.writeStringToFile( captureFile,
+                "armeabi|first|LOCAL_C_INCLUDES=/first\n"
+                + "armeabi|last|LOCAL_C_INCLUDES=/last\n", "UTF-8" );
+
+        final MakefileCapture makefileCapture = MakefileCapture.read( captureFile );
+
+        assertEquals( "/first", makefileCapture.getModuleVariable( "armeabi", "first", "LOCAL_C_INCLUDES" ) );
+        assertEquals( "/last", makefileCapture.getModuleVariable( "armeabi", "unknown", "LOCAL_C_INCLUDES" ) );
+        assertNull( makefileCapture.getModuleVariable( "mips", "first", "LOCAL_C_INCLUDES" ) );
+    }
+
+    @Test
+    public void missingFileIsEmpty() throws Exception
+    {
+        assertTrue( MakefileCapture.read( new File( temporaryFolder.getRoot(), "missing" ) ).getModules( "armeabi" ).isEmpty() );
+    }
+}
@@ -0,0 +1,203 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import com.simpligility.maven.plugins.androidndk.common.ArtifactResolverHelper;
+import com.simpligility.maven.plugins.androidndk.common.Const;
+import com.simpligility.maven.plugins.androidndk.common.HeaderArchiveCache;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.resolver.ArtifactResolutionRequest;
+import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MakefileHelperTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void dependencyOrderDoesNotChangeMakefile() throws Exception
+    {
+        final List<Artifact> artifacts = Arrays.asList(
+                createArtifact( "zlib", Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE, "armeabi-v7a" ),
+                createArtifact( "crypto", Const.ArtifactType.NATIVE_SYMBOL_OBJECT, "x86" ),
+                createArtifact( "crypto", Const.ArtifactType.NATIVE_SYMBOL_OBJECT, "armeabi-v7a" ),
+                createArtifact( "png", Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE, "x86" ) );
+        final List<Artifact> reversed = new ArrayList<Artifact>( artifacts );
+        Collections.reverse( reversed );
+
+        final MakefileHelper.MakefileResponse first = createMakefile( artifacts );
+        final MakefileHelper.MakefileResponse second = createMakefile( reversed );
+
+        assertEquals( first.getMakeFile(), second.getMakeFile() );
+        assertEquals( first.getStaticLibraryList(), second.getStaticLibraryList() );
+        assertEquals( first.getSharedLibraryList(), second.getSharedLibraryList() );
+
+        final String makefile = first.getMakeFile();
+        assertTrue( makefile.indexOf( "# Artifact ID: crypto" ) < makefile.indexOf( "# Artifact ID: png" ) );
+        assertTrue( makefile.indexOf( "# Artifact ID: png" ) < makefile.indexOf( "# Artifact ID: zlib" ) );
+    }
+
+    private MakefileHelper.MakefileResponse createMakefile( final List<Artifact> artifacts ) throws Exception
+    {
+        final MakefileHelper.MakefileRequest makefileRequest = new MakefileHelper.MakefileRequest();
+        makefileRequest.artifacts = new LinkedHashSet<Artifact>( artifacts );
+        makefileRequest.defaultNDKArchitecture = "armeabi";
+        makefileRequest.architectures = new String[] { "armeabi-v7a", "x86" };
+        return createHelper( null ).createMakefileFromArtifacts( makefileRequest );
+    }
+
+    @Test
+    public void headerArchivesKeepDependencyOrderWhateverOrderTheyComplete() throws Exception
+    {
+        final List<Artifact> artifacts = Arrays.asList(
+                createArtifact( "zlib", Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE, "x86" ),
+                createArtifact( "png", Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE, "x86" ),
+                createArtifact( "crypto", Const.ArtifactType.NATIVE_SYMBOL_OBJECT, "x86" ) );
+        final List<Artifact> reversed = new ArrayList<Artifact>( artifacts );
+        Collections.reverse( reversed );
+
+        final String makefile = createMakefileWithHeaderArchives( artifacts ).getMakeFile();
+        assertEquals( makefile, createMakefileWithHeaderArchives( reversed ).getMakeFile() );
+
+        // Each module exports the headers of its own archive, in dependency order
+        int previous = -1;
+        for ( String artifactId : new String[] { "crypto", "png", "zlib" } )
+        {
+            final int module = makefile.indexOf( "LOCAL_MODULE    := " + artifactId + "\n" );
+            assertTrue( artifactId, module > previous );
+            final int includesStart = makefile.indexOf( "LOCAL_EXPORT_C_INCLUDES := ", module ) + "LOCAL_EXPORT_C_INCLUDES := ".length();
+            final File includeDirectory = new File( makefile.substring( includesStart, makefile.indexOf( '\n', includesStart ) ) );
+            assertTrue( artifactId, new File( includeDirectory, "include/" + artifactId + ".h" ).isFile() );
+            previous = module;
+        }
+    }
+
+    @Test
+    public void reportsAllHeaderArchiveFailuresTogether() throws Exception
+    {
+        final List<Artifact> artifacts = Arrays.asList(
+                createArtifact( "missing-zlib", Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE, "x86" ),
+                createArtifact( "png", Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE, "x86" ),
+                createArtifact( "missing-crypto", Const.ArtifactType.NATIVE_SYMBOL_OBJECT, "x86" ) );
+
+        try
+        {
+            createMakefileWithHeaderArchives( artifacts );
+            fail( "Expected the missing header archives to fail the makefile" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            final String message = e.getMessage();
+            assertTrue( message, message.startsWith( "Error while resolving header archive files for 2 of 3 artifacts:" ) );
+            assertTrue( message, message.contains( "com.acme:missing-crypto:so:x86:1.0: " ) );
+            assertTrue( message, message.indexOf( "missing-crypto" ) < message.indexOf( "missing-zlib" ) );
+            assertTrue( message, !message.contains( ":png:" ) );
+        }
+    }
+
+    private MakefileHelper.MakefileResponse createMakefileWithHeaderArchives( final List<Artifact> artifacts ) throws Exception
+    {
+        final MakefileHelper.MakefileRequest makefileRequest = new MakefileHelper.MakefileRequest();
+        makefileRequest.artifacts = new LinkedHashSet<Artifact>( artifacts );
+        makefileRequest.defaultNDKArchitecture = "armeabi";
+        makefileRequest.architectures = new String[] { "x86" };
+        makefileRequest.useHeaderArchives = true;
+        makefileRequest.headerArchiveThreads = 4;
+        final HeaderArchiveCache headerArchiveCache = new HeaderArchiveCache( new File( temporaryFolder.getRoot(), "har-cache" ), 0, new SilentLog() );
+        return createHelper( headerArchiveCache ).createMakefileFromArtifacts( makefileRequest );
+    }
+
+    /**
+     * @return A helper whose resolver resolves header archives to an archive holding a header named after the
+     * artifact, except for artifacts whose id starts with "missing".  The first artifact in dependency order is
+     * resolved last.
+     */
+    private MakefileHelper createHelper( final HeaderArchiveCache headerArchiveCache )
+    {
+        final ArtifactResolver resolver = ( ArtifactResolver ) Proxy.newProxyInstance( ArtifactResolver.class.getClassLoader(),
+                new Class<?>[] { ArtifactResolver.class }, new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke( Object proxy, Method method, Object[] args ) throws Exception
+                    {
+                        final Artifact artifact = ( ( ArtifactResolutionRequest ) args[ 0 ] ).getArtifact();
+                        final ArtifactResolutionResult result = new ArtifactResolutionResult();
+                        if ( "crypto".equals( artifact.getArtifactId() ) )
+                        {
+                            Thread.sleep( 200 );
+                        }
+                        if ( !artifact.getArtifactId().startsWith( "missing" ) )
+                        {
+                            artifact.setFile( createHeaderArchive( artifact.getArtifactId() ) );
+                            result.setArtifacts( Collections.singleton( artifact ) );
+                        }
+                        return result;
+                    }
+                } );
+        final ArtifactResolverHelper artifactResolverHelper = new ArtifactResolverHelper( resolver, new ConsoleLogger( Logger.LEVEL_DISABLED, "test" ) );
+        return new MakefileHelper( new MavenProject(), new SilentLog(), artifactResolverHelper, new DefaultArtifactHandler( "har" ),
+                new File( temporaryFolder.getRoot(), "unpacked-libs" ), temporaryFolder.getRoot(), headerArchiveCache );
+    }
+
+    private synchronized File createHeaderArchive( final String artifactId ) throws Exception
+    {
+        final File archive = new File( temporaryFolder.getRoot(), "repository/" + artifactId + ".har" );
+        if ( archive.isFile() )
+        {
+            return archive;
+        }
+        archive.getParentFile().mkdirs();
+        final JarOutputStream out = new JarOutputStream( new FileOutputStream( archive ) );
+        try
+        {
+            out.putNextEntry( new JarEntry( "include/" + artifactId + ".h" ) );
+            out.write( ( "int " + artifactId + "();" ).getBytes( "UTF-8" ) );
+            out.closeEntry();
+        }
+        finally
+        {
+            out.close();
+        }
+        return archive;
+    }
+
+    private Artifact createArtifact( final String artifactId, final String type, final String classifier ) throws Exception
+    {
+        final Artifact artifact = new DefaultArtifact( "com.acme", artifactId, "1.0", "compile", type, classifier,
+                new DefaultArtifactHandler( type ) );
+        final File file = new File( temporaryFolder.getRoot(), "repository/" + classifier + "/lib" + artifactId + "." + type );
+        if ( !file.isFile() )
+        {
+            file.getParentFile().mkdirs();
+            assertTrue( file.createNewFile() );
+        }
+        artifact.setFile( file );
+        return artifact;
+    }
+}
@@ -0,0 +1,245 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.apache.maven.shared.dependency.graph.internal.DefaultDependencyNode;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.powermock.reflect.Whitebox;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NdkBuildMojoTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File basedir;
+    private File ndkPath;
+    private File header;
+    private File invocations;
+    private File restored;
+    private File localRepository;
+
+    @Before
+    public void setupProject() throws Exception
+    {
+        Assume.assumeTrue( new File( "/bin/sh" ).canExecute() );
+
+        basedir = temporaryFolder.newFolder( "project" );
+        FileUtils.writeStringToFile( new File( basedir, "jni/Android.mk" ), "LOCAL_MODULE := hello\n", "UTF-8" );
+        FileUtils.writeStringToFile( new File( basedir, "jni/hello.c" ), "#include <util.h>\n", "UTF-8" );
+        header = new File( temporaryFolder.newFolder( "shared" ), "util.h" );
+        FileUtils.writeStringToFile( header, "int util();\n", "UTF-8" );
+
+        // Records its invocations, and writes an object with its dependency file like the compiler does
+        ndkPath = temporaryFolder.newFolder( "ndk" );
+        FileUtils.writeStringToFile( new File( ndkPath, "source.properties" ), "Pkg.Revision = 12.1.2977051\n", "UTF-8" );
+        invocations = new File( temporaryFolder.getRoot(), "invocations.txt" );
+        restored = new File( temporaryFolder.getRoot(), "restored.txt" );
+        localRepository = new File( temporaryFolder.getRoot(), "m2/repository" );
+        final File ndkBuild = new File( ndkPath, "ndk-build" );
+        FileUtils.writeStringToFile( ndkBuild, "#!/bin/sh\n"
+                + "for arg in \"$@\"; do case \"$arg\" in NDK_OUT=*) out=\"${arg#NDK_OUT=}\";; esac; done\n"
+                + "echo \"$*\" >> '" + invocations.getAbsolutePath() + "'\n"
+                + "objs=\"$out/local/x86/objs/hello\"\n"
+                + "if [ -f \"$objs/hello.o\" ]; then echo \"$objs/hello.o\" >> '" + restored.getAbsolutePath() + "'; fi\n"
+                + "mkdir -p \"$objs\"\n"
+                + "echo object > \"$objs/hello.o\"\n"
+                + "echo \"$objs/hello.o: jni/hello.c " + header.getAbsolutePath() + "\" > \"$objs/hello.o.d\"\n", "UTF-8" );
+        Assume.assumeTrue( ndkBuild.setExecutable( true ) );
+    }
+
+    @Test
+    public void skipsSecondOfTwoUnchangedBuilds() throws Exception
+    {
+        createMojo().execute();
+        createMojo().execute();
+
+        assertEquals( 1, countInvocations() );
+    }
+
+    @Test
+    public void rebuildsWhenFileListedByDependencyFilesChanges() throws Exception
+    {
+        createMojo().execute();
+        createMojo().execute();
+        FileUtils.writeStringToFile( header, "int util( void );\n", "UTF-8" );
+        createMojo().execute();
+        createMojo().execute();
+
+        assertEquals( 2, countInvocations() );
+    }
+
+    @Test
+    public void keepsObjectsAcrossClean() throws Exception
+    {
+        createMojo().execute();
+        // As the maven-clean-plugin does after the clean goal
+        FileUtils.deleteDirectory( new File( basedir, "target" ) );
+        createMojo().execute();
+
+        assertEquals( 2, countInvocations() );
+        assertTrue( restored.isFile() );
+        assertTrue( new File( localRepository.getParentFile(), "android-ndk-maven-plugin/object-cache" ).isDirectory() );
+    }
+
+    @Test
+    public void listsCompilerCommandsOnlyWhileObjectsAreMissing() throws Exception
+    {
+        createMojo( "debug", Arrays.asList( "default-ndk-build", "debug" ) ).execute();
+        FileUtils.writeStringToFile( header, "int util( void );\n", "UTF-8" );
+        createMojo( "debug", Arrays.asList( "default-ndk-build", "debug" ) ).execute();
+
+        int dryRuns = 0;
+        for ( String invocation : FileUtils.readLines( invocations, "UTF-8" ) )
+        {
+            dryRuns += invocation.startsWith( "-n -B " ) ? 1 : 0;
+        }
+        assertEquals( 3, countInvocations() );
+        assertEquals( 1, dryRuns );
+        assertFalse( new File( basedir, "target/obj/.shared" ).exists() );
+    }
+
+    private int countInvocations() throws Exception
+    {
+        return invocations.isFile() ? FileUtils.readLines( invocations, "UTF-8" ).size() : 0;
+    }
+
+    private NdkBuildMojo createMojo()
+    {
+        return createMojo( "default-ndk-build", Collections.<String>emptyList() );
+    }
+
+    /**
+     * @param executionIds The ndk-build executions declared by the project
+     */
+    private NdkBuildMojo createMojo( final String executionId, final List<String> executionIds )
+    {
+        final MavenProject project = new MavenProject();
+        project.setGroupId( "com.acme" );
+        project.setArtifactId( "hello" );
+        project.setVersion( "1.0" );
+        project.setPackaging( "so" );
+        project.setFile( new File( basedir, "pom.xml" ) );
+        project.setDependencyArtifacts( Collections.<Artifact>emptySet() );
+        project.setArtifacts( Collections.<Artifact>emptySet() );
+        final Plugin plugin = new Plugin();
+        plugin.setGroupId( "com.simpligility.maven.plugins" );
+        plugin.setArtifactId( "android-ndk-maven-plugin" );
+        for ( String id : executionIds )
+        {
+            final PluginExecution pluginExecution = new PluginExecution();
+            pluginExecution.setId( id );
+            pluginExecution.addGoal( "ndk-build" );
+            plugin.addExecution( pluginExecution );
+        }
+        project.getBuild().addPlugin( plugin );
+        final DefaultDependencyNode root = new DefaultDependencyNode( null,
+                new DefaultArtifact( "com.acme", "hello", "1.0", null, "so", null, new DefaultArtifactHandler( "so" ) ), null, null, null );
+
+        final File target = new File( basedir, "target" );
+        final NdkBuildMojo mojo = new NdkBuildMojo();
+        mojo.setLog( new SilentLog() );
+        Whitebox.setInternalState( mojo, "project", project );
+        Whitebox.setInternalState( mojo, "session", createSession() );
+        Whitebox.setInternalState( mojo, "execution", new MojoExecution( plugin, "ndk-build", executionId ) );
+        Whitebox.setInternalState( mojo, "dependencyGraphBuilder", new DependencyGraphBuilder()
+        {
+            @Override
+            public DependencyNode buildDependencyGraph( MavenProject mavenProject, ArtifactFilter filter )
+            {
+                return root;
+            }
+
+            @Override
+            public DependencyNode buildDependencyGraph( MavenProject mavenProject, ArtifactFilter filter, Collection<MavenProject> reactorProjects )
+            {
+                return root;
+            }
+        } );
+        Whitebox.setInternalState( mojo, "harArtifactHandler", new DefaultArtifactHandler( "har" ) );
+        Whitebox.setInternalState( mojo, "ndkPath", ndkPath );
+        Whitebox.setInternalState( mojo, "ndkToolchain", "x86-4.9" );
+        Whitebox.setInternalState( mojo, "architectures", "x86" );
+        Whitebox.setInternalState( mojo, "workingDirectory", basedir );
+        Whitebox.setInternalState( mojo, "buildDirectory", new File( target, "android-ndk-maven-plugin" ) );
+        Whitebox.setInternalState( mojo, "objectsOutputDirectory", new File( target, "obj" ) );
+        Whitebox.setInternalState( mojo, "librariesOutputDirectory", new File( target, "ndk-libs" ) );
+        Whitebox.setInternalState( mojo, "unpackedLibsFolder", new File( target, "unpacked-libs" ) );
+        Whitebox.setInternalState( mojo, "headerArchiveCacheDirectory", new File( target, "android-ndk-maven-plugin/header-archives" ) );
+        Whitebox.setInternalState( mojo, "headerArchiveCacheMaxEntries", 64 );
+        Whitebox.setInternalState( mojo, "resolutionThreads", 1 );
+        Whitebox.setInternalState( mojo, "objectCacheMaxSize", 16L );
+        Whitebox.setInternalState( mojo, "useObjectCache", true );
+        Whitebox.setInternalState( mojo, "isolateExecutions", true );
+        Whitebox.setInternalState( mojo, "shareObjects", true );
+        Whitebox.setInternalState( mojo, "skipUnchangedBuilds", Boolean.TRUE );
+        Whitebox.setInternalState( mojo, "attachLibrariesArtifacts", Boolean.FALSE );
+        setFalse( mojo, "unpackNativeLibrariesOnly", "attachHeaderFiles", "writeBuildLog", "leaveTemporaryBuildArtifacts",
+                "useLocalSrcIncludePaths", "maxJobs", "parallelArchitectureBuilds" );
+        setTrue( mojo, "reproducibleHeaderArchives", "useHeaderArchives", "ignoreBuildWarnings" );
+        Whitebox.setInternalState( mojo, "buildWarningsRegularExpression", ".*(warning|note): .*" );
+        return mojo;
+    }
+
+    private MavenSession createSession()
+    {
+        final MavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        request.setLocalRepository( ( ArtifactRepository ) Proxy.newProxyInstance( getClass().getClassLoader(),
+                new Class<?>[] { ArtifactRepository.class }, new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke( Object proxy, Method method, Object[] args )
+                    {
+                        return "getBasedir".equals( method.getName() ) ? localRepository.getAbsolutePath() : null;
+                    }
+                } ) );
+        return new MavenSession( null, null, request, new DefaultMavenExecutionResult() );
+    }
+
+    private static void setFalse( final NdkBuildMojo mojo, final String... fields )
+    {
+        for ( String field : fields )
+        {
+            Whitebox.setInternalState( mojo, field, Boolean.FALSE );
+        }
+    }
+
+    private static void setTrue( final NdkBuildMojo mojo, final String... fields )
+    {
+        for ( String field : fields )
+        {
+            Whitebox.setInternalState( mojo, field, Boolean.TRUE );
+        }
+    }
+}
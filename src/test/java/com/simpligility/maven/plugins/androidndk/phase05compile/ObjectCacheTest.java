@@ -0,0 +1,77 @@
+package com.simpligility.maven.plugins.androidndk.phase05compile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ObjectCacheTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void parsesDependencyFiles()
+    {
+        assertEquals( Arrays.asList( "jni/a.c", "jni/with space.h", "/ndk/include/stdio.h" ),
+                ObjectCache.parseDependencies( "obj/local/x86/objs/m/a.o: jni/a.c jni/with\\ space.h \\\n  /ndk/include/stdio.h\n\njni/with\\ space.h:\n" ) );
+    }
+
+    @Test
+    public void restoresHarvestedObjectsUntilSourcesChange() throws Exception
+    {
+        final File workingDirectory = temporaryFolder.newFolder( "project" );
+        final File source = new File( workingDirectory, "jni/a.c" );
+        FileUtils.writeStringToFile( source, "int a() { return 1; }", "UTF-8" );
+
+        final File ndkOut = new File( workingDirectory, "target/obj" );
+        final File object = new File( ndkOut, "local/x86/objs/m/a.o" );
+        FileUtils.writeStringToFile( object, "object code", "UTF-8" );
+        FileUtils.writeStringToFile( new File( ndkOut, "local/x86/objs/m/a.o.d" ), object.getAbsolutePath() + ": " + source.getAbsolutePath() + "\n", "UTF-8" );
+
+        final ObjectCache objectCache = new ObjectCache( temporaryFolder.newFolder( "store" ), 0, "configuration", workingDirectory, workingDirectory,
+                new SilentLog() );
+        assertEquals( 1, objectCache.harvest( ndkOut, "x86" ) );
+        assertEquals( 0, objectCache.harvest( ndkOut, "x86" ) );
+
+        FileUtils.deleteDirectory( ndkOut );
+        assertEquals( 1, objectCache.restore( ndkOut, "x86" ) );
+        assertEquals( "object code", FileUtils.readFileToString( object, "UTF-8" ) );
+        assertTrue( FileUtils.readFileToString( new File( ndkOut, "local/x86/objs/m/a.o.d" ), "UTF-8" ).contains( source.getAbsolutePath() ) );
+
+        FileUtils.deleteDirectory( ndkOut );
+        FileUtils.writeStringToFile( source, "int a() { return 2; }", "UTF-8" );
+        assertEquals( 0, objectCache.restore( ndkOut, "x86" ) );
+    }
+
+    @Test
+    public void sharesObjectsCompiledByTheSameCommand() throws Exception
+    {
+        final File workingDirectory = temporaryFolder.newFolder( "project" );
+        final File source = new File( workingDirectory, "jni/a.c" );
+        FileUtils.writeStringToFile( source, "int a() { return 1; }", "UTF-8" );
+
+        final File releaseOut = new File( workingDirectory, "target/obj" );
+        final File object = new File( releaseOut, "local/x86/objs/m/a.o" );
+        FileUtils.writeStringToFile( object, "object code", "UTF-8" );
+        FileUtils.writeStringToFile( new File( releaseOut, "local/x86/objs/m/a.o.d" ), object.getAbsolutePath() + ": " + source.getAbsolutePath() + "\n", "UTF-8" );
+
+        final ObjectCache objectCache = new ObjectCache( temporaryFolder.newFolder( "store" ), 0, "ndk", workingDirectory, workingDirectory,
+                new SilentLog() );
+        assertEquals( 0, objectCache.harvest( releaseOut, "x86", Collections.<String, String>emptyMap() ) );
+        assertEquals( 1, objectCache.harvest( releaseOut, "x86", Collections.singletonMap( "objs/m/a.o", "release" ) ) );
+
+        final File debugOut = new File( releaseOut, "debug-build" );
+        assertEquals( 0, objectCache.restore( debugOut, "x86", Collections.singletonMap( "objs/m/a.o", "debug" ) ) );
+        assertEquals( 1, objectCache.restore( debugOut, "x86", Collections.singletonMap( "objs/m/a.o", "release" ) ) );
+        assertEquals( "object code", FileUtils.readFileToString( new File( debugOut, "local/x86/objs/m/a.o" ), "UTF-8" ) );
+    }
+}